@@ -237,6 +237,37 @@ INSERT INTO `sys_dept` (`dept_id`, `pid`, `sub_count`, `name`, `dept_sort`, `ena
 INSERT INTO `sys_dept` (`dept_id`, `pid`, `sub_count`, `name`, `dept_sort`, `enabled`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (17, 2, 0, '研发一组', 999, b'1', 'admin', 'admin', '2020-08-02 14:49:07', '2020-08-02 14:49:07');
 COMMIT;
 
+-- ----------------------------
+-- Table structure for sys_dept_closure
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_dept_closure`;
+CREATE TABLE `sys_dept_closure` (
+  `ancestor` bigint(20) NOT NULL COMMENT '上级部门ID',
+  `descendant` bigint(20) NOT NULL COMMENT '下级部门ID',
+  `depth` int(5) NOT NULL COMMENT '层级差，自身为 0',
+  PRIMARY KEY (`ancestor`, `descendant`) USING BTREE,
+  KEY `idx_descendant` (`descendant`, `depth`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci ROW_FORMAT=COMPACT COMMENT='部门层级关系';
+
+-- ----------------------------
+-- Records of sys_dept_closure
+-- ----------------------------
+BEGIN;
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (2, 2, 0);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (5, 5, 0);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (6, 6, 0);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (7, 7, 0);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (8, 8, 0);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (15, 15, 0);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (17, 17, 0);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (7, 2, 1);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (7, 5, 1);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (8, 6, 1);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (8, 15, 1);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (2, 17, 1);
+INSERT INTO `sys_dept_closure` (`ancestor`, `descendant`, `depth`) VALUES (7, 17, 2);
+COMMIT;
+
 -- ----------------------------
 -- Table structure for sys_dict
 -- ----------------------------
@@ -334,7 +365,10 @@ CREATE TABLE `sys_log` (
   `username` varchar(255) DEFAULT NULL COMMENT '用户名',
   `address` varchar(255) DEFAULT NULL COMMENT '地址',
   `browser` varchar(255) DEFAULT NULL COMMENT '浏览器',
-  `exception_detail` text DEFAULT NULL COMMENT '异常',
+  `exception_detail` text DEFAULT NULL COMMENT '异常（旧数据，新日志只记录指纹）',
+  `error_fingerprint` varchar(32) DEFAULT NULL COMMENT '异常指纹，对应 sys_log_error',
+  `error_message` text DEFAULT NULL COMMENT '异常消息，与指纹对应的堆栈合并还原为本次的异常详情',
+  `sample_rate` double DEFAULT NULL COMMENT '采样率，统计时每条按 1/采样率 计数，为空表示全部记录',
   `create_time` datetime NOT NULL COMMENT '创建时间',
   PRIMARY KEY (`log_id`) USING BTREE,
   KEY `idx_create_time_index` (`create_time`),
@@ -347,6 +381,20 @@ CREATE TABLE `sys_log` (
 BEGIN;
 COMMIT;
 
+-- ----------------------------
+-- Table structure for sys_log_error
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_log_error`;
+CREATE TABLE `sys_log_error` (
+  `fingerprint` varchar(32) NOT NULL COMMENT '归一化堆栈的指纹',
+  `detail` mediumblob NOT NULL COMMENT 'Deflate 压缩后的堆栈',
+  `occurrences` bigint(20) NOT NULL DEFAULT 0 COMMENT '出现次数',
+  `first_time` datetime NOT NULL COMMENT '首次出现时间',
+  `last_time` datetime NOT NULL COMMENT '最后出现时间',
+  PRIMARY KEY (`fingerprint`) USING BTREE,
+  KEY `idx_last_time` (`last_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci ROW_FORMAT=COMPACT COMMENT='系统日志异常堆栈';
+
 -- ----------------------------
 -- Table structure for sys_menu
 -- ----------------------------
@@ -374,7 +422,7 @@ CREATE TABLE `sys_menu` (
   UNIQUE KEY `uniq_name` (`name`),
   UNIQUE KEY `uniq_title` (`title`),
   KEY `idx_pid` (`pid`)
-) ENGINE=InnoDB AUTO_INCREMENT=117 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci ROW_FORMAT=COMPACT COMMENT='系统菜单';
+) ENGINE=InnoDB AUTO_INCREMENT=118 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci ROW_FORMAT=COMPACT COMMENT='系统菜单';
 
 -- ----------------------------
 -- Records of sys_menu
@@ -432,7 +480,7 @@ INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`,
 INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (77, 18, 0, 2, '上传文件', NULL, '', 2, '', '', b'0', b'0', b'0', 'storage:add', NULL, NULL, '2019-10-29 13:09:09', NULL);
 INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (78, 18, 0, 2, '文件编辑', NULL, '', 3, '', '', b'0', b'0', b'0', 'storage:edit', NULL, NULL, '2019-10-29 13:09:22', NULL);
 INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (79, 18, 0, 2, '文件删除', NULL, '', 4, '', '', b'0', b'0', b'0', 'storage:del', NULL, NULL, '2019-10-29 13:09:34', NULL);
-INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (80, 6, 0, 1, '服务监控', 'ServerMonitor', 'monitor/server/index', 14, 'codeConsole', 'server', b'0', b'0', b'0', 'monitor:list', NULL, 'admin', '2019-11-07 13:06:39', '2020-05-04 18:20:50');
+INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (80, 6, 1, 1, '服务监控', 'ServerMonitor', 'monitor/server/index', 14, 'codeConsole', 'server', b'0', b'0', b'0', 'monitor:list', NULL, 'admin', '2019-11-07 13:06:39', '2020-05-04 18:20:50');
 INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (82, 36, 0, 1, '生成配置', 'GeneratorConfig', 'generator/config', 33, 'dev', 'generator/config/:tableName', b'0', b'1', b'1', '', NULL, NULL, '2019-11-17 20:08:56', NULL);
 INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (83, 10, 0, 1, '图表库', 'Echarts', 'components/Echarts', 50, 'chart', 'echarts', b'0', b'1', b'0', '', NULL, NULL, '2019-11-21 09:04:32', NULL);
 INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (90, NULL, 5, 1, '运维管理', 'Mnt', '', 20, 'mnt', 'mnt', b'0', b'0', b'0', NULL, NULL, NULL, '2019-11-09 10:31:08', NULL);
@@ -452,6 +500,7 @@ INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`,
 INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (110, 94, 0, 2, '部署编辑', NULL, '', 999, '', '', b'0', b'0', b'0', 'deploy:edit', NULL, NULL, '2019-11-17 11:11:41', NULL);
 INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (111, 94, 0, 2, '部署删除', NULL, '', 999, '', '', b'0', b'0', b'0', 'deploy:del', NULL, NULL, '2019-11-17 11:12:01', NULL);
 INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (116, 36, 0, 1, '生成预览', 'Preview', 'generator/preview', 999, 'java', 'generator/preview/:tableName', b'0', b'1', b'1', NULL, NULL, NULL, '2019-11-26 14:54:36', NULL);
+INSERT INTO `sys_menu` (`menu_id`, `pid`, `sub_count`, `type`, `title`, `name`, `component`, `menu_sort`, `icon`, `path`, `i_frame`, `cache`, `hidden`, `permission`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (117, 80, 0, 2, '采样分析', NULL, '', 999, '', '', b'0', b'0', b'0', 'monitor:edit', NULL, NULL, '2025-06-16 00:00:00', NULL);
 COMMIT;
 
 -- ----------------------------
@@ -477,7 +526,7 @@ CREATE TABLE `sys_quartz_job` (
   `update_time` datetime DEFAULT NULL COMMENT '更新时间',
   PRIMARY KEY (`job_id`) USING BTREE,
   KEY `idx_is_pause` (`is_pause`)
-) ENGINE=InnoDB AUTO_INCREMENT=7 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci ROW_FORMAT=COMPACT COMMENT='定时任务';
+) ENGINE=InnoDB AUTO_INCREMENT=8 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci ROW_FORMAT=COMPACT COMMENT='定时任务';
 
 -- ----------------------------
 -- Records of sys_quartz_job
@@ -487,6 +536,7 @@ INSERT INTO `sys_quartz_job` (`job_id`, `bean_name`, `cron_expression`, `is_paus
 INSERT INTO `sys_quartz_job` (`job_id`, `bean_name`, `cron_expression`, `is_pause`, `job_name`, `method_name`, `params`, `description`, `person_in_charge`, `email`, `sub_task`, `pause_after_failure`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (3, 'testTask', '0/5 * * * * ?', b'1', '测试', 'run', '', '不带参测试', 'Zheng Jie', '', '6', b'1', NULL, 'admin', '2019-09-26 16:44:39', '2020-05-24 14:48:12');
 INSERT INTO `sys_quartz_job` (`job_id`, `bean_name`, `cron_expression`, `is_pause`, `job_name`, `method_name`, `params`, `description`, `person_in_charge`, `email`, `sub_task`, `pause_after_failure`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (5, 'Test', '0/5 * * * * ?', b'1', '任务告警测试', 'run', NULL, '测试', 'test', '', NULL, b'1', 'admin', 'admin', '2020-05-05 20:32:41', '2020-05-05 20:36:13');
 INSERT INTO `sys_quartz_job` (`job_id`, `bean_name`, `cron_expression`, `is_pause`, `job_name`, `method_name`, `params`, `description`, `person_in_charge`, `email`, `sub_task`, `pause_after_failure`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (6, 'testTask', '0/5 * * * * ?', b'1', '测试3', 'run2', NULL, '测试3', 'Zheng Jie', '', NULL, b'1', 'admin', 'admin', '2020-05-05 20:35:41', '2020-05-05 20:36:07');
+INSERT INTO `sys_quartz_job` (`job_id`, `bean_name`, `cron_expression`, `is_pause`, `job_name`, `method_name`, `params`, `description`, `person_in_charge`, `email`, `sub_task`, `pause_after_failure`, `create_by`, `update_by`, `create_time`, `update_time`) VALUES (7, 'subCountTask', '0 0 3 * * ?', b'0', '子节点数目修正', 'run', NULL, '修正菜单与部门的子节点数目', 'Zheng Jie', '', NULL, b'0', 'admin', 'admin', '2025-06-16 00:00:00', '2025-06-16 00:00:00');
 COMMIT;
 
 -- ----------------------------
@@ -670,8 +720,21 @@ INSERT INTO `sys_roles_menus` (`menu_id`, `role_id`) VALUES (110, 1);
 INSERT INTO `sys_roles_menus` (`menu_id`, `role_id`) VALUES (111, 1);
 INSERT INTO `sys_roles_menus` (`menu_id`, `role_id`) VALUES (116, 1);
 INSERT INTO `sys_roles_menus` (`menu_id`, `role_id`) VALUES (116, 2);
+INSERT INTO `sys_roles_menus` (`menu_id`, `role_id`) VALUES (117, 1);
 COMMIT;
 
+-- ----------------------------
+-- Table structure for sys_state
+-- ----------------------------
+DROP TABLE IF EXISTS `sys_state`;
+CREATE TABLE `sys_state` (
+  `state_key` varchar(255) NOT NULL COMMENT '键',
+  `state_value` text NOT NULL COMMENT '值(JSON)',
+  `expire_at` bigint(20) NOT NULL DEFAULT 0 COMMENT '过期时间戳/毫秒，0 表示不过期',
+  PRIMARY KEY (`state_key`) USING BTREE,
+  KEY `idx_sys_state_expire_at` (`expire_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci ROW_FORMAT=COMPACT COMMENT='共享状态';
+
 -- ----------------------------
 -- Table structure for sys_user
 -- ----------------------------
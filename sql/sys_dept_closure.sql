@@ -0,0 +1,11 @@
+-- ----------------------------
+-- 部门闭包表：保存每个部门与其所有上级（含自身，depth = 0）的关系，查询全部下级或上级只需一次索引查询
+-- 新增、移动、删除部门时在同一事务中维护；启动时发现与 sys_dept 不一致会自动重建，也可调用 POST /api/dept/closure 手动重建
+-- ----------------------------
+CREATE TABLE IF NOT EXISTS `sys_dept_closure` (
+  `ancestor` bigint(20) NOT NULL COMMENT '上级部门ID',
+  `descendant` bigint(20) NOT NULL COMMENT '下级部门ID',
+  `depth` int(5) NOT NULL COMMENT '层级差，自身为 0',
+  PRIMARY KEY (`ancestor`, `descendant`) USING BTREE,
+  KEY `idx_descendant` (`descendant`, `depth`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci ROW_FORMAT=COMPACT COMMENT='部门层级关系';
@@ -0,0 +1,16 @@
+-- ----------------------------
+-- 异常堆栈去重存储：相同的堆栈只在 sys_log_error 中保存一份压缩后的原文，sys_log 只记录指纹
+-- 旧数据的 exception_detail 保留不动，查看详情时仍可读取
+-- ----------------------------
+ALTER TABLE `sys_log` ADD COLUMN `error_fingerprint` varchar(32) DEFAULT NULL COMMENT '异常指纹，对应 sys_log_error' AFTER `exception_detail`;
+ALTER TABLE `sys_log` ADD COLUMN `error_message` text DEFAULT NULL COMMENT '异常消息，与指纹对应的堆栈合并还原为本次的异常详情' AFTER `error_fingerprint`;
+
+CREATE TABLE IF NOT EXISTS `sys_log_error` (
+  `fingerprint` varchar(32) NOT NULL COMMENT '归一化堆栈的指纹',
+  `detail` mediumblob NOT NULL COMMENT 'Deflate 压缩后的堆栈',
+  `occurrences` bigint(20) NOT NULL DEFAULT 0 COMMENT '出现次数',
+  `first_time` datetime NOT NULL COMMENT '首次出现时间',
+  `last_time` datetime NOT NULL COMMENT '最后出现时间',
+  PRIMARY KEY (`fingerprint`) USING BTREE,
+  KEY `idx_last_time` (`last_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci ROW_FORMAT=COMPACT COMMENT='系统日志异常堆栈';
@@ -0,0 +1,10 @@
+-- ----------------------------
+-- sys_log 按月分区（MySQL 5.7+），执行后由 SysLogRetention 自动创建后续月份的分区并删除过期分区
+-- 分区键必须包含在主键中，主键调整为 (log_id, create_time)
+-- 已有数据会先全部进入 p_max，首次维护时拆分出当前月份的分区，数据量大时请在低峰期执行
+-- ----------------------------
+ALTER TABLE `sys_log` DROP PRIMARY KEY, ADD PRIMARY KEY (`log_id`, `create_time`);
+
+ALTER TABLE `sys_log` PARTITION BY RANGE (TO_DAYS(`create_time`)) (
+  PARTITION p_max VALUES LESS THAN MAXVALUE
+);
@@ -0,0 +1,4 @@
+-- ----------------------------
+-- 审计日志采样：记录每条日志的采样率，统计请求量时按 SUM(1 / IFNULL(sample_rate, 1)) 还原
+-- ----------------------------
+ALTER TABLE `sys_log` ADD COLUMN `sample_rate` double DEFAULT NULL COMMENT '采样率，统计时每条按 1/采样率 计数，为空表示全部记录' AFTER `error_fingerprint`;
@@ -69,12 +69,27 @@ public class AsyncExecutor implements AsyncConfigurer {
      */
     @Override
     public Executor getAsyncExecutor() {
-        // 自定义工厂
-        ThreadFactory factory = r -> new Thread(r, "el-async-" + new AtomicInteger(1).getAndIncrement());
-        // 自定义线程池
+        return elAsync();
+    }
+
+    /**
+     * @Async 使用的线程池，注册为 Bean 以便采集指标
+     * @return ThreadPoolExecutor
+     */
+    @Bean(name = "elAsync", destroyMethod = "shutdown")
+    public ThreadPoolExecutor elAsync() {
+        // 自定义工厂，计数器在线程池范围内共享
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadFactory factory = r -> new Thread(r, "el-async-" + threadNumber.getAndIncrement());
+        // 自定义线程池，提交任务时传递 MDC
         return new ThreadPoolExecutor(corePoolSize, maxPoolSize, keepAliveSeconds,
                 TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), factory,
-                new ThreadPoolExecutor.CallerRunsPolicy());
+                new ThreadPoolExecutor.CallerRunsPolicy()) {
+            @Override
+            public void execute(Runnable command) {
+                super.execute(MdcTaskDecorator.INSTANCE.decorate(command));
+            }
+        };
     }
 
     /**
@@ -90,6 +105,7 @@ public class AsyncExecutor implements AsyncConfigurer {
         executor.setQueueCapacity(20);
         executor.setKeepAliveSeconds(60);
         executor.setThreadNamePrefix("el-task-");
+        executor.setTaskDecorator(MdcTaskDecorator.INSTANCE);
         executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
         return executor;
     }
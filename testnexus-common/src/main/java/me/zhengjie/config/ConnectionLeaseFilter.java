@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config;
+
+import com.alibaba.druid.filter.FilterAdapter;
+import com.alibaba.druid.filter.FilterChain;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.DruidPooledConnection;
+import com.alibaba.druid.proxy.jdbc.ConnectionProxy;
+import com.alibaba.druid.proxy.jdbc.StatementProxy;
+import me.zhengjie.utils.ConnectionLeaseTracker;
+import org.springframework.stereotype.Component;
+import java.sql.SQLException;
+
+/**
+ * Druid 过滤器，将连接的借出、归还、事务结束与语句执行上报到 ConnectionLeaseTracker。
+ * druid-spring-boot-starter 会把容器中的 Filter 自动加入数据源
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Component
+public class ConnectionLeaseFilter extends FilterAdapter {
+
+    private final ConnectionLeaseTracker tracker;
+
+    public ConnectionLeaseFilter(ConnectionLeaseTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    public DruidPooledConnection dataSource_getConnection(FilterChain chain, DruidDataSource dataSource, long maxWaitMillis) throws SQLException {
+        DruidPooledConnection connection = chain.dataSource_connect(dataSource, maxWaitMillis);
+        if (connection != null) {
+            tracker.acquire(connection.getConnection());
+        }
+        return connection;
+    }
+
+    @Override
+    public void dataSource_releaseConnection(FilterChain chain, DruidPooledConnection connection) throws SQLException {
+        // 归还前取物理连接，归还后连接对象会被清空
+        if (connection.getConnection() != null) {
+            tracker.release(connection.getConnection());
+        }
+        chain.dataSource_recycle(connection);
+    }
+
+    @Override
+    public void connection_commit(FilterChain chain, ConnectionProxy connection) throws SQLException {
+        try {
+            chain.connection_commit(connection);
+        } finally {
+            tracker.transactionEnd(connection);
+        }
+    }
+
+    @Override
+    public void connection_rollback(FilterChain chain, ConnectionProxy connection) throws SQLException {
+        try {
+            chain.connection_rollback(connection);
+        } finally {
+            tracker.transactionEnd(connection);
+        }
+    }
+
+    @Override
+    public void statement_close(FilterChain chain, StatementProxy statement) throws SQLException {
+        chain.statement_close(statement);
+        tracker.activity(statement.getConnectionProxy());
+    }
+}
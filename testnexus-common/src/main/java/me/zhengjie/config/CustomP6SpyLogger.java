@@ -15,7 +15,6 @@
  */
 package me.zhengjie.config;
 
-import cn.hutool.core.util.StrUtil;
 import com.p6spy.engine.spy.appender.MessageFormattingStrategy;
 import lombok.extern.slf4j.Slf4j;
 
@@ -47,16 +46,27 @@ public class CustomP6SpyLogger implements MessageFormattingStrategy {
      */
     @Override
     public String formatMessage(int connectionId, String now, long elapsed, String category, String prepared, String sql, String url) {
-        // 去掉换行和多余空格
-        if(StrUtil.isNotBlank(sql)){
-            sql = sql.replaceAll("\\s+", " ").trim();
+        // 执行统计由 SqlStatisticsFilter 负责，这里只拼接输出，去掉换行和多余空格
+        StringBuilder message = new StringBuilder(sql == null ? 32 : sql.length() + 32)
+                .append(GREEN).append("[Time: ").append(elapsed).append("ms]").append(RESET)
+                .append(" - ").append(RED);
+        if (sql != null) {
+            int start = message.length();
+            boolean space = false;
+            for (int i = 0; i < sql.length(); i++) {
+                char c = sql.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    space = true;
+                    continue;
+                }
+                if (space && message.length() > start) {
+                    message.append(' ');
+                }
+                space = false;
+                message.append(c);
+            }
         }
-
-        // 格式化并加上颜色
-        return String.format(
-                "%s[Time: %dms]%s - %s%s%s;",
-                GREEN, elapsed, RESET, RED, sql, RESET
-        );
+        return message.append(RESET).append(';').toString();
     }
 }
 
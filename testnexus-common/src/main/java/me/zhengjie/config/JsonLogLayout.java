@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.LayoutBase;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * 单行 JSON 日志格式，MDC 中的请求编号、用户等字段平铺输出，便于日志平台按字段检索。
+ * 配合 AsyncAppender 使用时格式化与异常堆栈展开都在日志线程中完成，不占用请求线程
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public class JsonLogLayout extends LayoutBase<ILoggingEvent> {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
+            .withZone(ZoneId.systemDefault());
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    public String doLayout(ILoggingEvent event) {
+        StringBuilder out = new StringBuilder(256);
+        out.append("{\"time\":\"").append(TIME_FORMAT.format(Instant.ofEpochMilli(event.getTimeStamp()))).append('"');
+        field(out, "level", event.getLevel().toString());
+        field(out, "thread", event.getThreadName());
+        field(out, "logger", event.getLoggerName());
+        for (Map.Entry<String, String> entry : event.getMDCPropertyMap().entrySet()) {
+            field(out, entry.getKey(), entry.getValue());
+        }
+        field(out, "message", event.getFormattedMessage());
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            field(out, "exception", throwable.getClassName());
+            field(out, "stackTrace", ThrowableProxyUtil.asString(throwable));
+        }
+        return out.append("}\n").toString();
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json";
+    }
+
+    private static void field(StringBuilder out, String name, String value) {
+        out.append(',');
+        string(out, name);
+        out.append(':');
+        if (value == null) {
+            out.append("null");
+        } else {
+            string(out, value);
+        }
+    }
+
+    private static void string(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+}
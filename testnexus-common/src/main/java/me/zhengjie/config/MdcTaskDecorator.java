@@ -0,0 +1,53 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config;
+
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+import java.util.Map;
+
+/**
+ * 提交任务时复制当前线程的 MDC，任务执行期间在工作线程上恢复，执行结束后还原工作线程原有的 MDC
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public class MdcTaskDecorator implements TaskDecorator {
+
+    public static final MdcTaskDecorator INSTANCE = new MdcTaskDecorator();
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return () -> {
+            // 拒绝策略为 CallerRunsPolicy 时任务在提交线程上执行，需要还原而不是清空
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            setContext(context);
+            try {
+                runnable.run();
+            } finally {
+                setContext(previous);
+            }
+        };
+    }
+
+    private static void setContext(Map<String, String> context) {
+        if (context == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import me.zhengjie.utils.RequestEnricher;
+import me.zhengjie.utils.metrics.MetricsBinders;
+import me.zhengjie.utils.metrics.MetricsRegistry;
+import me.zhengjie.utils.metrics.MetricsSource;
+import me.zhengjie.utils.sql.SqlStatistics;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 指标注册：JVM 在创建注册表时绑定，线程池、连接池、缓存与 MetricsSource 在所有单例初始化完成后绑定
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MetricsRegistry metricsRegistry() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsBinders.bindJvm(registry);
+        registry.source("request_enricher", RequestEnricher::getStats);
+        registry.source("sql", SqlStatistics::getStats);
+        return registry;
+    }
+
+    @Bean
+    public SmartInitializingSingleton metricsBinder(MetricsRegistry registry, ApplicationContext applicationContext) {
+        return () -> {
+            applicationContext.getBeansOfType(ThreadPoolTaskExecutor.class).forEach((name, executor) ->
+                    MetricsBinders.bindExecutor(registry, name, executor.getThreadPoolExecutor()));
+            applicationContext.getBeansOfType(ThreadPoolExecutor.class).forEach((name, executor) ->
+                    MetricsBinders.bindExecutor(registry, name, executor));
+            applicationContext.getBeansOfType(DruidDataSource.class).forEach((name, dataSource) ->
+                    MetricsBinders.bindDruid(registry, name, dataSource));
+            applicationContext.getBeansOfType(CaffeineCacheManager.class).values().forEach(cacheManager ->
+                    MetricsBinders.bindCacheManager(registry, cacheManager));
+            applicationContext.getBeansOfType(MetricsSource.class).values().forEach(registry::source);
+        };
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config;
+
+import com.alibaba.druid.filter.FilterAdapter;
+import com.alibaba.druid.filter.FilterChain;
+import com.alibaba.druid.proxy.jdbc.PreparedStatementProxy;
+import com.alibaba.druid.proxy.jdbc.ResultSetProxy;
+import com.alibaba.druid.proxy.jdbc.StatementProxy;
+import me.zhengjie.utils.sql.SqlStatistics;
+import org.springframework.stereotype.Component;
+import java.sql.SQLException;
+
+/**
+ * Druid 过滤器，将每次语句执行上报到 SqlStatistics。
+ * 与 ConnectionLeaseFilter 一样由 druid-spring-boot-starter 自动加入数据源，不依赖开发环境的 p6spy
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Component
+public class SqlStatisticsFilter extends FilterAdapter {
+
+    @Override
+    public boolean statement_execute(FilterChain chain, StatementProxy statement, String sql) throws SQLException {
+        return record(sql, () -> chain.statement_execute(statement, sql));
+    }
+
+    @Override
+    public boolean statement_execute(FilterChain chain, StatementProxy statement, String sql, int autoGeneratedKeys) throws SQLException {
+        return record(sql, () -> chain.statement_execute(statement, sql, autoGeneratedKeys));
+    }
+
+    @Override
+    public ResultSetProxy statement_executeQuery(FilterChain chain, StatementProxy statement, String sql) throws SQLException {
+        return record(sql, () -> chain.statement_executeQuery(statement, sql));
+    }
+
+    @Override
+    public int statement_executeUpdate(FilterChain chain, StatementProxy statement, String sql) throws SQLException {
+        return record(sql, () -> chain.statement_executeUpdate(statement, sql));
+    }
+
+    @Override
+    public int statement_executeUpdate(FilterChain chain, StatementProxy statement, String sql, int autoGeneratedKeys) throws SQLException {
+        return record(sql, () -> chain.statement_executeUpdate(statement, sql, autoGeneratedKeys));
+    }
+
+    @Override
+    public int[] statement_executeBatch(FilterChain chain, StatementProxy statement) throws SQLException {
+        // 预编译语句的批量执行共用一条 SQL
+        String sql = statement instanceof PreparedStatementProxy
+                ? ((PreparedStatementProxy) statement).getSql() : statement.getBatchSql();
+        return record(sql, () -> chain.statement_executeBatch(statement));
+    }
+
+    @Override
+    public boolean preparedStatement_execute(FilterChain chain, PreparedStatementProxy statement) throws SQLException {
+        return record(statement.getSql(), () -> chain.preparedStatement_execute(statement));
+    }
+
+    @Override
+    public ResultSetProxy preparedStatement_executeQuery(FilterChain chain, PreparedStatementProxy statement) throws SQLException {
+        return record(statement.getSql(), () -> chain.preparedStatement_executeQuery(statement));
+    }
+
+    @Override
+    public int preparedStatement_executeUpdate(FilterChain chain, PreparedStatementProxy statement) throws SQLException {
+        return record(statement.getSql(), () -> chain.preparedStatement_executeUpdate(statement));
+    }
+
+    private static <T> T record(String sql, Execution<T> execution) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = execution.run();
+            failed = false;
+            return result;
+        } finally {
+            // 预编译语句取带占位符的原始 SQL，不需要拼接参数
+            SqlStatistics.record(sql, (System.nanoTime() - start) / 1000, failed);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Execution<T> {
+
+        T run() throws SQLException;
+    }
+}
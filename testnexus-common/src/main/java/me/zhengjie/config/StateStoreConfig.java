@@ -0,0 +1,46 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config;
+
+import me.zhengjie.config.properties.StateStoreProperties;
+import me.zhengjie.utils.state.JdbcStateStore;
+import me.zhengjie.utils.state.LocalStateStore;
+import me.zhengjie.utils.state.StateStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import javax.sql.DataSource;
+
+/**
+ * 共享状态存储，通过 state-store.type 选择实现
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Configuration
+public class StateStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "state-store", name = "type", havingValue = "local", matchIfMissing = true)
+    public StateStore localStateStore(StateStoreProperties properties) {
+        return new LocalStateStore(properties.getMaximumSize());
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "state-store", name = "type", havingValue = "jdbc")
+    public StateStore jdbcStateStore(DataSource dataSource, StateStoreProperties properties) {
+        return new JdbcStateStore(dataSource, properties);
+    }
+}
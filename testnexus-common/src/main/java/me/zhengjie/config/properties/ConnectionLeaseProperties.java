@@ -0,0 +1,43 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 数据库连接占用跟踪配置
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "connection-lease")
+public class ConnectionLeaseProperties {
+
+    /** 是否记录借出与归还连接的代码位置，需要抓取调用栈 */
+    private boolean recordSites = true;
+
+    /** 最后一个事务结束后仍占用连接超过该时间 毫秒，视为连接占用超出事务 */
+    private long tailThreshold = 100;
+
+    /** 单次占用超过该时间 毫秒 视为长时间占用 */
+    private long longHoldThreshold = 1000;
+
+    /** 保留的最近异常占用记录数量 */
+    private int maxRecent = 100;
+}
@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Open EntityManager In View 配置
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "osiv")
+public class OpenInViewProperties {
+
+    /**
+     * 不开启 OSIV 的路径，这些接口在事务外不能再访问延迟加载的属性，
+     * 适用于导出、文件下载等长时间输出但不依赖延迟加载的接口
+     */
+    private List<String> excludePaths = new ArrayList<>();
+}
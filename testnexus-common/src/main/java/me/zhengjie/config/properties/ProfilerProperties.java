@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 采样分析配置
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "profiler")
+public class ProfilerProperties {
+
+    /** 参与采样的线程名前缀：请求线程、@Async 与定时任务线程 */
+    private List<String> threadPrefixes = new ArrayList<>(Arrays.asList("http-nio-", "el-async-", "el-task-"));
+
+    /** 手动采样的默认间隔 毫秒 */
+    private long interval = 20;
+
+    /** 手动采样的最长时间 秒 */
+    private int maxDuration = 300;
+
+    /** 单个调用栈保留的最大深度 */
+    private int maxDepth = 128;
+
+    /** 不同调用栈的数量上限，超出后归入 [truncated] */
+    private int maxStacks = 20000;
+
+    /** 慢请求阈值 毫秒，请求执行超过该时间后开始采样，小于等于 0 时关闭 */
+    private long slowThreshold = 2000;
+
+    /** 慢请求的采样间隔 毫秒 */
+    private long slowInterval = 50;
+
+    /** 保留的慢请求采样数量 */
+    private int maxCaptures = 50;
+}
@@ -0,0 +1,58 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 共享状态存储配置，多节点部署时使用 jdbc，在线用户、验证码等状态在节点间共享
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "state-store")
+public class StateStoreProperties {
+
+    /** 存储类型：local 单节点本地缓存，jdbc 共享数据库 */
+    private String type = "local";
+
+    /** 本地缓存最大条目数 */
+    private long maximumSize = 10000;
+
+    /** jdbc 存储使用的表 */
+    private String table = "sys_state";
+
+    /** 合并写入的刷新间隔 毫秒 */
+    private long flushInterval = 200;
+
+    /** 待写入条目达到该数量时提前刷新 */
+    private int batchSize = 500;
+
+    /** 近端缓存存活时间 毫秒，决定其他节点修改后本节点最长可见延迟 */
+    private long nearCacheTtl = 2000;
+
+    /** 近端缓存最大条目数 */
+    private long nearCacheSize = 10000;
+
+    /** 过期数据清理间隔 毫秒 */
+    private long purgeInterval = 60000;
+
+    /** 单次清理的最大行数 */
+    private int purgeBatchSize = 1000;
+}
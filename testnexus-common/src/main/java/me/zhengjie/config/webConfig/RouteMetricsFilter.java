@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config.webConfig;
+
+import me.zhengjie.utils.RouteMetrics;
+import me.zhengjie.utils.profiler.SamplingProfiler;
+import me.zhengjie.utils.sql.SqlStatistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 记录每个请求的耗时与状态码，按处理器的路径模板（如 /api/users/{id}）而不是原始 URI 归类；
+ * 同时开启请求范围的 SQL 统计，检测 N+1 查询，并登记到采样分析中以便抓取慢请求的调用栈
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RouteMetricsFilter extends OncePerRequestFilter {
+
+    private final RouteMetrics routeMetrics;
+
+    private final SamplingProfiler profiler;
+
+    /** 同一 SQL 指纹在一次请求中的执行次数阈值 */
+    private final int repeatThreshold;
+
+    public RouteMetricsFilter(RouteMetrics routeMetrics, SamplingProfiler profiler,
+                              @Value("${sql-stats.repeat-threshold:10}") int repeatThreshold) {
+        this.routeMetrics = routeMetrics;
+        this.profiler = profiler;
+        this.repeatThreshold = repeatThreshold;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        SqlStatistics.Scope scope = SqlStatistics.begin();
+        SamplingProfiler.Watch watch = profiler.watch();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            // 路径模板在 DispatcherServlet 匹配处理器后才写入请求属性
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+            routeMetrics.record(request.getMethod(), pattern == null ? null : pattern.toString(),
+                    status, (System.nanoTime() - start) / 1000);
+            String route = request.getMethod() + " " + (pattern == null ? "[unmatched]" : pattern);
+            SqlStatistics.end(scope, route, repeatThreshold);
+            profiler.finish(watch, request.getMethod(), route, request.getRequestURI(), status);
+        }
+    }
+}
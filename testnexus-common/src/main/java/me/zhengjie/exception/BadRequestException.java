@@ -25,7 +25,7 @@ import static org.springframework.http.HttpStatus.BAD_REQUEST;
  * 统一异常处理
  */
 @Getter
-public class BadRequestException extends RuntimeException{
+public class BadRequestException extends BusinessException {
 
     private Integer status = BAD_REQUEST.value();
 
@@ -37,4 +37,13 @@ public class BadRequestException extends RuntimeException{
         super(msg);
         this.status = status.value();
     }
+
+    public BadRequestException(String msg, Throwable cause){
+        super(msg, cause);
+    }
+
+    public BadRequestException(HttpStatus status, String msg, Throwable cause){
+        super(msg, cause);
+        this.status = status.value();
+    }
 }
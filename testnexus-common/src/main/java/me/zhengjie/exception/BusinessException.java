@@ -0,0 +1,34 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.exception;
+
+/**
+ * 业务异常，表示可预期的业务校验失败，例如密码错误、数据已存在。
+ * 只有消息时不抓取调用栈（fillInStackTrace 为空操作），抛出开销与普通对象分配相当，
+ * 异常处理器只记录消息；包装其他异常时保留完整调用栈与原因，异常处理器打印堆栈
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public class BusinessException extends RuntimeException {
+
+    public BusinessException(String msg) {
+        super(msg, null, false, false);
+    }
+
+    public BusinessException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
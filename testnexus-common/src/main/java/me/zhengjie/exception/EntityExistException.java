@@ -21,7 +21,7 @@ import org.springframework.util.StringUtils;
  * @author Zheng Jie
  * @date 2018-11-23
  */
-public class EntityExistException extends RuntimeException {
+public class EntityExistException extends BusinessException {
 
     public EntityExistException(Class clazz, String field, String val) {
         super(EntityExistException.generateMessage(clazz.getSimpleName(), field, val));
@@ -21,7 +21,7 @@ import org.springframework.util.StringUtils;
  * @author Zheng Jie
  * @date 2018-11-23
  */
-public class EntityNotFoundException extends RuntimeException {
+public class EntityNotFoundException extends BusinessException {
 
     public EntityNotFoundException(Class clazz, String field, String val) {
         super(EntityNotFoundException.generateMessage(clazz.getSimpleName(), field, val));
@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.exception.handler;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异常日志限流，相同签名的异常在一个时间窗口内只记录一次，
+ * 窗口内被忽略的次数在下一次记录时一并输出
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Component
+public class ExceptionLogLimiter implements MetricsSource {
+
+    /** 不再记录日志 */
+    public static final long SUPPRESSED = -1;
+
+    private static final int MAX_SIGNATURES = 1024;
+
+    private final long interval;
+
+    /**
+     * 异常签名 -> 时间窗口，签名数量有上限，被淘汰的签名重新开始计数
+     */
+    private final Cache<String, Window> windows = Caffeine.newBuilder()
+            .maximumSize(MAX_SIGNATURES)
+            .build();
+
+    private final LongAdder logged = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * @param interval 时间窗口 毫秒，为 0 时不限流
+     */
+    public ExceptionLogLimiter(@Value("${exception-log.interval:60000}") long interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * 申请记录一次异常日志
+     * @param signature 异常签名
+     * @return 需要记录时返回上一窗口内被忽略的次数，不需要记录时返回 {@link #SUPPRESSED}
+     */
+    public long acquire(String signature) {
+        if (interval <= 0) {
+            logged.increment();
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        Window window = windows.getIfPresent(signature);
+        if (window == null) {
+            Window created = new Window(now);
+            window = windows.asMap().putIfAbsent(signature, created);
+            if (window == null) {
+                logged.increment();
+                return 0;
+            }
+        }
+        long start = window.start.get();
+        if (now - start >= interval && window.start.compareAndSet(start, now)) {
+            logged.increment();
+            return window.suppressed.getAndSet(0);
+        }
+        window.suppressed.incrementAndGet();
+        suppressed.increment();
+        return SUPPRESSED;
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "exception_log";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(4);
+        stats.put("signatures", windows.estimatedSize());
+        stats.put("logged", logged.sum());
+        stats.put("suppressed", suppressed.sum());
+        return stats;
+    }
+
+    private static class Window {
+
+        private final AtomicLong start;
+
+        private final AtomicLong suppressed = new AtomicLong();
+
+        private Window(long start) {
+            this.start = new AtomicLong(start);
+        }
+    }
+}
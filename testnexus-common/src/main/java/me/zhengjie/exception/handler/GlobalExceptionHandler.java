@@ -15,11 +15,11 @@
  */
 package me.zhengjie.exception.handler;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import me.zhengjie.exception.BadRequestException;
 import me.zhengjie.exception.EntityExistException;
 import me.zhengjie.exception.EntityNotFoundException;
-import me.zhengjie.utils.ThrowableUtil;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -31,20 +31,30 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import static org.springframework.http.HttpStatus.*;
 
 /**
+ * 业务校验类的异常属于预期内的情况，以 WARN 级别记录消息，只有包装了其他异常时才打印堆栈；
+ * 其余异常以 ERROR 级别记录完整堆栈。相同签名的异常按时间窗口限流
  * @author Zheng Jie
  * @date 2018-11-23
  */
 @Slf4j
 @RestControllerAdvice
+@RequiredArgsConstructor
 public class GlobalExceptionHandler {
 
+    private final ExceptionLogLimiter limiter;
+
     /**
      * 处理所有不可知的异常
      */
     @ExceptionHandler(Throwable.class)
     public ResponseEntity<ApiError> handleException(Throwable e){
-        // 打印堆栈信息
-        log.error(ThrowableUtil.getStackTrace(e));
+        // 打印堆栈信息，堆栈在异步日志线程中展开，不在请求线程上拼接字符串
+        long suppressed = limiter.acquire(signature(e));
+        if (suppressed > 0) {
+            log.error("{}（此前 {} 秒内相同异常已忽略 {} 次）", e.getMessage(), limiter.getInterval() / 1000, suppressed, e);
+        } else if (suppressed == 0) {
+            log.error(e.getMessage(), e);
+        }
         return buildResponseEntity(ApiError.error(e.getMessage()));
     }
 
@@ -53,9 +63,8 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(BadCredentialsException.class)
     public ResponseEntity<ApiError> badCredentialsException(BadCredentialsException e){
-        // 打印堆栈信息
         String message = "坏的凭证".equals(e.getMessage()) ? "用户名或密码不正确" : e.getMessage();
-        log.error(message);
+        warn(e, message);
         return buildResponseEntity(ApiError.error(message));
     }
 
@@ -64,8 +73,7 @@ public class GlobalExceptionHandler {
      */
 	@ExceptionHandler(value = BadRequestException.class)
 	public ResponseEntity<ApiError> badRequestException(BadRequestException e) {
-        // 打印堆栈信息
-        log.error(ThrowableUtil.getStackTrace(e));
+        warn(e, e.getMessage());
         return buildResponseEntity(ApiError.error(e.getStatus(),e.getMessage()));
 	}
 
@@ -74,8 +82,7 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(value = EntityExistException.class)
     public ResponseEntity<ApiError> entityExistException(EntityExistException e) {
-        // 打印堆栈信息
-        log.error(ThrowableUtil.getStackTrace(e));
+        warn(e, e.getMessage());
         return buildResponseEntity(ApiError.error(e.getMessage()));
     }
 
@@ -84,8 +91,7 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(value = EntityNotFoundException.class)
     public ResponseEntity<ApiError> entityNotFoundException(EntityNotFoundException e) {
-        // 打印堆栈信息
-        log.error(ThrowableUtil.getStackTrace(e));
+        warn(e, e.getMessage());
         return buildResponseEntity(ApiError.error(NOT_FOUND.value(),e.getMessage()));
     }
 
@@ -94,16 +100,40 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiError> handleMethodArgumentNotValidException(MethodArgumentNotValidException e){
-        // 打印堆栈信息
-        log.error(ThrowableUtil.getStackTrace(e));
         ObjectError objectError = e.getBindingResult().getAllErrors().get(0);
         String message = objectError.getDefaultMessage();
         if (objectError instanceof FieldError) {
             message = ((FieldError) objectError).getField() + ": " + message;
         }
+        warn(e, message);
         return buildResponseEntity(ApiError.error(message));
     }
 
+    /**
+     * 预期内的异常只记录消息
+     */
+    private void warn(Throwable e, String message) {
+        long suppressed = limiter.acquire(e.getClass().getName() + ":" + message);
+        // 有原因的异常带上堆栈，便于定位底层失败
+        Throwable trace = e.getCause() == null ? null : e;
+        if (suppressed > 0) {
+            log.warn("{}: {}（此前 {} 秒内相同异常已忽略 {} 次）", e.getClass().getSimpleName(), message, limiter.getInterval() / 1000, suppressed, trace);
+        } else if (suppressed == 0) {
+            log.warn("{}: {}", e.getClass().getSimpleName(), message, trace);
+        }
+    }
+
+    /**
+     * 异常签名：异常类型加抛出位置，抛出位置未知时使用消息
+     */
+    private static String signature(Throwable e) {
+        StackTraceElement[] stackTrace = e.getStackTrace();
+        if (stackTrace.length > 0) {
+            return e.getClass().getName() + "@" + stackTrace[0];
+        }
+        return e.getClass().getName() + ":" + e.getMessage();
+    }
+
     /**
      * 统一返回
      */
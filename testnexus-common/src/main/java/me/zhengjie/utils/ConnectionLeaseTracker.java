@@ -0,0 +1,369 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils;
+
+import me.zhengjie.config.properties.ConnectionLeaseProperties;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+import javax.servlet.http.HttpServletRequest;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 数据库连接占用跟踪：记录每次借出到归还的占用时间、借出与归还的代码位置，按接口汇总，
+ * 并标记最后一个事务结束后仍长时间占用的连接（通常是 OSIV 在序列化或文件输出期间持有的连接）。
+ * 事件由 Druid 过滤器上报，连接以物理连接对象区分
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Component
+public class ConnectionLeaseTracker implements MetricsSource {
+
+    private static final int MAX_ROUTES = 1000;
+
+    private static final int MAX_SITES = 500;
+
+    private static final String OTHER = "OTHER";
+
+    /** 查找代码位置时跳过的框架与驱动 */
+    private static final String[] SKIPPED = {
+            "java.", "javax.", "jdk.", "sun.", "com.sun.", "com.alibaba.druid.", "com.p6spy.", "com.mysql.",
+            "org.hibernate.", "org.springframework.jdbc.", "org.springframework.orm.jpa.vendor."
+    };
+
+    /** 上报连接事件的类本身 */
+    private static final Set<String> SELF = new HashSet<>(Arrays.asList(
+            "me.zhengjie.config.ConnectionLeaseFilter", ConnectionLeaseTracker.class.getName()));
+
+    private static final String APP_PACKAGE = "me.zhengjie.";
+
+    private final ConnectionLeaseProperties properties;
+
+    /**
+     * 物理连接 -> 当前占用
+     */
+    private final Map<Object, Lease> active = new ConcurrentHashMap<>();
+
+    private final Map<String, Stat> routes = new ConcurrentHashMap<>();
+
+    private final Map<String, Stat> sites = new ConcurrentHashMap<>();
+
+    private final Deque<Map<String, Object>> recent = new ConcurrentLinkedDeque<>();
+
+    private final LongAdder leases = new LongAdder();
+
+    private final LongAdder outlived = new LongAdder();
+
+    private final LongAdder longHolds = new LongAdder();
+
+    public ConnectionLeaseTracker(ConnectionLeaseProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 连接借出
+     * @param connection 物理连接
+     */
+    public void acquire(Object connection) {
+        Thread thread = Thread.currentThread();
+        String site = properties.isRecordSites() ? site(new Throwable().getStackTrace(), true) : null;
+        active.put(connection, new Lease(thread.getName(), currentRoute(thread), site));
+    }
+
+    /**
+     * 连接上执行了语句
+     * @param connection 物理连接
+     */
+    public void activity(Object connection) {
+        Lease lease = active.get(connection);
+        if (lease != null) {
+            lease.lastActivity = System.nanoTime();
+        }
+    }
+
+    /**
+     * 连接上的事务提交或回滚
+     * @param connection 物理连接
+     */
+    public void transactionEnd(Object connection) {
+        Lease lease = active.get(connection);
+        if (lease != null) {
+            long now = System.nanoTime();
+            lease.lastActivity = now;
+            lease.transactionEnd = now;
+            lease.transactions++;
+        }
+    }
+
+    /**
+     * 连接归还
+     * @param connection 物理连接
+     */
+    public void release(Object connection) {
+        Lease lease = active.remove(connection);
+        if (lease == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long hold = TimeUnit.NANOSECONDS.toMicros(now - lease.acquireNanos);
+        long tail = TimeUnit.NANOSECONDS.toMicros(now - lease.lastActivity);
+        Thread thread = Thread.currentThread();
+        // 借出时可能还没有匹配到处理器，归还时再取一次
+        String route = lease.route.startsWith("[") ? currentRoute(thread) : lease.route;
+        boolean outlives = lease.transactions > 0 && now - lease.transactionEnd > TimeUnit.MILLISECONDS.toNanos(properties.getTailThreshold());
+        boolean longHold = hold >= TimeUnit.MILLISECONDS.toMicros(properties.getLongHoldThreshold());
+        leases.increment();
+        stat(routes, route, MAX_ROUTES).record(hold, tail, outlives);
+        String releaseSite = null;
+        if (properties.isRecordSites()) {
+            releaseSite = site(new Throwable().getStackTrace(), false);
+            stat(sites, lease.site + " -> " + releaseSite, MAX_SITES).record(hold, tail, outlives);
+        }
+        if (outlives) {
+            outlived.increment();
+        }
+        if (longHold) {
+            longHolds.increment();
+        }
+        if (outlives || longHold) {
+            Map<String, Object> item = new LinkedHashMap<>(10);
+            item.put("time", System.currentTimeMillis());
+            item.put("route", route);
+            item.put("thread", lease.thread);
+            item.put("hold", toMillis(hold));
+            item.put("afterTransaction", lease.transactions > 0 ? toMillis(TimeUnit.NANOSECONDS.toMicros(now - lease.transactionEnd)) : null);
+            item.put("idleTail", toMillis(tail));
+            item.put("transactions", lease.transactions);
+            item.put("acquireSite", lease.site);
+            item.put("releaseSite", releaseSite);
+            recent.addFirst(item);
+            while (recent.size() > properties.getMaxRecent()) {
+                recent.pollLast();
+            }
+        }
+    }
+
+    /**
+     * 连接占用报告
+     * @param limit 每一项返回的数量
+     * @return routes：按接口汇总；sites：按借出 -> 归还位置汇总；recent：最近超出事务或长时间占用的记录；active：当前未归还的连接
+     */
+    public Map<String, Object> report(int limit) {
+        Map<String, Object> report = new LinkedHashMap<>(4);
+        report.put("routes", top(routes, "route", limit));
+        report.put("sites", top(sites, "site", limit));
+        List<Map<String, Object>> latest = new ArrayList<>(recent);
+        report.put("recent", latest.subList(0, Math.min(latest.size(), Math.max(1, limit))));
+        long now = System.nanoTime();
+        report.put("active", active.values().stream()
+                .sorted(Comparator.comparingLong(lease -> lease.acquireNanos))
+                .limit(Math.max(1, limit))
+                .map(lease -> {
+                    Map<String, Object> item = new LinkedHashMap<>(6);
+                    item.put("route", lease.route);
+                    item.put("thread", lease.thread);
+                    item.put("age", toMillis(TimeUnit.NANOSECONDS.toMicros(now - lease.acquireNanos)));
+                    item.put("transactions", lease.transactions);
+                    item.put("acquireSite", lease.site);
+                    return item;
+                }).collect(Collectors.toList()));
+        return report;
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        routes.clear();
+        sites.clear();
+        recent.clear();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "connection_lease";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(4);
+        stats.put("active", active.size());
+        stats.put("leases", leases.sum());
+        stats.put("outlived", outlived.sum());
+        stats.put("longHolds", longHolds.sum());
+        return stats;
+    }
+
+    private static Stat stat(Map<String, Stat> stats, String key, int max) {
+        Stat stat = stats.get(key);
+        if (stat == null) {
+            stat = stats.size() < max ? stats.computeIfAbsent(key, k -> new Stat())
+                    : stats.computeIfAbsent(OTHER, k -> new Stat());
+        }
+        return stat;
+    }
+
+    private static List<Map<String, Object>> top(Map<String, Stat> stats, String keyName, int limit) {
+        return stats.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, Stat> entry) -> entry.getValue().totalHold.sum()).reversed())
+                .limit(Math.max(1, limit))
+                .map(entry -> entry.getValue().toMap(keyName, entry.getKey()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 当前线程正在处理的接口，非请求线程返回线程池名
+     */
+    private static String currentRoute(Thread thread) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                return request.getMethod() + " " + pattern;
+            }
+        }
+        String name = thread.getName();
+        int end = name.length();
+        while (end > 0 && (Character.isDigit(name.charAt(end - 1)) || name.charAt(end - 1) == '-')) {
+            end--;
+        }
+        return "[" + (end == 0 ? name : name.substring(0, end)) + "]";
+    }
+
+    /**
+     * 调用栈中第一个业务代码的位置；preferApp 为 false 或没有业务代码时取第一个非框架、非驱动的位置，
+     * 归还位置通常是 JpaTransactionManager 或 OpenEntityManagerInViewInterceptor，能直接看出连接由谁释放
+     */
+    private static String site(StackTraceElement[] frames, boolean preferApp) {
+        StackTraceElement first = null;
+        for (StackTraceElement frame : frames) {
+            String className = frame.getClassName();
+            if (skipped(className)) {
+                continue;
+            }
+            if (first == null) {
+                first = frame;
+                if (!preferApp) {
+                    break;
+                }
+            }
+            if (className.startsWith(APP_PACKAGE) && !className.contains("$$")) {
+                return format(frame);
+            }
+        }
+        return first == null ? "unknown" : format(first);
+    }
+
+    private static boolean skipped(String className) {
+        if (SELF.contains(className)) {
+            return true;
+        }
+        for (String prefix : SKIPPED) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String format(StackTraceElement frame) {
+        String className = frame.getClassName();
+        return className.substring(className.lastIndexOf('.') + 1) + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+    }
+
+    private static double toMillis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+
+    private static class Lease {
+
+        private final long acquireNanos = System.nanoTime();
+
+        private final String thread;
+
+        private final String route;
+
+        private final String site;
+
+        /** 以下字段只由持有连接的线程修改 */
+        private volatile long lastActivity = acquireNanos;
+
+        private volatile long transactionEnd;
+
+        private volatile int transactions;
+
+        private Lease(String thread, String route, String site) {
+            this.thread = thread;
+            this.route = route;
+            this.site = site;
+        }
+    }
+
+    private static class Stat {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder totalHold = new LongAdder();
+
+        private final LongAdder totalTail = new LongAdder();
+
+        private final LongAdder outlived = new LongAdder();
+
+        private final AtomicLong maxHold = new AtomicLong();
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private void record(long hold, long tail, boolean outlives) {
+            count.increment();
+            totalHold.add(hold);
+            totalTail.add(tail);
+            if (outlives) {
+                outlived.increment();
+            }
+            histogram.record(hold);
+            long max = maxHold.get();
+            while (hold > max && !maxHold.compareAndSet(max, hold)) {
+                max = maxHold.get();
+            }
+        }
+
+        private Map<String, Object> toMap(String keyName, String key) {
+            long leases = count.sum();
+            LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+            histogram.addTo(snapshot);
+            Map<String, Object> item = new LinkedHashMap<>(10);
+            item.put(keyName, key);
+            item.put("count", leases);
+            item.put("totalHold", toMillis(totalHold.sum()));
+            item.put("meanHold", leases == 0 ? 0 : toMillis(totalHold.sum() / leases));
+            item.put("p99Hold", toMillis(snapshot.percentile(99)));
+            item.put("maxHold", toMillis(maxHold.get()));
+            item.put("meanIdleTail", leases == 0 ? 0 : toMillis(totalTail.sum() / leases));
+            item.put("outlived", outlived.sum());
+            return item;
+        }
+    }
+}
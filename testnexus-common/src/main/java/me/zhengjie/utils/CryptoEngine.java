@@ -0,0 +1,193 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.commons.codec.binary.Base64;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.DESKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+
+/**
+ * 加解密引擎，密钥只解析一次，Cipher 按线程复用，避免每次调用都重新创建 KeyFactory、Cipher
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public final class CryptoEngine {
+
+    public static final String RSA = "RSA";
+
+    public static final String DES = "DES";
+
+    public static final String DES_TRANSFORMATION = "DES/CBC/PKCS5Padding";
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    /**
+     * 已解析的私钥，key 为 Base64 编码的 PKCS8 文本
+     */
+    private static final Cache<String, PrivateKey> PRIVATE_KEYS = Caffeine.newBuilder().maximumSize(16).build();
+
+    /**
+     * 已解析的公钥，key 为 Base64 编码的 X509 文本
+     */
+    private static final Cache<String, PublicKey> PUBLIC_KEYS = Caffeine.newBuilder().maximumSize(16).build();
+
+    /**
+     * 已生成的 DES 密钥
+     */
+    private static final Cache<String, SecretKey> DES_KEYS = Caffeine.newBuilder().maximumSize(16).build();
+
+    private static final ThreadLocal<Cipher> RSA_CIPHER = ThreadLocal.withInitial(() -> newCipher(RSA));
+
+    private static final ThreadLocal<Cipher> DES_CIPHER = ThreadLocal.withInitial(() -> newCipher(DES_TRANSFORMATION));
+
+    private CryptoEngine() {
+    }
+
+    /**
+     * 获取已解析的私钥
+     * @param privateKeyText Base64 编码的私钥
+     * @return /
+     */
+    public static PrivateKey privateKey(String privateKeyText) {
+        return PRIVATE_KEYS.get(privateKeyText, text -> {
+            try {
+                return KeyFactory.getInstance(RSA).generatePrivate(new PKCS8EncodedKeySpec(Base64.decodeBase64(text)));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException("私钥格式错误", e);
+            }
+        });
+    }
+
+    /**
+     * 获取已解析的公钥
+     * @param publicKeyText Base64 编码的公钥
+     * @return /
+     */
+    public static PublicKey publicKey(String publicKeyText) {
+        return PUBLIC_KEYS.get(publicKeyText, text -> {
+            try {
+                return KeyFactory.getInstance(RSA).generatePublic(new X509EncodedKeySpec(Base64.decodeBase64(text)));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException("公钥格式错误", e);
+            }
+        });
+    }
+
+    /**
+     * 获取已生成的 DES 密钥
+     * @param keyText 密钥文本
+     * @return /
+     */
+    public static SecretKey desKey(String keyText) {
+        return DES_KEYS.get(keyText, text -> {
+            try {
+                DESKeySpec desKeySpec = new DESKeySpec(text.getBytes(StandardCharsets.UTF_8));
+                return SecretKeyFactory.getInstance(DES).generateSecret(desKeySpec);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalArgumentException("DES 密钥格式错误", e);
+            }
+        });
+    }
+
+    /**
+     * 当前线程复用的 RSA Cipher，使用前需要重新 init
+     * @return /
+     */
+    public static Cipher rsaCipher() {
+        return RSA_CIPHER.get();
+    }
+
+    /**
+     * 当前线程复用的 DES Cipher，使用前需要重新 init
+     * @return /
+     */
+    public static Cipher desCipher() {
+        return DES_CIPHER.get();
+    }
+
+    /**
+     * 字节数组转大写十六进制字符串
+     * @param bytes /
+     * @return /
+     */
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length << 1];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xFF;
+            out[j++] = HEX_DIGITS[v >>> 4];
+            out[j++] = HEX_DIGITS[v & 0x0F];
+        }
+        return new String(out);
+    }
+
+    /**
+     * 十六进制字符串转字节数组，大小写均可
+     * @param hex /
+     * @return /
+     */
+    public static byte[] fromHex(CharSequence hex) {
+        int length = hex.length();
+        if ((length & 1) != 0) {
+            throw new IllegalArgumentException("长度不是偶数");
+        }
+        byte[] out = new byte[length >> 1];
+        for (int i = 0; i < length; i += 2) {
+            out[i >> 1] = (byte) (hexValue(hex.charAt(i)) << 4 | hexValue(hex.charAt(i + 1)));
+        }
+        return out;
+    }
+
+    private static int hexValue(char c) {
+        int v = c < 128 ? HEX_VALUES[c] : -1;
+        if (v < 0) {
+            throw new NumberFormatException("非法的十六进制字符：" + c);
+        }
+        return v;
+    }
+
+    private static Cipher newCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(transformation + " 不可用", e);
+        }
+    }
+}
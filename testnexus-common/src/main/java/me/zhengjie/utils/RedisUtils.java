@@ -15,10 +15,10 @@
  */
 package me.zhengjie.utils;
 
-import cn.hutool.core.util.StrUtil;
-import com.alibaba.fastjson2.JSON;
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.alibaba.fastjson2.util.TypeUtils;
+import me.zhengjie.config.properties.StateStoreProperties;
+import me.zhengjie.utils.state.LocalStateStore;
+import me.zhengjie.utils.state.StateStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -28,6 +28,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
+ * 实体缓存。单节点（state-store.type=local）时使用独立的本地缓存，不与在线用户等状态争用容量；
+ * 多节点（state-store.type=jdbc）时读写共享状态存储，一个节点清理缓存后，
+ * 其他节点在近端缓存存活时间（near-cache-ttl）内可见。删除不走合并写入，立即落库
  * @author /
  */
 @Component
@@ -35,13 +38,13 @@ import java.util.stream.Collectors;
 public class RedisUtils {
     private static final Logger log = LoggerFactory.getLogger(RedisUtils.class);
 
-    private final Cache<String, Object> cache;
+    /** 未指定时间时的默认存活时间 */
+    private static final long DEFAULT_TTL = TimeUnit.HOURS.toMillis(24);
 
-    public RedisUtils() {
-        this.cache = Caffeine.newBuilder()
-                .maximumSize(1000) // 设置最大容量
-                .expireAfterWrite(24, TimeUnit.HOURS) // 设置过期时间
-                .build();
+    private final StateStore cache;
+
+    public RedisUtils(StateStore stateStore, StateStoreProperties properties) {
+        this.cache = "jdbc".equals(properties.getType()) ? stateStore : new LocalStateStore(1000);
     }
 
     /**
@@ -51,27 +54,23 @@ public class RedisUtils {
      * @param time 时间(秒) 注意:这里将会替换原有的时间
      */
     public boolean expire(String key, long time) {
-//        try {
-//            if (time > 0) {
-//                cache.put(key, cache.getIfPresent(key), time, TimeUnit.SECONDS);
-//            }
-//        } catch (Exception e) {
-//            log.error(e.getMessage(), e);
-//            return false;
-//        }
-//        return true;
-        return false;
+        try {
+            return time > 0 && cache.expire(key, TimeUnit.SECONDS.toMillis(time));
+        } catch (Exception e) {
+            log.error(e.getMessage(), e);
+            return false;
+        }
     }
 
     /**
      * 根据 key 获取过期时间
      *
      * @param key 键 不能为null
-     * @return 时间(秒) 返回0代表为永久有效
+     * @return 时间(秒) 返回0代表为永久有效，-1 代表不存在
      */
     public long getExpire(Object key) {
-        // Caffeine does not provide a direct way to get the remaining expiration time
-        return -1;
+        long millis = cache.getExpire(String.valueOf(key));
+        return millis <= 0 ? millis : Math.max(1, TimeUnit.MILLISECONDS.toSeconds(millis));
     }
 
     /**
@@ -82,7 +81,7 @@ public class RedisUtils {
      */
     public boolean hasKey(String key) {
         try {
-            return cache.getIfPresent(key) != null;
+            return cache.getExpire(key) >= 0;
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return false;
@@ -96,12 +95,9 @@ public class RedisUtils {
      */
     public void del(String... keys) {
         if (keys != null && keys.length > 0) {
-            for (String key : keys) {
-                cache.invalidate(key);
-                log.debug("--------------------------------------------");
-                log.debug(new StringBuilder("删除缓存：").append(key).append("，结果：").append(true).toString());
-                log.debug("--------------------------------------------");
-            }
+            cache.del(keys);
+            cache.flush();
+            log.debug("删除缓存：{}", Arrays.toString(keys));
         }
     }
 
@@ -112,7 +108,7 @@ public class RedisUtils {
      * @return 值
      */
     public Object get(String key) {
-        return key == null ? null : cache.getIfPresent(key);
+        return key == null ? null : cache.get(key, Object.class);
     }
 
     /**
@@ -123,18 +119,7 @@ public class RedisUtils {
      * @return 值
      */
     public <T> T get(String key, Class<T> clazz) {
-        Object value = key == null ? null : cache.getIfPresent(key);
-        if (value == null) {
-            return null;
-        }
-        // 如果 value 不是目标类型，则尝试将其反序列化为 clazz 类型
-        if (!clazz.isInstance(value)) {
-            return JSON.parseObject(value.toString(), clazz);
-        } else if (clazz.isInstance(value)) {
-            return clazz.cast(value);
-        } else {
-            return null;
-        }
+        return key == null ? null : cache.get(key, clazz);
     }
 
     /**
@@ -145,13 +130,7 @@ public class RedisUtils {
      * @return true成功 false失败
      */
     public boolean set(String key, Object value) {
-        try {
-            cache.put(key, value);
-            return true;
-        } catch (Exception e) {
-            log.error(e.getMessage(), e);
-            return false;
-        }
+        return set(key, value, 0);
     }
 
     /**
@@ -159,16 +138,12 @@ public class RedisUtils {
      *
      * @param key   键
      * @param value 值
-     * @param time  时间(秒) time要大于0 如果time小于等于0 将设置无限期，注意:这里将会替换原有的时间
+     * @param time  时间(秒) time要大于0 如果time小于等于0 将使用默认的 24 小时，注意:这里将会替换原有的时间
      * @return true成功 false 失败
      */
     public boolean set(String key, Object value, long time) {
         try {
-            if (time > 0) {
-                cache.put(key, value);
-            } else {
-                set(key, value);
-            }
+            cache.set(key, value, time > 0 ? TimeUnit.SECONDS.toMillis(time) : DEFAULT_TTL);
             return true;
         } catch (Exception e) {
             log.error(e.getMessage(), e);
@@ -177,43 +152,33 @@ public class RedisUtils {
     }
 
     public List<String> scan(String keyPrefix) {
-        List<String> entries = cache.asMap().entrySet().stream()
-                .filter(entry -> entry.getKey().startsWith(keyPrefix))
-//                .map(entry -> entry.getKey() + ": " + entry.getValue())
-                .map(entry -> entry.getKey())
-                .collect(Collectors.toList());
-        return entries;
+        return cache.scan(keyPrefix);
     }
 
     public void scanDel(String keyPrefix) {
-        List<String> keysToDelete = cache.asMap().keySet().stream()
-                .filter(key -> key.startsWith(keyPrefix))
-                .collect(Collectors.toList());
-        keysToDelete.forEach(cache::invalidate);
+        List<String> keysToDelete = cache.scan(keyPrefix);
+        if (!keysToDelete.isEmpty()) {
+            cache.del(keysToDelete.toArray(new String[0]));
+            cache.flush();
+        }
     }
 
     public <T> List<T> getList(String key, Class<T> clazz) {
-        Object value = key == null ? null : cache.getIfPresent(key);
-        if (value == null) {
+        List<?> list = key == null ? null : cache.get(key, List.class);
+        if (list == null) {
             return null;
         }
-        if (value instanceof List<?>) {
-            List<?> list = (List<?>) value;
-            if (list.stream().allMatch(clazz::isInstance)) {
-                return list.stream()
-                        .map(clazz::cast)
-                        .collect(Collectors.toList());
-            }
+        if (list.stream().allMatch(clazz::isInstance)) {
+            return (List<T>) list;
         }
-        return null;
+        // 共享存储中按 JSON 还原的元素需要转换类型
+        return list.stream().map(item -> TypeUtils.cast(item, clazz)).collect(Collectors.toList());
     }
 
     public long delByKeys(String prefix, Set<Long> ids) {
-        Set<String> keysToDelete = new HashSet<>();
-        for (Long id : ids) {
-            String key = prefix + id;
-            keysToDelete.add(key);
-        }
-        return cache.asMap().keySet().removeAll(keysToDelete) ? keysToDelete.size() : 0;
+        String[] keys = ids.stream().map(id -> prefix + id).toArray(String[]::new);
+        cache.del(keys);
+        cache.flush();
+        return keys.length;
     }
 }
@@ -0,0 +1,147 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils;
+
+import cn.hutool.http.useragent.UserAgent;
+import cn.hutool.http.useragent.UserAgentUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import net.dreamlu.mica.ip2region.core.Ip2regionSearcher;
+import net.dreamlu.mica.ip2region.core.IpInfo;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 请求信息补全：IP 归属地、浏览器、本机地址，
+ * 归属地与浏览器解析结果使用有界缓存，本机地址只解析一次
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+public final class RequestEnricher {
+
+    private static final String EMPTY = "";
+
+    private static final String UNKNOWN_BROWSER = "Unknown";
+
+    /**
+     * IP -> 归属地，未查到时缓存空字符串
+     */
+    private static final Cache<String, String> REGION_CACHE = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .recordStats()
+            .build();
+
+    /**
+     * User-Agent -> 浏览器
+     */
+    private static final Cache<String, String> BROWSER_CACHE = Caffeine.newBuilder()
+            .maximumSize(2_000)
+            .recordStats()
+            .build();
+
+    private RequestEnricher() {
+    }
+
+    /**
+     * 根据ip获取详细地址
+     * @param ip /
+     * @return 未查到时返回 null
+     */
+    public static String region(String ip) {
+        if (ip == null) {
+            return null;
+        }
+        String address = REGION_CACHE.get(ip, key -> {
+            IpInfo ipInfo = IpSearcherHolder.IP_SEARCHER.memorySearch(key);
+            return ipInfo == null || ipInfo.getAddress() == null ? EMPTY : ipInfo.getAddress();
+        });
+        return EMPTY.equals(address) ? null : address;
+    }
+
+    /**
+     * 根据 User-Agent 获取浏览器
+     * @param userAgent /
+     * @return /
+     */
+    public static String browser(String userAgent) {
+        if (StringUtils.isBlank(userAgent)) {
+            return UNKNOWN_BROWSER;
+        }
+        return BROWSER_CACHE.get(userAgent, key -> {
+            UserAgent ua = UserAgentUtil.parse(key);
+            if (ua == null) {
+                return UNKNOWN_BROWSER;
+            }
+            String browser = ua.getBrowser().toString() + " " + ua.getVersion();
+            return browser.replace(".0.0.0", "");
+        });
+    }
+
+    /**
+     * 本机地址，用于替换 127.0.0.1，只在首次使用时解析
+     * @return 解析失败时返回 null
+     */
+    public static String localHostAddress() {
+        return LocalAddressHolder.ADDRESS;
+    }
+
+    /**
+     * 获取缓存统计信息（监控用）
+     * @return /
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(2);
+        stats.put("region", toMap(REGION_CACHE.stats(), REGION_CACHE.estimatedSize()));
+        stats.put("browser", toMap(BROWSER_CACHE.stats(), BROWSER_CACHE.estimatedSize()));
+        return stats;
+    }
+
+    private static Map<String, Object> toMap(CacheStats stats, long size) {
+        Map<String, Object> map = new LinkedHashMap<>(6);
+        map.put("size", size);
+        map.put("hitCount", stats.hitCount());
+        map.put("missCount", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictionCount", stats.evictionCount());
+        map.put("avgLoadMillis", stats.averageLoadPenalty() / 1_000_000D);
+        return map;
+    }
+
+    /**
+     * 延迟获取 Ip2regionSearcher，避免类加载早于 Spring 容器初始化
+     */
+    private static class IpSearcherHolder {
+        private static final Ip2regionSearcher IP_SEARCHER = SpringBeanHolder.getBean(Ip2regionSearcher.class);
+    }
+
+    private static class LocalAddressHolder {
+        private static final String ADDRESS = resolve();
+
+        private static String resolve() {
+            try {
+                return InetAddress.getLocalHost().getHostAddress();
+            } catch (UnknownHostException e) {
+                log.error(e.getMessage(), e);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils;
+
+import org.springframework.stereotype.Component;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+/**
+ * 按路由（请求方法 + 处理器路径模板）统计请求耗时与状态码。每个路由按分钟分槽，
+ * 保留最近 15 分钟，查询时合并所需的槽计算滚动窗口内的分位数
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Component
+public class RouteMetrics {
+
+    private static final long SLOT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /** 最长窗口 15 分钟，多留一个槽给正在写入的当前分钟 */
+    private static final int SLOTS = 16;
+
+    /** 路由数量上限，防止未匹配的路径撑爆内存 */
+    private static final int MAX_ROUTES = 1000;
+
+    private static final String OTHER = "OTHER";
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次请求
+     * @param method 请求方法
+     * @param pattern 处理器路径模板，未匹配到处理器时为 null
+     * @param status 响应状态码
+     * @param micros 耗时 微秒
+     */
+    public void record(String method, String pattern, int status, long micros) {
+        String key = method + " " + (pattern == null ? "[unmatched]" : pattern);
+        Route route = routes.get(key);
+        if (route == null) {
+            route = routes.size() < MAX_ROUTES ? routes.computeIfAbsent(key, k -> new Route())
+                    : routes.computeIfAbsent(OTHER, k -> new Route());
+        }
+        route.slot(System.currentTimeMillis() / SLOT_MILLIS).record(status, micros);
+    }
+
+    /**
+     * 查询最近若干分钟内各路由的耗时分位数，单位毫秒
+     * @param minutes 窗口大小，1 ~ 15
+     * @param sort 排序字段：p99、p95、p50、max、count
+     * @param limit 返回的路由数量
+     * @return /
+     */
+    public List<Map<String, Object>> snapshot(int minutes, String sort, int limit) {
+        int window = Math.max(1, Math.min(SLOTS - 1, minutes));
+        long current = System.currentTimeMillis() / SLOT_MILLIS;
+        List<Map<String, Object>> result = new ArrayList<>(routes.size());
+        for (Map.Entry<String, Route> entry : routes.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = new LatencyHistogram.Snapshot();
+            long[] statuses = new long[6];
+            entry.getValue().merge(current - window, current, snapshot, statuses);
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            Map<String, Object> item = new LinkedHashMap<>(12);
+            item.put("route", entry.getKey());
+            item.put("count", snapshot.getCount());
+            item.put("mean", Math.round(snapshot.getMean() / 10) / 100.0);
+            item.put("p50", toMillis(snapshot.percentile(50)));
+            item.put("p95", toMillis(snapshot.percentile(95)));
+            item.put("p99", toMillis(snapshot.percentile(99)));
+            item.put("max", toMillis(snapshot.getMax()));
+            item.put("2xx", statuses[2]);
+            item.put("3xx", statuses[3]);
+            item.put("4xx", statuses[4]);
+            item.put("5xx", statuses[5]);
+            result.add(item);
+        }
+        String field = sort == null ? "p99" : sort;
+        return result.stream()
+                .sorted(Comparator.comparingDouble((Map<String, Object> item) ->
+                        item.get(field) instanceof Number ? ((Number) item.get(field)).doubleValue() : 0).reversed())
+                .limit(Math.max(1, limit))
+                .collect(Collectors.toList());
+    }
+
+    private static double toMillis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+
+    private static class Route {
+
+        private final AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(SLOTS);
+
+        private Slot slot(long epoch) {
+            int index = (int) (epoch % SLOTS);
+            Slot slot = slots.get(index);
+            while (slot == null || slot.epoch != epoch) {
+                // 槽属于更早的分钟时整体替换，只在每分钟第一次请求时发生
+                Slot fresh = new Slot(epoch);
+                if (slots.compareAndSet(index, slot, fresh)) {
+                    return fresh;
+                }
+                slot = slots.get(index);
+            }
+            return slot;
+        }
+
+        /**
+         * 合并 (from, to] 区间内的槽
+         */
+        private void merge(long from, long to, LatencyHistogram.Snapshot snapshot, long[] statuses) {
+            for (int i = 0; i < SLOTS; i++) {
+                Slot slot = slots.get(i);
+                if (slot != null && slot.epoch > from && slot.epoch <= to) {
+                    slot.histogram.addTo(snapshot);
+                    for (int s = 0; s < statuses.length; s++) {
+                        statuses[s] += slot.statuses.get(s);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Slot {
+
+        private final long epoch;
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        /** 按状态码首位计数，下标 1 ~ 5 */
+        private final AtomicLongArray statuses = new AtomicLongArray(6);
+
+        private Slot(long epoch) {
+            this.epoch = epoch;
+        }
+
+        private void record(int status, long micros) {
+            histogram.record(micros);
+            statuses.incrementAndGet(Math.max(0, Math.min(5, status / 100)));
+        }
+    }
+}
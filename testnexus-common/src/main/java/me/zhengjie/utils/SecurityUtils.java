@@ -95,7 +95,6 @@ public class SecurityUtils {
      * @return 系统用户ID
      */
     public static Long getCurrentUserId() {
-        System.out.println("token: " + getToken());
         return getCurrentUserId(getToken());
     }
 
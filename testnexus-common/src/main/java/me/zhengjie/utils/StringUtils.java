@@ -15,15 +15,10 @@
  */
 package me.zhengjie.utils;
 
-import cn.hutool.http.useragent.UserAgent;
-import cn.hutool.http.useragent.UserAgentUtil;
 import lombok.extern.slf4j.Slf4j;
-import net.dreamlu.mica.ip2region.core.Ip2regionSearcher;
-import net.dreamlu.mica.ip2region.core.IpInfo;
 import javax.servlet.http.HttpServletRequest;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
-import java.net.UnknownHostException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
@@ -38,11 +33,6 @@ public class StringUtils extends org.apache.commons.lang3.StringUtils {
     private static final char SEPARATOR = '_';
     private static final String UNKNOWN = "unknown";
 
-    /**
-     * 注入bean
-     */
-    private final static Ip2regionSearcher IP_SEARCHER = SpringBeanHolder.getBean(Ip2regionSearcher.class);
-
     /**
      * 驼峰命名法工具
      *
@@ -148,11 +138,10 @@ public class StringUtils extends org.apache.commons.lang3.StringUtils {
             ip = ip.split(",")[0];
         }
         if (localhost.equals(ip)) {
-            // 获取本机真正的ip地址
-            try {
-                ip = InetAddress.getLocalHost().getHostAddress();
-            } catch (UnknownHostException e) {
-                log.error(e.getMessage(), e);
+            // 获取本机真正的ip地址，只解析一次
+            String localHostAddress = RequestEnricher.localHostAddress();
+            if (localHostAddress != null) {
+                ip = localHostAddress;
             }
         }
         return ip;
@@ -162,20 +151,14 @@ public class StringUtils extends org.apache.commons.lang3.StringUtils {
      * 根据ip获取详细地址
      */
     public static String getCityInfo(String ip) {
-        IpInfo ipInfo = IP_SEARCHER.memorySearch(ip);
-        if(ipInfo != null){
-            return ipInfo.getAddress();
-        }
-        return null;
+        return RequestEnricher.region(ip);
     }
 
     /**
      * 获取浏览器
      */
     public static String getBrowser(HttpServletRequest request) {
-        UserAgent ua = UserAgentUtil.parse(request.getHeader("User-Agent"));
-        String browser = ua.getBrowser().toString() + " " + ua.getVersion();
-        return browser.replace(".0.0.0","");
+        return RequestEnricher.browser(request.getHeader("User-Agent"));
     }
 
     /**
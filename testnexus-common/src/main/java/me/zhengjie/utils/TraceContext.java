@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils;
+
+import org.slf4j.MDC;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 日志关联信息：请求编号与当前用户写入 MDC，日志输出时带上，
+ * 经 MdcTaskDecorator 传递到异步任务与定时任务中，可以按请求编号串起一次请求的所有日志
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public final class TraceContext {
+
+    /** 请求编号 */
+    public static final String REQUEST_ID = "requestId";
+
+    /** 当前用户 ID */
+    public static final String USER_ID = "userId";
+
+    /** 当前用户名 */
+    public static final String USERNAME = "username";
+
+    /** 请求编号的请求头与响应头 */
+    public static final String HEADER = "X-Request-Id";
+
+    private static final int MAX_LENGTH = 64;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private TraceContext() {
+    }
+
+    /**
+     * 开始一次请求或任务，外部传入的编号不合法时重新生成
+     * @param requestId 外部传入的编号，可为空
+     * @return 实际使用的编号
+     */
+    public static String begin(String requestId) {
+        String id = isValid(requestId) ? requestId : newId();
+        MDC.put(REQUEST_ID, id);
+        return id;
+    }
+
+    /**
+     * 记录当前用户
+     * @param userId 用户 ID
+     * @param username 用户名
+     */
+    public static void setUser(Object userId, String username) {
+        if (userId != null) {
+            MDC.put(USER_ID, userId.toString());
+        }
+        if (username != null) {
+            MDC.put(USERNAME, username);
+        }
+    }
+
+    /**
+     * 当前请求编号
+     * @return 不在请求中时返回 null
+     */
+    public static String getRequestId() {
+        return MDC.get(REQUEST_ID);
+    }
+
+    /**
+     * 结束请求或任务，清理关联信息
+     */
+    public static void end() {
+        MDC.remove(REQUEST_ID);
+        MDC.remove(USER_ID);
+        MDC.remove(USERNAME);
+    }
+
+    /**
+     * 生成 16 位十六进制编号
+     * @return /
+     */
+    public static String newId() {
+        long value = ThreadLocalRandom.current().nextLong();
+        char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 只接受字母、数字与 -_. ，防止日志注入
+     */
+    private static boolean isValid(String requestId) {
+        if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < requestId.length(); i++) {
+            char c = requestId.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_' || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
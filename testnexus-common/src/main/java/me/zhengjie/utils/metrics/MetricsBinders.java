@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.metrics;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.github.benmanes.caffeine.cache.Cache;
+import java.lang.management.*;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.ToLongFunction;
+
+/**
+ * 常用组件的指标注册：JVM、线程池、Druid 连接池、Caffeine 缓存
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public final class MetricsBinders {
+
+    private MetricsBinders() {
+    }
+
+    /**
+     * JVM 内存、GC、线程、类加载
+     * @param registry /
+     */
+    public static void bindJvm(MetricsRegistry registry) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        Map<String, String> heap = Collections.singletonMap("area", "heap");
+        Map<String, String> nonHeap = Collections.singletonMap("area", "nonheap");
+        registry.gauge("jvm_memory_used_bytes", "已使用内存", heap, () -> memory.getHeapMemoryUsage().getUsed());
+        registry.gauge("jvm_memory_used_bytes", "已使用内存", nonHeap, () -> memory.getNonHeapMemoryUsage().getUsed());
+        registry.gauge("jvm_memory_committed_bytes", "已提交内存", heap, () -> memory.getHeapMemoryUsage().getCommitted());
+        registry.gauge("jvm_memory_committed_bytes", "已提交内存", nonHeap, () -> memory.getNonHeapMemoryUsage().getCommitted());
+        registry.gauge("jvm_memory_max_bytes", "最大内存，未限制时为 -1", heap, () -> memory.getHeapMemoryUsage().getMax());
+        registry.gauge("jvm_memory_max_bytes", "最大内存，未限制时为 -1", nonHeap, () -> memory.getNonHeapMemoryUsage().getMax());
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            Map<String, String> labels = Collections.singletonMap("gc", gc.getName());
+            registry.counter("jvm_gc_collections_total", "GC 次数", labels, gc::getCollectionCount);
+            registry.counter("jvm_gc_collection_seconds_total", "GC 累计耗时", labels, () -> gc.getCollectionTime() / 1000D);
+        }
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        registry.gauge("jvm_threads_live", "存活线程数", null, threads::getThreadCount);
+        registry.gauge("jvm_threads_daemon", "守护线程数", null, threads::getDaemonThreadCount);
+        registry.gauge("jvm_threads_peak", "线程数峰值", null, threads::getPeakThreadCount);
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+        registry.gauge("jvm_classes_loaded", "已加载的类", null, classes::getLoadedClassCount);
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        registry.gauge("process_uptime_seconds", "运行时间", null, () -> runtime.getUptime() / 1000D);
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        registry.gauge("system_load_average_1m", "系统一分钟平均负载", null, os::getSystemLoadAverage);
+        registry.gauge("system_cpu_count", "处理器数量", null, os::getAvailableProcessors);
+    }
+
+    /**
+     * 线程池的活跃线程、队列长度与完成任务数
+     * @param registry /
+     * @param name 线程池名称
+     * @param executor /
+     */
+    public static void bindExecutor(MetricsRegistry registry, String name, ThreadPoolExecutor executor) {
+        Map<String, String> labels = Collections.singletonMap("pool", name);
+        registry.gauge("executor_active_threads", "正在执行任务的线程数", labels, executor::getActiveCount);
+        registry.gauge("executor_pool_size", "当前线程数", labels, executor::getPoolSize);
+        registry.gauge("executor_pool_max", "最大线程数", labels, executor::getMaximumPoolSize);
+        registry.gauge("executor_queued_tasks", "排队中的任务数", labels, () -> executor.getQueue().size());
+        registry.gauge("executor_queue_remaining", "队列剩余容量", labels, () -> executor.getQueue().remainingCapacity());
+        registry.counter("executor_completed_tasks_total", "已完成的任务数", labels, executor::getCompletedTaskCount);
+    }
+
+    /**
+     * Druid 连接池的活跃、空闲与等待
+     * @param registry /
+     * @param name 连接池名称
+     * @param dataSource /
+     */
+    public static void bindDruid(MetricsRegistry registry, String name, DruidDataSource dataSource) {
+        Map<String, String> labels = Collections.singletonMap("pool", name);
+        registry.gauge("druid_active_connections", "使用中的连接数", labels, dataSource::getActiveCount);
+        registry.gauge("druid_idle_connections", "池中空闲的连接数", labels, dataSource::getPoolingCount);
+        registry.gauge("druid_max_connections", "最大连接数", labels, dataSource::getMaxActive);
+        registry.gauge("druid_waiting_threads", "正在等待连接的线程数", labels, dataSource::getWaitThreadCount);
+        registry.counter("druid_wait_total", "获取连接时发生等待的次数", labels, dataSource::getNotEmptyWaitCount);
+        registry.counter("druid_wait_seconds_total", "获取连接的累计等待时间", labels, () -> dataSource.getNotEmptyWaitMillis() / 1000D);
+        registry.counter("druid_connect_total", "借出连接的次数", labels, dataSource::getConnectCount);
+        registry.counter("druid_connect_errors_total", "获取连接失败的次数", labels, dataSource::getConnectErrorCount);
+        registry.counter("druid_created_total", "创建的物理连接数", labels, dataSource::getCreateCount);
+        registry.counter("druid_destroyed_total", "销毁的物理连接数", labels, dataSource::getDestroyCount);
+    }
+
+    /**
+     * CaffeineCacheManager 中各缓存的命中、未命中与淘汰，缓存按需创建，采集时才枚举，缓存需开启 recordStats
+     * @param registry /
+     * @param cacheManager /
+     */
+    public static void bindCacheManager(MetricsRegistry registry, CaffeineCacheManager cacheManager) {
+        registry.gauges("cache_size", "缓存条目数（估算）", "cache",
+                () -> cacheValues(cacheManager, cache -> cache.estimatedSize()));
+        registry.counters("cache_hits_total", "命中次数", "cache",
+                () -> cacheValues(cacheManager, cache -> cache.stats().hitCount()));
+        registry.counters("cache_misses_total", "未命中次数", "cache",
+                () -> cacheValues(cacheManager, cache -> cache.stats().missCount()));
+        registry.counters("cache_evictions_total", "淘汰次数", "cache",
+                () -> cacheValues(cacheManager, cache -> cache.stats().evictionCount()));
+    }
+
+    private static Map<String, Long> cacheValues(CaffeineCacheManager cacheManager, ToLongFunction<Cache<Object, Object>> getter) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            org.springframework.cache.Cache cache = cacheManager.getCache(name);
+            if (cache instanceof CaffeineCache) {
+                values.put(name, getter.applyAsLong(((CaffeineCache) cache).getNativeCache()));
+            }
+        }
+        return values;
+    }
+}
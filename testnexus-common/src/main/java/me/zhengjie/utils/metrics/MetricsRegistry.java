@@ -0,0 +1,343 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 轻量的指标注册表，指标值在采集时才通过回调读取，注册后没有额外的记录开销。
+ * 支持输出 Prometheus 文本格式（0.0.4）与 JSON 结构
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+public class MetricsRegistry {
+
+    private static final String PREFIX = "el_";
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    private final Map<String, Supplier<Map<String, Object>>> sources = new ConcurrentSkipListMap<>();
+
+    /**
+     * 注册瞬时值指标
+     * @param name 指标名
+     * @param help 说明
+     * @param labels 标签，可为空
+     * @param supplier 取值回调
+     */
+    public void gauge(String name, String help, Map<String, String> labels, DoubleSupplier supplier) {
+        register(name, help, Type.GAUGE, labels, supplier);
+    }
+
+    /**
+     * 注册累计值指标
+     * @param name 指标名
+     * @param help 说明
+     * @param labels 标签，可为空
+     * @param supplier 取值回调
+     */
+    public void counter(String name, String help, Map<String, String> labels, DoubleSupplier supplier) {
+        register(name, help, Type.COUNTER, labels, supplier);
+    }
+
+    /**
+     * 注册一组瞬时值指标，标签值在采集时才确定，适用于运行中动态增加的对象（如按需创建的缓存）
+     * @param name 指标名
+     * @param help 说明
+     * @param label 标签名
+     * @param values 取值回调，标签值 -> 指标值
+     */
+    public void gauges(String name, String help, String label, Supplier<Map<String, ? extends Number>> values) {
+        register(name, help, Type.GAUGE, label, values);
+    }
+
+    /**
+     * 注册一组累计值指标，标签值在采集时才确定
+     * @param name 指标名
+     * @param help 说明
+     * @param label 标签名
+     * @param values 取值回调，标签值 -> 指标值
+     */
+    public void counters(String name, String help, String label, Supplier<Map<String, ? extends Number>> values) {
+        register(name, help, Type.COUNTER, label, values);
+    }
+
+    /**
+     * 注册统计信息来源，每次采集时调用一次
+     * @param name 来源名称
+     * @param stats 统计信息
+     */
+    public void source(String name, Supplier<Map<String, Object>> stats) {
+        sources.put(sanitize(name), stats);
+    }
+
+    /**
+     * 注册统计信息来源
+     * @param source /
+     */
+    public void source(MetricsSource source) {
+        source(source.getMetricsName(), source::getStats);
+    }
+
+    /**
+     * 以 Prometheus 文本格式输出所有指标
+     * @return /
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8 * 1024);
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(escapeHelp(family.help)).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.text).append('\n');
+            for (Series series : family.series) {
+                out.append(family.name);
+                appendLabels(out, series.labels);
+                out.append(' ').append(format(read(series.supplier))).append('\n');
+            }
+            for (Map.Entry<Map<String, String>, Double> sample : readDynamic(family).entrySet()) {
+                out.append(family.name);
+                appendLabels(out, sample.getKey());
+                out.append(' ').append(format(sample.getValue())).append('\n');
+            }
+        }
+        for (Map.Entry<String, Map<String, Double>> entry : collectSources().entrySet()) {
+            for (Map.Entry<String, Double> value : entry.getValue().entrySet()) {
+                String name = PREFIX + entry.getKey() + "_" + value.getKey();
+                out.append("# TYPE ").append(name).append(" untyped\n");
+                out.append(name).append(' ').append(format(value.getValue())).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * 以 JSON 结构输出所有指标：指标名 -> 值，带标签的指标为 标签 -> 值
+     * @return /
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>(families.size() + sources.size());
+        for (Family family : families.values()) {
+            if (family.series.size() == 1 && family.series.get(0).labels.isEmpty() && family.dynamic.isEmpty()) {
+                result.put(family.name, read(family.series.get(0).supplier));
+                continue;
+            }
+            Map<String, Object> values = new LinkedHashMap<>(family.series.size());
+            for (Series series : family.series) {
+                StringBuilder key = new StringBuilder();
+                appendLabels(key, series.labels);
+                values.put(key.toString(), read(series.supplier));
+            }
+            for (Map.Entry<Map<String, String>, Double> sample : readDynamic(family).entrySet()) {
+                StringBuilder key = new StringBuilder();
+                appendLabels(key, sample.getKey());
+                values.put(key.toString(), sample.getValue());
+            }
+            result.put(family.name, values);
+        }
+        for (Map.Entry<String, Map<String, Double>> entry : collectSources().entrySet()) {
+            result.put(PREFIX + entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    private void register(String name, String help, Type type, Map<String, String> labels, DoubleSupplier supplier) {
+        String metric = PREFIX + sanitize(name);
+        Family family = families.computeIfAbsent(metric, k -> new Family(k, help, type));
+        Map<String, String> copy = labels == null ? Collections.emptyMap() : new TreeMap<>(labels);
+        synchronized (family) {
+            // 相同标签重复注册时替换回调
+            family.series.removeIf(series -> series.labels.equals(copy));
+            family.series.add(new Series(copy, supplier));
+        }
+    }
+
+    private void register(String name, String help, Type type, String label, Supplier<Map<String, ? extends Number>> values) {
+        String metric = PREFIX + sanitize(name);
+        families.computeIfAbsent(metric, k -> new Family(k, help, type)).dynamic.add(new Dynamic(sanitize(label), values));
+    }
+
+    private static Map<Map<String, String>, Double> readDynamic(Family family) {
+        Map<Map<String, String>, Double> samples = new LinkedHashMap<>();
+        for (Dynamic dynamic : family.dynamic) {
+            try {
+                Map<String, ? extends Number> values = dynamic.values.get();
+                if (values != null) {
+                    new TreeMap<>(values).forEach((key, value) ->
+                            samples.put(Collections.singletonMap(dynamic.label, key), value == null ? Double.NaN : value.doubleValue()));
+                }
+            } catch (Exception e) {
+                log.warn("读取指标 {} 失败：{}", family.name, e.getMessage());
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 读取所有来源，数值与布尔值保留，其他类型忽略，嵌套的 Map 展开一层
+     */
+    private Map<String, Map<String, Double>> collectSources() {
+        Map<String, Map<String, Double>> result = new LinkedHashMap<>(sources.size());
+        for (Map.Entry<String, Supplier<Map<String, Object>>> entry : sources.entrySet()) {
+            Map<String, Double> values = new TreeMap<>();
+            try {
+                flatten("", entry.getValue().get(), values, 0);
+            } catch (Exception e) {
+                log.warn("读取指标 {} 失败：{}", entry.getKey(), e.getMessage());
+            }
+            result.put(entry.getKey(), values);
+        }
+        return result;
+    }
+
+    private static void flatten(String prefix, Map<?, ?> stats, Map<String, Double> values, int depth) {
+        if (stats == null) {
+            return;
+        }
+        for (Map.Entry<?, ?> entry : stats.entrySet()) {
+            String key = prefix + sanitize(String.valueOf(entry.getKey()));
+            Object value = entry.getValue();
+            if (value instanceof Number) {
+                values.put(key, ((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                values.put(key, (Boolean) value ? 1D : 0D);
+            } else if (value instanceof Map && depth == 0) {
+                flatten(key + "_", (Map<?, ?>) value, values, depth + 1);
+            }
+        }
+    }
+
+    private static double read(DoubleSupplier supplier) {
+        try {
+            return supplier.getAsDouble();
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    private static void appendLabels(StringBuilder out, Map<String, String> labels) {
+        if (labels.isEmpty()) {
+            return;
+        }
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<String, String> label : labels.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            out.append(sanitize(label.getKey())).append("=\"")
+                    .append(String.valueOf(label.getValue()).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        out.append('}');
+    }
+
+    private static String escapeHelp(String help) {
+        return help == null ? "" : help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * 驼峰转下划线，去掉非法字符
+     */
+    static String sanitize(String name) {
+        StringBuilder out = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0 && out.length() > 0 && out.charAt(out.length() - 1) != '_') {
+                    out.append('_');
+                }
+                out.append(Character.toLowerCase(c));
+            } else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9' && i > 0) || c == '_') {
+                out.append(c);
+            } else {
+                out.append('_');
+            }
+        }
+        return out.toString();
+    }
+
+    private enum Type {
+        GAUGE("gauge"), COUNTER("counter");
+
+        private final String text;
+
+        Type(String text) {
+            this.text = text;
+        }
+    }
+
+    private static class Family {
+
+        private final String name;
+
+        private final String help;
+
+        private final Type type;
+
+        private final List<Series> series = new CopyOnWriteArrayList<>();
+
+        private final List<Dynamic> dynamic = new CopyOnWriteArrayList<>();
+
+        private Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private static class Series {
+
+        private final Map<String, String> labels;
+
+        private final DoubleSupplier supplier;
+
+        private Series(Map<String, String> labels, DoubleSupplier supplier) {
+            this.labels = labels;
+            this.supplier = supplier;
+        }
+    }
+
+    private static class Dynamic {
+
+        private final String label;
+
+        private final Supplier<Map<String, ? extends Number>> values;
+
+        private Dynamic(String label, Supplier<Map<String, ? extends Number>> values) {
+            this.label = label;
+            this.values = values;
+        }
+    }
+}
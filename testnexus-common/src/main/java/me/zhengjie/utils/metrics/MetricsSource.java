@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.metrics;
+
+import java.util.Map;
+
+/**
+ * 提供统计信息的组件，Spring 容器中实现该接口的 Bean 会自动注册到 MetricsRegistry，
+ * getStats 中的数值（含一层嵌套 Map）导出为 el_名称_字段 的指标
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public interface MetricsSource {
+
+    /**
+     * 指标名称，只能包含字母、数字与下划线
+     * @return /
+     */
+    String getMetricsName();
+
+    /**
+     * 获取统计信息
+     * @return /
+     */
+    Map<String, Object> getStats();
+}
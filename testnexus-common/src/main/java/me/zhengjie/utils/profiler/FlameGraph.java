@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.profiler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 将折叠调用栈渲染为独立的火焰图 HTML，不依赖任何外部脚本或样式，
+ * 支持点击放大与按名称搜索
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public final class FlameGraph {
+
+    private static final String TEMPLATE = "<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>%TITLE%</title>\n"
+            + "<style>body{margin:0;padding:12px;font:12px Menlo,Consolas,monospace;background:#fff}"
+            + "#bar{margin-bottom:8px}#bar input{width:260px}#info{height:18px;color:#555;white-space:nowrap;overflow:hidden}"
+            + "#graph{position:relative;width:100%}.f{position:absolute;height:17px;line-height:17px;overflow:hidden;"
+            + "white-space:nowrap;box-sizing:border-box;border:1px solid #fff;padding-left:3px;cursor:pointer;color:#000}"
+            + ".f.m{background:#e040fb!important}</style></head><body>\n"
+            + "<div id=\"bar\"><b>%TITLE%</b> &nbsp; <input id=\"q\" placeholder=\"搜索（正则）\"> "
+            + "<button id=\"reset\">重置</button> <span id=\"matched\"></span></div><div id=\"info\"></div><div id=\"graph\"></div>\n"
+            + "<script>\nvar data=%DATA%;\n"
+            + "var graph=document.getElementById('graph'),info=document.getElementById('info'),H=18,focus=data,search=null;\n"
+            + "function depth(n){var d=0;for(var i=0;i<n[2].length;i++)d=Math.max(d,depth(n[2][i]));return d+1;}\n"
+            + "function color(name){var h=0;for(var i=0;i<name.length;i++)h=(h*31+name.charCodeAt(i))|0;h=Math.abs(h);"
+            + "if(name.indexOf('me.zhengjie.')===0)return 'hsl('+(90+h%50)+',55%,'+(55+h%15)+'%)';"
+            + "return 'hsl('+(h%55)+',85%,'+(58+h%15)+'%)';}\n"
+            + "function path(target){var p=[];(function walk(n){if(n===target){p.push(n);return true;}"
+            + "for(var i=0;i<n[2].length;i++)if(walk(n[2][i])){p.push(n);return true;}return false;})(data);return p.reverse();}\n"
+            + "function render(){graph.innerHTML='';var chain=path(focus),max=chain.length-1+depth(focus),matched=0,frag=document.createDocumentFragment();\n"
+            + "graph.style.height=(max*H)+'px';\n"
+            + "function box(n,d,x,w){var el=document.createElement('div');el.className='f';el.style.left=(x*100)+'%';el.style.width=(w*100)+'%';"
+            + "el.style.top=((max-d-1)*H)+'px';el.style.background=color(n[0]);if(search&&search.test(n[0])){el.className+=' m';matched+=n[1];}"
+            + "el.textContent=n[0];el.title=n[0]+' ('+n[1]+' 次采样, '+(n[1]*100/data[1]).toFixed(2)+'%)';"
+            + "el.onclick=function(){focus=n;render();};el.onmouseover=function(){info.textContent=el.title;};frag.appendChild(el);}\n"
+            + "for(var i=0;i<chain.length-1;i++)box(chain[i],i,0,1);\n"
+            + "(function draw(n,d,x,w){box(n,d,x,w);var cx=x;for(var i=0;i<n[2].length;i++){var c=n[2][i],cw=w*c[1]/n[1];"
+            + "if(cw*graph.clientWidth>=1)draw(c,d+1,cx,cw);cx+=cw;}})(focus,chain.length-1,0,1);\n"
+            + "graph.appendChild(frag);document.getElementById('matched').textContent=search?('匹配 '+(matched*100/data[1]).toFixed(2)+'%'):'';}\n"
+            + "document.getElementById('q').oninput=function(){try{search=this.value?new RegExp(this.value):null;}catch(e){search=null;}render();};\n"
+            + "document.getElementById('reset').onclick=function(){focus=data;render();};window.onresize=render;render();\n"
+            + "</script></body></html>\n";
+
+    private FlameGraph() {
+    }
+
+    /**
+     * 渲染火焰图
+     * @param title 标题
+     * @param stacks 折叠调用栈
+     * @return HTML 文本
+     */
+    public static String render(String title, FoldedStacks stacks) {
+        Node root = new Node("all");
+        for (Map.Entry<String, Long> entry : stacks.entries()) {
+            Node node = root;
+            long count = entry.getValue();
+            node.value += count;
+            for (String frame : entry.getKey().split(";")) {
+                node = node.children.computeIfAbsent(frame, Node::new);
+                node.value += count;
+            }
+        }
+        StringBuilder data = new StringBuilder(stacks.size() * 64 + 64);
+        root.write(data);
+        String safeTitle = escapeHtml(title);
+        return TEMPLATE.replace("%TITLE%", safeTitle).replace("%DATA%", data);
+    }
+
+    private static String escapeHtml(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': out.append("&lt;"); break;
+                case '>': out.append("&gt;"); break;
+                case '&': out.append("&amp;"); break;
+                case '"': out.append("&quot;"); break;
+                default: out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * 写为脚本中的字符串字面量，转义 < 防止提前结束 script 标签
+     */
+    private static void writeString(StringBuilder out, String text) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20 || c == '<' || c == '>' || c == '&' || c == '\u2028' || c == '\u2029') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * 节点序列化为 [名称, 采样次数, [子节点...]]
+     */
+    private static class Node {
+
+        private final String name;
+
+        private long value;
+
+        private final Map<String, Node> children = new LinkedHashMap<>(4);
+
+        private Node(String name) {
+            this.name = name;
+        }
+
+        private void write(StringBuilder out) {
+            out.append('[');
+            writeString(out, name);
+            out.append(',').append(value).append(",[");
+            boolean first = true;
+            for (Node child : children.values()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                child.write(out);
+            }
+            out.append("]]");
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.profiler;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 折叠调用栈（folded stacks）：每行一个调用栈，自根到叶以分号分隔，行尾为采样次数，
+ * 与 FlameGraph、speedscope 等工具的输入格式一致
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public class FoldedStacks {
+
+    private static final String TRUNCATED = "[truncated]";
+
+    private final Map<String, LongAdder> stacks = new ConcurrentHashMap<>();
+
+    private final LongAdder samples = new LongAdder();
+
+    private final int maxStacks;
+
+    public FoldedStacks(int maxStacks) {
+        this.maxStacks = maxStacks;
+    }
+
+    /**
+     * 记录一次采样
+     * @param root 根节点名称，通常为线程池名
+     * @param frames 调用栈，下标 0 为栈顶
+     */
+    public void add(String root, StackTraceElement[] frames) {
+        StringBuilder key = new StringBuilder(frames.length * 48 + 16).append(root);
+        for (int i = frames.length - 1; i >= 0; i--) {
+            StackTraceElement frame = frames[i];
+            key.append(';').append(frame.getClassName()).append('.').append(frame.getMethodName());
+        }
+        String stack = key.toString();
+        LongAdder counter = stacks.get(stack);
+        if (counter == null) {
+            counter = stacks.size() < maxStacks ? stacks.computeIfAbsent(stack, k -> new LongAdder())
+                    : stacks.computeIfAbsent(root + ";" + TRUNCATED, k -> new LongAdder());
+        }
+        counter.increment();
+        samples.increment();
+    }
+
+    public long getSamples() {
+        return samples.sum();
+    }
+
+    public int size() {
+        return stacks.size();
+    }
+
+    /**
+     * 按调用栈排序后输出的行，栈 -> 次数
+     * @return /
+     */
+    public List<Map.Entry<String, Long>> entries() {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(stacks.size());
+        stacks.forEach((stack, count) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(stack, count.sum())));
+        entries.sort(Map.Entry.comparingByKey());
+        return entries;
+    }
+
+    /**
+     * 输出折叠格式文本
+     * @return /
+     */
+    public String toText() {
+        StringBuilder out = new StringBuilder(stacks.size() * 128);
+        for (Map.Entry<String, Long> entry : entries()) {
+            out.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.profiler;
+
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.config.properties.ProfilerProperties;
+import me.zhengjie.exception.BadRequestException;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内采样分析：定时通过 ThreadMXBean 抓取请求线程与工作线程的调用栈，汇总为折叠调用栈。
+ * 手动采样用于排查 CPU 偏高，慢请求采样在请求执行超过阈值后自动抓取该请求线程的调用栈，
+ * 两者共用一个采样线程，未开启手动采样且没有慢请求时不做任何线程转储
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+@Component
+public class SamplingProfiler implements MetricsSource {
+
+    /** 慢请求单次采样保留的调用栈数量 */
+    private static final int CAPTURE_STACKS = 2000;
+
+    private final ProfilerProperties properties;
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    /**
+     * 线程编号 -> 正在执行的请求
+     */
+    private final Map<Long, Watch> watching = new ConcurrentHashMap<>();
+
+    private final Deque<Capture> captures = new ConcurrentLinkedDeque<>();
+
+    private final AtomicLong captureIds = new AtomicLong();
+
+    private final LongAdder slowCaptured = new LongAdder();
+
+    /** 采样本身的耗时 纳秒 */
+    private final LongAdder overheadNanos = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    /** 当前或最近一次手动采样 */
+    private volatile Session session;
+
+    public SamplingProfiler(ProfilerProperties properties) {
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "el-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (properties.getSlowThreshold() > 0) {
+            scheduler.scheduleAtFixedRate(this::sampleSlow, properties.getSlowInterval(),
+                    properties.getSlowInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 开启手动采样，到时自动结束
+     * @param seconds 采样时长 秒
+     * @param interval 采样间隔 毫秒，小于等于 0 时使用默认值
+     * @param runnableOnly 只统计 RUNNABLE 状态的线程（CPU 热点），否则包含阻塞与等待
+     */
+    public synchronized void start(int seconds, long interval, boolean runnableOnly) {
+        if (seconds <= 0 || seconds > properties.getMaxDuration()) {
+            throw new BadRequestException("采样时长必须在 1 ~ " + properties.getMaxDuration() + " 秒之间");
+        }
+        long period = interval > 0 ? Math.max(5, interval) : properties.getInterval();
+        Session current = session;
+        if (current != null && current.running) {
+            throw new BadRequestException("采样正在进行中");
+        }
+        Session next = new Session(seconds, period, runnableOnly, new FoldedStacks(properties.getMaxStacks()));
+        next.future = scheduler.scheduleAtFixedRate(() -> sample(next), 0, period, TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> stop(next), seconds, TimeUnit.SECONDS);
+        session = next;
+        log.info("开始采样：{} 秒，间隔 {} 毫秒", seconds, period);
+    }
+
+    /**
+     * 提前结束手动采样
+     */
+    public void stop() {
+        Session current = session;
+        if (current != null) {
+            stop(current);
+        }
+    }
+
+    /**
+     * 手动采样的状态
+     * @return /
+     */
+    public Map<String, Object> getStatus() {
+        Session current = session;
+        Map<String, Object> status = new LinkedHashMap<>(8);
+        status.put("running", current != null && current.running);
+        if (current != null) {
+            status.put("startTime", current.startTime);
+            status.put("seconds", current.seconds);
+            status.put("interval", current.interval);
+            status.put("runnableOnly", current.runnableOnly);
+            status.put("ticks", current.ticks.sum());
+            status.put("samples", current.stacks.getSamples());
+            status.put("stacks", current.stacks.size());
+        }
+        return status;
+    }
+
+    /**
+     * 当前或最近一次手动采样的调用栈
+     * @return /
+     */
+    public FoldedStacks getStacks() {
+        Session current = session;
+        if (current == null) {
+            throw new BadRequestException("暂无采样数据");
+        }
+        return current.stacks;
+    }
+
+    /**
+     * 开始跟踪当前线程上的请求，由请求过滤器调用
+     * @return 慢请求采样关闭时返回 null
+     */
+    public Watch watch() {
+        if (properties.getSlowThreshold() <= 0) {
+            return null;
+        }
+        Thread thread = Thread.currentThread();
+        Watch watch = new Watch(thread.getId(), System.nanoTime());
+        watching.put(watch.threadId, watch);
+        return watch;
+    }
+
+    /**
+     * 请求结束，超过阈值且采到了调用栈时保存
+     * @param watch watch() 的返回值
+     * @param method 请求方法
+     * @param route 路由
+     * @param uri 请求地址
+     * @param status 响应状态码
+     */
+    public void finish(Watch watch, String method, String route, String uri, int status) {
+        if (watch == null) {
+            return;
+        }
+        watching.remove(watch.threadId, watch);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - watch.startNanos);
+        FoldedStacks stacks = watch.stacks;
+        if (stacks == null || elapsed < properties.getSlowThreshold()) {
+            return;
+        }
+        captures.addFirst(new Capture(captureIds.incrementAndGet(), method, route, uri, status, elapsed, stacks));
+        slowCaptured.increment();
+        while (captures.size() > properties.getMaxCaptures()) {
+            captures.pollLast();
+        }
+    }
+
+    /**
+     * 慢请求采样列表，最新的在前
+     * @return /
+     */
+    public List<Map<String, Object>> getCaptures() {
+        List<Map<String, Object>> result = new ArrayList<>(captures.size());
+        for (Capture capture : captures) {
+            result.add(capture.toMap());
+        }
+        return result;
+    }
+
+    /**
+     * 获取慢请求采样
+     * @param id 编号
+     * @return /
+     */
+    public Capture getCapture(long id) {
+        for (Capture capture : captures) {
+            if (capture.id == id) {
+                return capture;
+            }
+        }
+        throw new BadRequestException("慢请求采样不存在或已被淘汰");
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "profiler";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Session current = session;
+        Map<String, Object> stats = new LinkedHashMap<>(6);
+        stats.put("running", current != null && current.running);
+        stats.put("watching", watching.size());
+        stats.put("captures", captures.size());
+        stats.put("slowCaptured", slowCaptured.sum());
+        stats.put("overheadMillis", TimeUnit.NANOSECONDS.toMillis(overheadNanos.sum()));
+        return stats;
+    }
+
+    private void stop(Session target) {
+        synchronized (this) {
+            if (!target.running) {
+                return;
+            }
+            target.running = false;
+            target.future.cancel(false);
+        }
+        log.info("采样结束：{} 次采样，{} 个调用栈", target.stacks.getSamples(), target.stacks.size());
+    }
+
+    private void sample(Session target) {
+        if (!target.running) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            // 先取不含调用栈的线程信息筛选线程，只对命中的线程抓取调用栈
+            long[] ids = threadMXBean.getAllThreadIds();
+            ThreadInfo[] brief = threadMXBean.getThreadInfo(ids);
+            long[] selected = new long[ids.length];
+            int count = 0;
+            for (ThreadInfo info : brief) {
+                if (info != null && matches(info.getThreadName())
+                        && (!target.runnableOnly || info.getThreadState() == Thread.State.RUNNABLE)) {
+                    selected[count++] = info.getThreadId();
+                }
+            }
+            if (count > 0) {
+                for (ThreadInfo info : threadMXBean.getThreadInfo(Arrays.copyOf(selected, count), properties.getMaxDepth())) {
+                    if (info == null) {
+                        continue;
+                    }
+                    StackTraceElement[] frames = info.getStackTrace();
+                    if (frames.length == 0 || target.runnableOnly && (info.getThreadState() != Thread.State.RUNNABLE || isIdle(frames))) {
+                        continue;
+                    }
+                    target.stacks.add(group(info.getThreadName()), frames);
+                }
+            }
+            target.ticks.increment();
+        } catch (Exception e) {
+            log.warn("采样失败：{}", e.getMessage());
+        } finally {
+            overheadNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void sampleSlow() {
+        if (watching.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            long threshold = TimeUnit.MILLISECONDS.toNanos(properties.getSlowThreshold());
+            List<Watch> slow = new ArrayList<>();
+            for (Watch watch : watching.values()) {
+                if (start - watch.startNanos >= threshold) {
+                    slow.add(watch);
+                }
+            }
+            if (slow.isEmpty()) {
+                return;
+            }
+            long[] ids = new long[slow.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = slow.get(i).threadId;
+            }
+            ThreadInfo[] infos = threadMXBean.getThreadInfo(ids, properties.getMaxDepth());
+            for (int i = 0; i < infos.length; i++) {
+                Watch watch = slow.get(i);
+                // 线程已经开始处理下一个请求时丢弃这次采样
+                if (infos[i] == null || watching.get(watch.threadId) != watch || infos[i].getStackTrace().length == 0) {
+                    continue;
+                }
+                if (watch.stacks == null) {
+                    watch.stacks = new FoldedStacks(CAPTURE_STACKS);
+                }
+                watch.stacks.add(infos[i].getThreadState().name(), infos[i].getStackTrace());
+            }
+        } catch (Exception e) {
+            log.warn("慢请求采样失败：{}", e.getMessage());
+        } finally {
+            overheadNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private boolean matches(String threadName) {
+        for (String prefix : properties.getThreadPrefixes()) {
+            if (threadName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 线程状态为 RUNNABLE 但实际阻塞在网络读写或 Selector 上，不占用 CPU
+     */
+    private static boolean isIdle(StackTraceElement[] frames) {
+        StackTraceElement top = frames[0];
+        if (!top.isNativeMethod()) {
+            return false;
+        }
+        String className = top.getClassName();
+        return className.startsWith("sun.nio.ch.") || className.startsWith("java.net.")
+                || className.startsWith("sun.nio.fs.") || className.equals("java.lang.Thread");
+    }
+
+    /**
+     * 去掉线程名末尾的序号，同一线程池的线程归为一组，如 http-nio-8000-exec-12 -> http-nio-8000-exec
+     */
+    private static String group(String threadName) {
+        int end = threadName.length();
+        while (end > 0 && Character.isDigit(threadName.charAt(end - 1))) {
+            end--;
+        }
+        while (end > 0 && threadName.charAt(end - 1) == '-') {
+            end--;
+        }
+        return end == 0 ? threadName : threadName.substring(0, end);
+    }
+
+    /**
+     * 正在执行的请求
+     */
+    public static final class Watch {
+
+        private final long threadId;
+
+        private final long startNanos;
+
+        /** 只由采样线程写入 */
+        private volatile FoldedStacks stacks;
+
+        private Watch(long threadId, long startNanos) {
+            this.threadId = threadId;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * 慢请求采样
+     */
+    public static final class Capture {
+
+        private final long id;
+
+        private final long time = System.currentTimeMillis();
+
+        private final String method;
+
+        private final String route;
+
+        private final String uri;
+
+        private final int status;
+
+        private final long elapsed;
+
+        private final FoldedStacks stacks;
+
+        private Capture(long id, String method, String route, String uri, int status, long elapsed, FoldedStacks stacks) {
+            this.id = id;
+            this.method = method;
+            this.route = route;
+            this.uri = uri;
+            this.status = status;
+            this.elapsed = elapsed;
+            this.stacks = stacks;
+        }
+
+        public String getTitle() {
+            return method + " " + uri + " (" + elapsed + "ms)";
+        }
+
+        public FoldedStacks getStacks() {
+            return stacks;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> item = new LinkedHashMap<>(8);
+            item.put("id", id);
+            item.put("time", time);
+            item.put("method", method);
+            item.put("route", route);
+            item.put("uri", uri);
+            item.put("status", status);
+            item.put("elapsed", elapsed);
+            item.put("samples", stacks.getSamples());
+            return item;
+        }
+    }
+
+    private static class Session {
+
+        private final long startTime = System.currentTimeMillis();
+
+        private final int seconds;
+
+        private final long interval;
+
+        private final boolean runnableOnly;
+
+        private final FoldedStacks stacks;
+
+        private final LongAdder ticks = new LongAdder();
+
+        private volatile boolean running = true;
+
+        private ScheduledFuture<?> future;
+
+        private Session(int seconds, long interval, boolean runnableOnly, FoldedStacks stacks) {
+            this.seconds = seconds;
+            this.interval = interval;
+            this.runnableOnly = runnableOnly;
+            this.stacks = stacks;
+        }
+    }
+}
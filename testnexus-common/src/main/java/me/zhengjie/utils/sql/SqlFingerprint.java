@@ -0,0 +1,198 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.sql;
+
+/**
+ * SQL 指纹：去掉字面量、注释与多余空白，IN 列表与批量 VALUES 折叠为一项，
+ * 参数不同但结构相同的语句得到同一个指纹。单次遍历完成，不使用正则
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public final class SqlFingerprint {
+
+    /** 折叠后的参数列表 */
+    private static final String LIST = "(?+)";
+
+    private SqlFingerprint() {
+    }
+
+    /**
+     * 计算 SQL 指纹
+     * @param sql 原始 SQL 或预编译 SQL
+     * @return /
+     */
+    public static String of(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        int length = sql.length();
+        StringBuilder out = new StringBuilder(Math.min(length, 1024));
+        boolean space = false;
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(sql, i, c);
+                space = append(out, '?', space);
+            } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-' || c == '#') {
+                while (i < length && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                space = true;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                space = true;
+            } else if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+            } else if (isDigit(c) && (space || out.length() == 0 || !isIdentifier(out.charAt(out.length() - 1)))) {
+                i = skipNumber(sql, i);
+                space = append(out, '?', space);
+            } else if (c == '-' && i + 1 < length && isDigit(sql.charAt(i + 1)) && isUnary(out)) {
+                // 负数整体作为一个字面量
+                i = skipNumber(sql, i + 1);
+                space = append(out, '?', space);
+            } else if (c == ')') {
+                space = append(out, ')', space);
+                collapseList(out);
+                i++;
+            } else if (c == '`') {
+                // 反引号包裹的标识符原样保留
+                int end = sql.indexOf('`', i + 1);
+                end = end < 0 ? length - 1 : end;
+                if (space && out.length() > 0) {
+                    out.append(' ');
+                }
+                space = false;
+                out.append(sql, i, end + 1);
+                i = end + 1;
+            } else {
+                space = append(out, c >= 'A' && c <= 'Z' ? (char) (c + 32) : c, space);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean append(StringBuilder out, char c, boolean space) {
+        // 逗号、括号两侧的空白不影响语义，统一去掉
+        if (space && out.length() > 0 && c != ',' && c != ')' && out.charAt(out.length() - 1) != '(') {
+            out.append(' ');
+        }
+        out.append(c);
+        return false;
+    }
+
+    /**
+     * 刚写入 ')' 时，若括号内只有占位符则折叠为 (?+)，紧邻的重复 (?+) 只保留一个
+     */
+    private static void collapseList(StringBuilder out) {
+        int close = out.length() - 1;
+        int j = close - 1;
+        boolean placeholder = false;
+        while (j >= 0) {
+            char c = out.charAt(j);
+            if (c == '?') {
+                placeholder = true;
+            } else if (c != ',' && c != ' ' && c != '+') {
+                break;
+            }
+            j--;
+        }
+        if (j < 0 || out.charAt(j) != '(' || !placeholder) {
+            return;
+        }
+        out.setLength(j);
+        out.append(LIST);
+        int previous = out.length() - LIST.length();
+        // (?+),(?+) 或 (?+), (?+)
+        for (String separator : new String[]{",", ", "}) {
+            int start = previous - separator.length() - LIST.length();
+            if (start >= 0 && out.indexOf(LIST + separator, start) == start) {
+                out.setLength(previous - separator.length());
+                return;
+            }
+        }
+    }
+
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                // 连续两个引号是转义
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    private static int skipNumber(String sql, int start) {
+        int i = start;
+        int length = sql.length();
+        // 只有 0x 前缀后才按十六进制读取字母
+        if (sql.startsWith("0x", i) || sql.startsWith("0X", i)) {
+            i += 2;
+            while (i < length && isHexDigit(sql.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+        while (i < length && (isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+            i++;
+        }
+        // 指数部分，e 后面没有数字时不属于该数字
+        if (i < length && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+            int exponent = i + 1;
+            if (exponent < length && (sql.charAt(exponent) == '+' || sql.charAt(exponent) == '-')) {
+                exponent++;
+            }
+            if (exponent < length && isDigit(sql.charAt(exponent))) {
+                i = exponent;
+                while (i < length && isDigit(sql.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        return i;
+    }
+
+    private static boolean isUnary(StringBuilder out) {
+        return out.length() == 0 || "=<>(,".indexOf(out.charAt(out.length() - 1)) >= 0;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isIdentifier(char c) {
+        return c == '_' || c == '$' || isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c > 127;
+    }
+}
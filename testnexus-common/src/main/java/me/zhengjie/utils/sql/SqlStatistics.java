@@ -0,0 +1,361 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.sql;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * SQL 执行统计：按指纹汇总执行次数、总耗时与最大耗时；
+ * 请求范围内记录每个指纹的执行次数，同一指纹在一次请求中超过阈值时记为 N+1 查询。
+ * 语句由 Druid 过滤器 SqlStatisticsFilter 上报
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+public final class SqlStatistics {
+
+    /** 指纹数量上限，超出后归入 OTHER */
+    private static final int MAX_FINGERPRINTS = 2000;
+
+    /** N+1 记录数量上限 */
+    private static final int MAX_REPEATS = 500;
+
+    private static final int MAX_SAMPLE_LENGTH = 1000;
+
+    private static final String OTHER = "OTHER";
+
+    /**
+     * 原始 SQL -> 指纹，预编译语句的 SQL 文本是固定的，绝大多数情况下直接命中
+     */
+    private static final Cache<String, String> FINGERPRINTS = Caffeine.newBuilder()
+            .maximumSize(4096)
+            .build();
+
+    private static final Map<String, Stat> STATS = new ConcurrentHashMap<>();
+
+    /**
+     * 路由 + 指纹 -> N+1 记录
+     */
+    private static final Map<String, Repeat> REPEATS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+    private static final LongAdder STATEMENTS = new LongAdder();
+
+    private static final LongAdder ERRORS = new LongAdder();
+
+    private SqlStatistics() {
+    }
+
+    /**
+     * 记录一次语句执行
+     * @param sql 执行的 SQL
+     * @param micros 耗时 微秒
+     * @param failed 是否执行失败
+     */
+    public static void record(String sql, long micros, boolean failed) {
+        if (sql == null || sql.isEmpty()) {
+            return;
+        }
+        String fingerprint = fingerprint(sql);
+        Stat stat = STATS.get(fingerprint);
+        if (stat == null) {
+            stat = STATS.size() < MAX_FINGERPRINTS ? STATS.computeIfAbsent(fingerprint, k -> new Stat(sql))
+                    : STATS.computeIfAbsent(OTHER, k -> new Stat(OTHER));
+        }
+        stat.record(micros, failed);
+        STATEMENTS.increment();
+        if (failed) {
+            ERRORS.increment();
+        }
+        Scope scope = SCOPE.get();
+        if (scope != null) {
+            scope.record(fingerprint, micros);
+        }
+    }
+
+    /**
+     * 计算指纹，结果按原始 SQL 缓存
+     * @param sql /
+     * @return /
+     */
+    public static String fingerprint(String sql) {
+        return FINGERPRINTS.get(sql, SqlFingerprint::of);
+    }
+
+    /**
+     * 在当前线程开启统计范围，之后执行的语句都会计入，嵌套时关闭后恢复外层范围
+     * @return /
+     */
+    public static Scope begin() {
+        Scope scope = new Scope(SCOPE.get());
+        SCOPE.set(scope);
+        return scope;
+    }
+
+    /**
+     * 关闭统计范围，记录执行次数超过阈值的指纹
+     * @param scope 统计范围
+     * @param route 请求路由
+     * @param threshold 同一指纹的执行次数阈值
+     */
+    public static void end(Scope scope, String route, int threshold) {
+        scope.close();
+        for (Map.Entry<String, Integer> entry : scope.getRepeated(threshold).entrySet()) {
+            String key = route + " -> " + entry.getKey();
+            Repeat repeat = REPEATS.get(key);
+            if (repeat == null) {
+                if (REPEATS.size() >= MAX_REPEATS) {
+                    continue;
+                }
+                repeat = REPEATS.computeIfAbsent(key, k -> new Repeat(route, entry.getKey()));
+                if (repeat.requests.sum() == 0) {
+                    log.warn("疑似 N+1 查询：{} 在一次请求中执行了 {} 次：{}", route, entry.getValue(), entry.getKey());
+                }
+            }
+            repeat.record(entry.getValue());
+        }
+    }
+
+    /**
+     * 按指纹查询执行统计，耗时单位毫秒
+     * @param sort 排序字段：total、count、max、mean
+     * @param limit 返回数量
+     * @return /
+     */
+    public static List<Map<String, Object>> top(String sort, int limit) {
+        String field = sort == null ? "total" : sort;
+        return STATS.entrySet().stream()
+                .map(entry -> entry.getValue().toMap(entry.getKey()))
+                .sorted(Comparator.comparingDouble((Map<String, Object> item) ->
+                        item.get(field) instanceof Number ? ((Number) item.get(field)).doubleValue() : 0).reversed())
+                .limit(Math.max(1, limit))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 查询检测到的 N+1 查询，按触发次数倒序
+     * @return /
+     */
+    public static List<Map<String, Object>> repeated() {
+        return REPEATS.values().stream()
+                .sorted(Comparator.comparingLong((Repeat repeat) -> repeat.requests.sum()).reversed())
+                .map(Repeat::toMap)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        STATS.clear();
+        REPEATS.clear();
+        STATEMENTS.reset();
+        ERRORS.reset();
+    }
+
+    /**
+     * 获取汇总统计信息（监控用）
+     * @return /
+     */
+    public static Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(4);
+        stats.put("statements", STATEMENTS.sum());
+        stats.put("errors", ERRORS.sum());
+        stats.put("fingerprints", STATS.size());
+        stats.put("repeated", REPEATS.size());
+        return stats;
+    }
+
+    private static double toMillis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+
+    /**
+     * 单个线程内的统计范围，不需要线程安全
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+
+        private final Map<String, int[]> counts = new HashMap<>(16);
+
+        private int statements;
+
+        private long micros;
+
+        private boolean closed;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        private void record(String fingerprint, long elapsed) {
+            counts.computeIfAbsent(fingerprint, k -> new int[1])[0]++;
+            statements++;
+            micros += elapsed;
+            if (parent != null) {
+                parent.record(fingerprint, elapsed);
+            }
+        }
+
+        /**
+         * 范围内执行的语句总数
+         * @return /
+         */
+        public int getStatementCount() {
+            return statements;
+        }
+
+        /**
+         * 范围内语句的总耗时 微秒
+         * @return /
+         */
+        public long getElapsedMicros() {
+            return micros;
+        }
+
+        /**
+         * 某条 SQL（按指纹）在范围内的执行次数
+         * @param sql 原始 SQL 或指纹
+         * @return /
+         */
+        public int count(String sql) {
+            int[] count = counts.get(SqlFingerprint.of(sql));
+            return count == null ? 0 : count[0];
+        }
+
+        /**
+         * 执行次数超过阈值的指纹
+         * @param threshold 阈值
+         * @return 指纹 -> 执行次数
+         */
+        public Map<String, Integer> getRepeated(int threshold) {
+            Map<String, Integer> repeated = new LinkedHashMap<>(4);
+            counts.forEach((fingerprint, count) -> {
+                if (count[0] > threshold) {
+                    repeated.put(fingerprint, count[0]);
+                }
+            });
+            return repeated;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                if (parent == null) {
+                    SCOPE.remove();
+                } else {
+                    SCOPE.set(parent);
+                }
+            }
+        }
+    }
+
+    private static class Stat {
+
+        private final String sample;
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder totalMicros = new LongAdder();
+
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        private volatile long lastSeen;
+
+        private Stat(String sql) {
+            this.sample = sql.length() > MAX_SAMPLE_LENGTH ? sql.substring(0, MAX_SAMPLE_LENGTH) : sql;
+        }
+
+        private void record(long micros, boolean failed) {
+            count.increment();
+            totalMicros.add(micros);
+            if (failed) {
+                errors.increment();
+            }
+            long max = maxMicros.get();
+            while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+                max = maxMicros.get();
+            }
+            lastSeen = System.currentTimeMillis();
+        }
+
+        private Map<String, Object> toMap(String fingerprint) {
+            long executions = count.sum();
+            long total = totalMicros.sum();
+            Map<String, Object> item = new LinkedHashMap<>(10);
+            item.put("fingerprint", fingerprint);
+            item.put("sample", sample);
+            item.put("count", executions);
+            item.put("errors", errors.sum());
+            item.put("total", toMillis(total));
+            item.put("mean", executions == 0 ? 0 : toMillis(total / executions));
+            item.put("max", toMillis(maxMicros.get()));
+            item.put("lastSeen", lastSeen);
+            return item;
+        }
+    }
+
+    private static class Repeat {
+
+        private final String route;
+
+        private final String fingerprint;
+
+        /** 触发的请求次数 */
+        private final LongAdder requests = new LongAdder();
+
+        /** 单次请求内的最大执行次数 */
+        private final AtomicLong maxPerRequest = new AtomicLong();
+
+        private volatile long lastSeen;
+
+        private Repeat(String route, String fingerprint) {
+            this.route = route;
+            this.fingerprint = fingerprint;
+        }
+
+        private void record(int executions) {
+            requests.increment();
+            long max = maxPerRequest.get();
+            while (executions > max && !maxPerRequest.compareAndSet(max, executions)) {
+                max = maxPerRequest.get();
+            }
+            lastSeen = System.currentTimeMillis();
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> item = new LinkedHashMap<>(6);
+            item.put("route", route);
+            item.put("fingerprint", fingerprint);
+            item.put("requests", requests.sum());
+            item.put("maxPerRequest", maxPerRequest.get());
+            item.put("lastSeen", lastSeen);
+            return item;
+        }
+    }
+}
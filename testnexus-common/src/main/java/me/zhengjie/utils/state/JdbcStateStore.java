@@ -0,0 +1,360 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.state;
+
+import com.alibaba.fastjson2.JSON;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.config.properties.StateStoreProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于数据库的共享状态存储，多节点部署时各节点读写同一张表。
+ * 写入先进入待写队列，同一个 key 的多次修改合并为一次，按间隔或数量批量落库；
+ * 读取依次经过待写队列、近端缓存与数据库，近端缓存的存活时间决定其他节点修改的可见延迟
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+public class JdbcStateStore implements StateStore {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final StateStoreProperties properties;
+
+    private final String upsertSql;
+    private final String deleteSql;
+    private final String selectSql;
+    private final String scanSql;
+    private final String purgeSql;
+
+    /**
+     * 尚未落库的写入，value 为删除标记时表示删除
+     */
+    private final Map<String, Entry> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 近端缓存，同时缓存不存在的 key
+     */
+    private final Cache<String, Entry> nearCache;
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private final AtomicLong nearHits = new AtomicLong();
+    private final AtomicLong dbReads = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong purgedRows = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    private ScheduledExecutorService scheduler;
+
+    public JdbcStateStore(DataSource dataSource, StateStoreProperties properties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.properties = properties;
+        String table = properties.getTable();
+        this.upsertSql = "INSERT INTO " + table + " (state_key, state_value, expire_at) VALUES (?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE state_value = VALUES(state_value), expire_at = VALUES(expire_at)";
+        this.deleteSql = "DELETE FROM " + table + " WHERE state_key = ?";
+        this.selectSql = "SELECT state_value, expire_at FROM " + table + " WHERE state_key = ?";
+        this.scanSql = "SELECT state_key FROM " + table + " WHERE state_key LIKE ? ESCAPE '!' AND (expire_at = 0 OR expire_at > ?)";
+        this.purgeSql = "DELETE FROM " + table + " WHERE expire_at > 0 AND expire_at < ? LIMIT " + properties.getPurgeBatchSize();
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(properties.getNearCacheSize())
+                .expireAfterWrite(properties.getNearCacheTtl(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * 建表并启动刷新与清理任务
+     */
+    public void start() {
+        createTableIfAbsent();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "el-state-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, properties.getFlushInterval(),
+                properties.getFlushInterval(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::purgeQuietly, properties.getPurgeInterval(),
+                properties.getPurgeInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止任务，剩余的写入全部落库
+     */
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        flushQuietly();
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> type) {
+        if (key == null) {
+            return null;
+        }
+        Entry entry = lookup(key);
+        if (entry == null) {
+            return null;
+        }
+        Object decoded = entry.decoded;
+        if (type.isInstance(decoded)) {
+            return type.cast(decoded);
+        }
+        T value = JSON.parseObject(entry.json, type);
+        entry.decoded = value;
+        return value;
+    }
+
+    @Override
+    public void set(String key, Object value, long ttl) {
+        write(key, new Entry(JSON.toJSONString(value), LocalStateStore.expireAt(ttl), value));
+    }
+
+    @Override
+    public long getExpire(String key) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            return -1;
+        }
+        return entry.expireAt == 0 ? 0 : Math.max(1, entry.expireAt - System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean expire(String key, long ttl) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            return false;
+        }
+        write(key, new Entry(entry.json, LocalStateStore.expireAt(ttl), entry.decoded));
+        return true;
+    }
+
+    @Override
+    public void del(String... keys) {
+        for (String key : keys) {
+            write(key, Entry.DELETED);
+        }
+    }
+
+    @Override
+    public List<String> scan(String pattern) {
+        Set<String> keys = new LinkedHashSet<>(jdbcTemplate.queryForList(scanSql, String.class,
+                toLike(pattern), System.currentTimeMillis()));
+        // 合并尚未落库的写入
+        for (Map.Entry<String, Entry> entry : pending.entrySet()) {
+            if (LocalStateStore.matches(entry.getKey(), pattern)) {
+                if (entry.getValue().isAlive()) {
+                    keys.add(entry.getKey());
+                } else {
+                    keys.remove(entry.getKey());
+                }
+            }
+        }
+        return new ArrayList<>(keys);
+    }
+
+    @Override
+    public void flush() {
+        flushScheduled.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            long start = System.currentTimeMillis();
+            List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(pending.entrySet());
+            List<Object[]> upserts = new ArrayList<>();
+            List<Object[]> deletes = new ArrayList<>();
+            for (Map.Entry<String, Entry> entry : snapshot) {
+                Entry value = entry.getValue();
+                if (value == Entry.DELETED) {
+                    deletes.add(new Object[]{entry.getKey()});
+                } else {
+                    upserts.add(new Object[]{entry.getKey(), value.json, value.expireAt});
+                }
+            }
+            if (!upserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(upsertSql, upserts);
+            }
+            if (!deletes.isEmpty()) {
+                jdbcTemplate.batchUpdate(deleteSql, deletes);
+            }
+            // 刷新期间被再次修改的 key 保留在队列中，下次刷新
+            for (Map.Entry<String, Entry> entry : snapshot) {
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+            flushes.incrementAndGet();
+            flushedRows.addAndGet(snapshot.size());
+            lastFlushMillis = System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * 分批删除已过期的数据
+     */
+    public void purge() {
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(purgeSql, System.currentTimeMillis());
+            purgedRows.addAndGet(deleted);
+        } while (deleted >= properties.getPurgeBatchSize());
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(10);
+        stats.put("type", "jdbc");
+        stats.put("pending", pending.size());
+        stats.put("nearCacheSize", nearCache.estimatedSize());
+        stats.put("nearHits", nearHits.get());
+        stats.put("dbReads", dbReads.get());
+        stats.put("flushes", flushes.get());
+        stats.put("flushedRows", flushedRows.get());
+        stats.put("flushFailures", flushFailures.get());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        stats.put("purgedRows", purgedRows.get());
+        return stats;
+    }
+
+    private Entry lookup(String key) {
+        Entry entry = pending.get(key);
+        if (entry == null) {
+            entry = nearCache.getIfPresent(key);
+            if (entry != null) {
+                nearHits.incrementAndGet();
+            } else {
+                entry = load(key);
+                nearCache.put(key, entry);
+            }
+        }
+        return entry.isAlive() ? entry : null;
+    }
+
+    private Entry load(String key) {
+        dbReads.incrementAndGet();
+        List<Entry> rows = jdbcTemplate.query(selectSql,
+                (rs, rowNum) -> new Entry(rs.getString(1), rs.getLong(2), null), key);
+        return rows.isEmpty() ? Entry.DELETED : rows.get(0);
+    }
+
+    private void write(String key, Entry entry) {
+        pending.put(key, entry);
+        nearCache.put(key, entry);
+        if (pending.size() >= properties.getBatchSize() && scheduler != null
+                && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            log.error("状态存储写入失败：{}", e.getMessage(), e);
+        }
+    }
+
+    private void purgeQuietly() {
+        try {
+            purge();
+        } catch (Exception e) {
+            log.error("状态存储过期数据清理失败：{}", e.getMessage(), e);
+        }
+    }
+
+    private void createTableIfAbsent() {
+        String table = properties.getTable();
+        Boolean exists = jdbcTemplate.execute((Connection connection) -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            return tableExists(metaData, table) || tableExists(metaData, table.toUpperCase());
+        });
+        if (Boolean.TRUE.equals(exists)) {
+            return;
+        }
+        jdbcTemplate.execute("CREATE TABLE " + table + " (" +
+                "state_key varchar(255) NOT NULL, " +
+                "state_value text NOT NULL, " +
+                "expire_at bigint DEFAULT 0 NOT NULL, " +
+                "PRIMARY KEY (state_key))");
+        jdbcTemplate.execute("CREATE INDEX idx_" + table + "_expire_at ON " + table + " (expire_at)");
+        log.info("状态存储表 {} 已创建", table);
+    }
+
+    private static boolean tableExists(DatabaseMetaData metaData, String table) throws SQLException {
+        try (ResultSet rs = metaData.getTables(null, null, table, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * 将 * 模式转换为 LIKE 条件，未包含 * 时按前缀匹配
+     */
+    private static String toLike(String pattern) {
+        StringBuilder like = new StringBuilder(pattern.length() + 1);
+        for (char c : pattern.toCharArray()) {
+            if (c == '*') {
+                like.append('%');
+            } else {
+                if (c == '%' || c == '_' || c == '!') {
+                    like.append('!');
+                }
+                like.append(c);
+            }
+        }
+        return like.append('%').toString();
+    }
+
+    private static class Entry {
+
+        private static final Entry DELETED = new Entry(null, 0, null);
+
+        private final String json;
+
+        /** 过期时间点 毫秒，0 表示不过期 */
+        private final long expireAt;
+
+        /** 反序列化后的值，避免每次读取都解析 JSON */
+        private volatile Object decoded;
+
+        private Entry(String json, long expireAt, Object decoded) {
+            this.json = json;
+            this.expireAt = expireAt;
+            this.decoded = decoded;
+        }
+
+        private boolean isAlive() {
+            return json != null && (expireAt == 0 || expireAt > System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.state;
+
+import com.alibaba.fastjson2.JSON;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 本地状态存储，单节点部署时使用，状态只在当前节点可见
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public class LocalStateStore implements StateStore {
+
+    private final Cache<String, Entry> cache;
+
+    public LocalStateStore(long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.remainingNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.remainingNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> type) {
+        Entry entry = key == null ? null : cache.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        if (type.isInstance(entry.value)) {
+            return type.cast(entry.value);
+        }
+        return JSON.parseObject(JSON.toJSONString(entry.value), type);
+    }
+
+    @Override
+    public void set(String key, Object value, long ttl) {
+        cache.put(key, new Entry(value, expireAt(ttl)));
+    }
+
+    @Override
+    public long getExpire(String key) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return -1;
+        }
+        return entry.expireAt == 0 ? 0 : Math.max(1, entry.expireAt - System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean expire(String key, long ttl) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            return false;
+        }
+        cache.put(key, new Entry(entry.value, expireAt(ttl)));
+        return true;
+    }
+
+    @Override
+    public void del(String... keys) {
+        for (String key : keys) {
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public List<String> scan(String pattern) {
+        return cache.asMap().keySet().stream()
+                .filter(key -> matches(key, pattern))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(4);
+        stats.put("type", "local");
+        stats.put("size", cache.estimatedSize());
+        stats.put("hitRate", cache.stats().hitRate());
+        return stats;
+    }
+
+    static long expireAt(long ttl) {
+        return ttl > 0 ? System.currentTimeMillis() + ttl : 0;
+    }
+
+    /**
+     * 按模式匹配 key，* 匹配任意字符，与 Redis scan 的写法保持一致
+     */
+    static boolean matches(String key, String pattern) {
+        if (pattern.indexOf('*') < 0) {
+            return key.startsWith(pattern);
+        }
+        String[] parts = pattern.split("\\*", -1);
+        if (!key.startsWith(parts[0])) {
+            return false;
+        }
+        int index = parts[0].length();
+        for (int i = 1; i < parts.length; i++) {
+            index = key.indexOf(parts[i], index);
+            if (index < 0) {
+                return false;
+            }
+            index += parts[i].length();
+        }
+        return true;
+    }
+
+    private static class Entry {
+
+        private final Object value;
+
+        /** 过期时间点 毫秒，0 表示不过期 */
+        private final long expireAt;
+
+        private Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+
+        private long remainingNanos() {
+            if (expireAt == 0) {
+                return Long.MAX_VALUE;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expireAt - System.currentTimeMillis()));
+        }
+    }
+}
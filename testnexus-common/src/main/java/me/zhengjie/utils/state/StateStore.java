@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.utils.state;
+
+import me.zhengjie.utils.metrics.MetricsSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 状态存储 SPI，保存需要在节点间共享的短期状态（在线用户、验证码等）。
+ * 值按 JSON 保存，读取时按类型还原；过期时间单位为毫秒，小于等于 0 表示不过期
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public interface StateStore extends MetricsSource {
+
+    /**
+     * 读取
+     * @param key 键
+     * @param type 值的类型
+     * @return 不存在或已过期时返回 null
+     */
+    <T> T get(String key, Class<T> type);
+
+    /**
+     * 写入
+     * @param key 键
+     * @param value 值
+     * @param ttl 存活时间 毫秒
+     */
+    void set(String key, Object value, long ttl);
+
+    /**
+     * 获取剩余存活时间
+     * @param key 键
+     * @return 毫秒，不过期返回 0，不存在返回 -1
+     */
+    long getExpire(String key);
+
+    /**
+     * 重新设置存活时间
+     * @param key 键
+     * @param ttl 存活时间 毫秒
+     * @return 键不存在时返回 false
+     */
+    boolean expire(String key, long ttl);
+
+    /**
+     * 删除
+     * @param keys 键
+     */
+    void del(String... keys);
+
+    /**
+     * 按模式查询键，* 匹配任意字符
+     * @param pattern 模式
+     * @return /
+     */
+    List<String> scan(String pattern);
+
+    /**
+     * 将尚未落库的写入立即刷新
+     */
+    default void flush() {
+    }
+
+    @Override
+    default String getMetricsName() {
+        return "state_store";
+    }
+
+    /**
+     * 获取统计信息（监控用）
+     * @return /
+     */
+    @Override
+    Map<String, Object> getStats();
+}
@@ -0,0 +1,66 @@
+package me.zhengjie.config;
+
+import me.zhengjie.utils.TraceContext;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MdcTaskDecoratorTest {
+
+    @Test
+    public void testPropagateToWorker() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TraceContext.begin("req-1");
+            TraceContext.setUser(1L, "admin");
+            AtomicReference<String> requestId = new AtomicReference<>();
+            AtomicReference<String> username = new AtomicReference<>();
+            executor.submit(MdcTaskDecorator.INSTANCE.decorate(() -> {
+                requestId.set(TraceContext.getRequestId());
+                username.set(MDC.get(TraceContext.USERNAME));
+            })).get(5, TimeUnit.SECONDS);
+            assertEquals("req-1", requestId.get());
+            assertEquals("admin", username.get());
+
+            // 工作线程执行完后不残留上一个任务的 MDC
+            AtomicReference<String> leaked = new AtomicReference<>("unset");
+            executor.submit(() -> leaked.set(TraceContext.getRequestId())).get(5, TimeUnit.SECONDS);
+            assertNull(leaked.get());
+        } finally {
+            TraceContext.end();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCallerRunsKeepsContext() {
+        TraceContext.begin("outer");
+        try {
+            Runnable task = MdcTaskDecorator.INSTANCE.decorate(() -> assertEquals("outer", TraceContext.getRequestId()));
+            TraceContext.begin("changed");
+            // 在提交线程上直接执行（CallerRunsPolicy），结束后恢复提交线程自己的 MDC
+            task.run();
+            assertEquals("changed", TraceContext.getRequestId());
+        } finally {
+            TraceContext.end();
+        }
+    }
+
+    @Test
+    public void testRejectInvalidRequestId() {
+        try {
+            assertEquals("abc-1_2.3", TraceContext.begin("abc-1_2.3"));
+            String generated = TraceContext.begin("bad id\nINFO forged");
+            assertEquals(16, generated.length());
+            assertNotEquals("bad id\nINFO forged", TraceContext.getRequestId());
+        } finally {
+            TraceContext.end();
+        }
+    }
+}
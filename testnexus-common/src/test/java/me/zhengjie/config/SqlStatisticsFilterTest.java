@@ -0,0 +1,62 @@
+package me.zhengjie.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import me.zhengjie.utils.sql.SqlStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 H2 验证语句经过 Druid 过滤器上报，不依赖 p6spy
+ */
+public class SqlStatisticsFilterTest {
+
+    private DruidDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        dataSource = new DruidDataSource();
+        dataSource.setUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setProxyFilters(Collections.singletonList(new SqlStatisticsFilter()));
+        dataSource.init();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE sql_filter_test (id bigint PRIMARY KEY, name varchar(20))");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    public void testRecordsStatements() {
+        long errors = (Long) SqlStatistics.getStats().get("errors");
+        try (SqlStatistics.Scope scope = SqlStatistics.begin()) {
+            jdbcTemplate.update("INSERT INTO sql_filter_test (id, name) VALUES (?, ?)", 1L, "a");
+            jdbcTemplate.batchUpdate("INSERT INTO sql_filter_test (id, name) VALUES (?, ?)",
+                    Arrays.asList(new Object[]{2L, "b"}, new Object[]{3L, "c"}));
+            for (long id = 1; id <= 3; id++) {
+                jdbcTemplate.queryForObject("SELECT name FROM sql_filter_test WHERE id = ?", String.class, id);
+            }
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sql_filter_test", Long.class);
+            assertThrows(BadSqlGrammarException.class, () -> jdbcTemplate.execute("SELECT missing FROM sql_filter_test"));
+
+            // 批量执行按一次计
+            assertEquals(2, scope.count("insert into sql_filter_test (id, name) values (?, ?)"));
+            assertEquals(3, scope.count("select name from sql_filter_test where id = ?"));
+            assertEquals(1, scope.count("select count(*) from sql_filter_test"));
+            assertEquals(1, scope.count("select missing from sql_filter_test"));
+        }
+        assertEquals(errors + 1, (Long) SqlStatistics.getStats().get("errors"));
+    }
+}
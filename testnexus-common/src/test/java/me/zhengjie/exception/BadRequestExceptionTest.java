@@ -0,0 +1,28 @@
+package me.zhengjie.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BadRequestExceptionTest {
+
+    @Test
+    public void testStacklessWithoutCause() {
+        BadRequestException e = new BadRequestException("用户名已存在");
+        assertEquals(0, e.getStackTrace().length);
+        assertEquals(HttpStatus.BAD_REQUEST.value(), e.getStatus());
+    }
+
+    @Test
+    public void testKeepsTraceWithCause() {
+        IOException cause = new IOException("disk full");
+        BadRequestException e = new BadRequestException(HttpStatus.INTERNAL_SERVER_ERROR, "打包失败", cause);
+        assertSame(cause, e.getCause());
+        assertTrue(e.getStackTrace().length > 0);
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR.value(), e.getStatus());
+        assertTrue(new BadRequestException("打包失败", cause).getStackTrace().length > 0);
+    }
+}
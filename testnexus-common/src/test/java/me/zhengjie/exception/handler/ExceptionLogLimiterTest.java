@@ -0,0 +1,40 @@
+package me.zhengjie.exception.handler;
+
+import me.zhengjie.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExceptionLogLimiterTest {
+
+    @Test
+    public void testSuppressWithinInterval() throws InterruptedException {
+        ExceptionLogLimiter limiter = new ExceptionLogLimiter(200);
+        assertEquals(0, limiter.acquire("a"));
+        assertEquals(ExceptionLogLimiter.SUPPRESSED, limiter.acquire("a"));
+        assertEquals(ExceptionLogLimiter.SUPPRESSED, limiter.acquire("a"));
+        // 不同签名互不影响
+        assertEquals(0, limiter.acquire("b"));
+        Thread.sleep(250);
+        // 新窗口的第一次记录带上被忽略的次数
+        assertEquals(2, limiter.acquire("a"));
+        assertEquals(ExceptionLogLimiter.SUPPRESSED, limiter.acquire("a"));
+        assertEquals(3L, limiter.getStats().get("logged"));
+        assertEquals(3L, limiter.getStats().get("suppressed"));
+    }
+
+    @Test
+    public void testDisabled() {
+        ExceptionLogLimiter limiter = new ExceptionLogLimiter(0);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.acquire("a"));
+        }
+    }
+
+    @Test
+    public void testBusinessExceptionIsStackless() {
+        BadRequestException e = new BadRequestException("用户名或密码不正确");
+        assertEquals(0, e.getStackTrace().length);
+        assertEquals("用户名或密码不正确", e.getMessage());
+    }
+}
@@ -0,0 +1,43 @@
+package me.zhengjie.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegative() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        String[] values = new String[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = UUID.randomUUID().toString().replace("-", "");
+            filter.put(values[i]);
+        }
+        for (String value : values) {
+            assertTrue(filter.mightContain(value));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        int inserted = 10_000;
+        double fpp = 0.01;
+        BloomFilter filter = new BloomFilter(inserted, fpp);
+        for (int i = 0; i < inserted; i++) {
+            filter.put(UUID.randomUUID().toString().replace("-", ""));
+        }
+        int probes = 100_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString().replace("-", ""))) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / probes;
+        // 允许统计波动，误判率不应超过期望值的两倍
+        assertTrue(rate < fpp * 2, "误判率过高：" + rate);
+    }
+}
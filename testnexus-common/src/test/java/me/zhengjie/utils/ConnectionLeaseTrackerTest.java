@@ -0,0 +1,64 @@
+package me.zhengjie.utils;
+
+import me.zhengjie.config.properties.ConnectionLeaseProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionLeaseTrackerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLeaseOutlivesTransaction() throws InterruptedException {
+        ConnectionLeaseProperties properties = new ConnectionLeaseProperties();
+        properties.setTailThreshold(20);
+        ConnectionLeaseTracker tracker = new ConnectionLeaseTracker(properties);
+
+        Object connection = new Object();
+        tracker.acquire(connection);
+        tracker.activity(connection);
+        tracker.transactionEnd(connection);
+        // 事务结束后继续占用连接，模拟 OSIV 下的序列化与文件输出
+        Thread.sleep(50);
+        tracker.release(connection);
+
+        Object quick = new Object();
+        tracker.acquire(quick);
+        tracker.transactionEnd(quick);
+        tracker.release(quick);
+
+        Map<String, Object> stats = tracker.getStats();
+        assertEquals(0, stats.get("active"));
+        assertEquals(2L, stats.get("leases"));
+        assertEquals(1L, stats.get("outlived"));
+
+        Map<String, Object> report = tracker.report(10);
+        List<Map<String, Object>> recent = (List<Map<String, Object>>) report.get("recent");
+        assertEquals(1, recent.size());
+        assertTrue((Double) recent.get(0).get("afterTransaction") >= 50);
+        assertTrue(String.valueOf(recent.get(0).get("acquireSite")).startsWith("ConnectionLeaseTrackerTest.testLeaseOutlivesTransaction"));
+
+        List<Map<String, Object>> routes = (List<Map<String, Object>>) report.get("routes");
+        assertEquals(1, routes.size());
+        assertEquals(2L, routes.get(0).get("count"));
+        assertEquals(1L, routes.get(0).get("outlived"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testActiveLease() {
+        ConnectionLeaseTracker tracker = new ConnectionLeaseTracker(new ConnectionLeaseProperties());
+        Object connection = new Object();
+        tracker.acquire(connection);
+        List<Map<String, Object>> active = (List<Map<String, Object>>) tracker.report(10).get("active");
+        assertEquals(1, active.size());
+        tracker.release(connection);
+        // 重复归还或未跟踪的连接不影响统计
+        tracker.release(connection);
+        tracker.release(new Object());
+        assertEquals(1L, tracker.getStats().get("leases"));
+    }
+}
@@ -0,0 +1,112 @@
+package me.zhengjie.utils;
+
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.DESKeySpec;
+import javax.crypto.spec.IvParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RsaUtils、EncryptUtils 改用 CryptoEngine 前后的单次调用耗时对比，
+ * legacy 开头的方法保留了改造前每次调用都解析密钥、创建 Cipher 的写法
+ * 运行：直接执行 main 方法
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CryptoEngineBenchmark {
+
+    /**
+     * 与线上 JWT 长度相近的样例
+     */
+    private static final String SAMPLE_TOKEN = "eyJhbGciOiJIUzUxMiJ9.eyJzdWIiOiJhZG1pbiIsInVzZXJJZCI6MSwidWlkIjoiM2Y1" +
+            "ZDZjYjM4ZjYwNDJlZjk0ZTFkZGNhNDZiMzA1ZjEifQ.Zr2t5I9oWqJv1k8mV0b2s7cXcY2v3xk4qz0hBq9sWfY1nP2rT7uE8dA";
+
+    private static final IvParameterSpec IV = new IvParameterSpec("Passw0rd".getBytes(StandardCharsets.UTF_8));
+
+    private String privateKey;
+
+    private String rsaCipherText;
+
+    private String token;
+
+    private String desCipherText;
+
+    @Setup
+    public void setup() throws Exception {
+        RsaUtils.RsaKeyPair keyPair = RsaUtils.generateKeyPair();
+        privateKey = keyPair.getPrivateKey();
+        rsaCipherText = RsaUtils.encryptByPublicKey(keyPair.getPublicKey(), "123456");
+        token = SAMPLE_TOKEN;
+        desCipherText = EncryptUtils.desEncrypt(token);
+    }
+
+    @Benchmark
+    public String legacyRsaDecrypt() throws Exception {
+        PrivateKey key = KeyFactory.getInstance("RSA").generatePrivate(new PKCS8EncodedKeySpec(Base64.decodeBase64(privateKey)));
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.DECRYPT_MODE, key);
+        return new String(cipher.doFinal(Base64.decodeBase64(rsaCipherText)));
+    }
+
+    @Benchmark
+    public String rsaDecrypt() throws Exception {
+        return RsaUtils.decryptByPrivateKey(privateKey, rsaCipherText);
+    }
+
+    @Benchmark
+    public String legacyDesEncrypt() throws Exception {
+        Cipher cipher = Cipher.getInstance("DES/CBC/PKCS5Padding");
+        SecretKey secretKey = SecretKeyFactory.getInstance("DES")
+                .generateSecret(new DESKeySpec("Passw0rd".getBytes(StandardCharsets.UTF_8)));
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, IV);
+        byte[] bytes = cipher.doFinal(token.getBytes(StandardCharsets.UTF_8));
+        StringBuilder out = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            String stmp = Integer.toHexString(b & 0xFF);
+            out.append(stmp.length() == 1 ? "0" + stmp : stmp);
+        }
+        return out.toString().toUpperCase();
+    }
+
+    @Benchmark
+    public String desEncrypt() throws Exception {
+        return EncryptUtils.desEncrypt(token);
+    }
+
+    @Benchmark
+    public String legacyDesDecrypt() throws Exception {
+        byte[] b = desCipherText.getBytes(StandardCharsets.UTF_8);
+        byte[] src = new byte[b.length / 2];
+        for (int n = 0; n < b.length; n += 2) {
+            src[n / 2] = (byte) Integer.parseInt(new String(b, n, 2), 16);
+        }
+        Cipher cipher = Cipher.getInstance("DES/CBC/PKCS5Padding");
+        SecretKey secretKey = SecretKeyFactory.getInstance("DES")
+                .generateSecret(new DESKeySpec("Passw0rd".getBytes(StandardCharsets.UTF_8)));
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, IV);
+        return new String(cipher.doFinal(src));
+    }
+
+    @Benchmark
+    public String desDecrypt() throws Exception {
+        return EncryptUtils.desDecrypt(desCipherText);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CryptoEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,97 @@
+package me.zhengjie.utils;
+
+import me.zhengjie.config.properties.StateStoreProperties;
+import me.zhengjie.utils.state.JdbcStateStore;
+import me.zhengjie.utils.state.LocalStateStore;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 H2 的 MySQL 兼容模式模拟两个节点共用状态存储
+ */
+public class RedisUtilsTest {
+
+    private JdbcStateStore storeA;
+
+    private JdbcStateStore storeB;
+
+    private RedisUtils nodeA;
+
+    private RedisUtils nodeB;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        StateStoreProperties properties = new StateStoreProperties();
+        properties.setType("jdbc");
+        properties.setNearCacheTtl(100);
+        storeA = new JdbcStateStore(dataSource, properties);
+        storeA.start();
+        storeB = new JdbcStateStore(dataSource, properties);
+        storeB.start();
+        nodeA = new RedisUtils(storeA, properties);
+        nodeB = new RedisUtils(storeB, properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storeA.stop();
+        storeB.stop();
+    }
+
+    @Test
+    public void testSharedBetweenNodes() {
+        nodeA.set("data::user:1", Arrays.asList(1L, 2L), 60);
+        storeA.flush();
+        // 按 JSON 还原的数字转换回指定类型
+        assertEquals(Arrays.asList(1L, 2L), nodeB.getList("data::user:1", Long.class));
+        long expire = nodeB.getExpire("data::user:1");
+        assertTrue(expire > 0 && expire <= 60);
+    }
+
+    @Test
+    public void testDeleteVisibleAfterNearCacheTtl() throws InterruptedException {
+        nodeA.set("data::user:2", "x");
+        storeA.flush();
+        assertEquals("x", nodeB.get("data::user:2", String.class));
+        // 删除立即落库，不需要等待合并写入
+        nodeA.del("data::user:2");
+        assertEquals(0, storeA.getStats().get("pending"));
+        Thread.sleep(150);
+        assertNull(nodeB.get("data::user:2", String.class));
+        assertFalse(nodeB.hasKey("data::user:2"));
+    }
+
+    @Test
+    public void testDelByKeys() throws InterruptedException {
+        nodeA.set("data::menu:1", "a");
+        nodeA.set("data::menu:2", "b");
+        storeA.flush();
+        assertEquals(2, nodeB.scan("data::menu:").size());
+        assertEquals(1, nodeA.delByKeys("data::menu:", Collections.singleton(1L)));
+        Thread.sleep(150);
+        assertEquals(Collections.singletonList("data::menu:2"), nodeB.scan("data::menu:"));
+    }
+
+    @Test
+    public void testLocalIsSeparateFromStateStore() {
+        LocalStateStore stateStore = new LocalStateStore(10);
+        RedisUtils local = new RedisUtils(stateStore, new StateStoreProperties());
+        local.set("data::user:3", Arrays.asList(3L), 0);
+        List<Long> ids = local.getList("data::user:3", Long.class);
+        assertEquals(Collections.singletonList(3L), ids);
+        // 默认 24 小时过期
+        assertTrue(local.getExpire("data::user:3") > 0);
+        assertNull(stateStore.get("data::user:3", Object.class));
+    }
+}
@@ -0,0 +1,153 @@
+package me.zhengjie.utils;
+
+import cn.hutool.http.useragent.UserAgent;
+import cn.hutool.http.useragent.UserAgentUtil;
+import net.dreamlu.mica.ip2region.core.Ip2regionSearcher;
+import net.dreamlu.mica.ip2region.core.IpInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 验证 RequestEnricher 的缓存命中，以及缓存结果与改造前 StringUtils 直接解析的结果一致。
+ * 缓存是静态的，每个用例使用各自的 IP 与 User-Agent，统计信息按差值比较
+ */
+public class RequestEnricherTest {
+
+    /** IP -> 归属地，未登记的 IP 查询结果为 null */
+    private static final Map<String, String> REGIONS = new ConcurrentHashMap<>();
+
+    /** 每个 IP 的查询次数 */
+    private static final Map<String, AtomicInteger> SEARCHES = new ConcurrentHashMap<>();
+
+    private static final List<String> USER_AGENTS = Arrays.asList(
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36 Edg/120.0.2210.91",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10.15; rv:121.0) Gecko/20100101 Firefox/121.0",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_2 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.2 Mobile/15E148 Safari/604.1",
+            "curl/8.4.0");
+
+    @BeforeAll
+    public static void setUp() {
+        Ip2regionSearcher searcher = (Ip2regionSearcher) Proxy.newProxyInstance(RequestEnricherTest.class.getClassLoader(),
+                new Class<?>[]{Ip2regionSearcher.class}, (proxy, method, args) -> {
+                    if (!"memorySearch".equals(method.getName()) || !(args[0] instanceof String)) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    String ip = (String) args[0];
+                    SEARCHES.computeIfAbsent(ip, key -> new AtomicInteger()).incrementAndGet();
+                    String address = REGIONS.get(ip);
+                    return address == null ? null : ipInfo(address);
+                });
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("ip2regionSearcher", searcher);
+        context.refresh();
+        new SpringBeanHolder().setApplicationContext(context);
+    }
+
+    @Test
+    public void testRegionCacheHit() {
+        REGIONS.put("10.0.0.1", "中国|广东省|深圳市|电信");
+        long hits = stat("region", "hitCount");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(legacyRegion("10.0.0.1"), RequestEnricher.region("10.0.0.1"));
+            assertEquals(legacyRegion("10.0.0.1"), StringUtils.getCityInfo("10.0.0.1"));
+        }
+        // 只有首次未命中时查询
+        assertEquals(1, SEARCHES.get("10.0.0.1").get());
+        assertEquals(hits + 5, stat("region", "hitCount"));
+    }
+
+    @Test
+    public void testRegionNotFoundIsCached() {
+        long hits = stat("region", "hitCount");
+        assertNull(legacyRegion("10.0.0.2"));
+        assertNull(RequestEnricher.region("10.0.0.2"));
+        assertNull(RequestEnricher.region("10.0.0.2"));
+        assertNull(RequestEnricher.region(null));
+        // legacyRegion 查询一次，缓存查询一次
+        assertEquals(2, SEARCHES.get("10.0.0.2").get());
+        assertEquals(hits + 1, stat("region", "hitCount"));
+    }
+
+    @Test
+    public void testBrowserMatchesUncached() {
+        long misses = stat("browser", "missCount");
+        long hits = stat("browser", "hitCount");
+        for (String userAgent : USER_AGENTS) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader("User-Agent", userAgent);
+            assertEquals(legacyBrowser(userAgent), StringUtils.getBrowser(request));
+            assertEquals(legacyBrowser(userAgent), RequestEnricher.browser(userAgent));
+        }
+        assertEquals(misses + USER_AGENTS.size(), stat("browser", "missCount"));
+        assertEquals(hits + USER_AGENTS.size(), stat("browser", "hitCount"));
+    }
+
+    @Test
+    public void testBlankBrowser() {
+        long misses = stat("browser", "missCount");
+        assertEquals("Unknown", RequestEnricher.browser(null));
+        assertEquals("Unknown", RequestEnricher.browser(" "));
+        assertEquals("Unknown", StringUtils.getBrowser(new MockHttpServletRequest()));
+        // 空值不进入缓存
+        assertEquals(misses, stat("browser", "missCount"));
+    }
+
+    @Test
+    public void testLocalHostAddress() {
+        String expected;
+        try {
+            expected = InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            expected = "127.0.0.1";
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("127.0.0.1");
+        assertEquals(expected, StringUtils.getIp(request));
+        assertSame(RequestEnricher.localHostAddress(), RequestEnricher.localHostAddress());
+    }
+
+    private static IpInfo ipInfo(String address) {
+        return new IpInfo() {
+            @Override
+            public String getAddress() {
+                return address;
+            }
+        };
+    }
+
+    /**
+     * 改造前 StringUtils.getCityInfo 的实现：每次直接查询
+     */
+    private static String legacyRegion(String ip) {
+        IpInfo ipInfo = SpringBeanHolder.getBean(Ip2regionSearcher.class).memorySearch(ip);
+        return ipInfo != null ? ipInfo.getAddress() : null;
+    }
+
+    /**
+     * 改造前 StringUtils.getBrowser 的实现：每次直接解析
+     */
+    private static String legacyBrowser(String userAgent) {
+        UserAgent ua = UserAgentUtil.parse(userAgent);
+        String browser = ua.getBrowser().toString() + " " + ua.getVersion();
+        return browser.replace(".0.0.0", "");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long stat(String cache, String name) {
+        return (Long) ((Map<String, Object>) RequestEnricher.getStats().get(cache)).get(name);
+    }
+}
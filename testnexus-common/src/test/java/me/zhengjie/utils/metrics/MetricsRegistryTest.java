@@ -0,0 +1,82 @@
+package me.zhengjie.utils.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    private static final Pattern SAMPLE = Pattern.compile(
+            "^[a-zA-Z_:][a-zA-Z0-9_:]*(\\{([a-zA-Z_][a-zA-Z0-9_]*=\"([^\"\\\\]|\\\\.)*\",?)*})? (NaN|[+-]Inf|-?[0-9.eE+-]+)$");
+
+    @Test
+    public void testScrapeFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsBinders.bindJvm(registry);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 2, 1, TimeUnit.SECONDS, new ArrayBlockingQueue<>(10));
+        try {
+            MetricsBinders.bindExecutor(registry, "test", executor);
+            Map<String, String> labels = new HashMap<>(2);
+            labels.put("path", "a\"b\\c");
+            registry.gauge("customValue", "自定义", labels, () -> 1.5);
+            registry.counters("hits_total", "命中", "name", () -> Collections.singletonMap("x", 3));
+            registry.source(new MetricsSource() {
+                @Override
+                public String getMetricsName() {
+                    return "demo";
+                }
+
+                @Override
+                public Map<String, Object> getStats() {
+                    Map<String, Object> stats = new LinkedHashMap<>(4);
+                    stats.put("queueSize", 7);
+                    stats.put("enabled", true);
+                    stats.put("mode", "local");
+                    stats.put("nested", Collections.singletonMap("hitCount", 2L));
+                    return stats;
+                }
+            });
+
+            String text = registry.scrape();
+            for (String line : text.split("\n")) {
+                if (!line.startsWith("#")) {
+                    assertTrue(SAMPLE.matcher(line).matches(), "非法的指标行：" + line);
+                }
+            }
+            assertTrue(text.contains("el_jvm_memory_used_bytes{area=\"heap\"} "));
+            assertTrue(text.contains("el_executor_queued_tasks{pool=\"test\"} 0"));
+            assertTrue(text.contains("# TYPE el_hits_total counter"));
+            assertTrue(text.contains("el_hits_total{name=\"x\"} 3"));
+            assertTrue(text.contains("el_custom_value{path=\"a\\\"b\\\\c\"} 1.5"));
+            assertTrue(text.contains("el_demo_queue_size 7"));
+            assertTrue(text.contains("el_demo_enabled 1"));
+            assertTrue(text.contains("el_demo_nested_hit_count 2"));
+            assertFalse(text.contains("el_demo_mode"));
+
+            Map<String, Object> map = registry.toMap();
+            assertEquals(1.5, ((Map<?, ?>) map.get("el_custom_value")).values().iterator().next());
+            assertEquals(7D, ((Map<?, ?>) map.get("el_demo")).get("queue_size"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("3", MetricsRegistry.format(3D));
+        assertEquals("0.25", MetricsRegistry.format(0.25));
+        assertEquals("NaN", MetricsRegistry.format(Double.NaN));
+        assertEquals("+Inf", MetricsRegistry.format(Double.POSITIVE_INFINITY));
+        assertEquals("cache_hit_rate", MetricsRegistry.sanitize("cacheHitRate"));
+        assertEquals("a_b", MetricsRegistry.sanitize("a-b"));
+    }
+}
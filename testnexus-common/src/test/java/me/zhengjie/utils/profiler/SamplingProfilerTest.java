@@ -0,0 +1,63 @@
+package me.zhengjie.utils.profiler;
+
+import me.zhengjie.config.properties.ProfilerProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SamplingProfilerTest {
+
+    @Test
+    public void testFoldedStacks() {
+        FoldedStacks stacks = new FoldedStacks(2);
+        StackTraceElement[] frames = {
+                new StackTraceElement("a.B", "leaf", null, 1),
+                new StackTraceElement("a.A", "root", null, 1)
+        };
+        stacks.add("pool", frames);
+        stacks.add("pool", frames);
+        stacks.add("pool", new StackTraceElement[]{new StackTraceElement("a.C", "other", null, 1)});
+        stacks.add("pool", new StackTraceElement[]{new StackTraceElement("a.D", "overflow", null, 1)});
+        assertEquals(4, stacks.getSamples());
+        assertEquals("pool;[truncated] 1\npool;a.A.root;a.B.leaf 2\npool;a.C.other 1\n", stacks.toText());
+    }
+
+    @Test
+    public void testFlameGraphEscapesFrames() {
+        FoldedStacks stacks = new FoldedStacks(10);
+        stacks.add("pool", new StackTraceElement[]{new StackTraceElement("</script><b>", "x\"", null, 1)});
+        String html = FlameGraph.render("<title>", stacks);
+        assertFalse(html.contains("</script><b>"));
+        assertFalse(html.contains("<title><title>"));
+        assertTrue(html.contains("[\"all\",1,[[\"pool\",1,[[\"\\u003c/script\\u003e\\u003cb\\u003e.x\\\"\",1,[]]]]]]"));
+    }
+
+    @Test
+    public void testSlowRequestCapture() throws InterruptedException {
+        ProfilerProperties properties = new ProfilerProperties();
+        properties.setSlowThreshold(50);
+        properties.setSlowInterval(5);
+        SamplingProfiler profiler = new SamplingProfiler(properties);
+        profiler.init();
+        try {
+            SamplingProfiler.Watch fast = profiler.watch();
+            profiler.finish(fast, "GET", "GET /fast", "/fast", 200);
+
+            SamplingProfiler.Watch slow = profiler.watch();
+            Thread.sleep(300);
+            profiler.finish(slow, "GET", "GET /slow", "/slow", 200);
+
+            List<Map<String, Object>> captures = profiler.getCaptures();
+            assertEquals(1, captures.size());
+            assertEquals("/slow", captures.get(0).get("uri"));
+            assertTrue((Long) captures.get(0).get("samples") > 0);
+            SamplingProfiler.Capture capture = profiler.getCapture((Long) captures.get(0).get("id"));
+            assertTrue(capture.getStacks().toText().contains("java.lang.Thread.sleep"));
+        } finally {
+            profiler.destroy();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package me.zhengjie.utils.sql;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlStatisticsTest {
+
+    @Test
+    public void testFingerprint() {
+        assertEquals("select * from sys_menu where pid=? and title like ?",
+                SqlFingerprint.of("SELECT *\n  FROM sys_menu WHERE pid=12 and title like 'a''b\\'c'"));
+        assertEquals("select menu0_.menu_id from sys_menu menu0_ where menu0_.pid in (?+)",
+                SqlFingerprint.of("select menu0_.menu_id from sys_menu menu0_ where menu0_.pid in (1, 2, 3)"));
+        assertEquals(SqlFingerprint.of("select * from t where id in (?)"),
+                SqlFingerprint.of("select * from t where id in (?, ?, ?)"));
+        assertEquals("insert into sys_log (a, b) values (?+)",
+                SqlFingerprint.of("insert into sys_log (a, b) values (?, ?), (?, ?),(?,?)"));
+        assertEquals("select `order` from t where x=? limit ?",
+                SqlFingerprint.of("/* hint */ select `order` from t -- comment\n where x=-1.5e+3 limit 0x10"));
+        assertEquals("select count(id) from t", SqlFingerprint.of("select count( id ) from t"));
+        // 十六进制字母只在 0x 之后读取，数字后紧跟的关键字保留
+        assertEquals("select ?as total, ?e from t where x=? order by a",
+                SqlFingerprint.of("select 12as total, 3e from t where x=0xAbC1 order by a"));
+    }
+
+    @Test
+    public void testRepeatedInScope() {
+        SqlStatistics.Scope scope = SqlStatistics.begin();
+        for (int i = 0; i < 20; i++) {
+            SqlStatistics.record("select * from sys_menu where pid=" + i, 100, false);
+        }
+        SqlStatistics.record("select * from sys_dept where dept_id=1", 100, false);
+        SqlStatistics.end(scope, "GET /test/children", 10);
+
+        assertEquals(21, scope.getStatementCount());
+        assertEquals(20, scope.count("select * from sys_menu where pid=?"));
+        Map<String, Integer> repeated = scope.getRepeated(10);
+        assertEquals(1, repeated.size());
+        assertEquals(20, repeated.get("select * from sys_menu where pid=?"));
+
+        List<Map<String, Object>> found = SqlStatistics.repeated();
+        assertTrue(found.stream().anyMatch(item -> "GET /test/children".equals(item.get("route"))
+                && "select * from sys_menu where pid=?".equals(item.get("fingerprint"))));
+        Map<String, Object> top = SqlStatistics.top("count", 1).get(0);
+        assertEquals("select * from sys_menu where pid=?", top.get("fingerprint"));
+
+        // 范围关闭后不再计入
+        SqlStatistics.record("select * from sys_menu where pid=99", 100, false);
+        assertEquals(21, scope.getStatementCount());
+    }
+
+    @Test
+    public void testNestedScope() {
+        SqlStatistics.Scope outer = SqlStatistics.begin();
+        try (SqlStatistics.Scope inner = SqlStatistics.begin()) {
+            SqlStatistics.record("select 1", 10, false);
+            assertEquals(1, inner.getStatementCount());
+        }
+        SqlStatistics.record("select 2", 10, false);
+        outer.close();
+        assertEquals(2, outer.getStatementCount());
+        assertEquals(2, outer.count("select 3"));
+    }
+}
@@ -0,0 +1,117 @@
+package me.zhengjie.utils.state;
+
+import me.zhengjie.config.properties.StateStoreProperties;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 H2 的 MySQL 兼容模式模拟两个节点共用一张表
+ */
+public class JdbcStateStoreTest {
+
+    private JdbcDataSource dataSource;
+
+    private JdbcStateStore nodeA;
+
+    private JdbcStateStore nodeB;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        StateStoreProperties properties = new StateStoreProperties();
+        properties.setType("jdbc");
+        properties.setNearCacheTtl(100);
+        properties.setPurgeBatchSize(2);
+        nodeA = new JdbcStateStore(dataSource, properties);
+        nodeA.start();
+        nodeB = new JdbcStateStore(dataSource, properties);
+        nodeB.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    @Test
+    public void testSharedBetweenNodes() {
+        Map<String, Object> session = new HashMap<>();
+        session.put("userName", "admin");
+        nodeA.set("online_token:admin:1", session, 60_000);
+        nodeA.flush();
+        Map<?, ?> loaded = nodeB.get("online_token:admin:1", Map.class);
+        assertNotNull(loaded);
+        assertEquals("admin", loaded.get("userName"));
+        long expire = nodeB.getExpire("online_token:admin:1");
+        assertTrue(expire > 0 && expire <= 60_000);
+    }
+
+    @Test
+    public void testWriteBehindCoalesces() {
+        for (int i = 0; i < 10; i++) {
+            nodeA.set("captcha_code:1", String.valueOf(i), 60_000);
+        }
+        // 未落库前本节点可以读到，其他节点读不到
+        assertEquals("9", nodeA.get("captcha_code:1", String.class));
+        assertEquals(1, nodeA.getStats().get("pending"));
+        nodeA.flush();
+        assertEquals(0, nodeA.getStats().get("pending"));
+        assertEquals(1L, nodeA.getStats().get("flushedRows"));
+        assertEquals("9", nodeB.get("captcha_code:1", String.class));
+    }
+
+    @Test
+    public void testDeleteVisibleAfterNearCacheTtl() throws InterruptedException {
+        nodeA.set("online_token:admin:2", "x", 0);
+        nodeA.flush();
+        assertEquals("x", nodeB.get("online_token:admin:2", String.class));
+        nodeA.del("online_token:admin:2");
+        nodeA.flush();
+        assertNull(nodeA.get("online_token:admin:2", String.class));
+        Thread.sleep(150);
+        assertNull(nodeB.get("online_token:admin:2", String.class));
+    }
+
+    @Test
+    public void testExpireAndScan() throws InterruptedException {
+        nodeA.set("online_token:admin:3", "a", 50);
+        nodeA.set("online_token:test:4", "b", 60_000);
+        nodeA.set("online_token:admin:5", "c", 60_000);
+        nodeA.flush();
+        nodeA.set("online_token:admin:6", "d", 60_000);
+        Thread.sleep(100);
+        assertNull(nodeA.get("online_token:admin:3", String.class));
+        List<String> keys = nodeA.scan("online_token:*admin");
+        assertEquals(2, keys.size());
+        assertTrue(keys.contains("online_token:admin:5"));
+        assertTrue(keys.contains("online_token:admin:6"));
+        assertEquals(3, nodeA.scan("online_token:").size());
+        assertTrue(nodeA.expire("online_token:test:4", 200_000));
+        assertTrue(nodeA.getExpire("online_token:test:4") > 60_000);
+    }
+
+    @Test
+    public void testPurge() throws InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            nodeA.set("expired:" + i, i, 10);
+        }
+        nodeA.set("alive", 1, 0);
+        nodeA.flush();
+        Thread.sleep(50);
+        nodeA.purge();
+        Integer rows = new JdbcTemplate(dataSource).queryForObject("SELECT COUNT(*) FROM sys_state", Integer.class);
+        assertEquals(1, rows);
+    }
+}
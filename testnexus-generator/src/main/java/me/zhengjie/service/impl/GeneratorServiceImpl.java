@@ -199,7 +199,7 @@ public class GeneratorServiceImpl implements GeneratorService {
             ZipUtil.zip(file.getPath(), zipPath);
             FileUtil.downloadFile(request, response, new File(zipPath), true);
         } catch (IOException e) {
-            throw new BadRequestException("打包失败");
+            throw new BadRequestException("打包失败", e);
         }
     }
 }
@@ -28,4 +28,10 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Log {
     String value() default "";
+
+    /**
+     * 成功请求的采样率，取值 0 ~ 1，小于 0 时使用配置的默认值。
+     * 修改类请求、异常与慢调用不受采样影响
+     */
+    double sampleRate() default -1;
 }
@@ -18,6 +18,7 @@ package me.zhengjie.aspect;
 import lombok.extern.slf4j.Slf4j;
 import me.zhengjie.domain.SysLog;
 import me.zhengjie.service.SysLogService;
+import me.zhengjie.service.impl.SysLogSampler;
 import me.zhengjie.utils.RequestHolder;
 import me.zhengjie.utils.SecurityUtils;
 import me.zhengjie.utils.StringUtils;
@@ -28,6 +29,7 @@ import org.aspectj.lang.annotation.AfterThrowing;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 import javax.servlet.http.HttpServletRequest;
 
@@ -42,10 +44,13 @@ public class LogAspect {
 
     private final SysLogService sysLogService;
 
+    private final SysLogSampler sysLogSampler;
+
     ThreadLocal<Long> currentTime = new ThreadLocal<>();
 
-    public LogAspect(SysLogService sysLogService) {
+    public LogAspect(SysLogService sysLogService, SysLogSampler sysLogSampler) {
         this.sysLogService = sysLogService;
+        this.sysLogSampler = sysLogSampler;
     }
 
     /**
@@ -66,9 +71,17 @@ public class LogAspect {
         Object result;
         currentTime.set(System.currentTimeMillis());
         result = joinPoint.proceed();
-        SysLog sysLog = new SysLog("INFO",System.currentTimeMillis() - currentTime.get());
+        long time = System.currentTimeMillis() - currentTime.get();
         currentTime.remove();
         HttpServletRequest request = RequestHolder.getHttpServletRequest();
+        // 按采样策略决定是否记录，未被采中的请求不再解析参数与 IP
+        Double sampleRate = sysLogSampler.sample(((MethodSignature) joinPoint.getSignature()).getMethod(),
+                request.getMethod(), time);
+        if (sampleRate == null) {
+            return result;
+        }
+        SysLog sysLog = new SysLog("INFO", time);
+        sysLog.setSampleRate(sampleRate);
         sysLogService.save(getUsername(), StringUtils.getBrowser(request), StringUtils.getIp(request),joinPoint, sysLog);
         return result;
     }
@@ -83,6 +96,7 @@ public class LogAspect {
     public void logAfterThrowing(JoinPoint joinPoint, Throwable e) {
         SysLog sysLog = new SysLog("ERROR",System.currentTimeMillis() - currentTime.get());
         currentTime.remove();
+        sysLog.setSampleRate(1.0);
         sysLog.setExceptionDetail(ThrowableUtil.getStackTrace(e).getBytes());
         HttpServletRequest request = RequestHolder.getHttpServletRequest();
         sysLogService.save(getUsername(), StringUtils.getBrowser(request), StringUtils.getIp(request), (ProceedingJoinPoint)joinPoint, sysLog);
@@ -0,0 +1,165 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import java.io.File;
+import java.util.*;
+
+/**
+ * 系统日志配置
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "sys-log")
+public class SysLogProperties {
+
+    /** 批量写入 */
+    private Writer writer = new Writer();
+
+    /** 参数记录 */
+    private Params params = new Params();
+
+    /** 保留策略 */
+    private Retention retention = new Retention();
+
+    /** 采样策略 */
+    private Policy policy = new Policy();
+
+    /** 冷数据归档 */
+    private Archive archive = new Archive();
+
+    @Data
+    public static class Writer {
+
+        /** 缓冲队列容量 */
+        private int queueCapacity = 10000;
+
+        /** 单批写入的最大条数 */
+        private int batchSize = 200;
+
+        /** 最长刷新间隔 毫秒，队列未攒满时到点也会写入 */
+        private long flushInterval = 1000;
+
+        /** 队列满时的处理方式：drop 丢弃，sample 高水位后按比例采样，block 阻塞等待 */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+        /** block 策略的最长等待时间 毫秒，超时后丢弃 */
+        private long blockTimeout = 100;
+
+        /** sample 策略的高水位，队列占用超过该比例后开始采样 */
+        private double sampleWatermark = 0.8;
+
+        /** sample 策略的采样间隔，高水位时每 N 条保留 1 条，ERROR 日志不参与采样 */
+        private int sampleEvery = 10;
+    }
+
+    @Data
+    public static class Params {
+
+        /** 参数 JSON 的最大长度，超出部分截断 */
+        private int maxLength = 4000;
+
+        /** 对象的最大嵌套深度 */
+        private int maxDepth = 4;
+
+        /** 单个字符串的最大长度 */
+        private int maxStringLength = 512;
+
+        /** 集合、数组、Map 最多记录的元素数量 */
+        private int maxItems = 20;
+
+        /** 敏感字段，字段名包含其中任意一项（忽略大小写）时记录为掩码 */
+        private List<String> sensitiveKeys = new ArrayList<>(Arrays.asList(
+                "password", "pass", "pwd", "token", "secret", "credential", "privateKey", "accessKey"));
+    }
+
+    @Data
+    public static class Retention {
+
+        /** 是否启用定时清理 */
+        private boolean enabled = true;
+
+        /** 日志保留天数 */
+        private int retentionDays = 180;
+
+        /** 表已分区时，提前创建的月份数 */
+        private int precreateMonths = 2;
+
+        /** 检查间隔 毫秒 */
+        private long checkInterval = 3600000;
+
+        /** 分批删除时每批覆盖的主键区间大小 */
+        private int chunkSize = 5000;
+
+        /** 每批删除之间的暂停时间 毫秒 */
+        private long chunkPause = 50;
+    }
+
+    @Data
+    public static class Policy {
+
+        /** 默认采样率，1 表示全部记录 */
+        private double defaultRate = 1.0;
+
+        /** GET、HEAD 等只读请求的采样率 */
+        private double readRate = 1.0;
+
+        /** 慢调用阈值 毫秒，耗时超过该值时必定记录，小于等于 0 时不启用 */
+        private long slowThreshold = 1000;
+
+        /**
+         * 按接口配置的采样率，key 为 类名.方法名，支持以 * 结尾的前缀匹配，
+         * 例如 DictController.* ，优先级高于注解与默认值
+         */
+        private Map<String, Double> rules = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class Archive {
+
+        /** 是否启用归档 */
+        private boolean enabled = true;
+
+        /** 归档文件目录 */
+        private String path = System.getProperty("user.home") + File.separator + "eladmin" + File.separator + "log-archive";
+
+        /** 超过该天数的日志从 sys_log 移入归档文件，归档文件按 retention.retention-days 删除 */
+        private int archiveAfterDays = 30;
+
+        /** 每块的行数，块是裁剪与解压的最小单位 */
+        private int blockRows = 4096;
+
+        /** 每个归档文件的最大行数 */
+        private int segmentRows = 200000;
+
+        /** 检查间隔 毫秒 */
+        private long checkInterval = 3600000;
+    }
+
+    public enum OverflowPolicy {
+        /** 丢弃 */
+        DROP,
+        /** 采样 */
+        SAMPLE,
+        /** 阻塞 */
+        BLOCK
+    }
+}
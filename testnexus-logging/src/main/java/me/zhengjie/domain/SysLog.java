@@ -69,9 +69,19 @@ public class SysLog implements Serializable {
     @ApiModelProperty(value = "请求耗时")
     private Long time;
 
-    @ApiModelProperty(value = "异常详细")
+    @Transient
+    @ApiModelProperty(value = "异常详细", hidden = true)
     private byte[] exceptionDetail;
 
+    @ApiModelProperty(value = "异常指纹，详情保存在 sys_log_error 中")
+    private String errorFingerprint;
+
+    @ApiModelProperty(value = "异常消息，与指纹对应的堆栈合并还原为本次的异常详情")
+    private String errorMessage;
+
+    @ApiModelProperty(value = "采样率，统计时每条按 1/采样率 计数")
+    private Double sampleRate;
+
     /** 创建日期 */
     @CreationTimestamp
     @ApiModelProperty(value = "创建日期：yyyy-MM-dd HH:mm:ss")
@@ -18,8 +18,6 @@ package me.zhengjie.repository;
 import me.zhengjie.domain.SysLog;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -28,12 +26,4 @@ import org.springframework.stereotype.Repository;
  */
 @Repository
 public interface LogRepository extends JpaRepository<SysLog,Long>, JpaSpecificationExecutor<SysLog> {
-
-    /**
-     * 根据日志类型删除信息
-     * @param logType 日志类型
-     */
-    @Modifying
-    @Query(value = "delete from sys_log where log_type = ?1", nativeQuery = true)
-    void deleteByLogType(String logType);
 }
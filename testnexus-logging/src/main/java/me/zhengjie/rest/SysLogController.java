@@ -19,9 +19,11 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
 import me.zhengjie.annotation.Log;
+import me.zhengjie.config.properties.SysLogProperties;
 import me.zhengjie.service.SysLogService;
 import me.zhengjie.service.dto.SysLogQueryCriteria;
 import me.zhengjie.service.dto.SysLogSmallDto;
+import me.zhengjie.service.impl.SysLogSampler;
 import me.zhengjie.utils.PageResult;
 import me.zhengjie.utils.SecurityUtils;
 import org.springframework.data.domain.Pageable;
@@ -43,6 +45,7 @@ import java.io.IOException;
 public class SysLogController {
 
     private final SysLogService sysLogService;
+    private final SysLogSampler sysLogSampler;
 
     @Log("导出数据")
     @ApiOperation("导出数据")
@@ -61,6 +64,25 @@ public class SysLogController {
         criteria.setLogType("ERROR");
         sysLogService.download(sysLogService.queryAll(criteria), response);
     }
+
+    @Log("导出归档数据")
+    @ApiOperation("导出归档数据")
+    @GetMapping(value = "/archive/download")
+    @PreAuthorize("@el.check()")
+    public void exportArchiveLog(HttpServletResponse response, SysLogQueryCriteria criteria) throws IOException {
+        criteria.setLogType("INFO");
+        sysLogService.downloadArchive(criteria, response);
+    }
+
+    @Log("导出归档错误数据")
+    @ApiOperation("导出归档错误数据")
+    @GetMapping(value = "/error/archive/download")
+    @PreAuthorize("@el.check()")
+    public void exportArchiveErrorLog(HttpServletResponse response, SysLogQueryCriteria criteria) throws IOException {
+        criteria.setLogType("ERROR");
+        sysLogService.downloadArchive(criteria, response);
+    }
+
     @GetMapping
     @ApiOperation("日志查询")
     @PreAuthorize("@el.check()")
@@ -91,11 +113,28 @@ public class SysLogController {
     public ResponseEntity<Object> queryErrorLogDetail(@PathVariable Long id){
         return new ResponseEntity<>(sysLogService.findByErrDetail(id), HttpStatus.OK);
     }
+
+    @GetMapping(value = "/policy")
+    @ApiOperation("查询日志采样策略")
+    @PreAuthorize("@el.check()")
+    public ResponseEntity<SysLogProperties.Policy> queryPolicy(){
+        return new ResponseEntity<>(sysLogSampler.getPolicy(), HttpStatus.OK);
+    }
+
+    @PutMapping(value = "/policy")
+    @Log("修改日志采样策略")
+    @ApiOperation("修改日志采样策略")
+    @PreAuthorize("@el.check()")
+    public ResponseEntity<Object> updatePolicy(@RequestBody SysLogProperties.Policy policy){
+        sysLogSampler.updatePolicy(policy);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
     @DeleteMapping(value = "/del/error")
     @Log("删除所有ERROR日志")
     @ApiOperation("删除所有ERROR日志")
     @PreAuthorize("@el.check()")
-    public ResponseEntity<Object> delAllErrorLog(){
+    public ResponseEntity<Object> delAllErrorLog() throws IOException {
         sysLogService.delAllByError();
         return new ResponseEntity<>(HttpStatus.OK);
     }
@@ -104,7 +143,7 @@ public class SysLogController {
     @Log("删除所有INFO日志")
     @ApiOperation("删除所有INFO日志")
     @PreAuthorize("@el.check()")
-    public ResponseEntity<Object> delAllInfoLog(){
+    public ResponseEntity<Object> delAllInfoLog() throws IOException {
         sysLogService.delAllByInfo();
         return new ResponseEntity<>(HttpStatus.OK);
     }
@@ -21,7 +21,6 @@ import me.zhengjie.service.dto.SysLogSmallDto;
 import me.zhengjie.utils.PageResult;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Async;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -57,14 +56,13 @@ public interface SysLogService {
     PageResult<SysLogSmallDto> queryAllByUser(SysLogQueryCriteria criteria, Pageable pageable);
 
     /**
-     * 保存日志数据
+     * 保存日志数据，日志进入批量写入队列，参数在写入线程中序列化
      * @param username 用户
      * @param browser 浏览器
      * @param ip 请求IP
      * @param joinPoint /
      * @param sysLog 日志实体
      */
-    @Async
     void save(String username, String browser, String ip, ProceedingJoinPoint joinPoint, SysLog sysLog);
 
     /**
@@ -83,12 +81,22 @@ public interface SysLogService {
     void download(List<SysLog> sysLogs, HttpServletResponse response) throws IOException;
 
     /**
-     * 删除所有错误日志
+     * 以 CSV 格式流式导出归档中的日志
+     * @param criteria 查询条件
+     * @param response /
+     * @throws IOException /
+     */
+    void downloadArchive(SysLogQueryCriteria criteria, HttpServletResponse response) throws IOException;
+
+    /**
+     * 删除所有错误日志，分批执行，全部删除后返回
+     * @throws IOException /
      */
-    void delAllByError();
+    void delAllByError() throws IOException;
 
     /**
-     * 删除所有INFO日志
+     * 删除所有INFO日志，分批执行，全部删除后返回
+     * @throws IOException /
      */
-    void delAllByInfo();
+    void delAllByInfo() throws IOException;
 }
@@ -0,0 +1,500 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.service.impl;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONFactory;
+import com.alibaba.fastjson2.writer.FieldWriter;
+import com.alibaba.fastjson2.writer.ObjectWriter;
+import me.zhengjie.config.properties.SysLogProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.multipart.MultipartFile;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * 日志参数序列化。请求线程把参数复制为只含 Map、List 与简单值的快照，对象字段取自 fastjson2 的字段写入器，
+ * 与接口输出一致地遵循 @JSONField 与 getter，之后参数对象再被修改也不影响日志。
+ * 复制时即按深度、字符串长度、条数与总长度上限截取，大参数在请求线程上的开销有上限；
+ * 敏感字段替换为掩码，超出上限的部分以截断标记代替，写入线程只负责按长度上限输出
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Component
+public class LogParamSerializer {
+
+    private static final String MASK = "\"******\"";
+
+    /** 快照中敏感字段的占位 */
+    private static final Object MASKED = new Object();
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT)
+            .withZone(ZoneId.systemDefault());
+
+    private final SysLogProperties.Params properties;
+
+    private final String[] sensitiveKeys;
+
+    public LogParamSerializer(SysLogProperties properties) {
+        this.properties = properties.getParams();
+        this.sensitiveKeys = this.properties.getSensitiveKeys().stream()
+                .map(key -> key.toLowerCase(Locale.ROOT)).toArray(String[]::new);
+    }
+
+    /**
+     * 在请求线程中生成参数快照，过滤掉请求、响应与文件等不需要记录的参数
+     * @param method 方法
+     * @param args 参数
+     * @return /
+     */
+    public Arguments capture(Method method, Object[] args) {
+        Parameter[] parameters = method.getParameters();
+        List<String> names = new ArrayList<>(args.length);
+        List<Object> values = new ArrayList<>(args.length);
+        BitSet bodies = new BitSet(args.length);
+        Budget budget = new Budget(properties.getMaxLength());
+        for (int i = 0; i < parameters.length; i++) {
+            Object arg = args[i];
+            if (isSkipped(arg)) {
+                continue;
+            }
+            // RequestBody 注解修饰的参数，字段直接作为请求参数
+            if (parameters[i].getAnnotation(RequestBody.class) != null) {
+                bodies.set(values.size());
+            }
+            String name = parameters[i].getName();
+            names.add(name);
+            values.add(isSensitive(name) ? MASKED : snapshot(arg, 1, budget));
+        }
+        return new Arguments(names.toArray(new String[0]), values.toArray(), bodies);
+    }
+
+    /**
+     * 生成单个参数的快照，取值出错时只记录类型
+     */
+    private Object snapshot(Object value, int depth, Budget budget) {
+        try {
+            return copyValue(value, depth, budget, Collections.newSetFromMap(new IdentityHashMap<>()));
+        } catch (RuntimeException e) {
+            return "[" + value.getClass().getSimpleName() + "]";
+        }
+    }
+
+    /**
+     * 复制参数，只访问上限以内的元素与字段；总长度超出上限后不再继续，输出时按长度截断
+     * @param value 参数
+     * @param depth 当前深度
+     * @param budget 剩余长度
+     * @param path 当前路径上的对象，用于识别循环引用
+     * @return /
+     */
+    private Object copyValue(Object value, int depth, Budget budget, Set<Object> path) {
+        if (value == null || value instanceof Number || value instanceof Boolean) {
+            budget.spend(String.valueOf(value).length());
+            return value;
+        }
+        if (value instanceof CharSequence || value instanceof Character) {
+            return limit(value.toString(), budget);
+        }
+        if (value instanceof Enum) {
+            return limit(((Enum<?>) value).name(), budget);
+        }
+        if (value instanceof Date) {
+            return limit(DATE_FORMATTER.format(((Date) value).toInstant()), budget);
+        }
+        String placeholder = placeholder(value);
+        if (placeholder != null) {
+            return limit(placeholder, budget);
+        }
+        if (depth > properties.getMaxDepth()) {
+            return limit("[depth limit]", budget);
+        }
+        if (!path.add(value)) {
+            return limit("[circular reference]", budget);
+        }
+        try {
+            if (value instanceof Map) {
+                return copyMap((Map<?, ?>) value, depth, budget, path);
+            }
+            if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                return copyItems(collection.iterator(), collection.size(), depth, budget, path);
+            }
+            if (value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                Iterator<Object> items = new Iterator<Object>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < length;
+                    }
+
+                    @Override
+                    public Object next() {
+                        return Array.get(value, index++);
+                    }
+                };
+                return copyItems(items, length, depth, budget, path);
+            }
+            return copyObject(value, depth, budget, path);
+        } finally {
+            path.remove(value);
+        }
+    }
+
+    private Map<String, Object> copyMap(Map<?, ?> map, int depth, Budget budget, Set<Object> path) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (budget.exhausted()) {
+                break;
+            }
+            if (copy.size() >= properties.getMaxItems()) {
+                copy.put("...", "+" + (map.size() - properties.getMaxItems()) + " entries");
+                break;
+            }
+            putMember(copy, String.valueOf(entry.getKey()), entry.getValue(), depth, budget, path);
+        }
+        return copy;
+    }
+
+    private List<Object> copyItems(Iterator<?> items, int size, int depth, Budget budget, Set<Object> path) {
+        List<Object> copy = new ArrayList<>(Math.min(size, properties.getMaxItems() + 1));
+        while (items.hasNext() && !budget.exhausted()) {
+            if (copy.size() >= properties.getMaxItems()) {
+                copy.add("...+" + (size - properties.getMaxItems()) + " items");
+                break;
+            }
+            copy.add(copyValue(items.next(), depth + 1, budget, path));
+        }
+        return copy;
+    }
+
+    /**
+     * 对象按 fastjson2 的字段写入器取值，字段名与取舍与接口输出一致；
+     * 没有字段的类型（如 LocalDateTime）按 fastjson2 的输出记录
+     */
+    private Object copyObject(Object value, int depth, Budget budget, Set<Object> path) {
+        ObjectWriter<?> writer = JSONFactory.getDefaultObjectWriterProvider().getObjectWriter(value.getClass());
+        List<FieldWriter> fields = writer.getFieldWriters();
+        if (fields.isEmpty()) {
+            return copyValue(JSON.parse(JSON.toJSONString(value, DATE_FORMAT)), depth, budget, path);
+        }
+        Map<String, Object> copy = new LinkedHashMap<>();
+        for (FieldWriter field : fields) {
+            if (budget.exhausted()) {
+                break;
+            }
+            @SuppressWarnings("unchecked")
+            Object fieldValue = field.getFieldValue(value);
+            putMember(copy, field.fieldName, fieldValue, depth, budget, path);
+        }
+        return copy;
+    }
+
+    private void putMember(Map<String, Object> copy, String name, Object value, int depth, Budget budget, Set<Object> path) {
+        budget.spend(name.length());
+        copy.put(name, isSensitive(name) ? MASKED : copyValue(value, depth + 1, budget, path));
+    }
+
+    private String limit(String value, Budget budget) {
+        int max = properties.getMaxStringLength();
+        if (value.length() > max) {
+            value = value.substring(0, max) + "...(+" + (value.length() - max) + " chars)";
+        }
+        budget.spend(value.length());
+        return value;
+    }
+
+    /**
+     * 序列化参数
+     * @param arguments 参数快照
+     * @return /
+     */
+    public Result serialize(Arguments arguments) {
+        Output out = new Output(properties.getMaxLength());
+        String username = null;
+        try {
+            out.append('{');
+            for (int i = 0; i < arguments.values.length; i++) {
+                Object value = arguments.values[i];
+                if (arguments.bodies.get(i)) {
+                    if (value instanceof Map) {
+                        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                            username = firstNonNull(username, writeMember(out, (String) entry.getKey(), entry.getValue(), true));
+                        }
+                        continue;
+                    }
+                    if (value instanceof List) {
+                        writeKey(out, "reqBodyList");
+                        writeValue(out, value);
+                        continue;
+                    }
+                }
+                username = firstNonNull(username, writeMember(out, arguments.names[i], value, true));
+            }
+            out.append('}');
+        } catch (Output.Overflow e) {
+            out.truncate();
+        }
+        return new Result(out.toString(), username);
+    }
+
+    private String writeMember(Output out, String name, Object value, boolean top) {
+        writeKey(out, name);
+        writeValue(out, value);
+        return top && "username".equals(name) && value instanceof String ? (String) value : null;
+    }
+
+    private void writeValue(Output out, Object value) {
+        if (value == null) {
+            out.append("null");
+        } else if (value == MASKED) {
+            out.append(MASK);
+        } else if (value instanceof BigDecimal) {
+            out.append(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value.toString());
+        } else if (value instanceof Map) {
+            out.append('{');
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeMember(out, (String) entry.getKey(), entry.getValue(), false);
+            }
+            out.append('}');
+        } else if (value instanceof List) {
+            out.append('[');
+            for (Object item : (List<?>) value) {
+                out.comma();
+                writeValue(out, item);
+            }
+            out.append(']');
+        } else {
+            out.appendQuoted(value.toString());
+        }
+    }
+
+    private void writeKey(Output out, String key) {
+        out.comma();
+        out.appendQuoted(key);
+        out.append(':');
+    }
+
+    private boolean isSensitive(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        for (String key : sensitiveKeys) {
+            if (lower.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSkipped(Object arg) {
+        return arg instanceof ServletRequest || arg instanceof ServletResponse || arg instanceof MultipartFile
+                || arg instanceof InputStream || arg instanceof Reader;
+    }
+
+    /**
+     * 文件、流等不记录内容，只记录说明
+     */
+    private static String placeholder(Object value) {
+        if (value instanceof byte[]) {
+            return "[binary " + ((byte[]) value).length + " bytes]";
+        }
+        if (value instanceof MultipartFile) {
+            MultipartFile file = (MultipartFile) value;
+            return "[file " + file.getOriginalFilename() + ", " + file.getSize() + " bytes]";
+        }
+        if (isSkipped(value)) {
+            return "[" + value.getClass().getSimpleName() + "]";
+        }
+        return null;
+    }
+
+    private static String firstNonNull(String current, String candidate) {
+        return current != null ? current : candidate;
+    }
+
+    /**
+     * 参数快照
+     */
+    public static final class Arguments {
+
+        private final String[] names;
+
+        private final Object[] values;
+
+        private final BitSet bodies;
+
+        private Arguments(String[] names, Object[] values, BitSet bodies) {
+            this.names = names;
+            this.values = values;
+            this.bodies = bodies;
+        }
+    }
+
+    /**
+     * 快照的剩余长度，按字符串与字段名的长度累计，不超过实际输出的长度
+     */
+    private static final class Budget {
+
+        private long remaining;
+
+        private Budget(int maxLength) {
+            this.remaining = maxLength;
+        }
+
+        private void spend(int length) {
+            remaining -= length;
+        }
+
+        /** 用尽后实际输出一定超出长度上限，后续内容会被截断，不必再复制 */
+        private boolean exhausted() {
+            return remaining < 0;
+        }
+    }
+
+    /**
+     * 序列化结果
+     */
+    public static final class Result {
+
+        private final String json;
+
+        /** 参数中的 username，未登录的请求（如登录）用于补全操作用户 */
+        private final String username;
+
+        private Result(String json, String username) {
+            this.json = json;
+            this.username = username;
+        }
+
+        public String getJson() {
+            return json;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+    }
+
+    /**
+     * 带长度上限的输出，超出上限时直接中断序列化
+     */
+    private static final class Output {
+
+        private final StringBuilder builder = new StringBuilder(256);
+
+        private final int maxLength;
+
+        /** 当前层级是否需要在下一个元素前补逗号 */
+        private boolean needComma;
+
+        private Output(int maxLength) {
+            this.maxLength = maxLength;
+        }
+
+        private Output append(char c) {
+            if (c == '{' || c == '[') {
+                needComma = false;
+            } else if (c == '}' || c == ']') {
+                needComma = true;
+            } else if (c == ':') {
+                needComma = false;
+            }
+            builder.append(c);
+            check();
+            return this;
+        }
+
+        private Output append(String value) {
+            builder.append(value);
+            needComma = true;
+            check();
+            return this;
+        }
+
+        private void appendQuoted(String value) {
+            builder.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': builder.append("\\\""); break;
+                    case '\\': builder.append("\\\\"); break;
+                    case '\n': builder.append("\\n"); break;
+                    case '\r': builder.append("\\r"); break;
+                    case '\t': builder.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            builder.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            builder.append(c);
+                        }
+                }
+                if (builder.length() > maxLength) {
+                    throw Overflow.INSTANCE;
+                }
+            }
+            builder.append('"');
+            needComma = true;
+            check();
+        }
+
+        private void comma() {
+            if (needComma) {
+                builder.append(',');
+                needComma = false;
+            }
+        }
+
+        private void check() {
+            if (builder.length() > maxLength) {
+                throw Overflow.INSTANCE;
+            }
+        }
+
+        private void truncate() {
+            builder.setLength(Math.min(builder.length(), maxLength));
+            builder.append("...(truncated)");
+        }
+
+        @Override
+        public String toString() {
+            return builder.toString();
+        }
+
+        private static final class Overflow extends RuntimeException {
+
+            private static final Overflow INSTANCE = new Overflow();
+
+            private Overflow() {
+                super("overflow", null, false, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,664 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.config.properties.SysLogProperties;
+import me.zhengjie.domain.SysLog;
+import me.zhengjie.service.dto.SysLogQueryCriteria;
+import me.zhengjie.utils.StringUtils;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 系统日志冷数据归档。超过 archive-after-days 的日志定期从 sys_log 移入本地的列式压缩文件（见 SysLogSegment），
+ * 查询时热数据走数据库，冷数据按时间范围与日志类型裁剪后扫描归档文件，两者合并分页。
+ * 归档按 ID 顺序取截止时间之前的日志，ID 与创建时间并不严格同序，库中可能留有 ID 小于归档范围的日志；
+ * 合并时按 ID 倒序把归档结果接在数据库结果之后。
+ * 每个块中符合条件的行数按查询条件缓存，翻页时总数直接取缓存，并按块计数跳过偏移之前的块
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+@Component
+public class SysLogArchive implements MetricsSource {
+
+    private static final String SELECT_SQL = "SELECT log_id, create_time, time, sample_rate, log_type, username, description, " +
+            "method, request_ip, address, browser, params, error_fingerprint, error_message, exception_detail FROM sys_log " +
+            "WHERE log_id > ? AND log_id <= ? AND create_time < ? ORDER BY log_id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SysLogErrorStore errorStore;
+
+    private final SysLogProperties.Archive properties;
+
+    private final SysLogProperties.Retention retention;
+
+    private final File directory;
+
+    /**
+     * 按 ID 倒序排列的归档段，整体替换
+     */
+    private volatile List<SysLogSegment> segments = Collections.emptyList();
+
+    /**
+     * 查询条件 -> 各块中符合条件的行数，段列表变化后失效
+     */
+    private final Cache<Filter, Counts> counts = Caffeine.newBuilder().maximumSize(64).build();
+
+    private final AtomicLong archivedRows = new AtomicLong();
+    private final AtomicLong scannedBlocks = new AtomicLong();
+    private final AtomicLong prunedBlocks = new AtomicLong();
+    private final AtomicLong expiredSegments = new AtomicLong();
+    private final AtomicLong countHits = new AtomicLong();
+    private volatile long lastRunMillis;
+    private volatile Date lastRunTime;
+
+    private ScheduledExecutorService scheduler;
+
+    public SysLogArchive(JdbcTemplate jdbcTemplate, SysLogErrorStore errorStore, SysLogProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.errorStore = errorStore;
+        this.properties = properties.getArchive();
+        this.retention = properties.getRetention();
+        this.directory = new File(this.properties.getPath());
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            log.error("日志归档目录创建失败：{}", directory.getAbsolutePath());
+            return;
+        }
+        load();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "el-log-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runQuietly, TimeUnit.MINUTES.toMillis(2),
+                properties.getCheckInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 执行一次归档：把过期的日志写入新的段文件后从 sys_log 中删除，再删除超过保留天数的段
+     * @throws IOException /
+     */
+    public synchronized void run() throws IOException {
+        long start = System.currentTimeMillis();
+        Timestamp cutoff = Timestamp.valueOf(LocalDate.now().minusDays(properties.getArchiveAfterDays()).atStartOfDay());
+        long lastId = segments.isEmpty() ? 0 : segments.get(0).getMaxId();
+        // 上次写完文件后未来得及删除的行。ID 与创建时间并不严格同序，写入时晚于截止时间而被跳过的行
+        // 可能夹在段的 ID 范围内，只能按该段写入时的截止时间删除，不能用本次的截止时间
+        if (lastId > 0) {
+            SysLogSegment newest = segments.get(0);
+            Timestamp segmentCutoff = new Timestamp(newest.getCutoff());
+            Long leftover = jdbcTemplate.queryForObject("SELECT MIN(log_id) FROM sys_log WHERE log_id >= ? AND log_id <= ? " +
+                    "AND create_time < ?", Long.class, newest.getMinId(), lastId, segmentCutoff);
+            if (leftover != null) {
+                deleteArchived(leftover - 1, lastId, segmentCutoff);
+            }
+        }
+        // 截止时间之前的最大 ID 作为扫描上界，主键扫描不会进入之后的热数据
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(log_id) FROM sys_log WHERE create_time < ?", Long.class, cutoff);
+        while (maxId != null && lastId < maxId) {
+            SysLogSegment segment = archive(lastId, maxId, cutoff);
+            if (segment == null) {
+                break;
+            }
+            deleteArchived(lastId, segment.getMaxId(), cutoff);
+            addSegment(segment);
+            archivedRows.addAndGet(segment.getRows());
+            log.info("sys_log 归档 {} 条：{}", segment.getRows(), segment.getFile().getName());
+            lastId = segment.getMaxId();
+        }
+        expire();
+        lastRunMillis = System.currentTimeMillis() - start;
+        lastRunTime = new Date();
+    }
+
+    /**
+     * 删除归档中指定类型的日志，保留其他类型的块
+     * @param logType 日志类型
+     * @throws IOException /
+     */
+    public synchronized void clear(String logType) throws IOException {
+        List<SysLogSegment> result = new ArrayList<>(segments.size());
+        for (SysLogSegment segment : segments) {
+            if (segment.getBlocks().stream().noneMatch(b -> logType.equals(b.logType) || b.logType.isEmpty())) {
+                result.add(segment);
+                continue;
+            }
+            SysLogSegment rewritten = null;
+            if (segment.getBlocks().stream().anyMatch(b -> !logType.equals(b.logType))) {
+                rewritten = rewrite(segment, logType);
+            }
+            // 段文件名由 ID 范围决定，重写后可能与原文件同名
+            if (rewritten == null || !rewritten.getFile().equals(segment.getFile())) {
+                Files.deleteIfExists(segment.getFile().toPath());
+            }
+            if (rewritten != null) {
+                result.add(rewritten);
+            }
+        }
+        result.sort(Comparator.comparingLong(SysLogSegment::getMaxId).reversed());
+        segments = Collections.unmodifiableList(result);
+    }
+
+    /**
+     * 合并数据库的分页结果与归档中的数据。
+     * 归档的日志总是排在数据库结果之后并按 ID 倒序输出，与默认的 ID、创建时间倒序一致；
+     * 按其他字段排序时只对数据库中的部分生效
+     * @param hot 数据库的查询结果
+     * @param criteria 查询条件
+     * @param pageable 分页参数
+     * @return /
+     */
+    public Page<SysLog> merge(Page<SysLog> hot, SysLogQueryCriteria criteria, Pageable pageable) {
+        List<SysLogSegment> current = segments;
+        if (current.isEmpty() || pageable.isUnpaged()) {
+            return hot;
+        }
+        Filter filter = new Filter(criteria);
+        Counts matched = count(current, filter);
+        List<SysLog> content = new ArrayList<>(hot.getContent());
+        long need = pageable.getPageSize() - content.size();
+        if (need > 0 && matched.total > 0) {
+            long offset = Math.max(0, pageable.getOffset() - hot.getTotalElements());
+            page(matched, filter, offset, need, content::add);
+        }
+        return new PageImpl<>(content, pageable, hot.getTotalElements() + matched.total);
+    }
+
+    /**
+     * 按 ID 倒序依次输出归档中符合条件的日志，不会一次性加载到内存
+     * @param criteria 查询条件
+     * @param consumer /
+     */
+    public void forEach(SysLogQueryCriteria criteria, Consumer<SysLog> consumer) {
+        scan(new Filter(criteria), consumer);
+    }
+
+    /**
+     * 按 ID 查询归档中的日志
+     * @param id 日志ID
+     * @return /
+     */
+    public Optional<SysLog> findById(long id) {
+        for (SysLogSegment segment : segments) {
+            if (id < segment.getMinId() || id > segment.getMaxId()) {
+                continue;
+            }
+            try (SysLogSegment.Reader reader = segment.reader()) {
+                for (SysLogSegment.BlockMeta meta : segment.getBlocks()) {
+                    if (id < meta.minId || id > meta.maxId) {
+                        continue;
+                    }
+                    SysLogSegment.Block block = reader.read(meta);
+                    for (int i = 0; i < block.rows(); i++) {
+                        SysLog sysLog = block.row(i);
+                        if (sysLog.getId() == id) {
+                            return Optional.of(sysLog);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.error("读取归档文件失败：{}", e.getMessage(), e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sys_log_archive";
+    }
+
+    /**
+     * 获取统计信息（监控用）
+     * @return /
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        List<SysLogSegment> current = segments;
+        Map<String, Object> stats = new LinkedHashMap<>(12);
+        stats.put("segments", current.size());
+        stats.put("rows", current.stream().mapToLong(SysLogSegment::getRows).sum());
+        stats.put("bytes", current.stream().mapToLong(s -> s.getFile().length()).sum());
+        stats.put("archivedRows", archivedRows.get());
+        stats.put("scannedBlocks", scannedBlocks.get());
+        stats.put("prunedBlocks", prunedBlocks.get());
+        stats.put("expiredSegments", expiredSegments.get());
+        stats.put("countHits", countHits.get());
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("lastRunTime", lastRunTime);
+        return stats;
+    }
+
+    private void runQuietly() {
+        try {
+            run();
+        } catch (Exception e) {
+            log.error("系统日志归档失败：{}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 读取已有的段文件，清理上次异常退出留下的临时文件
+     */
+    private void load() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<SysLogSegment> loaded = new ArrayList<>(files.length);
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                if (!file.delete()) {
+                    log.warn("归档临时文件删除失败：{}", file.getName());
+                }
+            } else if (file.getName().endsWith(SysLogSegment.SUFFIX)) {
+                try {
+                    loaded.add(SysLogSegment.open(file));
+                } catch (IOException e) {
+                    log.error("跳过损坏的归档文件 {}：{}", file.getName(), e.getMessage());
+                }
+            }
+        }
+        loaded.sort(Comparator.comparingLong(SysLogSegment::getMaxId).reversed());
+        segments = Collections.unmodifiableList(loaded);
+    }
+
+    /**
+     * 写出一个段文件，没有需要归档的数据时返回 null
+     */
+    private SysLogSegment archive(long fromId, long toId, Timestamp cutoff) throws IOException {
+        SysLogSegment.Writer writer = new SysLogSegment.Writer(directory, properties.getBlockRows(), cutoff.getTime());
+        try {
+            long lastId = fromId;
+            Map<String, String> traces = new HashMap<>(4);
+            Map<String, Integer> counts = new HashMap<>(4);
+            while (writer.getRows() < properties.getSegmentRows()) {
+                List<SysLog> rows = jdbcTemplate.query(SELECT_SQL, (rs, i) -> {
+                    SysLog sysLog = new SysLog(rs.getString("log_type"), rs.getObject("time", Long.class));
+                    sysLog.setId(rs.getLong("log_id"));
+                    sysLog.setCreateTime(rs.getTimestamp("create_time"));
+                    sysLog.setSampleRate(rs.getObject("sample_rate", Double.class));
+                    sysLog.setUsername(rs.getString("username"));
+                    sysLog.setDescription(rs.getString("description"));
+                    sysLog.setMethod(rs.getString("method"));
+                    sysLog.setRequestIp(rs.getString("request_ip"));
+                    sysLog.setAddress(rs.getString("address"));
+                    sysLog.setBrowser(rs.getString("browser"));
+                    sysLog.setParams(rs.getString("params"));
+                    sysLog.setErrorFingerprint(rs.getString("error_fingerprint"));
+                    sysLog.setErrorMessage(rs.getString("error_message"));
+                    sysLog.setExceptionDetail(rs.getBytes("exception_detail"));
+                    return sysLog;
+                }, lastId, toId, cutoff, Math.min(properties.getBlockRows(), properties.getSegmentRows() - writer.getRows()));
+                if (rows.isEmpty()) {
+                    break;
+                }
+                for (SysLog sysLog : rows) {
+                    // 旧数据的异常详情转存到 sys_log_error，归档中只保留指纹
+                    if (sysLog.getErrorFingerprint() == null && sysLog.getExceptionDetail() != null) {
+                        String trace = new String(sysLog.getExceptionDetail());
+                        String fingerprint = SysLogErrorStore.fingerprint(trace);
+                        sysLog.setErrorFingerprint(fingerprint);
+                        sysLog.setErrorMessage(SysLogErrorStore.messages(trace));
+                        traces.putIfAbsent(fingerprint, trace);
+                        counts.merge(fingerprint, 1, Integer::sum);
+                    }
+                    writer.append(sysLog);
+                }
+                lastId = rows.get(rows.size() - 1).getId();
+            }
+            if (writer.getRows() == 0) {
+                writer.close();
+                return null;
+            }
+            if (!counts.isEmpty()) {
+                errorStore.record(traces, counts, new Timestamp(System.currentTimeMillis()));
+            }
+            return writer.finish();
+        } catch (IOException | RuntimeException e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 分批删除已写入归档的行
+     */
+    private void deleteArchived(long fromId, long toId, Timestamp cutoff) {
+        long chunkSize = retention.getChunkSize();
+        for (long from = fromId; from < toId; from += chunkSize) {
+            jdbcTemplate.update("DELETE FROM sys_log WHERE log_id > ? AND log_id <= ? AND create_time < ?",
+                    from, Math.min(toId, from + chunkSize), cutoff);
+            try {
+                TimeUnit.MILLISECONDS.sleep(retention.getChunkPause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 删除所有日志都已超过保留天数的段
+     */
+    private void expire() throws IOException {
+        long cutoff = Timestamp.valueOf(LocalDate.now().minusDays(retention.getRetentionDays()).atStartOfDay()).getTime();
+        List<SysLogSegment> result = new ArrayList<>(segments.size());
+        for (SysLogSegment segment : segments) {
+            if (segment.getMaxTime() < cutoff) {
+                Files.deleteIfExists(segment.getFile().toPath());
+                expiredSegments.incrementAndGet();
+            } else {
+                result.add(segment);
+            }
+        }
+        segments = Collections.unmodifiableList(result);
+    }
+
+    private void addSegment(SysLogSegment segment) {
+        List<SysLogSegment> result = new ArrayList<>(segments.size() + 1);
+        result.add(segment);
+        result.addAll(segments);
+        segments = Collections.unmodifiableList(result);
+    }
+
+    private SysLogSegment rewrite(SysLogSegment segment, String logType) throws IOException {
+        SysLogSegment.Writer writer = new SysLogSegment.Writer(directory, properties.getBlockRows(), segment.getCutoff());
+        try (SysLogSegment.Reader reader = segment.reader()) {
+            for (SysLogSegment.BlockMeta meta : segment.getBlocks()) {
+                if (meta.logType.equals(logType)) {
+                    continue;
+                }
+                if (meta.logType.isEmpty()) {
+                    // 类型混合的块逐行过滤
+                    SysLogSegment.Block block = reader.read(meta);
+                    for (int i = 0; i < block.rows(); i++) {
+                        if (!logType.equals(block.logType(i))) {
+                            writer.append(block.row(i));
+                        }
+                    }
+                } else {
+                    writer.appendRaw(meta, reader.readRaw(meta));
+                }
+            }
+            if (writer.getRows() == 0) {
+                writer.close();
+                return null;
+            }
+            return writer.finish();
+        } catch (IOException | RuntimeException e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 统计各块中符合条件的行数，同一查询条件翻页时直接复用
+     */
+    private Counts count(List<SysLogSegment> current, Filter filter) {
+        Counts cached = counts.getIfPresent(filter);
+        if (cached != null && cached.segments == current) {
+            countHits.incrementAndGet();
+            return cached;
+        }
+        long[][] blocks = new long[current.size()][];
+        long total = 0;
+        for (int s = 0; s < current.size(); s++) {
+            SysLogSegment segment = current.get(s);
+            List<SysLogSegment.BlockMeta> metas = segment.getBlocks();
+            blocks[s] = new long[metas.size()];
+            if (!filter.overlaps(segment.getMinTime(), segment.getMaxTime())) {
+                prunedBlocks.addAndGet(metas.size());
+                continue;
+            }
+            try (SysLogSegment.Reader reader = segment.reader()) {
+                for (int b = 0; b < metas.size(); b++) {
+                    SysLogSegment.BlockMeta meta = metas.get(b);
+                    if (!filter.accepts(meta)) {
+                        prunedBlocks.incrementAndGet();
+                        continue;
+                    }
+                    // 整块都符合条件时只用索引计数
+                    if (filter.coversAll(meta)) {
+                        blocks[s][b] = meta.rows;
+                    } else {
+                        SysLogSegment.Block block = reader.read(meta);
+                        scannedBlocks.incrementAndGet();
+                        for (int i = 0; i < block.rows(); i++) {
+                            if (filter.test(block, i)) {
+                                blocks[s][b]++;
+                            }
+                        }
+                    }
+                    total += blocks[s][b];
+                }
+            } catch (IOException e) {
+                // 扫描期间段文件可能被过期清理
+                log.warn("读取归档文件失败：{}", e.getMessage());
+            }
+        }
+        Counts computed = new Counts(current, blocks, total);
+        counts.put(filter, computed);
+        return computed;
+    }
+
+    /**
+     * 按 ID 倒序输出 [offset, offset + limit) 区间内的行，偏移之前的块按计数整块跳过，不解压
+     */
+    private void page(Counts matched, Filter filter, long offset, long limit, Consumer<SysLog> consumer) {
+        long skipped = 0;
+        long emitted = 0;
+        for (int s = 0; s < matched.segments.size() && emitted < limit; s++) {
+            long[] blocks = matched.blocks[s];
+            long rows = Arrays.stream(blocks).sum();
+            if (rows == 0 || skipped + rows <= offset) {
+                skipped += rows;
+                continue;
+            }
+            SysLogSegment segment = matched.segments.get(s);
+            try (SysLogSegment.Reader reader = segment.reader()) {
+                for (int b = blocks.length - 1; b >= 0 && emitted < limit; b--) {
+                    if (blocks[b] == 0 || skipped + blocks[b] <= offset) {
+                        skipped += blocks[b];
+                        continue;
+                    }
+                    SysLogSegment.Block block = reader.read(segment.getBlocks().get(b));
+                    scannedBlocks.incrementAndGet();
+                    for (int i = block.rows() - 1; i >= 0 && emitted < limit; i--) {
+                        if (!filter.test(block, i)) {
+                            continue;
+                        }
+                        if (skipped < offset) {
+                            skipped++;
+                        } else {
+                            consumer.accept(block.row(i));
+                            emitted++;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("读取归档文件失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 按 ID 倒序扫描，输出所有符合条件的行
+     */
+    private void scan(Filter filter, Consumer<SysLog> consumer) {
+        for (SysLogSegment segment : segments) {
+            if (!filter.overlaps(segment.getMinTime(), segment.getMaxTime())) {
+                prunedBlocks.addAndGet(segment.getBlocks().size());
+                continue;
+            }
+            try (SysLogSegment.Reader reader = segment.reader()) {
+                List<SysLogSegment.BlockMeta> blocks = segment.getBlocks();
+                for (int b = blocks.size() - 1; b >= 0; b--) {
+                    SysLogSegment.BlockMeta meta = blocks.get(b);
+                    if (!filter.accepts(meta)) {
+                        prunedBlocks.incrementAndGet();
+                        continue;
+                    }
+                    SysLogSegment.Block block = reader.read(meta);
+                    scannedBlocks.incrementAndGet();
+                    for (int i = block.rows() - 1; i >= 0; i--) {
+                        if (filter.test(block, i)) {
+                            consumer.accept(block.row(i));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // 扫描期间段文件可能被过期清理
+                log.warn("读取归档文件失败：{}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 各块中符合条件的行数，与统计时的段列表对应
+     */
+    private static class Counts {
+
+        private final List<SysLogSegment> segments;
+
+        private final long[][] blocks;
+
+        private final long total;
+
+        private Counts(List<SysLogSegment> segments, long[][] blocks, long total) {
+            this.segments = segments;
+            this.blocks = blocks;
+            this.total = total;
+        }
+    }
+
+    /**
+     * 归档查询条件，与 SysLogQueryCriteria 的数据库查询语义保持一致
+     */
+    private static class Filter {
+
+        private final long minTime;
+
+        private final long maxTime;
+
+        private final String logType;
+
+        private final String username;
+
+        private final String blurry;
+
+        private Filter(SysLogQueryCriteria criteria) {
+            List<Timestamp> createTime = criteria.getCreateTime();
+            boolean between = createTime != null && createTime.size() >= 2;
+            this.minTime = between ? createTime.get(0).getTime() : Long.MIN_VALUE;
+            this.maxTime = between ? createTime.get(1).getTime() : Long.MAX_VALUE;
+            this.logType = criteria.getLogType();
+            this.username = criteria.getUsername();
+            this.blurry = StringUtils.isBlank(criteria.getBlurry()) ? null : criteria.getBlurry().toLowerCase();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Filter)) {
+                return false;
+            }
+            Filter that = (Filter) o;
+            return minTime == that.minTime && maxTime == that.maxTime && Objects.equals(logType, that.logType)
+                    && Objects.equals(username, that.username) && Objects.equals(blurry, that.blurry);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(minTime, maxTime, logType, username, blurry);
+        }
+
+        private boolean overlaps(long from, long to) {
+            return from <= maxTime && to >= minTime;
+        }
+
+        private boolean accepts(SysLogSegment.BlockMeta meta) {
+            return overlaps(meta.minTime, meta.maxTime)
+                    && (logType == null || meta.logType.isEmpty() || logType.equals(meta.logType));
+        }
+
+        private boolean coversAll(SysLogSegment.BlockMeta meta) {
+            return meta.minTime >= minTime && meta.maxTime <= maxTime && username == null && blurry == null
+                    && (logType == null || logType.equals(meta.logType));
+        }
+
+        private boolean test(SysLogSegment.Block block, int row) {
+            long time = block.createTime(row);
+            if (time < minTime || time > maxTime) {
+                return false;
+            }
+            if (logType != null && !logType.equals(block.logType(row))) {
+                return false;
+            }
+            if (username != null && !username.equals(block.username(row))) {
+                return false;
+            }
+            if (blurry != null) {
+                // 与 MySQL 不区分大小写的排序规则保持一致
+                for (String value : block.blurryValues(row)) {
+                    if (value != null && value.toLowerCase().contains(blurry)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return true;
+        }
+    }
+}
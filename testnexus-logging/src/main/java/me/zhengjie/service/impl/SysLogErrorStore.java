@@ -0,0 +1,363 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.domain.SysLog;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 异常堆栈去重存储。堆栈归一化（去掉异常消息、行号以外的动态部分）后计算指纹，
+ * 相同指纹的堆栈只在 sys_log_error 中保存一份 Deflate 压缩后的原文并累计出现次数。
+ * sys_log 记录指纹与本次的异常消息（各异常行），查看详情时按指纹加载堆栈，再替换回本次的消息
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+@Component
+public class SysLogErrorStore implements MetricsSource {
+
+    private static final String TABLE = "sys_log_error";
+
+    /** IN 查询每次最多的参数个数 */
+    private static final int IN_CHUNK = 500;
+
+    private static final String INSERT_SQL = "INSERT INTO " + TABLE + " (fingerprint, detail, occurrences, first_time, last_time) " +
+            "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE occurrences = occurrences + VALUES(occurrences), last_time = VALUES(last_time)";
+
+    /** 单条日志保存的异常消息最大长度，超出的异常行沿用堆栈原文 */
+    private static final int MAX_MESSAGE_LENGTH = 4000;
+
+    private static final String UPDATE_SQL = "UPDATE " + TABLE + " SET occurrences = occurrences + ?, last_time = ? WHERE fingerprint = ?";
+
+    /** 归一化规则：动态生成的类名、地址等每次运行都可能不同 */
+    private static final Pattern[] PATTERNS = {
+            Pattern.compile("\\$\\$Lambda\\$\\d+/(0x)?[0-9a-fA-F]+"),
+            Pattern.compile("\\$\\$(EnhancerBySpringCGLIB|FastClassBySpringCGLIB|SpringCGLIB)\\$\\$[0-9a-fA-F]+"),
+            Pattern.compile("\\$Proxy\\d+"),
+            Pattern.compile("\\$HibernateProxy\\$\\w+"),
+            Pattern.compile("GeneratedMethodAccessor\\d+"),
+            Pattern.compile("0x[0-9a-fA-F]+"),
+            Pattern.compile("\\.\\.\\. \\d+ more")
+    };
+
+    private static final String[] REPLACEMENTS = {
+            "\\$\\$Lambda\\$", "\\$\\$$1\\$\\$", "\\$Proxy", "\\$HibernateProxy\\$", "GeneratedMethodAccessor", "0x", "... more"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * 已确认写入过的指纹，命中时只累加次数，不再压缩原文
+     */
+    private final Cache<String, Boolean> known = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    private final AtomicLong occurrences = new AtomicLong();
+    private final AtomicLong uniqueTraces = new AtomicLong();
+    private final AtomicLong rawBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    public SysLogErrorStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * 计算堆栈指纹
+     * @param stackTrace 堆栈
+     * @return 32 位十六进制字符串
+     */
+    public static String fingerprint(String stackTrace) {
+        StringBuilder normalized = new StringBuilder(stackTrace.length());
+        for (String line : stackTrace.split("\\r?\\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!trimmed.startsWith("at ") && !trimmed.startsWith("...")) {
+                // 异常行只保留异常类型，消息中通常带有 ID、参数等动态内容
+                trimmed = stripMessage(trimmed);
+            }
+            for (int i = 0; i < PATTERNS.length; i++) {
+                trimmed = PATTERNS[i].matcher(trimmed).replaceAll(REPLACEMENTS[i]);
+            }
+            normalized.append(trimmed).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 提取堆栈中的异常行（首行与 Caused by、Suppressed 等），即指纹计算时去掉的部分
+     * @param stackTrace 堆栈
+     * @return 按行拼接的异常消息
+     */
+    public static String messages(String stackTrace) {
+        StringBuilder messages = new StringBuilder(128);
+        for (String line : stackTrace.split("\\r?\\n")) {
+            if (!isMessageLine(line)) {
+                continue;
+            }
+            if (messages.length() + line.length() + 1 > MAX_MESSAGE_LENGTH) {
+                break;
+            }
+            messages.append(line).append('\n');
+        }
+        return messages.toString();
+    }
+
+    /**
+     * 用本次的异常消息替换堆栈原文中的异常行，还原出本次的异常详情
+     * @param stackTrace 指纹对应的堆栈原文
+     * @param messages 本次的异常消息，为空时返回原文
+     * @return /
+     */
+    public static String restore(String stackTrace, String messages) {
+        if (messages == null || messages.isEmpty()) {
+            return stackTrace;
+        }
+        Iterator<String> replacements = Arrays.asList(messages.split("\n")).iterator();
+        StringBuilder detail = new StringBuilder(stackTrace.length() + messages.length());
+        String[] lines = stackTrace.split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (isMessageLine(line) && replacements.hasNext()) {
+                // 保留原文的换行符
+                line = line.endsWith("\r") ? replacements.next() + "\r" : replacements.next();
+            }
+            detail.append(line);
+            if (i < lines.length - 1) {
+                detail.append('\n');
+            }
+        }
+        return detail.toString();
+    }
+
+    private static boolean isMessageLine(String line) {
+        String trimmed = line.trim();
+        return !trimmed.isEmpty() && !trimmed.startsWith("at ") && !trimmed.startsWith("...");
+    }
+
+    /**
+     * 批量记录异常，新出现的堆栈压缩后写入，已有的只累加次数
+     * @param traces 指纹 -> 堆栈原文
+     * @param counts 指纹 -> 本批出现次数
+     * @param time 发生时间
+     */
+    public void record(Map<String, String> traces, Map<String, Integer> counts, Timestamp time) {
+        List<String> updates = counts.keySet().stream()
+                .filter(fingerprint -> known.getIfPresent(fingerprint) != null)
+                .collect(Collectors.toList());
+        Set<String> inserts = new LinkedHashSet<>(counts.keySet());
+        inserts.removeAll(updates);
+        if (!updates.isEmpty()) {
+            int[] rows = jdbcTemplate.batchUpdate(UPDATE_SQL, updates.stream()
+                    .map(fingerprint -> new Object[]{counts.get(fingerprint), time, fingerprint})
+                    .collect(Collectors.toList()));
+            // 行已被清理时重新写入原文
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] == 0) {
+                    known.invalidate(updates.get(i));
+                    inserts.add(updates.get(i));
+                }
+            }
+        }
+        if (!inserts.isEmpty()) {
+            List<Object[]> args = new ArrayList<>(inserts.size());
+            for (String fingerprint : inserts) {
+                byte[] raw = traces.get(fingerprint).getBytes(StandardCharsets.UTF_8);
+                byte[] compressed = compress(raw);
+                rawBytes.addAndGet(raw.length);
+                storedBytes.addAndGet(compressed.length);
+                args.add(new Object[]{fingerprint, compressed, counts.get(fingerprint), time, time});
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, args);
+            uniqueTraces.addAndGet(inserts.size());
+        }
+        counts.keySet().forEach(fingerprint -> known.put(fingerprint, Boolean.TRUE));
+        occurrences.addAndGet(counts.values().stream().mapToInt(Integer::intValue).sum());
+    }
+
+    /**
+     * 加载单条日志的异常详情
+     * @param sysLog 日志
+     * @return 不存在时返回空字符串
+     */
+    public String load(SysLog sysLog) {
+        return loadAll(Collections.singletonList(sysLog)).getOrDefault(sysLog.getId(), "");
+    }
+
+    /**
+     * 批量加载异常详情，相同指纹只加载一次，再按每条日志的异常消息还原；
+     * 没有指纹的旧数据从 sys_log.exception_detail 读取
+     * @param sysLogs 日志
+     * @return 日志ID -> 异常详情
+     */
+    public Map<Long, String> loadAll(Collection<SysLog> sysLogs) {
+        Map<Long, String> details = new HashMap<>(sysLogs.size());
+        Set<String> fingerprints = new HashSet<>();
+        List<Long> legacyIds = new ArrayList<>();
+        for (SysLog sysLog : sysLogs) {
+            if (sysLog.getErrorFingerprint() != null) {
+                fingerprints.add(sysLog.getErrorFingerprint());
+            } else if ("ERROR".equals(sysLog.getLogType())) {
+                legacyIds.add(sysLog.getId());
+            }
+        }
+        Map<String, String> traces = new HashMap<>(fingerprints.size());
+        for (List<String> chunk : partition(new ArrayList<>(fingerprints))) {
+            namedJdbcTemplate.query("SELECT fingerprint, detail FROM " + TABLE + " WHERE fingerprint IN (:fingerprints)",
+                    new MapSqlParameterSource("fingerprints", chunk),
+                    rs -> {
+                        traces.put(rs.getString(1), new String(decompress(rs.getBytes(2)), StandardCharsets.UTF_8));
+                    });
+        }
+        for (List<Long> chunk : partition(legacyIds)) {
+            namedJdbcTemplate.query("SELECT log_id, exception_detail FROM sys_log WHERE log_id IN (:ids)",
+                    new MapSqlParameterSource("ids", chunk),
+                    rs -> {
+                        byte[] detail = rs.getBytes(2);
+                        details.put(rs.getLong(1), detail == null ? "" : new String(detail));
+                    });
+        }
+        for (SysLog sysLog : sysLogs) {
+            if (sysLog.getErrorFingerprint() != null) {
+                String trace = traces.get(sysLog.getErrorFingerprint());
+                details.put(sysLog.getId(), trace == null ? "" : restore(trace, sysLog.getErrorMessage()));
+            }
+        }
+        return details;
+    }
+
+    /**
+     * 删除最后一次出现早于指定时间的堆栈
+     * @param before 时间
+     * @return 删除的行数
+     */
+    public int deleteBefore(Timestamp before) {
+        known.invalidateAll();
+        return jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE last_time < ?", before);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sys_log_error";
+    }
+
+    /**
+     * 获取统计信息（监控用）
+     * @return /
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(6);
+        stats.put("occurrences", occurrences.get());
+        stats.put("uniqueTraces", uniqueTraces.get());
+        stats.put("rawBytes", rawBytes.get());
+        stats.put("storedBytes", storedBytes.get());
+        return stats;
+    }
+
+    private static <T> List<List<T>> partition(List<T> values) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += IN_CHUNK) {
+            chunks.add(values.subList(i, Math.min(values.size(), i + IN_CHUNK)));
+        }
+        return chunks;
+    }
+
+    private static String stripMessage(String line) {
+        String prefix = "";
+        for (String marker : new String[]{"Caused by: ", "Suppressed: "}) {
+            if (line.startsWith(marker)) {
+                prefix = marker;
+                line = line.substring(marker.length());
+                break;
+            }
+        }
+        int index = line.indexOf(": ");
+        return prefix + (index < 0 ? line : line.substring(0, index));
+    }
+
+    static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] decompress(byte[] compressed) {
+        if (compressed == null) {
+            return new byte[0];
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            log.error("异常详情解压失败：{}", e.getMessage());
+            return new byte[0];
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.config.properties.SysLogProperties;
+import me.zhengjie.exception.BadRequestException;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 系统日志保留策略，使用内部调度线程，不依赖 Quartz。
+ * sys_log 已按月分区（见 sql/sys_log_partition.sql）时，提前创建后续月份的分区，
+ * 整个分区过期后直接 DROP PARTITION；未分区或分区内残留的过期数据，以及清空日志，
+ * 都按主键区间分批删除，每批一个短事务并在批之间暂停，避免长事务锁表
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+@Component
+public class SysLogRetention implements MetricsSource {
+
+    private static final String TABLE = "sys_log";
+
+    private static final String MAX_PARTITION = "p_max";
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final SysLogProperties.Retention properties;
+
+    private final SysLogErrorStore errorStore;
+
+    private final SysLogArchive archive;
+
+    /**
+     * 正在清空的日志类型，同一类型同时只允许一个清空请求
+     */
+    private final Set<String> clearing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong createdPartitions = new AtomicLong();
+    private final AtomicLong droppedPartitions = new AtomicLong();
+    private final AtomicLong deletedRows = new AtomicLong();
+    private volatile long lastRunMillis;
+    private volatile Date lastRunTime;
+
+    private ScheduledExecutorService scheduler;
+
+    public SysLogRetention(JdbcTemplate jdbcTemplate, SysLogErrorStore errorStore, SysLogArchive archive,
+                           SysLogProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.errorStore = errorStore;
+        this.archive = archive;
+        this.properties = properties.getRetention();
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "el-log-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (properties.isEnabled()) {
+            scheduler.scheduleWithFixedDelay(this::runQuietly, TimeUnit.MINUTES.toMillis(1),
+                    properties.getCheckInterval(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 执行一次保留策略：维护分区并删除过期数据
+     */
+    public void run() {
+        long start = System.currentTimeMillis();
+        LocalDate cutoff = LocalDate.now().minusDays(properties.getRetentionDays());
+        List<String> partitions = listPartitions();
+        if (!partitions.isEmpty()) {
+            createPartitions(partitions);
+            dropPartitions(partitions, cutoff);
+        }
+        Timestamp before = Timestamp.valueOf(cutoff.atStartOfDay());
+        deleteByIdRange("create_time < ?", before,
+                "SELECT MIN(log_id), MAX(log_id) FROM " + TABLE + " WHERE create_time < ?");
+        // 最后一次出现也已过期的堆栈不会再被引用
+        errorStore.deleteBefore(before);
+        lastRunMillis = System.currentTimeMillis() - start;
+        lastRunTime = new Date();
+    }
+
+    /**
+     * 分批清空指定类型的日志，在调用线程中执行，全部删除后才返回
+     * @param logType 日志类型
+     * @return 删除的行数
+     * @throws IOException 归档文件重写失败
+     */
+    public long clear(String logType) throws IOException {
+        if (!clearing.add(logType)) {
+            throw new BadRequestException("正在清空" + logType + "日志，请稍后再试");
+        }
+        try {
+            Timestamp requested = new Timestamp(System.currentTimeMillis());
+            long deleted = deleteByIdRange("log_type = ?", logType,
+                    "SELECT MIN(log_id), MAX(log_id) FROM " + TABLE + " WHERE log_type = ?");
+            archive.clear(logType);
+            if ("ERROR".equals(logType)) {
+                errorStore.deleteBefore(requested);
+            }
+            log.info("清空 {} 日志 {} 条", logType, deleted);
+            return deleted;
+        } finally {
+            clearing.remove(logType);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sys_log_retention";
+    }
+
+    /**
+     * 获取统计信息（监控用）
+     * @return /
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(8);
+        stats.put("retentionDays", properties.getRetentionDays());
+        stats.put("clearing", new ArrayList<>(clearing));
+        stats.put("createdPartitions", createdPartitions.get());
+        stats.put("droppedPartitions", droppedPartitions.get());
+        stats.put("deletedRows", deletedRows.get());
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("lastRunTime", lastRunTime);
+        return stats;
+    }
+
+    private void runQuietly() {
+        try {
+            run();
+        } catch (Exception e) {
+            log.error("系统日志保留策略执行失败：{}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 查询 sys_log 的分区，未分区时返回空
+     */
+    private List<String> listPartitions() {
+        return jdbcTemplate.queryForList("SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION", String.class, TABLE);
+    }
+
+    /**
+     * 从 p_max 中拆分出当前月份之后的分区，范围分区只能在最大的分区之后追加
+     */
+    private void createPartitions(List<String> partitions) {
+        if (!partitions.contains(MAX_PARTITION)) {
+            return;
+        }
+        YearMonth latest = null;
+        for (String partition : partitions) {
+            YearMonth month = parse(partition);
+            if (month != null && (latest == null || month.isAfter(latest))) {
+                latest = month;
+            }
+        }
+        YearMonth current = YearMonth.now();
+        YearMonth from = latest == null || latest.isBefore(current) ? current : latest.plusMonths(1);
+        YearMonth to = current.plusMonths(properties.getPrecreateMonths());
+        if (from.isAfter(to)) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("ALTER TABLE ").append(TABLE)
+                .append(" REORGANIZE PARTITION ").append(MAX_PARTITION).append(" INTO (");
+        int created = 0;
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            sql.append("PARTITION ").append(PARTITION_NAME.format(month.atDay(1)))
+                    .append(" VALUES LESS THAN (TO_DAYS('").append(month.plusMonths(1).atDay(1)).append("')), ");
+            created++;
+        }
+        sql.append("PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN MAXVALUE)");
+        jdbcTemplate.execute(sql.toString());
+        createdPartitions.addAndGet(created);
+        log.info("sys_log 新增 {} 个分区", created);
+    }
+
+    /**
+     * 删除整月都已过期的分区
+     */
+    private void dropPartitions(List<String> partitions, LocalDate cutoff) {
+        List<String> expired = new ArrayList<>();
+        for (String partition : partitions) {
+            YearMonth month = parse(partition);
+            // 分区上界不晚于保留截止日期时，整个分区都已过期
+            if (month != null && !month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                expired.add(partition);
+            }
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + String.join(", ", expired));
+        droppedPartitions.addAndGet(expired.size());
+        log.info("sys_log 删除过期分区：{}", expired);
+    }
+
+    /**
+     * 按主键区间分批删除，每批一个独立的短事务，只在删除了数据的批次之间暂停
+     * @param condition 删除条件
+     * @param param 条件参数
+     * @param rangeSql 查询主键范围的语句
+     * @return 删除的行数
+     */
+    private long deleteByIdRange(String condition, Object param, String rangeSql) {
+        Map<String, Object> range = jdbcTemplate.queryForMap(rangeSql, param);
+        Iterator<Object> bounds = range.values().iterator();
+        Number min = (Number) bounds.next();
+        Number max = (Number) bounds.next();
+        if (min == null || max == null) {
+            return 0;
+        }
+        long deleted = 0;
+        String sql = "DELETE FROM " + TABLE + " WHERE log_id >= ? AND log_id < ? AND " + condition;
+        String nextSql = "SELECT MIN(log_id) FROM " + TABLE + " WHERE log_id >= ? AND " + condition;
+        long chunkSize = properties.getChunkSize();
+        long from = min.longValue();
+        while (from <= max.longValue()) {
+            int rows = jdbcTemplate.update(sql, from, from + chunkSize, param);
+            from += chunkSize;
+            if (rows == 0) {
+                // 空区间不暂停，直接跳到下一条待删除的日志，避免主键空洞逐段扫描
+                Long next = jdbcTemplate.queryForObject(nextSql, Long.class, from, param);
+                if (next == null) {
+                    break;
+                }
+                from = next;
+                continue;
+            }
+            deletedRows.addAndGet(rows);
+            deleted += rows;
+            try {
+                TimeUnit.MILLISECONDS.sleep(properties.getChunkPause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    private static YearMonth parse(String partition) {
+        try {
+            return YearMonth.parse(partition, PARTITION_NAME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
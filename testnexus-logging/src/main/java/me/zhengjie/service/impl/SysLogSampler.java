@@ -0,0 +1,183 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.service.impl;
+
+import me.zhengjie.annotation.Log;
+import me.zhengjie.config.properties.SysLogProperties;
+import me.zhengjie.exception.BadRequestException;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.stereotype.Component;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 审计日志采样策略。成功的请求按接口配置的采样率记录，修改类请求、异常与慢调用全部记录，
+ * 被采样记录的日志带上采样率，统计时按 1/采样率 还原真实次数。策略可在运行时修改
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Component
+public class SysLogSampler implements MetricsSource {
+
+    private static final Set<String> READ_METHODS = new HashSet<>(Arrays.asList("GET", "HEAD", "OPTIONS"));
+
+    /**
+     * 当前策略及按该策略解析出的采样率，修改策略时整体替换，
+     * 避免修改前开始解析的采样率写入新策略的缓存
+     */
+    private volatile State state;
+
+    private final AtomicLong evaluated = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong forcedSlow = new AtomicLong();
+
+    public SysLogSampler(SysLogProperties properties) {
+        this.state = new State(copy(properties.getPolicy()));
+    }
+
+    /**
+     * 判断成功的请求是否需要记录
+     * @param method 被调用的方法
+     * @param httpMethod 请求方法，为 null 时按默认采样率处理
+     * @param elapsed 耗时 毫秒
+     * @return 需要记录时返回采样率，否则返回 null
+     */
+    public Double sample(Method method, String httpMethod, long elapsed) {
+        evaluated.incrementAndGet();
+        State current = state;
+        SysLogProperties.Policy policy = current.policy;
+        if (policy.getSlowThreshold() > 0 && elapsed >= policy.getSlowThreshold()) {
+            forcedSlow.incrementAndGet();
+            return 1.0;
+        }
+        // 修改类请求必定记录
+        if (httpMethod != null && !READ_METHODS.contains(httpMethod)) {
+            return 1.0;
+        }
+        double rate = current.rates.computeIfAbsent(method, m -> resolve(m, policy));
+        if (rate < 0) {
+            rate = httpMethod != null ? policy.getReadRate() : policy.getDefaultRate();
+        }
+        if (rate >= 1.0) {
+            return 1.0;
+        }
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            return rate;
+        }
+        skipped.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 获取当前策略
+     * @return 副本
+     */
+    public SysLogProperties.Policy getPolicy() {
+        return copy(state.policy);
+    }
+
+    /**
+     * 修改策略，立即生效
+     * @param newPolicy 新策略
+     */
+    public void updatePolicy(SysLogProperties.Policy newPolicy) {
+        validate(newPolicy.getDefaultRate());
+        validate(newPolicy.getReadRate());
+        if (newPolicy.getRules() == null) {
+            newPolicy.setRules(new LinkedHashMap<>());
+        }
+        newPolicy.getRules().values().forEach(SysLogSampler::validate);
+        state = new State(copy(newPolicy));
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sys_log_sampler";
+    }
+
+    /**
+     * 获取统计信息（监控用）
+     * @return /
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(4);
+        stats.put("evaluated", evaluated.get());
+        stats.put("skipped", skipped.get());
+        stats.put("forcedSlow", forcedSlow.get());
+        stats.put("rules", state.policy.getRules().size());
+        return stats;
+    }
+
+    /**
+     * 优先级：接口规则（精确匹配优先，其次最长前缀） > 注解 > 只读请求默认值 > 默认值
+     */
+    private static double resolve(Method method, SysLogProperties.Policy policy) {
+        String key = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        Double rule = policy.getRules().get(key);
+        if (rule == null) {
+            int longest = -1;
+            for (Map.Entry<String, Double> entry : policy.getRules().entrySet()) {
+                String pattern = entry.getKey();
+                if (pattern.endsWith("*") && pattern.length() - 1 > longest
+                        && key.startsWith(pattern.substring(0, pattern.length() - 1))) {
+                    longest = pattern.length() - 1;
+                    rule = entry.getValue();
+                }
+            }
+        }
+        if (rule != null) {
+            return rule;
+        }
+        Log log = method.getAnnotation(Log.class);
+        if (log != null && log.sampleRate() >= 0) {
+            return log.sampleRate();
+        }
+        return -1;
+    }
+
+    private static void validate(Double rate) {
+        if (rate == null || rate < 0 || rate > 1) {
+            throw new BadRequestException("采样率必须在 0 ~ 1 之间");
+        }
+    }
+
+    private static final class State {
+
+        private final SysLogProperties.Policy policy;
+
+        /**
+         * 方法 -> 规则或注解指定的采样率，未指定时为 -1
+         */
+        private final Map<Method, Double> rates = new ConcurrentHashMap<>();
+
+        private State(SysLogProperties.Policy policy) {
+            this.policy = policy;
+        }
+    }
+
+    private static SysLogProperties.Policy copy(SysLogProperties.Policy source) {
+        SysLogProperties.Policy target = new SysLogProperties.Policy();
+        target.setDefaultRate(source.getDefaultRate());
+        target.setReadRate(source.getReadRate());
+        target.setSlowThreshold(source.getSlowThreshold());
+        target.setRules(Collections.unmodifiableMap(new LinkedHashMap<>(source.getRules())));
+        return target;
+    }
+}
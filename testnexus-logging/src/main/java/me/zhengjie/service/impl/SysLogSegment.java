@@ -0,0 +1,617 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.service.impl;
+
+import me.zhengjie.domain.SysLog;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 系统日志归档段文件。每个文件由若干块组成，块内按列存储：ID 与时间做差值变长编码，
+ * 字符串列做字典编码，每列单独 Deflate 压缩。文件尾部记录每个块的偏移、行数、
+ * ID 与时间范围以及日志类型，查询时先按尾部索引裁剪，再只解压需要的列
+ * <pre>
+ * 文件：MAGIC VERSION 归档截止时间(long) 块... 尾部索引 尾部偏移(long) MAGIC
+ * 块：列数 [原始长度 压缩长度 数据]...
+ * </pre>
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+class SysLogSegment {
+
+    static final String SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x454C4C47;
+    private static final byte VERSION = 1;
+
+    private static final int ID = 0;
+    private static final int CREATE_TIME = 1;
+    private static final int TIME = 2;
+    private static final int SAMPLE_RATE = 3;
+    private static final int LOG_TYPE = 4;
+    private static final int USERNAME = 5;
+    private static final int DESCRIPTION = 6;
+    private static final int METHOD = 7;
+    private static final int REQUEST_IP = 8;
+    private static final int ADDRESS = 9;
+    private static final int BROWSER = 10;
+    private static final int PARAMS = 11;
+    private static final int ERROR_FINGERPRINT = 12;
+    private static final int ERROR_MESSAGE = 13;
+    private static final int COLUMNS = 14;
+
+    private final File file;
+
+    private final long cutoff;
+
+    private final List<BlockMeta> blocks;
+
+    private final long minId;
+    private final long maxId;
+    private final long minTime;
+    private final long maxTime;
+    private final long rows;
+
+    private SysLogSegment(File file, long cutoff, List<BlockMeta> blocks) {
+        this.file = file;
+        this.cutoff = cutoff;
+        this.blocks = Collections.unmodifiableList(blocks);
+        this.minId = blocks.stream().mapToLong(b -> b.minId).min().orElse(0);
+        this.maxId = blocks.stream().mapToLong(b -> b.maxId).max().orElse(0);
+        this.minTime = blocks.stream().mapToLong(b -> b.minTime).min().orElse(0);
+        this.maxTime = blocks.stream().mapToLong(b -> b.maxTime).max().orElse(0);
+        this.rows = blocks.stream().mapToLong(b -> b.rows).sum();
+    }
+
+    /**
+     * 读取段文件的尾部索引
+     * @param file 段文件
+     * @return /
+     * @throws IOException 文件损坏时抛出
+     */
+    static SysLogSegment open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() < 17 || raf.readInt() != MAGIC) {
+                throw new IOException("不是有效的归档文件：" + file.getName());
+            }
+            if (raf.readByte() != VERSION) {
+                throw new IOException("不支持的归档文件版本：" + file.getName());
+            }
+            long cutoff = raf.readLong();
+            raf.seek(raf.length() - 12);
+            long footer = raf.readLong();
+            if (raf.readInt() != MAGIC) {
+                throw new IOException("归档文件不完整：" + file.getName());
+            }
+            raf.seek(footer);
+            int count = raf.readInt();
+            List<BlockMeta> blocks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                BlockMeta meta = new BlockMeta();
+                meta.offset = raf.readLong();
+                meta.length = raf.readInt();
+                meta.rows = raf.readInt();
+                meta.minId = raf.readLong();
+                meta.maxId = raf.readLong();
+                meta.minTime = raf.readLong();
+                meta.maxTime = raf.readLong();
+                meta.logType = raf.readUTF();
+                blocks.add(meta);
+            }
+            return new SysLogSegment(file, cutoff, blocks);
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * 写入时的归档截止时间，段内所有行的创建时间都早于该时间
+     * @return 毫秒时间戳
+     */
+    long getCutoff() {
+        return cutoff;
+    }
+
+    List<BlockMeta> getBlocks() {
+        return blocks;
+    }
+
+    long getMinId() {
+        return minId;
+    }
+
+    long getMaxId() {
+        return maxId;
+    }
+
+    long getMinTime() {
+        return minTime;
+    }
+
+    long getMaxTime() {
+        return maxTime;
+    }
+
+    long getRows() {
+        return rows;
+    }
+
+    /**
+     * 打开读取器，同一次扫描内复用文件句柄
+     * @return /
+     * @throws IOException /
+     */
+    Reader reader() throws IOException {
+        return new Reader(new RandomAccessFile(file, "r"));
+    }
+
+    /**
+     * 块索引
+     */
+    static class BlockMeta {
+        long offset;
+        int length;
+        int rows;
+        long minId;
+        long maxId;
+        long minTime;
+        long maxTime;
+        /** 块内所有行的日志类型相同时记录，否则为空字符串 */
+        String logType;
+    }
+
+    static class Reader implements Closeable {
+
+        private final RandomAccessFile raf;
+
+        private Reader(RandomAccessFile raf) {
+            this.raf = raf;
+        }
+
+        Block read(BlockMeta meta) throws IOException {
+            return new Block(readRaw(meta), meta.rows);
+        }
+
+        byte[] readRaw(BlockMeta meta) throws IOException {
+            byte[] data = new byte[meta.length];
+            raf.seek(meta.offset);
+            raf.readFully(data);
+            return data;
+        }
+
+        @Override
+        public void close() throws IOException {
+            raf.close();
+        }
+    }
+
+    /**
+     * 已读取的块，各列在首次访问时才解压解码
+     */
+    static class Block {
+
+        private final byte[] data;
+
+        private final int rows;
+
+        private final int[] offsets = new int[COLUMNS];
+        private final int[] compressedLengths = new int[COLUMNS];
+        private final int[] rawLengths = new int[COLUMNS];
+
+        private final Object[] decoded = new Object[COLUMNS];
+
+        private Block(byte[] data, int rows) throws IOException {
+            this.data = data;
+            this.rows = rows;
+            Input in = new Input(data);
+            int columns = (int) in.readVarLong();
+            if (columns != COLUMNS) {
+                throw new IOException("不支持的列数：" + columns);
+            }
+            for (int i = 0; i < COLUMNS; i++) {
+                rawLengths[i] = (int) in.readVarLong();
+                compressedLengths[i] = (int) in.readVarLong();
+                offsets[i] = in.position;
+                in.position += compressedLengths[i];
+            }
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        long createTime(int row) {
+            return longs(CREATE_TIME)[row];
+        }
+
+        String logType(int row) {
+            return strings(LOG_TYPE)[row];
+        }
+
+        String username(int row) {
+            return strings(USERNAME)[row];
+        }
+
+        /**
+         * 模糊查询涉及的列，与 SysLogQueryCriteria.blurry 一致
+         */
+        String[] blurryValues(int row) {
+            return new String[]{strings(USERNAME)[row], strings(DESCRIPTION)[row], strings(ADDRESS)[row],
+                    strings(REQUEST_IP)[row], strings(METHOD)[row], strings(PARAMS)[row]};
+        }
+
+        SysLog row(int row) {
+            SysLog sysLog = new SysLog(strings(LOG_TYPE)[row], nullableLongs(TIME)[row]);
+            sysLog.setId(longs(ID)[row]);
+            sysLog.setCreateTime(new Timestamp(longs(CREATE_TIME)[row]));
+            sysLog.setSampleRate(doubles(SAMPLE_RATE)[row]);
+            sysLog.setUsername(strings(USERNAME)[row]);
+            sysLog.setDescription(strings(DESCRIPTION)[row]);
+            sysLog.setMethod(strings(METHOD)[row]);
+            sysLog.setRequestIp(strings(REQUEST_IP)[row]);
+            sysLog.setAddress(strings(ADDRESS)[row]);
+            sysLog.setBrowser(strings(BROWSER)[row]);
+            sysLog.setParams(strings(PARAMS)[row]);
+            sysLog.setErrorFingerprint(strings(ERROR_FINGERPRINT)[row]);
+            sysLog.setErrorMessage(strings(ERROR_MESSAGE)[row]);
+            return sysLog;
+        }
+
+        private Input column(int column) {
+            byte[] compressed = Arrays.copyOfRange(data, offsets[column], offsets[column] + compressedLengths[column]);
+            byte[] raw = SysLogErrorStore.decompress(compressed);
+            if (raw.length != rawLengths[column]) {
+                throw new IllegalStateException("归档列解压失败：" + column);
+            }
+            return new Input(raw);
+        }
+
+        private long[] longs(int column) {
+            if (decoded[column] == null) {
+                Input in = column(column);
+                long[] values = new long[rows];
+                long previous = 0;
+                for (int i = 0; i < rows; i++) {
+                    previous += unzigzag(in.readVarLong());
+                    values[i] = previous;
+                }
+                decoded[column] = values;
+            }
+            return (long[]) decoded[column];
+        }
+
+        private Long[] nullableLongs(int column) {
+            if (decoded[column] == null) {
+                Input in = column(column);
+                Long[] values = new Long[rows];
+                for (int i = 0; i < rows; i++) {
+                    long value = in.readVarLong();
+                    values[i] = value == 0 ? null : unzigzag(value - 1);
+                }
+                decoded[column] = values;
+            }
+            return (Long[]) decoded[column];
+        }
+
+        private Double[] doubles(int column) {
+            if (decoded[column] == null) {
+                Input in = column(column);
+                Double[] values = new Double[rows];
+                for (int i = 0; i < rows; i++) {
+                    if (in.data[in.position++] != 0) {
+                        values[i] = Double.longBitsToDouble(in.readLong());
+                    }
+                }
+                decoded[column] = values;
+            }
+            return (Double[]) decoded[column];
+        }
+
+        private String[] strings(int column) {
+            if (decoded[column] == null) {
+                Input in = column(column);
+                String[] dictionary = new String[(int) in.readVarLong()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    int length = (int) in.readVarLong();
+                    dictionary[i] = new String(in.data, in.position, length, StandardCharsets.UTF_8);
+                    in.position += length;
+                }
+                String[] values = new String[rows];
+                for (int i = 0; i < rows; i++) {
+                    int index = (int) in.readVarLong();
+                    values[i] = index == 0 ? null : dictionary[index - 1];
+                }
+                decoded[column] = values;
+            }
+            return (String[]) decoded[column];
+        }
+    }
+
+    /**
+     * 段文件写入，先写临时文件，完成后原子重命名
+     */
+    static class Writer implements Closeable {
+
+        private final File directory;
+
+        private final File temp;
+
+        private final int blockRows;
+
+        private final long cutoff;
+
+        private final DataOutputStream out;
+
+        private final FileOutputStream fileOut;
+
+        private long position;
+
+        private final List<BlockMeta> blocks = new ArrayList<>();
+
+        /** 按日志类型分开攒块，使块内类型一致，便于按类型裁剪 */
+        private final Map<String, List<SysLog>> pending = new LinkedHashMap<>(4);
+
+        private int rows;
+
+        /**
+         * @param directory 目录
+         * @param blockRows 每块的行数
+         * @param cutoff 归档截止时间，写入头部，删除已归档的行时使用
+         * @throws IOException /
+         */
+        Writer(File directory, int blockRows, long cutoff) throws IOException {
+            this.directory = directory;
+            this.blockRows = blockRows;
+            this.cutoff = cutoff;
+            this.temp = File.createTempFile("sys_log-", ".tmp", directory);
+            this.fileOut = new FileOutputStream(temp);
+            this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(cutoff);
+            position = 13;
+        }
+
+        void append(SysLog sysLog) throws IOException {
+            List<SysLog> block = pending.computeIfAbsent(String.valueOf(sysLog.getLogType()), k -> new ArrayList<>(blockRows));
+            block.add(sysLog);
+            rows++;
+            if (block.size() >= blockRows) {
+                writeBlock(block);
+                block.clear();
+            }
+        }
+
+        /**
+         * 原样复制其他段中的块，不解压
+         * @param source 块索引
+         * @param data 块数据
+         * @throws IOException /
+         */
+        void appendRaw(BlockMeta source, byte[] data) throws IOException {
+            BlockMeta meta = new BlockMeta();
+            meta.offset = position;
+            meta.length = data.length;
+            meta.rows = source.rows;
+            meta.minId = source.minId;
+            meta.maxId = source.maxId;
+            meta.minTime = source.minTime;
+            meta.maxTime = source.maxTime;
+            meta.logType = source.logType;
+            out.write(data);
+            position += data.length;
+            rows += source.rows;
+            blocks.add(meta);
+        }
+
+        int getRows() {
+            return rows;
+        }
+
+        /**
+         * 写完剩余的块与尾部索引，落盘后重命名为正式文件
+         * @return 新的段
+         * @throws IOException /
+         */
+        SysLogSegment finish() throws IOException {
+            for (List<SysLog> block : pending.values()) {
+                if (!block.isEmpty()) {
+                    writeBlock(block);
+                }
+            }
+            pending.clear();
+            long footer = position;
+            out.writeInt(blocks.size());
+            for (BlockMeta meta : blocks) {
+                out.writeLong(meta.offset);
+                out.writeInt(meta.length);
+                out.writeInt(meta.rows);
+                out.writeLong(meta.minId);
+                out.writeLong(meta.maxId);
+                out.writeLong(meta.minTime);
+                out.writeLong(meta.maxTime);
+                out.writeUTF(meta.logType);
+            }
+            out.writeLong(footer);
+            out.writeInt(MAGIC);
+            out.flush();
+            fileOut.getFD().sync();
+            out.close();
+            SysLogSegment segment = new SysLogSegment(temp, cutoff, blocks);
+            File target = new File(directory, String.format("sys_log-%d-%d%s", segment.minId, segment.maxId, SUFFIX));
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return new SysLogSegment(target, cutoff, blocks);
+        }
+
+        /**
+         * 放弃写入，删除临时文件
+         */
+        @Override
+        public void close() throws IOException {
+            out.close();
+            Files.deleteIfExists(temp.toPath());
+        }
+
+        private void writeBlock(List<SysLog> block) throws IOException {
+            int size = block.size();
+            byte[][] columns = new byte[COLUMNS][];
+            columns[ID] = encodeLongs(block, SysLog::getId);
+            columns[CREATE_TIME] = encodeLongs(block, s -> s.getCreateTime().getTime());
+            Output time = new Output(size * 2);
+            Output sampleRate = new Output(size);
+            for (SysLog sysLog : block) {
+                time.writeVarLong(sysLog.getTime() == null ? 0 : zigzag(sysLog.getTime()) + 1);
+                sampleRate.write(sysLog.getSampleRate() == null ? 0 : 1);
+                if (sysLog.getSampleRate() != null) {
+                    sampleRate.writeLong(Double.doubleToLongBits(sysLog.getSampleRate()));
+                }
+            }
+            columns[TIME] = time.toByteArray();
+            columns[SAMPLE_RATE] = sampleRate.toByteArray();
+            columns[LOG_TYPE] = encodeStrings(block, SysLog::getLogType);
+            columns[USERNAME] = encodeStrings(block, SysLog::getUsername);
+            columns[DESCRIPTION] = encodeStrings(block, SysLog::getDescription);
+            columns[METHOD] = encodeStrings(block, SysLog::getMethod);
+            columns[REQUEST_IP] = encodeStrings(block, SysLog::getRequestIp);
+            columns[ADDRESS] = encodeStrings(block, SysLog::getAddress);
+            columns[BROWSER] = encodeStrings(block, SysLog::getBrowser);
+            columns[PARAMS] = encodeStrings(block, SysLog::getParams);
+            columns[ERROR_FINGERPRINT] = encodeStrings(block, SysLog::getErrorFingerprint);
+            columns[ERROR_MESSAGE] = encodeStrings(block, SysLog::getErrorMessage);
+
+            Output data = new Output(8 * 1024);
+            data.writeVarLong(COLUMNS);
+            byte[][] compressed = new byte[COLUMNS][];
+            for (int i = 0; i < COLUMNS; i++) {
+                compressed[i] = SysLogErrorStore.compress(columns[i]);
+                data.writeVarLong(columns[i].length);
+                data.writeVarLong(compressed[i].length);
+                data.write(compressed[i], 0, compressed[i].length);
+            }
+            BlockMeta meta = new BlockMeta();
+            meta.offset = position;
+            meta.length = data.size();
+            meta.rows = size;
+            meta.minId = block.stream().mapToLong(SysLog::getId).min().orElse(0);
+            meta.maxId = block.stream().mapToLong(SysLog::getId).max().orElse(0);
+            meta.minTime = block.stream().mapToLong(s -> s.getCreateTime().getTime()).min().orElse(0);
+            meta.maxTime = block.stream().mapToLong(s -> s.getCreateTime().getTime()).max().orElse(0);
+            String logType = block.get(0).getLogType();
+            meta.logType = logType != null && block.stream().allMatch(s -> logType.equals(s.getLogType())) ? logType : "";
+            data.writeTo(out);
+            position += meta.length;
+            blocks.add(meta);
+        }
+
+        private static byte[] encodeLongs(List<SysLog> block, ToLongFunction<SysLog> getter) {
+            Output out = new Output(block.size() * 3);
+            long previous = 0;
+            for (SysLog sysLog : block) {
+                long value = getter.applyAsLong(sysLog);
+                out.writeVarLong(zigzag(value - previous));
+                previous = value;
+            }
+            return out.toByteArray();
+        }
+
+        private static byte[] encodeStrings(List<SysLog> block, Function<SysLog, String> getter) {
+            Map<String, Integer> dictionary = new LinkedHashMap<>();
+            int[] indexes = new int[block.size()];
+            for (int i = 0; i < indexes.length; i++) {
+                String value = getter.apply(block.get(i));
+                indexes[i] = value == null ? 0 : dictionary.computeIfAbsent(value, k -> dictionary.size() + 1);
+            }
+            Output out = new Output(block.size() * 4);
+            out.writeVarLong(dictionary.size());
+            for (String value : dictionary.keySet()) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeVarLong(bytes.length);
+                out.write(bytes, 0, bytes.length);
+            }
+            for (int index : indexes) {
+                out.writeVarLong(index);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static class Output extends ByteArrayOutputStream {
+
+        private Output(int size) {
+            super(size);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+    }
+
+    private static class Input {
+
+        private final byte[] data;
+
+        private int position;
+
+        private Input(byte[] data) {
+            this.data = data;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        private long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (data[position++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
@@ -16,10 +16,6 @@
 package me.zhengjie.service.impl;
 
 import cn.hutool.core.lang.Dict;
-import cn.hutool.core.util.ObjectUtil;
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.JSONArray;
-import com.alibaba.fastjson2.JSONObject;
 import lombok.RequiredArgsConstructor;
 import me.zhengjie.domain.SysLog;
 import me.zhengjie.repository.LogRepository;
@@ -34,14 +30,10 @@ import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.multipart.MultipartFile;
-import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.IOException;
+import java.io.*;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -55,12 +47,16 @@ public class SysLogServiceImpl implements SysLogService {
     private final LogRepository logRepository;
     private final LogErrorMapper logErrorMapper;
     private final LogSmallMapper logSmallMapper;
-    // 定义敏感字段常量数组
-    private static final String[] SENSITIVE_KEYS = {"password"};
+    private final SysLogWriter sysLogWriter;
+    private final SysLogRetention sysLogRetention;
+    private final SysLogErrorStore sysLogErrorStore;
+    private final SysLogArchive sysLogArchive;
+    private final LogParamSerializer logParamSerializer;
 
     @Override
     public Object queryAll(SysLogQueryCriteria criteria, Pageable pageable) {
         Page<SysLog> page = logRepository.findAll(((root, criteriaQuery, cb) -> QueryHelp.getPredicate(root, criteria, cb)), pageable);
+        page = sysLogArchive.merge(page, criteria, pageable);
         String status = "ERROR";
         if (status.equals(criteria.getLogType())) {
             return PageUtil.toPage(page.map(logErrorMapper::toDto));
@@ -76,11 +72,11 @@ public class SysLogServiceImpl implements SysLogService {
     @Override
     public PageResult<SysLogSmallDto> queryAllByUser(SysLogQueryCriteria criteria, Pageable pageable) {
         Page<SysLog> page = logRepository.findAll(((root, criteriaQuery, cb) -> QueryHelp.getPredicate(root, criteria, cb)), pageable);
+        page = sysLogArchive.merge(page, criteria, pageable);
         return PageUtil.toPage(page.map(logSmallMapper::toDto));
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
     public void save(String username, String browser, String ip, ProceedingJoinPoint joinPoint, SysLog sysLog) {
         if (sysLog == null) {
             throw new IllegalArgumentException("Log 不能为 null!");
@@ -94,84 +90,30 @@ public class SysLogServiceImpl implements SysLogService {
         // 方法路径
         String methodName = joinPoint.getTarget().getClass().getName() + "." + signature.getName() + "()";
 
-        // 获取参数
-        JSONObject params = getParameter(method, joinPoint.getArgs());
-
         // 填充基本信息
         sysLog.setRequestIp(ip);
-        sysLog.setAddress(StringUtils.getCityInfo(sysLog.getRequestIp()));
         sysLog.setMethod(methodName);
         sysLog.setUsername(username);
-        sysLog.setParams(JSON.toJSONString(params));
         sysLog.setBrowser(browser);
         sysLog.setDescription(aopLog.value());
 
-        // 如果没有获取到用户名，尝试从参数中获取
-        if(StringUtils.isBlank(sysLog.getUsername())){
-            sysLog.setUsername(params.getString("username"));
-        }
-
-        // 保存
-        logRepository.save(sysLog);
-    }
-
-    /**
-     * 根据方法和传入的参数获取请求参数
-     */
-    private JSONObject getParameter(Method method, Object[] args) {
-        JSONObject params = new JSONObject();
-        Parameter[] parameters = method.getParameters();
-        for (int i = 0; i < parameters.length; i++) {
-            // 过滤掉 MultiPartFile
-            if (args[i] instanceof MultipartFile) {
-                continue;
-            }
-            // 过滤掉 HttpServletResponse
-            if (args[i] instanceof HttpServletResponse) {
-                continue;
-            }
-            // 过滤掉 HttpServletRequest
-            if (args[i] instanceof HttpServletRequest) {
-                continue;
-            }
-            // 将RequestBody注解修饰的参数作为请求参数
-            RequestBody requestBody = parameters[i].getAnnotation(RequestBody.class);
-            if (requestBody != null) {
-                // [el-async-1] ERROR o.s.a.i.SimpleAsyncUncaughtExceptionHandler - Unexpected exception occurred invoking async method: public void me.zhengjie.service.impl.SysLogServiceImpl.save(java.lang.String,java.lang.String,java.lang.String,org.aspectj.lang.ProceedingJoinPoint,me.zhengjie.domain.SysLog)
-                // java.lang.ClassCastException: com.alibaba.fastjson2.JSONArray cannot be cast to com.alibaba.fastjson2.JSONObject
-                Object json = JSON.toJSON(args[i]);
-                if (json instanceof JSONArray) {
-                    params.put("reqBodyList", json);
-                } else {
-                    params.putAll((JSONObject) json);
-                }
-            } else {
-                String key = parameters[i].getName();
-                params.put(key, args[i]);
-            }
-        }
-        // 遍历敏感字段数组并替换值
-        Set<String> keys = params.keySet();
-        for (String key : SENSITIVE_KEYS) {
-            if (keys.contains(key)) {
-                params.put(key, "******");
-            }
-        }
-        // 返回参数
-        return params;
+        // 参数按上限复制为快照，输出与归属地解析在写入线程中完成
+        sysLogWriter.write(sysLog, logParamSerializer.capture(method, joinPoint.getArgs()));
     }
 
     @Override
     public Object findByErrDetail(Long id) {
-        SysLog sysLog = logRepository.findById(id).orElseGet(SysLog::new);
+        SysLog sysLog = logRepository.findById(id)
+                .orElseGet(() -> sysLogArchive.findById(id).orElseGet(SysLog::new));
         ValidationUtil.isNull(sysLog.getId(), "Log", "id", id);
-        byte[] details = sysLog.getExceptionDetail();
-        return Dict.create().set("exception", new String(ObjectUtil.isNotNull(details) ? details : "".getBytes()));
+        // 列表中只有指纹，详情按需加载
+        return Dict.create().set("exception", sysLogErrorStore.load(sysLog));
     }
 
     @Override
     public void download(List<SysLog> sysLogs, HttpServletResponse response) throws IOException {
         List<Map<String, Object>> list = new ArrayList<>();
+        Map<Long, String> details = sysLogErrorStore.loadAll(sysLogs);
         for (SysLog sysLog : sysLogs) {
             Map<String, Object> map = new LinkedHashMap<>();
             map.put("用户名", sysLog.getUsername());
@@ -180,7 +122,7 @@ public class SysLogServiceImpl implements SysLogService {
             map.put("描述", sysLog.getDescription());
             map.put("浏览器", sysLog.getBrowser());
             map.put("请求耗时/毫秒", sysLog.getTime());
-            map.put("异常详情", new String(ObjectUtil.isNotNull(sysLog.getExceptionDetail()) ? sysLog.getExceptionDetail() : "".getBytes()));
+            map.put("异常详情", details.getOrDefault(sysLog.getId(), ""));
             map.put("创建日期", sysLog.getCreateTime());
             list.add(map);
         }
@@ -188,14 +130,56 @@ public class SysLogServiceImpl implements SysLogService {
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
-    public void delAllByError() {
-        logRepository.deleteByLogType("ERROR");
+    public void downloadArchive(SysLogQueryCriteria criteria, HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=utf-8");
+        response.setHeader("Content-Disposition", "attachment;filename=archive.csv");
+        Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+        // BOM，避免 Excel 打开时中文乱码
+        writer.write('\uFEFF');
+        writeCsv(writer, "用户名", "IP", "IP来源", "描述", "浏览器", "请求耗时/毫秒", "异常指纹", "创建日期");
+        try {
+            // 归档逐块解压输出，不在内存中保留全部数据
+            sysLogArchive.forEach(criteria, sysLog -> {
+                try {
+                    writeCsv(writer, sysLog.getUsername(), sysLog.getRequestIp(), sysLog.getAddress(), sysLog.getDescription(),
+                            sysLog.getBrowser(), sysLog.getTime(), sysLog.getErrorFingerprint(),
+                            DateUtil.localDateTimeFormatyMdHms(sysLog.getCreateTime().toLocalDateTime()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void delAllByError() throws IOException {
+        // 按主键区间分批删除，避免一次性删除锁表
+        sysLogRetention.clear("ERROR");
     }
 
     @Override
-    @Transactional(rollbackFor = Exception.class)
-    public void delAllByInfo() {
-        logRepository.deleteByLogType("INFO");
+    public void delAllByInfo() throws IOException {
+        sysLogRetention.clear("INFO");
+    }
+
+    private static void writeCsv(Writer writer, Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = values[i] == null ? "" : values[i].toString();
+            // 处理数据以防止CSV注入
+            if (value.startsWith("=") || value.startsWith("+") || value.startsWith("-") || value.startsWith("@")) {
+                value = "'" + value;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                value = '"' + value.replace("\"", "\"\"") + '"';
+            }
+            writer.write(value);
+        }
+        writer.write("\r\n");
     }
 }
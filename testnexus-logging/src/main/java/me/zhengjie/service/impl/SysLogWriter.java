@@ -0,0 +1,320 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.config.properties.SysLogProperties;
+import me.zhengjie.domain.SysLog;
+import me.zhengjie.utils.StringUtils;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 系统日志批量写入，日志先进入有界队列，由单独的线程按数量或时间攒批，
+ * 使用 JDBC 批量插入（MySQL 连接开启 rewriteBatchedStatements 后合并为多值 INSERT）。
+ * 参数序列化、IP 归属地解析与异常堆栈去重也在写入线程中完成。
+ * 日志与异常堆栈在同一事务中写入，失败时整批重试一次，仍失败则逐条写入，只丢弃写不进去的行
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+@Component
+public class SysLogWriter implements MetricsSource {
+
+    private static final String INSERT_SQL = "INSERT INTO sys_log (description, log_type, method, params, request_ip, " +
+            "time, username, address, browser, error_fingerprint, error_message, sample_rate, create_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final LogParamSerializer paramSerializer;
+
+    private final SysLogErrorStore errorStore;
+
+    private final SysLogProperties.Writer properties;
+
+    private final BlockingQueue<PendingLog> queue;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private volatile long lastFlushMillis;
+    private volatile long maxFlushMillis;
+
+    private volatile boolean running = true;
+
+    private Thread worker;
+
+    public SysLogWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                        LogParamSerializer paramSerializer, SysLogErrorStore errorStore, SysLogProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.paramSerializer = paramSerializer;
+        this.errorStore = errorStore;
+        this.properties = properties.getWriter();
+        this.queue = new ArrayBlockingQueue<>(this.properties.getQueueCapacity());
+    }
+
+    @PostConstruct
+    public void start() {
+        worker = new Thread(this::drain, "el-log-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * 提交日志，队列满时按配置的策略处理
+     * @param sysLog 日志
+     * @param arguments 请求参数引用，为 null 时不记录参数
+     * @return 是否进入队列
+     */
+    public boolean write(SysLog sysLog, LogParamSerializer.Arguments arguments) {
+        if (sysLog.getCreateTime() == null) {
+            sysLog.setCreateTime(new Timestamp(System.currentTimeMillis()));
+        }
+        PendingLog pending = new PendingLog(sysLog, arguments);
+        boolean offered;
+        switch (properties.getOverflowPolicy()) {
+            case BLOCK:
+                try {
+                    offered = queue.offer(pending, properties.getBlockTimeout(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    offered = false;
+                }
+                break;
+            case SAMPLE:
+                if (isAboveWatermark() && !"ERROR".equals(sysLog.getLogType())) {
+                    if (sampleCounter.incrementAndGet() % properties.getSampleEvery() != 0) {
+                        sampledOut.incrementAndGet();
+                        return false;
+                    }
+                    // 保留下来的日志代表 N 条，采样率同步折算
+                    double rate = sysLog.getSampleRate() == null ? 1.0 : sysLog.getSampleRate();
+                    sysLog.setSampleRate(rate / properties.getSampleEvery());
+                }
+                offered = queue.offer(pending);
+                break;
+            default:
+                offered = queue.offer(pending);
+        }
+        if (offered) {
+            accepted.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+        return offered;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sys_log_writer";
+    }
+
+    /**
+     * 获取写入统计信息（监控用）
+     * @return /
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(12);
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", properties.getQueueCapacity());
+        stats.put("accepted", accepted.get());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        stats.put("sampledOut", sampledOut.get());
+        stats.put("failed", failed.get());
+        stats.put("flushes", flushes.get());
+        stats.put("retries", retries.get());
+        stats.put("lastFlushMillis", lastFlushMillis);
+        stats.put("maxFlushMillis", maxFlushMillis);
+        return stats;
+    }
+
+    private boolean isAboveWatermark() {
+        return queue.size() >= properties.getQueueCapacity() * properties.getSampleWatermark();
+    }
+
+    private void drain() {
+        int batchSize = properties.getBatchSize();
+        List<PendingLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingLog first = queue.poll(properties.getFlushInterval(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 从第一条开始计时，攒满一批或到达刷新间隔即写入
+                long deadline = System.currentTimeMillis() + properties.getFlushInterval();
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || wait <= 0) {
+                        break;
+                    }
+                    PendingLog next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 关闭时把剩余日志全部写完
+                queue.drainTo(batch);
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<PendingLog> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        List<SysLog> logs = new ArrayList<>(batch.size());
+        for (PendingLog pending : batch) {
+            try {
+                logs.add(prepare(pending));
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.error("系统日志预处理失败，丢弃 1 条：{}", e.getMessage(), e);
+            }
+        }
+        if (!insert(logs)) {
+            if (logs.size() == 1) {
+                failed.incrementAndGet();
+            } else {
+                // 逐条写入，只丢弃写不进去的行
+                for (SysLog sysLog : logs) {
+                    if (!insert(Collections.singletonList(sysLog))) {
+                        failed.incrementAndGet();
+                    }
+                }
+            }
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        lastFlushMillis = elapsed;
+        if (elapsed > maxFlushMillis) {
+            maxFlushMillis = elapsed;
+        }
+        flushes.incrementAndGet();
+    }
+
+    /**
+     * 在同一事务中写入日志并累计异常堆栈，失败时重试一次
+     * @return 是否写入成功
+     */
+    private boolean insert(List<SysLog> logs) {
+        if (logs.isEmpty()) {
+            return true;
+        }
+        List<Object[]> args = new ArrayList<>(logs.size());
+        // 同一批中相同的堆栈只保存一次
+        Map<String, String> traces = new HashMap<>(4);
+        Map<String, Integer> counts = new HashMap<>(4);
+        for (SysLog sysLog : logs) {
+            if (sysLog.getErrorFingerprint() != null) {
+                traces.putIfAbsent(sysLog.getErrorFingerprint(), new String(sysLog.getExceptionDetail()));
+                counts.merge(sysLog.getErrorFingerprint(), 1, Integer::sum);
+            }
+            args.add(new Object[]{sysLog.getDescription(), sysLog.getLogType(), sysLog.getMethod(), sysLog.getParams(),
+                    sysLog.getRequestIp(), sysLog.getTime(), sysLog.getUsername(), sysLog.getAddress(),
+                    sysLog.getBrowser(), sysLog.getErrorFingerprint(), sysLog.getErrorMessage(), sysLog.getSampleRate(),
+                    sysLog.getCreateTime()});
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(INSERT_SQL, args);
+                    if (!counts.isEmpty()) {
+                        errorStore.record(traces, counts, new Timestamp(System.currentTimeMillis()));
+                    }
+                });
+                written.addAndGet(logs.size());
+                return true;
+            } catch (Exception e) {
+                if (attempt >= 2) {
+                    log.error("系统日志写入失败，{} 条：{}", logs.size(), e.getMessage(), e);
+                    return false;
+                }
+                retries.incrementAndGet();
+                log.warn("系统日志写入失败，{} 条，重试：{}", logs.size(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 补全参数、归属地与异常指纹
+     */
+    private SysLog prepare(PendingLog pending) {
+        SysLog sysLog = pending.sysLog;
+        sysLog.setAddress(StringUtils.getCityInfo(sysLog.getRequestIp()));
+        if (sysLog.getExceptionDetail() != null) {
+            String trace = new String(sysLog.getExceptionDetail());
+            sysLog.setErrorFingerprint(SysLogErrorStore.fingerprint(trace));
+            // 相同指纹只保存第一份堆栈，每条日志的异常消息单独记录
+            sysLog.setErrorMessage(SysLogErrorStore.messages(trace));
+        }
+        if (pending.arguments != null) {
+            LogParamSerializer.Result result = paramSerializer.serialize(pending.arguments);
+            sysLog.setParams(result.getJson());
+            // 如果没有获取到用户名，尝试从参数中获取
+            if (StringUtils.isBlank(sysLog.getUsername())) {
+                sysLog.setUsername(result.getUsername());
+            }
+        }
+        return sysLog;
+    }
+
+    private static class PendingLog {
+
+        private final SysLog sysLog;
+
+        private final LogParamSerializer.Arguments arguments;
+
+        private PendingLog(SysLog sysLog, LogParamSerializer.Arguments arguments) {
+            this.sysLog = sysLog;
+            this.arguments = arguments;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package me.zhengjie.service.impl;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.annotation.JSONField;
+import me.zhengjie.config.properties.SysLogProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogParamSerializerTest {
+
+    private final SysLogProperties properties = new SysLogProperties();
+
+    @Test
+    public void testFollowsJsonFieldAndGetters() throws Exception {
+        User user = new User();
+        user.setUsername("admin");
+        user.setPassword("123456");
+        user.setNickName("管理员");
+        JSONObject json = serialize("update", user);
+        // 请求体的字段直接作为参数，与接口输出一致
+        assertEquals("admin", json.getString("username"));
+        assertEquals("管理员", json.getString("nick_name"));
+        assertEquals("ADMIN", json.getString("display"));
+        assertFalse(json.containsKey("internal"));
+        assertFalse(json.containsKey("nickName"));
+        assertEquals("******", json.getString("password"));
+        assertEquals("admin", new LogParamSerializer(properties).serialize(capture("update", user)).getUsername());
+    }
+
+    @Test
+    public void testSnapshotOnCapture() throws Exception {
+        User user = new User();
+        user.setUsername("admin");
+        List<String> ids = new ArrayList<>(Arrays.asList("1", "2"));
+        LogParamSerializer.Arguments arguments = capture("delete", ids, user);
+        // 请求线程返回后参数再被修改，日志仍记录调用时的值
+        user.setUsername("changed");
+        ids.clear();
+        JSONObject json = JSON.parseObject(new LogParamSerializer(properties).serialize(arguments).getJson());
+        assertEquals(Arrays.asList("1", "2"), json.getJSONArray("ids").toJavaList(String.class));
+        assertEquals("admin", json.getJSONObject("user").getString("username"));
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        properties.getParams().setMaxItems(2);
+        properties.getParams().setMaxStringLength(4);
+        User user = new User();
+        user.setUsername("administrator");
+        List<String> ids = Arrays.asList("1", "2", "3");
+        JSONObject json = JSON.parseObject(new LogParamSerializer(properties).serialize(capture("delete", ids, user)).getJson());
+        assertEquals(Arrays.asList("1", "2", "...+1 items"), json.getJSONArray("ids").toJavaList(String.class));
+        assertEquals("admi...(+9 chars)", json.getJSONObject("user").getString("username"));
+
+        properties.getParams().setMaxLength(20);
+        String truncated = new LogParamSerializer(properties).serialize(capture("delete", ids, user)).getJson();
+        assertTrue(truncated.endsWith("...(truncated)"));
+    }
+
+    @Test
+    public void testFilesAreNotSerialized() throws Exception {
+        MultipartFile file = new MockMultipartFile("file", "a.txt", "text/plain", new byte[16]);
+        JSONObject json = serialize("upload", Collections.singletonList(file));
+        assertEquals(Collections.singletonList("[file a.txt, 16 bytes]"), json.getJSONArray("files").toJavaList(String.class));
+    }
+
+    @Test
+    public void testCaptureIsBounded() throws Exception {
+        // 一百万个元素的请求体，快照只访问上限以内的元素
+        AtomicInteger visited = new AtomicInteger();
+        List<User> users = new AbstractList<User>() {
+            @Override
+            public User get(int index) {
+                visited.incrementAndGet();
+                User user = new User();
+                user.setUsername("user" + index);
+                return user;
+            }
+
+            @Override
+            public int size() {
+                return 1_000_000;
+            }
+        };
+        JSONObject json = serialize("batch", users);
+        assertEquals(properties.getParams().getMaxItems(), visited.get());
+        assertEquals("...+999980 items", json.getJSONArray("reqBodyList").getString(20));
+
+        // 条数上限放开后由总长度上限截止
+        properties.getParams().setMaxItems(Integer.MAX_VALUE);
+        visited.set(0);
+        String truncated = new LogParamSerializer(properties).serialize(capture("batch", users)).getJson();
+        assertTrue(truncated.endsWith("...(truncated)"));
+        assertTrue(visited.get() < properties.getParams().getMaxLength() / 10, "visited " + visited.get());
+
+        // 大字符串在快照时截取，不保留原值
+        char[] blob = new char[1 << 20];
+        Arrays.fill(blob, 'x');
+        json = serialize("delete", Collections.singletonList(new String(blob)), null);
+        assertEquals(512 + "...(+1048064 chars)".length(), json.getJSONArray("ids").getString(0).length());
+    }
+
+    @Test
+    public void testCircularReference() throws Exception {
+        Map<String, Object> map = new HashMap<>();
+        map.put("self", map);
+        JSONObject json = serialize("update", map);
+        assertEquals("[circular reference]", json.getString("self"));
+    }
+
+    private JSONObject serialize(String method, Object... args) throws Exception {
+        return JSON.parseObject(new LogParamSerializer(properties).serialize(capture(method, args)).getJson());
+    }
+
+    private LogParamSerializer.Arguments capture(String name, Object... args) throws Exception {
+        for (Method method : Api.class.getDeclaredMethods()) {
+            if (method.getName().equals(name)) {
+                return new LogParamSerializer(properties).capture(method, args);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    @SuppressWarnings("unused")
+    public static class Api {
+
+        public void update(@RequestBody User user) {
+        }
+
+        public void delete(List<String> ids, User user) {
+        }
+
+        public void upload(List<MultipartFile> files) {
+        }
+
+        public void batch(@RequestBody List<User> users) {
+        }
+    }
+
+    public static class User {
+
+        private String username;
+
+        private String password;
+
+        @JSONField(name = "nick_name")
+        private String nickName;
+
+        @JSONField(serialize = false)
+        private String internal = "secret";
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public String getNickName() {
+            return nickName;
+        }
+
+        public void setNickName(String nickName) {
+            this.nickName = nickName;
+        }
+
+        public String getInternal() {
+            return internal;
+        }
+
+        public String getDisplay() {
+            return username == null ? null : username.toUpperCase();
+        }
+    }
+}
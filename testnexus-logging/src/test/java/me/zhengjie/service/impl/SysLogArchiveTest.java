@@ -0,0 +1,128 @@
+package me.zhengjie.service.impl;
+
+import me.zhengjie.config.properties.SysLogProperties;
+import me.zhengjie.domain.SysLog;
+import me.zhengjie.service.dto.SysLogQueryCriteria;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 H2 的 MySQL 兼容模式模拟 sys_log
+ */
+public class SysLogArchiveTest {
+
+    @TempDir
+    File directory;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SysLogProperties properties;
+
+    private SysLogArchive archive;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE sys_log (log_id bigint AUTO_INCREMENT PRIMARY KEY, description varchar(255), " +
+                "log_type varchar(10) NOT NULL, method varchar(255), params text, request_ip varchar(255), time bigint, " +
+                "username varchar(255), address varchar(255), browser varchar(255), exception_detail text, " +
+                "error_fingerprint varchar(32), error_message text, sample_rate double, create_time datetime NOT NULL)");
+        properties = new SysLogProperties();
+        properties.getArchive().setPath(directory.getAbsolutePath());
+        properties.getArchive().setBlockRows(4);
+        properties.getArchive().setArchiveAfterDays(10);
+        properties.getRetention().setChunkPause(0);
+        archive = new SysLogArchive(jdbcTemplate, new SysLogErrorStore(jdbcTemplate), properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        archive.stop();
+    }
+
+    @Test
+    public void testLeftoverCleanupKeepsUnarchivedRows() throws Exception {
+        for (long id = 1; id <= 6; id++) {
+            // 3 号日志写入较晚，第一次归档时还未过期
+            insert(id, id == 3 ? 5 : 20);
+        }
+        archive.start();
+        archive.run();
+        assertEquals(Collections.singletonList(3L), ids());
+
+        // 模拟写完段文件后未来得及删除，随后归档天数调小
+        insert(5, 20);
+        insert(6, 20);
+        properties.getArchive().setArchiveAfterDays(1);
+        archive.run();
+
+        // 3 号日志不在段中，不能按本次的截止时间一并删除
+        assertEquals(Collections.singletonList(3L), ids());
+        assertTrue(archive.findById(5).isPresent());
+        assertFalse(archive.findById(3).isPresent());
+    }
+
+    @Test
+    public void testMergePagination() throws Exception {
+        List<Long> archived = new ArrayList<>();
+        for (long id = 1; id <= 23; id++) {
+            insert(id, 20);
+            archived.add(0, id);
+        }
+        archive.start();
+        archive.run();
+        List<SysLog> hot = new ArrayList<>();
+        for (long id = 30; id >= 28; id--) {
+            SysLog sysLog = new SysLog("INFO", 1L);
+            sysLog.setId(id);
+            hot.add(sysLog);
+        }
+        List<Long> expected = new ArrayList<>(Arrays.asList(30L, 29L, 28L));
+        expected.addAll(archived);
+
+        int size = 5;
+        for (int page = 0; page * size < expected.size() + size; page++) {
+            PageRequest pageable = PageRequest.of(page, size);
+            int from = Math.min(page * size, hot.size());
+            Page<SysLog> hotPage = new PageImpl<>(hot.subList(from, Math.min(from + size, hot.size())), pageable, hot.size());
+            Page<SysLog> merged = archive.merge(hotPage, new SysLogQueryCriteria(), pageable);
+            assertEquals(expected.size(), merged.getTotalElements());
+            int start = Math.min(page * size, expected.size());
+            assertEquals(expected.subList(start, Math.min(start + size, expected.size())),
+                    merged.getContent().stream().map(SysLog::getId).collect(Collectors.toList()));
+        }
+        // 同一查询条件翻页时复用各块的计数
+        assertTrue((Long) archive.getStats().get("countHits") > 0);
+
+        SysLogQueryCriteria criteria = new SysLogQueryCriteria();
+        criteria.setLogType("ERROR");
+        Page<SysLog> empty = new PageImpl<>(Collections.emptyList(), PageRequest.of(0, size), 0);
+        assertEquals(0, archive.merge(empty, criteria, PageRequest.of(0, size)).getTotalElements());
+    }
+
+    private void insert(long id, int daysAgo) {
+        jdbcTemplate.update("INSERT INTO sys_log (log_id, log_type, time, create_time) VALUES (?, 'INFO', 1, ?)",
+                id, Timestamp.valueOf(LocalDateTime.now().minusDays(daysAgo)));
+    }
+
+    private List<Long> ids() {
+        return jdbcTemplate.queryForList("SELECT log_id FROM sys_log ORDER BY log_id", Long.class);
+    }
+}
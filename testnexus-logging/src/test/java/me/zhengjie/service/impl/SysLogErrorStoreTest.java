@@ -0,0 +1,84 @@
+package me.zhengjie.service.impl;
+
+import me.zhengjie.domain.SysLog;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 H2 的 MySQL 兼容模式模拟 sys_log_error
+ */
+public class SysLogErrorStoreTest {
+
+    private static final String STACK = "\tat me.zhengjie.service.impl.UserServiceImpl.findById(UserServiceImpl.java:88)\n" +
+            "\tat me.zhengjie.rest.UserController.query(UserController.java:42)\n";
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SysLogErrorStore store;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE sys_log_error (fingerprint varchar(32) PRIMARY KEY, detail blob NOT NULL, " +
+                "occurrences bigint NOT NULL, first_time datetime NOT NULL, last_time datetime NOT NULL)");
+        store = new SysLogErrorStore(jdbcTemplate);
+    }
+
+    @Test
+    public void testSameStackDifferentMessages() {
+        String first = "me.zhengjie.exception.EntityNotFoundException: User with id 1 does not exist\n" + STACK +
+                "Caused by: java.lang.IllegalStateException: row 1 missing\n" + STACK;
+        String second = "me.zhengjie.exception.EntityNotFoundException: User with id 2 does not exist\n" + STACK +
+                "Caused by: java.lang.IllegalStateException: row 2 missing\n" + STACK;
+        String fingerprint = SysLogErrorStore.fingerprint(first);
+        assertEquals(fingerprint, SysLogErrorStore.fingerprint(second));
+
+        // 与写入线程一致：同一指纹只保存第一份堆栈
+        Map<String, String> traces = Collections.singletonMap(fingerprint, first);
+        store.record(traces, Collections.singletonMap(fingerprint, 2), new Timestamp(System.currentTimeMillis()));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sys_log_error", Integer.class));
+
+        SysLog a = error(1L, fingerprint, first);
+        SysLog b = error(2L, fingerprint, second);
+        Map<Long, String> details = store.loadAll(Arrays.asList(a, b));
+        assertEquals(first, details.get(1L));
+        assertEquals(second, details.get(2L));
+        assertEquals(second, store.load(b));
+    }
+
+    @Test
+    public void testMessages() {
+        String trace = "java.lang.RuntimeException: boom\r\n\tat a.B.c(B.java:1)\r\n\t... 3 more\r\n" +
+                "\tSuppressed: java.io.IOException: closed\r\n\t\tat a.B.d(B.java:2)\r\n";
+        String messages = SysLogErrorStore.messages(trace);
+        assertEquals("java.lang.RuntimeException: boom\n\tSuppressed: java.io.IOException: closed\n", messages);
+        // 换行符与堆栈行保持原样
+        assertEquals(trace, SysLogErrorStore.restore(trace, messages));
+        assertEquals(trace.replace("boom", "bang"),
+                SysLogErrorStore.restore(trace, messages.replace("boom", "bang")));
+    }
+
+    @Test
+    public void testRestoreWithoutMessages() {
+        String trace = "java.lang.RuntimeException: boom\n" + STACK;
+        assertEquals(trace, SysLogErrorStore.restore(trace, null));
+        assertEquals(trace, SysLogErrorStore.restore(trace, ""));
+    }
+
+    private static SysLog error(Long id, String fingerprint, String trace) {
+        SysLog sysLog = new SysLog("ERROR", 10L);
+        sysLog.setId(id);
+        sysLog.setErrorFingerprint(fingerprint);
+        sysLog.setErrorMessage(SysLogErrorStore.messages(trace));
+        return sysLog;
+    }
+}
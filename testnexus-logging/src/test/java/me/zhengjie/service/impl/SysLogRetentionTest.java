@@ -0,0 +1,134 @@
+package me.zhengjie.service.impl;
+
+import me.zhengjie.config.properties.SysLogProperties;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 H2 的 MySQL 兼容模式模拟 sys_log
+ */
+public class SysLogRetentionTest {
+
+    @TempDir
+    File directory;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Object[]> deletes = new ArrayList<>();
+
+    private SysLogArchive archive;
+
+    private SysLogRetention retention;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        // 记录每一批删除的主键区间
+        jdbcTemplate = new JdbcTemplate(dataSource) {
+            @Override
+            public int update(String sql, Object... args) {
+                if (sql.startsWith("DELETE FROM sys_log ")) {
+                    deletes.add(args);
+                }
+                return super.update(sql, args);
+            }
+        };
+        jdbcTemplate.execute("CREATE TABLE sys_log (log_id bigint AUTO_INCREMENT PRIMARY KEY, description varchar(255), " +
+                "log_type varchar(10) NOT NULL, method varchar(255), params text, request_ip varchar(255), time bigint, " +
+                "username varchar(255), address varchar(255), browser varchar(255), exception_detail text, " +
+                "error_fingerprint varchar(32), error_message text, sample_rate double, create_time datetime NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE sys_log_error (fingerprint varchar(32) PRIMARY KEY, detail blob NOT NULL, " +
+                "occurrences bigint NOT NULL, first_time datetime NOT NULL, last_time datetime NOT NULL)");
+        SysLogProperties properties = new SysLogProperties();
+        properties.getArchive().setPath(directory.getAbsolutePath());
+        properties.getRetention().setChunkSize(4);
+        properties.getRetention().setChunkPause(0);
+        SysLogErrorStore errorStore = new SysLogErrorStore(jdbcTemplate);
+        archive = new SysLogArchive(jdbcTemplate, errorStore, properties);
+        retention = new SysLogRetention(jdbcTemplate, errorStore, archive, properties);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        archive.stop();
+    }
+
+    @Test
+    public void testClearDeletesInIdRanges() throws Exception {
+        // 主键不连续，ERROR 与 INFO 交错
+        for (long id = 1; id <= 10; id++) {
+            insert(id, id % 3 == 0 ? "ERROR" : "INFO");
+        }
+        for (long id = 100; id <= 102; id++) {
+            insert(id, "INFO");
+        }
+        jdbcTemplate.update("INSERT INTO sys_log_error (fingerprint, detail, occurrences, first_time, last_time) " +
+                "VALUES ('f', X'00', 1, ?, ?)", now(), now());
+
+        // 返回时已全部删除
+        assertEquals(10, retention.clear("INFO"));
+        assertEquals(3, count("log_type = 'ERROR'"));
+        assertEquals(0, count("log_type = 'INFO'"));
+        assertEquals(10L, retention.getStats().get("deletedRows"));
+
+        // 区间从最小主键开始按 chunkSize 递增，遇到空区间后跳到下一条待删除的日志
+        assertArrayEquals(new long[]{1, 5, 9, 13, 100}, deletes.stream().mapToLong(args -> ((Number) args[0]).longValue()).toArray());
+        for (Object[] args : deletes) {
+            assertEquals(((Number) args[0]).longValue() + 4, ((Number) args[1]).longValue());
+        }
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sys_log_error", Integer.class));
+
+        deletes.clear();
+        assertEquals(3, retention.clear("ERROR"));
+        assertEquals(0, count("1 = 1"));
+        // 区间只覆盖 ERROR 日志的主键范围
+        assertEquals(2, deletes.size());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sys_log_error", Integer.class));
+    }
+
+    @Test
+    public void testClearSkipsIdGaps() throws Exception {
+        insert(1, "INFO");
+        insert(2, "ERROR");
+        insert(1_000_000, "INFO");
+        insert(1_000_001, "INFO");
+        assertEquals(3, retention.clear("INFO"));
+        // 空区间 [5, 9) 之后直接跳到 1000000，不逐段扫描中间的空洞
+        assertEquals(3, deletes.size());
+        assertEquals(1_000_000L, ((Number) deletes.get(2)[0]).longValue());
+        assertEquals(1, count("1 = 1"));
+    }
+
+    @Test
+    public void testClearEmpty() throws Exception {
+        assertEquals(0, retention.clear("ERROR"));
+        assertTrue(deletes.isEmpty());
+    }
+
+    private void insert(long id, String logType) {
+        jdbcTemplate.update("INSERT INTO sys_log (log_id, log_type, time, create_time) VALUES (?, ?, 1, ?)",
+                id, logType, now());
+    }
+
+    private int count(String condition) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sys_log WHERE " + condition, Integer.class);
+    }
+
+    private static Timestamp now() {
+        return Timestamp.valueOf(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,89 @@
+package me.zhengjie.service.impl;
+
+import me.zhengjie.annotation.Log;
+import me.zhengjie.config.properties.SysLogProperties;
+import me.zhengjie.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SysLogSamplerTest {
+
+    @Test
+    public void testResolveOrder() throws Exception {
+        SysLogSampler sampler = new SysLogSampler(new SysLogProperties());
+        Method annotated = Api.class.getMethod("annotated");
+        Method plain = Api.class.getMethod("plain");
+        // 注解指定不记录
+        assertNull(sampler.sample(annotated, "GET", 0));
+        assertEquals(1.0, sampler.sample(plain, "GET", 0));
+        // 修改类请求与慢调用必定记录
+        assertEquals(1.0, sampler.sample(annotated, "POST", 0));
+        assertEquals(1.0, sampler.sample(annotated, "GET", 5000));
+
+        // 规则优先于注解，前缀规则同样生效
+        sampler.updatePolicy(policy("Api.*", 1.0));
+        assertEquals(1.0, sampler.sample(annotated, "GET", 0));
+        sampler.updatePolicy(policy("Api.plain", 0.0));
+        assertNull(sampler.sample(plain, "GET", 0));
+
+        assertThrows(BadRequestException.class, () -> sampler.updatePolicy(policy("Api.plain", 2.0)));
+        assertEquals(Collections.singletonMap("Api.plain", 0.0), sampler.getPolicy().getRules());
+    }
+
+    @Test
+    public void testUpdateDuringSample() throws Exception {
+        SysLogSampler sampler = new SysLogSampler(new SysLogProperties());
+        Method plain = Api.class.getMethod("plain");
+        AtomicBoolean running = new AtomicBoolean(true);
+        // 其他线程持续按旧策略解析采样率
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                while (running.get()) {
+                    sampler.sample(plain, "GET", 0);
+                }
+            });
+            readers[i].start();
+        }
+        try {
+            for (int i = 0; i < 20000; i++) {
+                boolean record = i % 2 == 0;
+                sampler.updatePolicy(policy("Api.plain", record ? 1.0 : 0.0));
+                // 修改后的第一次采样必须使用新策略
+                Double rate = sampler.sample(plain, "GET", 0);
+                if (record) {
+                    assertEquals(1.0, rate);
+                } else {
+                    assertNull(rate);
+                }
+            }
+        } finally {
+            running.set(false);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+    }
+
+    private static SysLogProperties.Policy policy(String rule, double rate) {
+        SysLogProperties.Policy policy = new SysLogProperties.Policy();
+        policy.getRules().put(rule, rate);
+        return policy;
+    }
+
+    @SuppressWarnings("unused")
+    public static class Api {
+
+        @Log(value = "查询", sampleRate = 0)
+        public void annotated() {
+        }
+
+        public void plain() {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package me.zhengjie.service.impl;
+
+import me.zhengjie.domain.SysLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SysLogSegmentTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        List<SysLog> logs = new ArrayList<>();
+        SysLogSegment.Writer writer = new SysLogSegment.Writer(directory, 4, 1_000_000L);
+        for (long id = 1; id <= 10; id++) {
+            SysLog sysLog = new SysLog(id % 3 == 0 ? "ERROR" : "INFO", id % 5 == 0 ? null : id * 10);
+            sysLog.setId(id);
+            sysLog.setCreateTime(new Timestamp(id * 1000));
+            sysLog.setUsername(id % 2 == 0 ? "admin" : null);
+            sysLog.setDescription("查询用户");
+            sysLog.setParams("{\"id\":" + id + "}");
+            sysLog.setSampleRate(id % 4 == 0 ? 0.5 : null);
+            if ("ERROR".equals(sysLog.getLogType())) {
+                sysLog.setErrorFingerprint("fp");
+                sysLog.setErrorMessage("java.lang.IllegalStateException: " + id + "\n");
+            }
+            writer.append(sysLog);
+            logs.add(sysLog);
+        }
+        SysLogSegment written = writer.finish();
+
+        SysLogSegment segment = SysLogSegment.open(written.getFile());
+        assertEquals(10, segment.getRows());
+        assertEquals(1, segment.getMinId());
+        assertEquals(10, segment.getMaxId());
+        assertEquals(1000, segment.getMinTime());
+        assertEquals(10_000, segment.getMaxTime());
+        assertEquals(1_000_000L, segment.getCutoff());
+        List<SysLog> read = new ArrayList<>();
+        try (SysLogSegment.Reader reader = segment.reader()) {
+            for (SysLogSegment.BlockMeta meta : segment.getBlocks()) {
+                SysLogSegment.Block block = reader.read(meta);
+                for (int i = 0; i < block.rows(); i++) {
+                    // 块内日志类型相同，便于按类型裁剪
+                    assertEquals(meta.logType, block.logType(i));
+                    read.add(block.row(i));
+                }
+            }
+        }
+        assertEquals(logs.size(), read.size());
+        for (SysLog expected : logs) {
+            SysLog actual = read.stream().filter(s -> s.getId().equals(expected.getId())).findFirst().orElseThrow(AssertionError::new);
+            assertEquals(expected.getLogType(), actual.getLogType());
+            assertEquals(expected.getTime(), actual.getTime());
+            assertEquals(expected.getCreateTime(), actual.getCreateTime());
+            assertEquals(expected.getUsername(), actual.getUsername());
+            assertEquals(expected.getParams(), actual.getParams());
+            assertEquals(expected.getSampleRate(), actual.getSampleRate());
+            assertEquals(expected.getErrorFingerprint(), actual.getErrorFingerprint());
+            assertEquals(expected.getErrorMessage(), actual.getErrorMessage());
+        }
+    }
+
+    @Test
+    public void testAppendRawKeepsBlocks() throws Exception {
+        SysLogSegment.Writer writer = new SysLogSegment.Writer(directory, 2, 5000L);
+        for (long id = 1; id <= 4; id++) {
+            SysLog sysLog = new SysLog(id <= 2 ? "INFO" : "ERROR", 1L);
+            sysLog.setId(id);
+            sysLog.setCreateTime(new Timestamp(id));
+            writer.append(sysLog);
+        }
+        SysLogSegment source = writer.finish();
+
+        SysLogSegment.Writer copy = new SysLogSegment.Writer(directory, 2, source.getCutoff());
+        try (SysLogSegment.Reader reader = source.reader()) {
+            for (SysLogSegment.BlockMeta meta : source.getBlocks()) {
+                if (!"ERROR".equals(meta.logType)) {
+                    copy.appendRaw(meta, reader.readRaw(meta));
+                }
+            }
+        }
+        SysLogSegment copied = SysLogSegment.open(copy.finish().getFile());
+        assertEquals(2, copied.getRows());
+        assertEquals(2, copied.getMaxId());
+        assertEquals(5000L, copied.getCutoff());
+        try (SysLogSegment.Reader reader = copied.reader()) {
+            assertEquals(Long.valueOf(2), reader.read(copied.getBlocks().get(0)).row(1).getId());
+        }
+    }
+}
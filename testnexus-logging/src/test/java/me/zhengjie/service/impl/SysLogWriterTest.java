@@ -0,0 +1,186 @@
+package me.zhengjie.service.impl;
+
+import me.zhengjie.config.properties.SysLogProperties;
+import me.zhengjie.domain.SysLog;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 H2 的 MySQL 兼容模式模拟 sys_log 与 sys_log_error
+ */
+public class SysLogWriterTest {
+
+    private static final String TRACE = "java.lang.IllegalStateException: %s\n" +
+            "\tat me.zhengjie.rest.UserController.query(UserController.java:42)\n";
+
+    private JdbcDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SysLogProperties properties;
+
+    private SysLogWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE sys_log (log_id bigint AUTO_INCREMENT PRIMARY KEY, description varchar(255), " +
+                "log_type varchar(10) NOT NULL, method varchar(255), params text, request_ip varchar(255), time bigint, " +
+                "username varchar(255), address varchar(255), browser varchar(255), exception_detail text, " +
+                "error_fingerprint varchar(32), error_message text, sample_rate double, create_time datetime NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE sys_log_error (fingerprint varchar(32) PRIMARY KEY, detail blob NOT NULL, " +
+                "occurrences bigint NOT NULL, first_time datetime NOT NULL, last_time datetime NOT NULL)");
+        properties = new SysLogProperties();
+        properties.getWriter().setBatchSize(3);
+        properties.getWriter().setFlushInterval(20);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testBatching() throws InterruptedException {
+        writer = create(jdbcTemplate, jdbcTemplate);
+        writer.start();
+        for (int i = 0; i < 7; i++) {
+            assertTrue(writer.write(info("query " + i), null));
+        }
+        writer.write(error(String.format(TRACE, "first")), null);
+        writer.write(error(String.format(TRACE, "second")), null);
+        writer.stop();
+        writer = null;
+
+        assertEquals(9, count("sys_log"));
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT SUM(occurrences) FROM sys_log_error", Long.class));
+        List<String> messages = jdbcTemplate.queryForList("SELECT error_message FROM sys_log WHERE log_type = 'ERROR' " +
+                "ORDER BY log_id", String.class);
+        assertEquals(String.format(TRACE, "first").split("\n")[0] + "\n", messages.get(0));
+        assertEquals(String.format(TRACE, "second").split("\n")[0] + "\n", messages.get(1));
+    }
+
+    @Test
+    public void testDropWhenFull() {
+        properties.getWriter().setQueueCapacity(2);
+        properties.getWriter().setOverflowPolicy(SysLogProperties.OverflowPolicy.DROP);
+        // 不启动写入线程，队列只进不出
+        SysLogWriter idle = create(jdbcTemplate, jdbcTemplate);
+        assertTrue(idle.write(info("a"), null));
+        assertTrue(idle.write(info("b"), null));
+        assertFalse(idle.write(info("c"), null));
+        assertEquals(1L, idle.getStats().get("dropped"));
+    }
+
+    @Test
+    public void testBlockTimesOut() {
+        properties.getWriter().setQueueCapacity(1);
+        properties.getWriter().setOverflowPolicy(SysLogProperties.OverflowPolicy.BLOCK);
+        properties.getWriter().setBlockTimeout(20);
+        SysLogWriter idle = create(jdbcTemplate, jdbcTemplate);
+        assertTrue(idle.write(info("a"), null));
+        // 等待超时后丢弃
+        assertFalse(idle.write(info("b"), null));
+        assertEquals(1L, idle.getStats().get("dropped"));
+    }
+
+    @Test
+    public void testSampleAboveWatermark() {
+        properties.getWriter().setQueueCapacity(10);
+        properties.getWriter().setOverflowPolicy(SysLogProperties.OverflowPolicy.SAMPLE);
+        properties.getWriter().setSampleWatermark(0.2);
+        properties.getWriter().setSampleEvery(2);
+        SysLogWriter idle = create(jdbcTemplate, jdbcTemplate);
+        assertTrue(idle.write(info("a"), null));
+        assertTrue(idle.write(info("b"), null));
+        // 达到水位后每 2 条保留 1 条，保留的日志采样率折半
+        assertFalse(idle.write(info("c"), null));
+        SysLog kept = info("d");
+        assertTrue(idle.write(kept, null));
+        assertEquals(0.5, kept.getSampleRate());
+        // ERROR 日志不参与采样
+        assertTrue(idle.write(error(String.format(TRACE, "boom")), null));
+        assertEquals(1L, idle.getStats().get("sampledOut"));
+    }
+
+    @Test
+    public void testFallbackToRows() throws InterruptedException {
+        writer = create(jdbcTemplate, jdbcTemplate);
+        writer.start();
+        writer.write(info("a"), null);
+        // log_type 超长，整批与单条都写不进去
+        writer.write(new SysLog("OVERSIZED_TYPE", 1L), null);
+        SysLog failing = new SysLog("ERROR_TOO_LONG", 1L);
+        failing.setExceptionDetail(String.format(TRACE, "lost").getBytes());
+        writer.write(failing, null);
+        writer.write(error(String.format(TRACE, "kept")), null);
+        writer.stop();
+        writer = null;
+
+        assertEquals(2, count("sys_log"));
+        // 写入失败的行不计入异常次数
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT SUM(occurrences) FROM sys_log_error", Long.class));
+    }
+
+    @Test
+    public void testRetryRollsBackErrorStore() throws InterruptedException {
+        AtomicInteger failures = new AtomicInteger(1);
+        // 异常堆栈写入失败时，同一事务中已插入的日志一并回滚，重试后不重复
+        JdbcTemplate flaky = new JdbcTemplate(dataSource) {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                if (sql.contains("sys_log_error") && failures.getAndDecrement() > 0) {
+                    throw new DataAccessResourceFailureException("connection reset");
+                }
+                return super.batchUpdate(sql, batchArgs);
+            }
+        };
+        writer = create(jdbcTemplate, flaky);
+        writer.start();
+        writer.write(info("a"), null);
+        writer.write(error(String.format(TRACE, "boom")), null);
+        writer.stop();
+
+        assertEquals(2, count("sys_log"));
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT SUM(occurrences) FROM sys_log_error", Long.class));
+        assertEquals(1L, writer.getStats().get("retries"));
+        assertEquals(0L, writer.getStats().get("failed"));
+        writer = null;
+    }
+
+    private SysLogWriter create(JdbcTemplate logTemplate, JdbcTemplate errorTemplate) {
+        return new SysLogWriter(logTemplate, new DataSourceTransactionManager(dataSource),
+                new LogParamSerializer(properties), new SysLogErrorStore(errorTemplate), properties);
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    private static SysLog info(String description) {
+        SysLog sysLog = new SysLog("INFO", 5L);
+        sysLog.setDescription(description);
+        return sysLog;
+    }
+
+    private static SysLog error(String trace) {
+        SysLog sysLog = new SysLog("ERROR", 5L);
+        sysLog.setExceptionDetail(trace.getBytes());
+        return sysLog;
+    }
+}
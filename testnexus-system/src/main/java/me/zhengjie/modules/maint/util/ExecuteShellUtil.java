@@ -67,7 +67,7 @@ public class ExecuteShellUtil {
 			String line;
 			while ((line = input.readLine()) != null) {
 				stdout.add(line);
-				System.out.println(line);
+				log.info(line);
 			}
 		} catch (Exception e) {
 			log.error(e.getMessage(),e);
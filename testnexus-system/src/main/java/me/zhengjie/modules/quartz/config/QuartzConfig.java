@@ -16,9 +16,15 @@
 package me.zhengjie.modules.quartz.config;
 
 import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.utils.metrics.MetricsRegistry;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
 import org.quartz.spi.TriggerFiredBundle;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
 import org.springframework.lang.NonNull;
@@ -35,6 +41,33 @@ import org.springframework.stereotype.Component;
 @Scope("singleton")
 public class QuartzConfig {
 
+	/**
+	 * 定时任务调度器指标，任务本身在 taskAsync 线程池中执行，由线程池指标覆盖
+	 */
+	@Bean
+	public SmartInitializingSingleton quartzMetrics(MetricsRegistry registry, ObjectProvider<Scheduler> schedulerProvider) {
+		return () -> schedulerProvider.ifAvailable(scheduler -> {
+			registry.gauge("quartz_threads_max", "调度线程池大小", null,
+					() -> read(() -> scheduler.getMetaData().getThreadPoolSize()));
+			registry.gauge("quartz_jobs_executing", "正在执行的任务数", null,
+					() -> read(() -> scheduler.getCurrentlyExecutingJobs().size()));
+			registry.counter("quartz_jobs_executed_total", "已执行的任务数", null,
+					() -> read(() -> scheduler.getMetaData().getNumberOfJobsExecuted()));
+		});
+	}
+
+	private static double read(SchedulerValue value) {
+		try {
+			return value.get().doubleValue();
+		} catch (SchedulerException e) {
+			return Double.NaN;
+		}
+	}
+
+	private interface SchedulerValue {
+		Number get() throws SchedulerException;
+	}
+
 	/**
 	 * 解决Job中注入Spring Bean为null的问题
 	 */
@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.quartz.task;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.modules.system.service.impl.SubCountMaintainer;
+import org.springframework.stereotype.Service;
+
+/**
+ * 修正菜单与部门的子节点数目，在定时任务中配置 Bean 名称 subCountTask、方法 run
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SubCountTask {
+
+    private final SubCountMaintainer subCountMaintainer;
+
+    public void run(){
+        int fixed = subCountMaintainer.repair();
+        log.info("子节点数目检查完成，修正 {} 行", fixed);
+    }
+}
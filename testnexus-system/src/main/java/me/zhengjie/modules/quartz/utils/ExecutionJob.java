@@ -28,6 +28,7 @@ import me.zhengjie.service.EmailService;
 import me.zhengjie.utils.SpringBeanHolder;
 import me.zhengjie.utils.StringUtils;
 import me.zhengjie.utils.ThrowableUtil;
+import me.zhengjie.utils.TraceContext;
 import org.quartz.JobExecutionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,6 +66,8 @@ public class ExecutionJob extends QuartzJobBean {
         log.setParams(quartzJob.getParams());
         long startTime = System.currentTimeMillis();
         log.setCronExpression(quartzJob.getCronExpression());
+        // 每次执行生成新的请求编号，经 taskAsync 线程池传递到任务中
+        TraceContext.begin(null);
         try {
             // 执行任务
             QuartzRunnable task = new QuartzRunnable(quartzJob.getBeanName(), quartzJob.getMethodName(), quartzJob.getParams());
@@ -104,6 +107,7 @@ public class ExecutionJob extends QuartzJobBean {
             }
         } finally {
             quartzLogRepository.save(log);
+            TraceContext.end();
         }
     }
 
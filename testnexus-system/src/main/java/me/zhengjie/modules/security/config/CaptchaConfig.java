@@ -73,12 +73,39 @@ public class CaptchaConfig {
      */
     private int fontSize = 25;
 
+    /**
+     * 预生成验证码池容量（每种验证码类型），为 0 时不启用预生成
+     */
+    private int poolSize = 200;
+
+    /**
+     * 池中验证码数量低于该水位时触发后台补充
+     */
+    private int poolLowWatermark = 50;
+
+    /**
+     * 后台补充检查间隔 毫秒
+     */
+    private long poolRefillInterval = 1000L;
+
     /**
      * 依据配置信息生产验证码
      * @return /
      */
     public Captcha getCaptcha() {
+        return getCaptcha(codeType);
+    }
+
+    /**
+     * 依据指定的验证码类型生产验证码
+     * @param codeType 验证码类型
+     * @return /
+     */
+    public Captcha getCaptcha(LoginCodeEnum codeType) {
         Captcha captcha;
+        if (codeType == null) {
+            throw new BadRequestException("验证码配置信息错误！正确配置查看 LoginCodeEnum ");
+        }
         switch (codeType) {
             case ARITHMETIC:
                 // 算术类型 https://gitee.com/whvse/EasyCaptcha
@@ -0,0 +1,51 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.security.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 登录密码校验配置信息
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "login.password")
+public class PasswordConfig {
+
+    /**
+     * BCrypt 计算强度（4 ~ 31），修改后用户下次登录成功时会按新强度重新加密
+     */
+    private int strength = 10;
+
+    /**
+     * 密码校验线程数，默认为 CPU 核数
+     */
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 密码校验排队上限，超过后直接拒绝登录请求
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * 等待校验结果的超时时间 毫秒
+     */
+    private long timeout = 5000L;
+}
@@ -70,6 +70,21 @@ public class SecurityProperties {
      */
     private Long renew;
 
+    /**
+     * 令牌吊销名单布隆过滤器的期望误判率
+     */
+    private double revocationFpp = 0.01;
+
+    /**
+     * 令牌吊销名单清理与重建间隔 毫秒
+     */
+    private long revocationRebuildInterval = 600000L;
+
+    /**
+     * 从共享状态存储同步其他节点吊销记录的间隔 毫秒
+     */
+    private long revocationSyncInterval = 2000L;
+
     public String getTokenStartWith() {
         return tokenStartWith + " ";
     }
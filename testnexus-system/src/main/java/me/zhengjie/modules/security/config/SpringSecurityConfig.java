@@ -17,7 +17,7 @@ package me.zhengjie.modules.security.config;
 
 import lombok.RequiredArgsConstructor;
 import me.zhengjie.modules.security.security.*;
-import me.zhengjie.modules.security.service.OnlineUserService;
+import me.zhengjie.modules.security.service.TokenRevocationService;
 import me.zhengjie.utils.AnonTagUtils;
 import me.zhengjie.utils.enums.RequestMethodEnum;
 import org.springframework.context.ApplicationContext;
@@ -48,7 +48,8 @@ public class SpringSecurityConfig {
     private final JwtAccessDeniedHandler jwtAccessDeniedHandler;
     private final ApplicationContext applicationContext;
     private final SecurityProperties properties;
-    private final OnlineUserService onlineUserService;
+    private final TokenRevocationService tokenRevocationService;
+    private final PasswordConfig passwordConfig;
 
     @Bean
     GrantedAuthorityDefaults grantedAuthorityDefaults() {
@@ -59,7 +60,7 @@ public class SpringSecurityConfig {
     @Bean
     public PasswordEncoder passwordEncoder() {
         // 密码加密方式
-        return new BCryptPasswordEncoder();
+        return new BCryptPasswordEncoder(passwordConfig.getStrength());
     }
 
     @Bean
@@ -85,47 +86,48 @@ public class SpringSecurityConfig {
                 .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
                 .authorizeRequests()
+                // 放行的路径预先编译为一棵匹配树，一次匹配完成
+                .requestMatchers(permitAllMatcher(anonymousUrls)).permitAll()
+                // 所有请求都需要认证
+                .anyRequest().authenticated()
+                .and().apply(securityConfigurerAdapter())
+                .and().build();
+    }
+
+    /**
+     * 构建放行路径的匹配器
+     * @param anonymousUrls 匿名访问的路径
+     * @return /
+     */
+    private PathTrieRequestMatcher permitAllMatcher(Map<String, Set<String>> anonymousUrls) {
+        return new PathTrieRequestMatcher()
                 // 静态资源等等
-                .antMatchers(
-                        HttpMethod.GET,
+                .add(HttpMethod.GET,
                         "/*.html",
                         "/**/*.html",
                         "/**/*.css",
                         "/**/*.js",
                         "/webSocket/**"
-                ).permitAll()
+                )
                 // swagger 文档
-                .antMatchers("/swagger-ui.html").permitAll()
-                .antMatchers("/swagger-resources/**").permitAll()
-                .antMatchers("/webjars/**").permitAll()
-                .antMatchers("/*/api-docs").permitAll()
+                .add(null, "/swagger-ui.html", "/swagger-resources/**", "/webjars/**", "/*/api-docs")
                 // 文件
-                .antMatchers("/avatar/**").permitAll()
-                .antMatchers("/file/**").permitAll()
+                .add(null, "/avatar/**", "/file/**")
                 // 阿里巴巴 druid
-                .antMatchers("/druid/**").permitAll()
+                .add(null, "/druid/**")
                 // 放行OPTIONS请求
-                .antMatchers(HttpMethod.OPTIONS, "/**").permitAll()
+                .add(HttpMethod.OPTIONS, "/**")
                 // 自定义匿名访问所有url放行：允许匿名和带Token访问，细腻化到每个 Request 类型
-                // GET
-                .antMatchers(HttpMethod.GET, anonymousUrls.get(RequestMethodEnum.GET.getType()).toArray(new String[0])).permitAll()
-                // POST
-                .antMatchers(HttpMethod.POST, anonymousUrls.get(RequestMethodEnum.POST.getType()).toArray(new String[0])).permitAll()
-                // PUT
-                .antMatchers(HttpMethod.PUT, anonymousUrls.get(RequestMethodEnum.PUT.getType()).toArray(new String[0])).permitAll()
-                // PATCH
-                .antMatchers(HttpMethod.PATCH, anonymousUrls.get(RequestMethodEnum.PATCH.getType()).toArray(new String[0])).permitAll()
-                // DELETE
-                .antMatchers(HttpMethod.DELETE, anonymousUrls.get(RequestMethodEnum.DELETE.getType()).toArray(new String[0])).permitAll()
+                .add(HttpMethod.GET, anonymousUrls.get(RequestMethodEnum.GET.getType()))
+                .add(HttpMethod.POST, anonymousUrls.get(RequestMethodEnum.POST.getType()))
+                .add(HttpMethod.PUT, anonymousUrls.get(RequestMethodEnum.PUT.getType()))
+                .add(HttpMethod.PATCH, anonymousUrls.get(RequestMethodEnum.PATCH.getType()))
+                .add(HttpMethod.DELETE, anonymousUrls.get(RequestMethodEnum.DELETE.getType()))
                 // 所有类型的接口都放行
-                .antMatchers(anonymousUrls.get(RequestMethodEnum.ALL.getType()).toArray(new String[0])).permitAll()
-                // 所有请求都需要认证
-                .anyRequest().authenticated()
-                .and().apply(securityConfigurerAdapter())
-                .and().build();
+                .add(null, anonymousUrls.get(RequestMethodEnum.ALL.getType()));
     }
 
     private TokenConfigurer securityConfigurerAdapter() {
-        return new TokenConfigurer(tokenProvider, properties, onlineUserService);
+        return new TokenConfigurer(tokenProvider, properties, tokenRevocationService);
     }
 }
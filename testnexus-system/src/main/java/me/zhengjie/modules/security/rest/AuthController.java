@@ -16,7 +16,6 @@
 package me.zhengjie.modules.security.rest;
 
 import cn.hutool.core.util.IdUtil;
-import com.wf.captcha.base.Captcha;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
@@ -28,25 +27,26 @@ import me.zhengjie.annotation.rest.AnonymousPostMapping;
 import me.zhengjie.config.properties.RsaProperties;
 import me.zhengjie.exception.BadRequestException;
 import me.zhengjie.modules.security.config.CaptchaConfig;
-import me.zhengjie.modules.security.config.enums.LoginCodeEnum;
 import me.zhengjie.modules.security.config.LoginProperties;
 import me.zhengjie.modules.security.config.SecurityProperties;
 import me.zhengjie.modules.security.security.TokenProvider;
+import me.zhengjie.modules.security.service.CaptchaPool;
+import me.zhengjie.modules.security.service.PasswordVerifier;
 import me.zhengjie.modules.security.service.UserDetailsServiceImpl;
 import me.zhengjie.modules.security.service.dto.AuthUserDto;
+import me.zhengjie.modules.security.service.dto.CompactPrincipal;
 import me.zhengjie.modules.security.service.dto.JwtUserDto;
 import me.zhengjie.modules.security.service.OnlineUserService;
 import me.zhengjie.utils.RsaUtils;
-import me.zhengjie.utils.RedisUtils;
 import me.zhengjie.utils.SecurityUtils;
 import me.zhengjie.utils.StringUtils;
+import me.zhengjie.utils.state.StateStore;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import javax.servlet.http.HttpServletRequest;
@@ -66,12 +66,13 @@ import java.util.concurrent.TimeUnit;
 @Api(tags = "系统：系统授权接口")
 public class AuthController {
     private final SecurityProperties properties;
-    private final RedisUtils redisUtils;
+    private final StateStore stateStore;
     private final OnlineUserService onlineUserService;
     private final TokenProvider tokenProvider;
     private final LoginProperties loginProperties;
     private final CaptchaConfig captchaConfig;
-    private final PasswordEncoder passwordEncoder;
+    private final CaptchaPool captchaPool;
+    private final PasswordVerifier passwordVerifier;
     private final UserDetailsServiceImpl userDetailsService;
 
     @Log("用户登录")
@@ -81,21 +82,23 @@ public class AuthController {
         // 密码解密
         String password = RsaUtils.decryptByPrivateKey(RsaProperties.privateKey, authUser.getPassword());
         // 查询验证码
-        String code = redisUtils.get(authUser.getUuid(), String.class);
+        String code = stateStore.get(authUser.getUuid(), String.class);
         // 清除验证码
-        redisUtils.del(authUser.getUuid());
+        stateStore.del(authUser.getUuid());
         if (StringUtils.isBlank(code)) {
             throw new BadRequestException("验证码不存在或已过期");
         }
         if (StringUtils.isBlank(authUser.getCode()) || !authUser.getCode().equalsIgnoreCase(code)) {
             throw new BadRequestException("验证码错误");
         }
-        // 获取用户信息
-        JwtUserDto jwtUser = userDetailsService.loadUserByUsername(authUser.getUsername());
-        // 验证用户密码
-        if (!passwordEncoder.matches(password, jwtUser.getPassword())) {
+        // 获取用户信息，优先使用缓存的精简信息校验密码
+        CompactPrincipal principal = userDetailsService.loadUserByUsername(authUser.getUsername());
+        // 验证用户密码，BCrypt 在独立线程池中计算，请求线程最多等待配置的超时时间
+        if (!passwordVerifier.verify(principal.getUsername(), password, principal.getPassword())) {
             throw new BadRequestException("登录密码错误");
         }
+        // 登录成功后加载完整的用户信息
+        JwtUserDto jwtUser = userDetailsService.loadFullUser(authUser.getUsername());
         Authentication authentication = new UsernamePasswordAuthenticationToken(jwtUser, null, jwtUser.getAuthorities());
         SecurityContextHolder.getContext().setAuthentication(authentication);
         // 生成令牌
@@ -118,27 +121,21 @@ public class AuthController {
     @ApiOperation("获取用户信息")
     @GetMapping(value = "/info")
     public ResponseEntity<UserDetails> getUserInfo() {
-        JwtUserDto jwtUser = (JwtUserDto) SecurityUtils.getCurrentUser();
+        JwtUserDto jwtUser = userDetailsService.loadFullUser(SecurityUtils.getCurrentUsername());
         return ResponseEntity.ok(jwtUser);
     }
 
     @ApiOperation("获取验证码")
     @AnonymousGetMapping(value = "/code")
     public ResponseEntity<Object> getCode() {
-        // 获取运算的结果
-        Captcha captcha = captchaConfig.getCaptcha();
+        // 从预生成池中取出验证码，每个验证码只会被取出一次
+        CaptchaPool.PooledCaptcha captcha = captchaPool.take();
         String uuid = properties.getCodeKey() + IdUtil.simpleUUID();
-        //当验证码类型为 arithmetic时且长度 >= 2 时，captcha.text()的结果有几率为浮点型
-        String captchaValue = captcha.text();
-        if (captcha.getCharType() - 1 == LoginCodeEnum.ARITHMETIC.ordinal() && captchaValue.contains(".")) {
-            captchaValue = captchaValue.split("\\.")[0];
-        }
         // 保存
-//        redisUtils.set(uuid, captchaValue, captchaConfig.getExpiration(), TimeUnit.MINUTES);
-        redisUtils.set(uuid, captchaValue);
+        stateStore.set(uuid, captcha.getText(), TimeUnit.MINUTES.toMillis(captchaConfig.getExpiration()));
         // 验证码信息
         Map<String, Object> imgResult = new HashMap<String, Object>(2) {{
-            put("img", captcha.toBase64());
+            put("img", captcha.getImage());
             put("uuid", uuid);
         }};
         return ResponseEntity.ok(imgResult);
@@ -60,10 +60,9 @@ public class OnlineController {
     @DeleteMapping
     @PreAuthorize("@el.check()")
     public ResponseEntity<Object> deleteOnlineUser(@RequestBody Set<String> keys) throws Exception {
-        for (String token : keys) {
+        for (String key : keys) {
             // 解密Key
-            token = EncryptUtils.desDecrypt(token);
-            onlineUserService.logout(token);
+            onlineUserService.kickOut(EncryptUtils.desDecrypt(key));
         }
         return new ResponseEntity<>(HttpStatus.OK);
     }
@@ -0,0 +1,271 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.security.security;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import javax.servlet.http.HttpServletRequest;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的路径匹配树，按请求方法与路径分段建树，一次遍历完成所有放行规则的匹配，
+ * 替代逐条执行的 antMatchers。匹配语义与 AntPathMatcher 保持一致：
+ * 支持 *、**、?、{变量} 与 {变量:正则}
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public class PathTrieRequestMatcher implements RequestMatcher {
+
+    private static final Pattern VARIABLE = Pattern.compile("\\{([^/]+?)(?::(.+))?}");
+
+    /**
+     * 方法 -> 路径树，key 为 null 时表示不限方法
+     */
+    private final Map<String, Node> roots = new HashMap<>(8);
+
+    private int patternCount;
+
+    /**
+     * 添加匹配规则
+     * @param method 请求方法，为 null 时不限方法
+     * @param patterns Ant 风格的路径
+     * @return /
+     */
+    public PathTrieRequestMatcher add(HttpMethod method, String... patterns) {
+        return add(method, Arrays.asList(patterns));
+    }
+
+    /**
+     * 添加匹配规则
+     * @param method 请求方法，为 null 时不限方法
+     * @param patterns Ant 风格的路径
+     * @return /
+     */
+    public PathTrieRequestMatcher add(HttpMethod method, Collection<String> patterns) {
+        Node root = roots.computeIfAbsent(method == null ? null : method.name(), k -> new Node());
+        for (String pattern : patterns) {
+            insert(root, pattern);
+            patternCount++;
+        }
+        return this;
+    }
+
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    @Override
+    public boolean matches(HttpServletRequest request) {
+        String path = request.getServletPath();
+        if (request.getPathInfo() != null) {
+            path = path + request.getPathInfo();
+        }
+        return matches(request.getMethod(), path);
+    }
+
+    /**
+     * 判断请求是否命中任一规则
+     * @param method 请求方法
+     * @param path 请求路径
+     * @return /
+     */
+    public boolean matches(String method, String path) {
+        if (path == null || !path.startsWith("/")) {
+            return false;
+        }
+        String[] segments = tokenize(path);
+        boolean trailingSlash = path.length() > 1 && path.endsWith("/");
+        Node byMethod = method == null ? null : roots.get(method);
+        if (byMethod != null && match(byMethod, segments, 0, trailingSlash)) {
+            return true;
+        }
+        Node any = roots.get(null);
+        return any != null && match(any, segments, 0, trailingSlash);
+    }
+
+    private void insert(Node root, String pattern) {
+        Node node = root;
+        for (String segment : tokenize(pattern)) {
+            node = node.child(segment);
+        }
+        if (pattern.length() > 1 && pattern.endsWith("/")) {
+            node.terminalSlash = true;
+        } else {
+            node.terminal = true;
+        }
+    }
+
+    private boolean match(Node node, String[] segments, int index, boolean trailingSlash) {
+        if (index == segments.length) {
+            if (trailingSlash ? node.terminalSlash : node.terminal) {
+                return true;
+            }
+            // ** 可以匹配零个分段
+            if (node.doubleWildcard != null && node.doubleWildcard.isTerminal()) {
+                return true;
+            }
+            // AntPathMatcher：/a/* 可以匹配 /a/
+            return trailingSlash && node.singleWildcard != null && node.singleWildcard.terminal;
+        }
+        String segment = segments[index];
+        Node literal = node.literals.get(segment);
+        if (literal != null && match(literal, segments, index + 1, trailingSlash)) {
+            return true;
+        }
+        for (PatternNode patternNode : node.patterns) {
+            if (patternNode.pattern.matcher(segment).matches()
+                    && match(patternNode.node, segments, index + 1, trailingSlash)) {
+                return true;
+            }
+        }
+        if (node.singleWildcard != null && match(node.singleWildcard, segments, index + 1, trailingSlash)) {
+            return true;
+        }
+        if (node.doubleWildcard != null) {
+            Node doubleWildcard = node.doubleWildcard;
+            // ** 结尾时吞掉剩余所有分段
+            if (doubleWildcard.isTerminal()) {
+                return true;
+            }
+            for (int i = index; i <= segments.length; i++) {
+                if (match(doubleWildcard, segments, i, trailingSlash)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String[] tokenize(String path) {
+        List<String> segments = new ArrayList<>(8);
+        int start = 0;
+        int length = path.length();
+        for (int i = 0; i <= length; i++) {
+            if (i == length || path.charAt(i) == '/') {
+                if (i > start) {
+                    segments.add(path.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    /**
+     * 将含通配符的分段编译为正则
+     */
+    private static Pattern compileSegment(String segment) {
+        StringBuilder regex = new StringBuilder();
+        Matcher matcher = VARIABLE.matcher(segment);
+        int end = 0;
+        while (matcher.find()) {
+            appendWildcards(regex, segment.substring(end, matcher.start()));
+            regex.append('(').append(matcher.group(2) == null ? "(?s).*" : matcher.group(2)).append(')');
+            end = matcher.end();
+        }
+        appendWildcards(regex, segment.substring(end));
+        return Pattern.compile(regex.toString());
+    }
+
+    private static void appendWildcards(StringBuilder regex, String text) {
+        StringBuilder literal = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if (c == '*' || c == '?') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '*' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> literals = new HashMap<>(4);
+
+        private final List<PatternNode> patterns = new ArrayList<>(0);
+
+        /** * 或 {变量}，匹配任意一个分段 */
+        private Node singleWildcard;
+
+        /** **，匹配零个或多个分段 */
+        private Node doubleWildcard;
+
+        /** 规则在此结束（不以 / 结尾） */
+        private boolean terminal;
+
+        /** 规则在此结束（以 / 结尾） */
+        private boolean terminalSlash;
+
+        private boolean isTerminal() {
+            return terminal || terminalSlash;
+        }
+
+        private Node child(String segment) {
+            if ("**".equals(segment)) {
+                if (doubleWildcard == null) {
+                    doubleWildcard = new Node();
+                }
+                return doubleWildcard;
+            }
+            if ("*".equals(segment) || isPlainVariable(segment)) {
+                if (singleWildcard == null) {
+                    singleWildcard = new Node();
+                }
+                return singleWildcard;
+            }
+            if (segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0 || segment.indexOf('{') >= 0) {
+                for (PatternNode patternNode : patterns) {
+                    if (patternNode.source.equals(segment)) {
+                        return patternNode.node;
+                    }
+                }
+                PatternNode patternNode = new PatternNode(segment, compileSegment(segment), new Node());
+                patterns.add(patternNode);
+                return patternNode.node;
+            }
+            return literals.computeIfAbsent(segment, k -> new Node());
+        }
+
+        private static boolean isPlainVariable(String segment) {
+            return segment.startsWith("{") && segment.endsWith("}")
+                    && segment.indexOf(':') < 0 && segment.indexOf('}') == segment.length() - 1;
+        }
+    }
+
+    private static class PatternNode {
+
+        private final String source;
+
+        private final Pattern pattern;
+
+        private final Node node;
+
+        private PatternNode(String source, Pattern pattern, Node node) {
+            this.source = source;
+            this.pattern = pattern;
+            this.node = node;
+        }
+    }
+}
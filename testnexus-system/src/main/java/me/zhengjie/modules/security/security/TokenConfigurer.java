@@ -17,7 +17,7 @@ package me.zhengjie.modules.security.security;
 
 import lombok.RequiredArgsConstructor;
 import me.zhengjie.modules.security.config.SecurityProperties;
-import me.zhengjie.modules.security.service.OnlineUserService;
+import me.zhengjie.modules.security.service.TokenRevocationService;
 import me.zhengjie.modules.security.service.UserCacheManager;
 import org.springframework.security.config.annotation.SecurityConfigurerAdapter;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -32,11 +32,11 @@ public class TokenConfigurer extends SecurityConfigurerAdapter<DefaultSecurityFi
 
     private final TokenProvider tokenProvider;
     private final SecurityProperties properties;
-    private final OnlineUserService onlineUserService;
+    private final TokenRevocationService tokenRevocationService;
 
     @Override
     public void configure(HttpSecurity http) {
-        TokenFilter customFilter = new TokenFilter(tokenProvider, properties, onlineUserService);
+        TokenFilter customFilter = new TokenFilter(tokenProvider, properties, tokenRevocationService);
         http.addFilterBefore(customFilter, UsernamePasswordAuthenticationFilter.class);
     }
 }
@@ -16,9 +16,11 @@
 package me.zhengjie.modules.security.security;
 
 import cn.hutool.core.util.StrUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import me.zhengjie.modules.security.config.SecurityProperties;
-import me.zhengjie.modules.security.service.dto.OnlineUserDto;
-import me.zhengjie.modules.security.service.OnlineUserService;
+import me.zhengjie.modules.security.service.TokenRevocationService;
+import me.zhengjie.utils.TraceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.core.Authentication;
@@ -41,17 +43,18 @@ public class TokenFilter extends GenericFilterBean {
 
     private final TokenProvider tokenProvider;
     private final SecurityProperties properties;
-    private final OnlineUserService onlineUserService;
+    private final TokenRevocationService tokenRevocationService;
 
     /**
      * @param tokenProvider     Token
      * @param properties        JWT
-     * @param onlineUserService 用户在线
+     * @param tokenRevocationService 令牌吊销名单
      */
-    public TokenFilter(TokenProvider tokenProvider, SecurityProperties properties, OnlineUserService onlineUserService) {
+    public TokenFilter(TokenProvider tokenProvider, SecurityProperties properties,
+                       TokenRevocationService tokenRevocationService) {
         this.properties = properties;
-        this.onlineUserService = onlineUserService;
         this.tokenProvider = tokenProvider;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
@@ -60,22 +63,40 @@ public class TokenFilter extends GenericFilterBean {
         HttpServletRequest httpServletRequest = (HttpServletRequest) servletRequest;
         String token = resolveToken(httpServletRequest);
         // 对于 Token 为空的不需要去查 Redis
-        if(StrUtil.isNotBlank(token)){
-            // 获取用户Token的Key
-            String loginKey = tokenProvider.loginKey(token);
-            OnlineUserDto onlineUserDto = onlineUserService.getOne(loginKey);
-            // 判断用户在线信息是否为空
-            if (onlineUserDto != null) {
-                // Token 续期判断
-                tokenProvider.checkRenewal(token);
-                // 获取认证信息，设置上下文
-                Authentication authentication = tokenProvider.getAuthentication(token);
+        Claims claims = StrUtil.isNotBlank(token) ? parseClaims(token) : null;
+        if(claims != null){
+            // 已吊销的令牌直接按未登录处理，布隆过滤器未命中时不查询吊销名单
+            if (tokenRevocationService.isRevoked(tokenProvider.getId(claims))) {
+                filterChain.doFilter(servletRequest, servletResponse);
+                return;
+            }
+            // 在线状态只读取剩余存活时间，不反序列化在线信息，同时完成续期判断
+            if (tokenProvider.checkOnline(claims)) {
+                // 获取认证信息，设置上下文，复用已解析的 Claims
+                Authentication authentication = tokenProvider.getAuthentication(claims, token);
                 SecurityContextHolder.getContext().setAuthentication(authentication);
+                // 日志中带上当前用户
+                TraceContext.setUser(claims.get(TokenProvider.AUTHORITIES_UID_KEY), claims.getSubject());
             }
         }
         filterChain.doFilter(servletRequest, servletResponse);
     }
 
+    /**
+     * 解析令牌，非本系统签发的令牌（如指标采集令牌）与过期令牌按未登录处理，由接口自行鉴权
+     *
+     * @param token /
+     * @return 解析失败时返回 null
+     */
+    private Claims parseClaims(String token) {
+        try {
+            return tokenProvider.getClaims(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Token 解析失败：{}", e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * 初步检测Token
      *
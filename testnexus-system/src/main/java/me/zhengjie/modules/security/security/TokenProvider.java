@@ -18,15 +18,13 @@ package me.zhengjie.modules.security.security;
 import cn.hutool.core.date.DateField;
 import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.util.IdUtil;
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
 import me.zhengjie.modules.security.config.SecurityProperties;
 import me.zhengjie.modules.security.service.dto.JwtUserDto;
+import me.zhengjie.utils.state.StateStore;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -35,7 +33,6 @@ import org.springframework.stereotype.Component;
 import javax.servlet.http.HttpServletRequest;
 import java.security.Key;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 /**
  * @author /
@@ -47,20 +44,16 @@ public class TokenProvider implements InitializingBean {
     private Key signingKey;
     private JwtParser jwtParser;
 
-    private final Cache<String, Long> tokenCache;
     private final SecurityProperties properties;
+    private final StateStore stateStore;
 
     public static final String AUTHORITIES_UUID_KEY = "uid";
     public static final String AUTHORITIES_UID_KEY = "userId";
 
-    public TokenProvider(SecurityProperties properties) {
+    public TokenProvider(SecurityProperties properties, StateStore stateStore) {
         this.properties = properties;
-        // 初始化Caffeine缓存
-        this.tokenCache = Caffeine.newBuilder()
-                .maximumSize(10_000) // 设置最大缓存项
-                .expireAfterWrite(properties.getTokenValidityInSeconds(), TimeUnit.SECONDS) // 全局过期时间
-                .recordStats() // 记录统计信息
-                .build();
+        // 令牌的在线状态保存在共享状态存储中，多节点部署时各节点一致
+        this.stateStore = stateStore;
     }
 
     @Override
@@ -77,11 +70,6 @@ public class TokenProvider implements InitializingBean {
         claims.put(AUTHORITIES_UID_KEY, user.getUser().getId());
         String uuid = IdUtil.simpleUUID();
         claims.put(AUTHORITIES_UUID_KEY, uuid);
-
-        // 存入本地缓存替代Redis
-        String loginKey = loginKeyInternal(user.getUsername(), uuid);
-        tokenCache.put(loginKey, System.currentTimeMillis());
-
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(user.getUsername())
@@ -89,8 +77,13 @@ public class TokenProvider implements InitializingBean {
                 .compact();
     }
 
-    public Authentication getAuthentication(String token) {
-        Claims claims = getClaims(token);
+    /**
+     * 由已解析的 Claims 构建认证信息，不再重复解析令牌
+     * @param claims 已解析的 Claims
+     * @param token 令牌
+     * @return /
+     */
+    public Authentication getAuthentication(Claims claims, String token) {
         User principal = new User(claims.getSubject(), "******", new ArrayList<>());
         return new UsernamePasswordAuthenticationToken(principal, token, new ArrayList<>());
     }
@@ -99,19 +92,20 @@ public class TokenProvider implements InitializingBean {
         return jwtParser.parseClaimsJws(token).getBody();
     }
 
-    public void checkRenewal(String token) {
-        String loginKey = loginKey(token);
-        Long createTime = tokenCache.getIfPresent(loginKey);
-
-        if (createTime != null) {
-            long expireTime = createTime + properties.getTokenValidityInSeconds() * 1000;
-            long differ = expireTime - System.currentTimeMillis();
-
-            if (differ <= properties.getDetect()) {
-                // 续期：更新创建时间
-                tokenCache.put(loginKey, System.currentTimeMillis());
-            }
+    /**
+     * 判断令牌是否在线，并在续期检查的范围内续期，只读取一次在线状态的剩余存活时间
+     * @param claims 已解析的 Claims
+     * @return 在线状态不存在或已过期时返回 false
+     */
+    public boolean checkOnline(Claims claims) {
+        // 判断是否续期token,计算token的过期时间
+        String loginKey = loginKey(claims);
+        long time = stateStore.getExpire(loginKey);
+        // 如果在续期检查的范围内，则续期
+        if (time > 0 && time <= properties.getDetect()) {
+            stateStore.expire(loginKey, time + properties.getRenew());
         }
+        return time >= 0;
     }
 
     public String getToken(HttpServletRequest request) {
@@ -123,8 +117,10 @@ public class TokenProvider implements InitializingBean {
     }
 
     public String loginKey(String token) {
-        Claims claims = getClaims(token);
-        System.out.println(getClaims(token));
+        return loginKey(getClaims(token));
+    }
+
+    public String loginKey(Claims claims) {
         return loginKeyInternal(claims.getSubject(), claims.get(AUTHORITIES_UUID_KEY).toString());
     }
 
@@ -133,22 +129,30 @@ public class TokenProvider implements InitializingBean {
     }
 
     public String getId(String token) {
-        Claims claims = getClaims(token);
+        return getId(getClaims(token));
+    }
+
+    public String getId(Claims claims) {
         return claims.get(AUTHORITIES_UUID_KEY).toString();
     }
 
+    /**
+     * 从在线用户 key 中取出令牌编号，key 格式：onlineKey + username + ":" + uid
+     * @param loginKey 在线用户 key
+     * @return /
+     */
+    public String getIdFromLoginKey(String loginKey) {
+        int index = loginKey.lastIndexOf(':');
+        return index < 0 ? null : loginKey.substring(index + 1);
+    }
+
     // 新增方法：验证token是否有效
     public boolean validateToken(String token) {
         try {
-            return tokenCache.getIfPresent(loginKey(token)) != null;
+            return stateStore.getExpire(loginKey(token)) >= 0;
         } catch (Exception e) {
             log.error("Token验证失败", e);
             return false;
         }
     }
-
-    // 获取缓存统计信息（监控用）
-    public CacheStats getCacheStats() {
-        return tokenCache.stats();
-    }
 }
\ No newline at end of file
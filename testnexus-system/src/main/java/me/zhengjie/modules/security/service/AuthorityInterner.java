@@ -0,0 +1,96 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.security.service;
+
+import me.zhengjie.modules.security.service.dto.AuthorityDto;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 权限字符串驻留表，权限标识在全局只保存一份，
+ * 在线用户只需要保存权限编号数组
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public final class AuthorityInterner {
+
+    private static final Map<String, Integer> IDS = new ConcurrentHashMap<>(256);
+
+    private static volatile AuthorityDto[] authorities = new AuthorityDto[64];
+
+    private AuthorityInterner() {
+    }
+
+    /**
+     * 获取权限编号，不存在时分配新的编号
+     * @param authority 权限标识
+     * @return /
+     */
+    public static int intern(String authority) {
+        Integer id = IDS.get(authority);
+        if (id != null) {
+            return id;
+        }
+        synchronized (AuthorityInterner.class) {
+            id = IDS.get(authority);
+            if (id == null) {
+                // 编号只在锁内分配，已分配的数目即为下一个编号
+                id = IDS.size();
+                AuthorityDto[] current = authorities;
+                if (id == current.length) {
+                    current = Arrays.copyOf(current, id << 1);
+                }
+                current[id] = new AuthorityDto(authority);
+                // 先写入数组再发布数组与编号，读取方拿到编号时一定能看到对应的权限对象
+                authorities = current;
+                IDS.put(authority, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * 批量获取权限编号，结果已排序，便于二分查找
+     * @param authorities 权限标识
+     * @return /
+     */
+    public static int[] intern(Collection<String> authorities) {
+        int[] ids = authorities.stream().mapToInt(AuthorityInterner::intern).distinct().toArray();
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * 根据编号获取共享的权限对象
+     * @param id 编号
+     * @return /
+     */
+    public static AuthorityDto get(int id) {
+        return authorities[id];
+    }
+
+    /**
+     * 查询权限编号，不存在时返回 -1，不会分配新编号
+     * @param authority 权限标识
+     * @return /
+     */
+    public static int idOf(String authority) {
+        Integer id = IDS.get(authority);
+        return id == null ? -1 : id;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.security.service;
+
+import com.wf.captcha.base.Captcha;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.modules.security.config.CaptchaConfig;
+import me.zhengjie.modules.security.config.enums.LoginCodeEnum;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.stereotype.Component;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预生成验证码池，GIF、中文闪图等类型渲染开销较大，
+ * 由后台线程提前渲染并编码为 Base64，请求线程直接取用，每个验证码只会被取出一次
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CaptchaPool implements MetricsSource {
+
+    private final CaptchaConfig captchaConfig;
+
+    private final Map<LoginCodeEnum, BlockingQueue<PooledCaptcha>> pools = new EnumMap<>(LoginCodeEnum.class);
+
+    private final Map<LoginCodeEnum, AtomicBoolean> refilling = new EnumMap<>(LoginCodeEnum.class);
+
+    /** 后台生成的验证码数量 */
+    private final AtomicLong rendered = new AtomicLong();
+
+    /** 从池中直接取到的次数 */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** 池为空时在请求线程上同步生成的次数 */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** 最近一次补充的速率 个/秒 */
+    private volatile double lastRefillRate;
+
+    private ScheduledExecutorService refillExecutor;
+
+    @PostConstruct
+    public void init() {
+        for (LoginCodeEnum type : LoginCodeEnum.values()) {
+            pools.put(type, new ArrayBlockingQueue<>(Math.max(1, captchaConfig.getPoolSize())));
+            refilling.put(type, new AtomicBoolean(false));
+        }
+        if (!isEnabled()) {
+            return;
+        }
+        refillExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "el-captcha-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 只预热当前配置的验证码类型，其他类型在首次使用后才会被补充
+        refillExecutor.scheduleWithFixedDelay(this::refillAll, 0,
+                captchaConfig.getPoolRefillInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (refillExecutor != null) {
+            refillExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 取出一个当前配置类型的验证码
+     * @return /
+     */
+    public PooledCaptcha take() {
+        return take(captchaConfig.getCodeType());
+    }
+
+    /**
+     * 取出一个指定类型的验证码，池为空时退化为同步生成
+     * @param type 验证码类型
+     * @return /
+     */
+    public PooledCaptcha take(LoginCodeEnum type) {
+        if (!isEnabled() || type == null) {
+            return render(type);
+        }
+        BlockingQueue<PooledCaptcha> pool = pools.get(type);
+        PooledCaptcha captcha = pool.poll();
+        if (pool.size() < captchaConfig.getPoolLowWatermark()) {
+            triggerRefill(type);
+        }
+        if (captcha != null) {
+            hits.incrementAndGet();
+            return captcha;
+        }
+        misses.incrementAndGet();
+        return render(type);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "captcha_pool";
+    }
+
+    /**
+     * 获取验证码池统计信息（监控用）
+     * @return /
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(8);
+        Map<String, Integer> depth = new LinkedHashMap<>(pools.size());
+        pools.forEach((type, pool) -> depth.put(type.name(), pool.size()));
+        stats.put("enabled", isEnabled());
+        stats.put("capacity", captchaConfig.getPoolSize());
+        stats.put("depth", depth);
+        stats.put("rendered", rendered.get());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("refillRate", lastRefillRate);
+        return stats;
+    }
+
+    private boolean isEnabled() {
+        return captchaConfig.getPoolSize() > 0;
+    }
+
+    private void triggerRefill(LoginCodeEnum type) {
+        if (refillExecutor != null && !refilling.get(type).get()) {
+            try {
+                refillExecutor.execute(() -> refill(type));
+            } catch (RejectedExecutionException e) {
+                log.debug("验证码池补充任务被拒绝：{}", e.getMessage());
+            }
+        }
+    }
+
+    private void refillAll() {
+        LoginCodeEnum current = captchaConfig.getCodeType();
+        if (current != null && pools.get(current).size() < captchaConfig.getPoolLowWatermark()) {
+            refill(current);
+        }
+    }
+
+    private void refill(LoginCodeEnum type) {
+        AtomicBoolean flag = refilling.get(type);
+        if (!flag.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            BlockingQueue<PooledCaptcha> pool = pools.get(type);
+            long start = System.nanoTime();
+            int count = 0;
+            while (pool.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+                if (!pool.offer(render(type))) {
+                    break;
+                }
+                count++;
+            }
+            rendered.addAndGet(count);
+            long elapsed = System.nanoTime() - start;
+            if (count > 0 && elapsed > 0) {
+                lastRefillRate = count * 1_000_000_000D / elapsed;
+            }
+        } catch (Exception e) {
+            log.error("验证码池补充失败：{}", e.getMessage(), e);
+        } finally {
+            flag.set(false);
+        }
+    }
+
+    private PooledCaptcha render(LoginCodeEnum type) {
+        Captcha captcha = captchaConfig.getCaptcha(type);
+        //当验证码类型为 arithmetic时且长度 >= 2 时，captcha.text()的结果有几率为浮点型
+        String captchaValue = captcha.text();
+        if (captcha.getCharType() - 1 == LoginCodeEnum.ARITHMETIC.ordinal() && captchaValue.contains(".")) {
+            captchaValue = captchaValue.split("\\.")[0];
+        }
+        return new PooledCaptcha(captchaValue, captcha.toBase64());
+    }
+
+    /**
+     * 已渲染完成的验证码
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class PooledCaptcha {
+
+        /** 验证码答案 */
+        private final String text;
+
+        /** Base64 编码后的图片 */
+        private final String image;
+    }
+}
@@ -23,13 +23,13 @@ import me.zhengjie.modules.security.config.SecurityProperties;
 import me.zhengjie.modules.security.service.dto.JwtUserDto;
 import me.zhengjie.modules.security.service.dto.OnlineUserDto;
 import me.zhengjie.utils.*;
+import me.zhengjie.utils.state.StateStore;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 /**
  * @author Zheng Jie
@@ -42,7 +42,8 @@ public class OnlineUserService {
 
     private final SecurityProperties properties;
     private final TokenProvider tokenProvider;
-    private final RedisUtils redisUtils;
+    private final StateStore stateStore;
+    private final TokenRevocationService tokenRevocationService;
 
     /**
      * 保存在线用户信息
@@ -56,15 +57,13 @@ public class OnlineUserService {
         String id = tokenProvider.getId(token);
         String browser = StringUtils.getBrowser(request);
         String address = StringUtils.getCityInfo(ip);
-        OnlineUserDto onlineUserDto = null;
-        try {
-            onlineUserDto = new OnlineUserDto(id, jwtUserDto.getUsername(), jwtUserDto.getUser().getNickName(), dept, browser , ip, address, EncryptUtils.desEncrypt(token), new Date());
-        } catch (Exception e) {
-            log.error(e.getMessage(),e);
-        }
+        // 部门、浏览器、地址重复度高，驻留后各会话共享同一实例；token 不再保存，查询时按 key 生成
+        OnlineUserDto onlineUserDto = new OnlineUserDto(id, jwtUserDto.getUsername(), jwtUserDto.getUser().getNickName(),
+                intern(dept), intern(browser), ip, intern(address), null, new Date());
         String loginKey = tokenProvider.loginKey(token);
-//        redisUtils.set(loginKey, onlineUserDto, properties.getTokenValidityInSeconds(), TimeUnit.MILLISECONDS);
-        redisUtils.set(loginKey, onlineUserDto);
+        stateStore.set(loginKey, onlineUserDto, properties.getTokenValidityInSeconds());
+        // 登录后的请求可能落在其他节点，在线信息立即落库
+        stateStore.flush();
     }
 
     /**
@@ -89,24 +88,49 @@ public class OnlineUserService {
     public List<OnlineUserDto> getAll(String username){
         String loginKey = properties.getOnlineKey() +
                 (StringUtils.isBlank(username) ? "" : "*" + username);
-        List<String> keys = redisUtils.scan(loginKey);
+        List<String> keys = stateStore.scan(loginKey);
         Collections.reverse(keys);
         List<OnlineUserDto> onlineUserDtos = new ArrayList<>();
         for (String key : keys) {
-            onlineUserDtos.add(redisUtils.get(key, OnlineUserDto.class));
+            OnlineUserDto cached = stateStore.get(key, OnlineUserDto.class);
+            if (cached == null) {
+                continue;
+            }
+            OnlineUserDto onlineUserDto = new OnlineUserDto(cached.getUid(), cached.getUserName(), cached.getNickName(),
+                    cached.getDept(), cached.getBrowser(), cached.getIp(), cached.getAddress(), null, cached.getLoginTime());
+            try {
+                // 用于强退的 key，加密后的在线用户 key
+                onlineUserDto.setKey(EncryptUtils.desEncrypt(key));
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+            }
+            onlineUserDtos.add(onlineUserDto);
         }
-        System.out.println("onlineUserDto = " + onlineUserDtos);
         onlineUserDtos.sort((o1, o2) -> o2.getLoginTime().compareTo(o1.getLoginTime()));
         return onlineUserDtos;
     }
 
     /**
-     * 退出登录
+     * 退出登录，删除立即落库，不等待合并写入
      * @param token /
      */
     public void logout(String token) {
         String loginKey = tokenProvider.loginKey(token);
-        redisUtils.del(loginKey);
+        tokenRevocationService.revoke(tokenProvider.getIdFromLoginKey(loginKey));
+        stateStore.del(loginKey);
+        stateStore.flush();
+    }
+
+    /**
+     * 根据在线用户 key 强退用户，删除立即落库
+     * @param loginKey 在线用户 key
+     */
+    public void kickOut(String loginKey) {
+        if (loginKey != null && loginKey.startsWith(properties.getOnlineKey())) {
+            tokenRevocationService.revoke(tokenProvider.getIdFromLoginKey(loginKey));
+            stateStore.del(loginKey);
+            stateStore.flush();
+        }
     }
 
     /**
@@ -136,15 +160,23 @@ public class OnlineUserService {
      * @return /
      */
     public OnlineUserDto getOne(String key) {
-        return redisUtils.get(key, OnlineUserDto.class);
+        return stateStore.get(key, OnlineUserDto.class);
     }
 
     /**
-     * 根据用户名强退用户
+     * 根据用户名强退用户，删除立即落库
      * @param username /
      */
     public void kickOutForUsername(String username) {
         String loginKey = properties.getOnlineKey() + username + "*";
-        redisUtils.scanDel(loginKey);
+        for (String key : stateStore.scan(loginKey)) {
+            tokenRevocationService.revoke(tokenProvider.getIdFromLoginKey(key));
+            stateStore.del(key);
+        }
+        stateStore.flush();
+    }
+
+    private static String intern(String value) {
+        return value == null ? null : value.intern();
     }
 }
@@ -0,0 +1,224 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.security.service;
+
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.config.MdcTaskDecorator;
+import me.zhengjie.exception.BadRequestException;
+import me.zhengjie.modules.security.config.PasswordConfig;
+import me.zhengjie.modules.system.service.UserService;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * 登录密码校验，BCrypt 计算放到独立的定长线程池中执行，请求线程最多等待配置的超时时间；
+ * 队列满时直接拒绝，超时由计时线程结束，避免登录高峰占满 Tomcat 线程拖慢其他接口
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+@Component
+public class PasswordVerifier implements MetricsSource {
+
+    /** 同步等待比计时线程多等的时间 毫秒 */
+    private static final long TIMEOUT_GRACE = 1000;
+
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordConfig passwordConfig;
+    private final UserService userService;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer;
+
+    /** 已完成的校验次数 */
+    private final AtomicLong verified = new AtomicLong();
+    /** 因队列已满被拒绝的次数 */
+    private final AtomicLong rejected = new AtomicLong();
+    /** 等待超时的次数 */
+    private final AtomicLong timeouts = new AtomicLong();
+    /** 重新加密的次数 */
+    private final AtomicLong rehashed = new AtomicLong();
+    /** 排队耗时累计 纳秒 */
+    private final AtomicLong queueNanos = new AtomicLong();
+    /** BCrypt 计算耗时累计 纳秒 */
+    private final AtomicLong hashNanos = new AtomicLong();
+    /** BCrypt 单次计算最大耗时 纳秒 */
+    private final LongAccumulator maxHashNanos = new LongAccumulator(Math::max, 0);
+
+    public PasswordVerifier(PasswordEncoder passwordEncoder, PasswordConfig passwordConfig, UserService userService) {
+        this.passwordEncoder = passwordEncoder;
+        this.passwordConfig = passwordConfig;
+        this.userService = userService;
+        AtomicInteger index = new AtomicInteger(1);
+        int poolSize = Math.max(1, passwordConfig.getPoolSize());
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, passwordConfig.getQueueCapacity())),
+                r -> new Thread(r, "el-password-" + index.getAndIncrement()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "el-password-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+        timer.shutdownNow();
+    }
+
+    /**
+     * 校验密码，在请求线程中等待结果，等待时间不超过配置的超时时间。
+     * 队列已满时抛出 429，超时抛出 503
+     * @param username 用户名
+     * @param rawPassword 明文密码
+     * @param encodedPassword 数据库中的密文
+     * @return 是否匹配
+     */
+    public boolean verify(String username, String rawPassword, String encodedPassword) {
+        CompletableFuture<Boolean> future = matches(username, rawPassword, encodedPassword);
+        try {
+            // 计时线程到期时以 503 结束，这里多等的时间只是兜底
+            return future.get(passwordConfig.getTimeout() + TIMEOUT_GRACE, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new BadRequestException(HttpStatus.SERVICE_UNAVAILABLE, "登录超时，请稍后再试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BadRequestException(HttpStatus.SERVICE_UNAVAILABLE, "登录被中断，请稍后再试");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 异步校验密码，校验成功且密码的加密强度与配置不一致时，异步按新强度重新加密。
+     * 队列已满时返回 429，超时返回 503，均以异常结束返回的 Future
+     * @param username 用户名
+     * @param rawPassword 明文密码
+     * @param encodedPassword 数据库中的密文
+     * @return 是否匹配
+     */
+    public CompletableFuture<Boolean> matches(String username, String rawPassword, String encodedPassword) {
+        long submitTime = System.nanoTime();
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(MdcTaskDecorator.INSTANCE.decorate(() -> {
+                long start = System.nanoTime();
+                queueNanos.addAndGet(start - submitTime);
+                boolean matched;
+                try {
+                    matched = passwordEncoder.matches(rawPassword, encodedPassword);
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                    return;
+                } finally {
+                    long cost = System.nanoTime() - start;
+                    hashNanos.addAndGet(cost);
+                    maxHashNanos.accumulate(cost);
+                    verified.incrementAndGet();
+                }
+                // 已超时的结果不再处理
+                if (result.complete(matched) && matched && needsRehash(encodedPassword)) {
+                    rehash(username, rawPassword);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            result.completeExceptionally(new BadRequestException(HttpStatus.TOO_MANY_REQUESTS, "登录人数过多，请稍后再试"));
+            return result;
+        }
+        ScheduledFuture<?> timeout = timer.schedule(() -> {
+            if (result.completeExceptionally(new BadRequestException(HttpStatus.SERVICE_UNAVAILABLE, "登录超时，请稍后再试"))) {
+                timeouts.incrementAndGet();
+                task.cancel(true);
+            }
+        }, passwordConfig.getTimeout(), TimeUnit.MILLISECONDS);
+        result.whenComplete((matched, e) -> timeout.cancel(false));
+        return result;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "password_verifier";
+    }
+
+    /**
+     * 获取密码校验统计信息（监控用）
+     * @return /
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(12);
+        long count = verified.get();
+        stats.put("strength", passwordConfig.getStrength());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("verified", count);
+        stats.put("rejected", rejected.get());
+        stats.put("timeouts", timeouts.get());
+        stats.put("rehashed", rehashed.get());
+        stats.put("avgQueueMillis", count == 0 ? 0 : queueNanos.get() / count / 1_000_000D);
+        stats.put("avgHashMillis", count == 0 ? 0 : hashNanos.get() / count / 1_000_000D);
+        stats.put("maxHashMillis", maxHashNanos.get() / 1_000_000D);
+        return stats;
+    }
+
+    /**
+     * 密文中的强度与当前配置不一致时需要重新加密，格式：$2a$10$...
+     * @param encodedPassword 密文
+     * @return /
+     */
+    private boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return false;
+        }
+        try {
+            int strength = Integer.parseInt(encodedPassword.substring(4, 6));
+            return strength != passwordConfig.getStrength();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void rehash(String username, String rawPassword) {
+        try {
+            executor.execute(() -> {
+                try {
+                    userService.rehashPass(username, passwordEncoder.encode(rawPassword));
+                    rehashed.incrementAndGet();
+                } catch (Exception e) {
+                    log.error("用户 {} 密码重新加密失败：{}", username, e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 繁忙时跳过，下次登录再处理
+            log.debug("用户 {} 密码重新加密任务被拒绝", username);
+        }
+    }
+}
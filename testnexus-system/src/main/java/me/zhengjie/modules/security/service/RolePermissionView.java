@@ -0,0 +1,308 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.security.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import me.zhengjie.modules.system.repository.RoleRepository;
+import me.zhengjie.utils.StringUtils;
+import me.zhengjie.utils.metrics.MetricsSource;
+import me.zhengjie.utils.state.StateStore;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 角色权限视图，按角色物化权限编号，每个角色带一个单调递增的版本号。
+ * 用户的权限按“角色集合 + 各角色版本”缓存，角色的菜单变更只需递增该角色的版本，
+ * 持有该角色的用户在下次请求时自动换算新权限，不需要反查用户逐个清理缓存。
+ * 版本号保存在共享状态存储中，多节点部署时一个节点修改角色，
+ * 其他节点在近端缓存存活时间（near-cache-ttl）内读到新版本并重新加载该角色；物化的权限编号只保存在本节点
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Component
+public class RolePermissionView implements MetricsSource {
+
+    private static final int[] EMPTY = new int[0];
+
+    /** 共享的角色版本，从未失效过的角色版本为 0 */
+    static final String VERSION_KEY = "role-permission-version:";
+
+    private final RoleRepository roleRepository;
+
+    private final StateStore stateStore;
+
+    /**
+     * 角色 -> 物化的权限编号
+     */
+    private final Map<Long, RoleEntry> roles = new ConcurrentHashMap<>(64);
+
+    /**
+     * 角色集合 + 版本 -> 合并后的权限编号
+     */
+    private final Cache<RoleSetKey, int[]> unions = Caffeine.newBuilder()
+            .maximumSize(4096)
+            .recordStats()
+            .build();
+
+    private final AtomicLong roleLoads = new AtomicLong();
+
+    private final AtomicLong bumps = new AtomicLong();
+
+    public RolePermissionView(RoleRepository roleRepository, StateStore stateStore) {
+        this.roleRepository = roleRepository;
+        this.stateStore = stateStore;
+    }
+
+    /**
+     * 计算角色集合的权限版本，取各角色版本之和。
+     * 每个角色的版本单调递增，任一角色失效后该值一定变大，且与节点无关
+     * @param roleIds 角色ID，不重复
+     * @return /
+     */
+    public long version(long[] roleIds) {
+        long version = 0;
+        for (long roleId : roleIds) {
+            version += roleVersion(roleId);
+        }
+        return version;
+    }
+
+    private long roleVersion(long roleId) {
+        Long version = stateStore.get(VERSION_KEY + roleId, Long.class);
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * 获取角色集合合并后的权限编号（已排序），版本号在读取权限之前确定，
+     * 读取期间发生的失效会让下一次版本比较不一致，从而再次换算
+     * @param roleIds 角色ID
+     * @return /
+     */
+    public Permissions resolve(long[] roleIds) {
+        long[] sorted = Arrays.stream(roleIds).distinct().sorted().toArray();
+        if (sorted.length == 0) {
+            return new Permissions(EMPTY, 0);
+        }
+        long version = 0;
+        long[] stamps = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            stamps[i] = roleVersion(sorted[i]);
+            version += stamps[i];
+        }
+        int[] ids = unions.get(new RoleSetKey(sorted, stamps), key -> merge(sorted));
+        return new Permissions(ids, version);
+    }
+
+    /**
+     * 角色权限变更后调用，事务提交后递增角色版本
+     * @param roleIds 角色ID
+     */
+    public void invalidate(Collection<Long> roleIds) {
+        if (roleIds == null || roleIds.isEmpty()) {
+            return;
+        }
+        Set<Long> ids = new HashSet<>(roleIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bump(ids);
+                }
+            });
+        } else {
+            bump(ids);
+        }
+    }
+
+    private void bump(Set<Long> roleIds) {
+        for (Long roleId : roleIds) {
+            // 取时间戳作为版本，并且大于当前读到的版本，各节点写入的版本可以直接比较
+            long version = Math.max(System.currentTimeMillis(), roleVersion(roleId) + 1);
+            stateStore.set(VERSION_KEY + roleId, version, 0);
+            roles.remove(roleId);
+        }
+        // 立即落库，其他节点不必等待合并写入
+        stateStore.flush();
+        bumps.addAndGet(roleIds.size());
+    }
+
+    /**
+     * 合并多个角色的权限，缺失或已过期的角色一次性批量加载
+     */
+    private int[] merge(long[] roleIds) {
+        Map<Long, int[]> permissions = new HashMap<>(roleIds.length);
+        List<Long> missing = new ArrayList<>();
+        for (long roleId : roleIds) {
+            RoleEntry entry = roles.get(roleId);
+            if (entry == null || entry.version != roleVersion(roleId)) {
+                missing.add(roleId);
+            } else {
+                permissions.put(roleId, entry.permissionIds);
+            }
+        }
+        if (!missing.isEmpty()) {
+            permissions.putAll(load(missing));
+        }
+        int[] merged = EMPTY;
+        for (long roleId : roleIds) {
+            merged = union(merged, permissions.getOrDefault(roleId, EMPTY));
+        }
+        return merged;
+    }
+
+    private Map<Long, int[]> load(List<Long> roleIds) {
+        // 先记下版本再查询，查询期间发生的失效会让条目版本落后，下次读取时重新加载
+        Map<Long, Long> loadedVersions = new HashMap<>(roleIds.size());
+        Map<Long, List<String>> permissions = new HashMap<>(roleIds.size());
+        for (Long roleId : roleIds) {
+            loadedVersions.put(roleId, roleVersion(roleId));
+            permissions.put(roleId, new ArrayList<>());
+        }
+        for (Object[] row : roleRepository.findPermissions(roleIds)) {
+            String permission = (String) row[1];
+            if (StringUtils.isNotBlank(permission)) {
+                permissions.get((Long) row[0]).add(permission);
+            }
+        }
+        Map<Long, int[]> loaded = new HashMap<>(roleIds.size());
+        permissions.forEach((roleId, values) -> {
+            int[] ids = AuthorityInterner.intern(values);
+            roles.put(roleId, new RoleEntry(loadedVersions.get(roleId), ids));
+            loaded.put(roleId, ids);
+        });
+        roleLoads.addAndGet(roleIds.size());
+        return loaded;
+    }
+
+    /**
+     * 合并两个有序且去重的数组
+     */
+    static int[] union(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[k++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[k++] = b[j++];
+            } else {
+                result[k++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[k++] = a[i++];
+        }
+        while (j < b.length) {
+            result[k++] = b[j++];
+        }
+        return k == result.length ? result : Arrays.copyOf(result, k);
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "role_permission";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(6);
+        stats.put("roles", roles.size());
+        stats.put("unions", unions.estimatedSize());
+        stats.put("unionHitRate", unions.stats().hitRate());
+        stats.put("roleLoads", roleLoads.get());
+        stats.put("bumps", bumps.get());
+        return stats;
+    }
+
+    /**
+     * 合并后的权限编号与换算时的版本
+     */
+    public static class Permissions {
+
+        private final int[] ids;
+
+        private final long version;
+
+        private Permissions(int[] ids, long version) {
+            this.ids = ids;
+            this.version = version;
+        }
+
+        public int[] getIds() {
+            return ids;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    private static class RoleEntry {
+
+        private final long version;
+
+        private final int[] permissionIds;
+
+        private RoleEntry(long version, int[] permissionIds) {
+            this.version = version;
+            this.permissionIds = permissionIds;
+        }
+    }
+
+    private static class RoleSetKey {
+
+        private final long[] roleIds;
+
+        private final long[] versions;
+
+        private final int hash;
+
+        private RoleSetKey(long[] roleIds, long[] versions) {
+            this.roleIds = roleIds;
+            this.versions = versions;
+            this.hash = 31 * Arrays.hashCode(roleIds) + Arrays.hashCode(versions);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RoleSetKey)) {
+                return false;
+            }
+            RoleSetKey that = (RoleSetKey) o;
+            return Arrays.equals(roleIds, that.roleIds) && Arrays.equals(versions, that.versions);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
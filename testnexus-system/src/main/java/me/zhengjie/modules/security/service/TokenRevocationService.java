@@ -0,0 +1,201 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.security.service;
+
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.modules.security.config.SecurityProperties;
+import me.zhengjie.utils.BloomFilter;
+import me.zhengjie.utils.metrics.MetricsSource;
+import me.zhengjie.utils.state.StateStore;
+import org.springframework.stereotype.Service;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 令牌吊销名单，按令牌编号（JWT 中的 uid）吊销仍然有效的令牌。
+ * 布隆过滤器挡在精确名单之前，绝大多数未吊销的令牌只需一次过滤器判断；
+ * 过期条目定期清理，并按剩余条目重建过滤器。
+ * 吊销记录同时写入共享状态存储，各节点定期同步其他节点的吊销记录；
+ * 在同步之前，其他节点依靠在线状态被删除来拒绝已吊销的令牌
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+@Service
+public class TokenRevocationService implements MetricsSource {
+
+    private static final int MIN_CAPACITY = 1024;
+
+    /** 共享状态存储中吊销记录的 key 前缀 */
+    static final String REVOKED_KEY = "token-revoked:";
+
+    private final SecurityProperties properties;
+
+    private final StateStore stateStore;
+
+    /**
+     * 令牌编号 -> 吊销记录的过期时间
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter filter;
+
+    /** 过滤器容量，条目数超过后提前重建 */
+    private volatile long capacity;
+
+    private final AtomicLong filterHits = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong synced = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    public TokenRevocationService(SecurityProperties properties, StateStore stateStore) {
+        this.properties = properties;
+        this.stateStore = stateStore;
+        this.capacity = MIN_CAPACITY;
+        this.filter = new BloomFilter(capacity, properties.getRevocationFpp());
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "el-token-revocation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getRevocationRebuildInterval();
+        scheduler.scheduleWithFixedDelay(this::rebuild, interval, interval, TimeUnit.MILLISECONDS);
+        long syncInterval = properties.getRevocationSyncInterval();
+        scheduler.scheduleWithFixedDelay(this::sync, 0, syncInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 吊销令牌，吊销记录保留到令牌最长有效期结束，并写入共享状态存储供其他节点同步
+     * @param tokenId 令牌编号
+     */
+    public void revoke(String tokenId) {
+        if (tokenId == null) {
+            return;
+        }
+        long ttl = properties.getTokenValidityInSeconds();
+        add(tokenId, System.currentTimeMillis() + ttl);
+        stateStore.set(REVOKED_KEY + tokenId, Boolean.TRUE, ttl);
+    }
+
+    /**
+     * 从共享状态存储同步其他节点新增的吊销记录
+     */
+    public void sync() {
+        try {
+            long now = System.currentTimeMillis();
+            for (String key : stateStore.scan(REVOKED_KEY)) {
+                String tokenId = key.substring(REVOKED_KEY.length());
+                if (revoked.containsKey(tokenId)) {
+                    continue;
+                }
+                long expire = stateStore.getExpire(key);
+                if (expire > 0) {
+                    add(tokenId, now + expire);
+                    synced.incrementAndGet();
+                }
+            }
+        } catch (Exception e) {
+            log.error("令牌吊销名单同步失败：{}", e.getMessage(), e);
+        }
+    }
+
+    private void add(String tokenId, long expireAt) {
+        revoked.put(tokenId, expireAt);
+        filter.put(tokenId);
+        if (revoked.size() > capacity && scheduler != null) {
+            scheduler.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * 判断令牌是否已被吊销，过滤器未命中时不会查询精确名单
+     * @param tokenId 令牌编号
+     * @return /
+     */
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !filter.mightContain(tokenId)) {
+            return false;
+        }
+        filterHits.incrementAndGet();
+        Long expireAt = revoked.get(tokenId);
+        if (expireAt == null || expireAt < System.currentTimeMillis()) {
+            falsePositives.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 清理过期的吊销记录，按剩余条目重建过滤器
+     */
+    public synchronized void rebuild() {
+        try {
+            long now = System.currentTimeMillis();
+            revoked.values().removeIf(expireAt -> expireAt < now);
+            long newCapacity = Math.max(MIN_CAPACITY, revoked.size() * 2L);
+            BloomFilter newFilter = new BloomFilter(newCapacity, properties.getRevocationFpp());
+            revoked.keySet().forEach(newFilter::put);
+            // 先切换过滤器再补齐切换期间新增的条目，保证不会漏判
+            filter = newFilter;
+            capacity = newCapacity;
+            revoked.keySet().forEach(newFilter::put);
+            rebuilds.incrementAndGet();
+        } catch (Exception e) {
+            log.error("令牌吊销名单重建失败：{}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "token_revocation";
+    }
+
+    /**
+     * 获取吊销名单统计信息（监控用）
+     * @return /
+     */
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(8);
+        stats.put("revoked", revoked.size());
+        stats.put("capacity", capacity);
+        stats.put("filterHits", filterHits.get());
+        stats.put("falsePositives", falsePositives.get());
+        stats.put("rebuilds", rebuilds.get());
+        stats.put("synced", synced.get());
+        return stats;
+    }
+}
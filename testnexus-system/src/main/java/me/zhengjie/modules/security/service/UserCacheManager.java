@@ -17,15 +17,20 @@ package me.zhengjie.modules.security.service;
 
 import cn.hutool.core.util.RandomUtil;
 import me.zhengjie.modules.security.config.LoginProperties;
-import me.zhengjie.modules.security.service.dto.JwtUserDto;
-import me.zhengjie.utils.RedisUtils;
+import me.zhengjie.modules.security.service.dto.CompactPrincipal;
 import me.zhengjie.utils.StringUtils;
+import me.zhengjie.utils.state.LocalStateStore;
+import me.zhengjie.utils.state.StateStore;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * 精简用户信息只缓存在本节点：其中的权限编号由本节点的 AuthorityInterner 分配，
+ * 密码等字段也不参与序列化，不能放入共享状态存储。
+ * 多节点部署时通过共享状态存储中的用户版本失效：清理缓存时更新版本，
+ * 各节点读取缓存时比较版本，其他节点在近端缓存存活时间（near-cache-ttl）内可见
  * @author Zheng Jie
  * @description 用户缓存管理
  * @date 2022-05-26
@@ -33,53 +38,104 @@ import javax.annotation.Resource;
 @Component
 public class UserCacheManager {
 
+    /** 本节点缓存的用户数量上限 */
+    private static final long MAXIMUM_SIZE = 20000;
+
+    /** 共享的用户版本 */
+    static final String VERSION_KEY = "user-login-version:";
+
+    private final LocalStateStore principals = new LocalStateStore(MAXIMUM_SIZE);
+
     @Resource
-    private RedisUtils redisUtils;
+    private StateStore stateStore;
     @Value("${login.user-cache.idle-time}")
     private long idleTime;
 
     /**
-     * 返回用户缓存
+     * 当前的用户版本，加载用户信息之前读取，随用户信息一起写入缓存
+     * @param userName 用户名
+     * @return 从未清理过时为 0
+     */
+    public long version(String userName) {
+        Long version = stateStore.get(VERSION_KEY + StringUtils.lowerCase(userName), Long.class);
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * 返回用户缓存，版本与共享版本不一致时视为不存在
      * @param userName 用户名
-     * @return JwtUserDto
+     * @return CompactPrincipal
      */
-    public JwtUserDto getUserCache(String userName) {
+    public CompactPrincipal getUserCache(String userName) {
         // 转小写
         userName = StringUtils.lowerCase(userName);
         if (StringUtils.isNotEmpty(userName)) {
             // 获取数据
-            return redisUtils.get(LoginProperties.cacheKey + userName, JwtUserDto.class);
+            Entry entry = principals.get(LoginProperties.cacheKey + userName, Entry.class);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.version != version(userName)) {
+                principals.del(LoginProperties.cacheKey + userName);
+                return null;
+            }
+            return entry.principal;
         }
         return null;
     }
 
     /**
-     *  添加缓存到Redis
+     * 添加缓存，版本取当前的共享版本，用于缓存未失效时替换其中的字段
      * @param userName 用户名
+     * @param user 精简的用户信息
      */
-    @Async
-    public void addUserCache(String userName, JwtUserDto user) {
+    public void addUserCache(String userName, CompactPrincipal user) {
+        addUserCache(userName, user, version(userName));
+    }
+
+    /**
+     * 添加缓存，只缓存精简后的用户信息
+     * @param userName 用户名
+     * @param user 精简的用户信息
+     * @param version 加载用户信息之前读取的版本，加载期间被清理时缓存随即失效
+     */
+    public void addUserCache(String userName, CompactPrincipal user, long version) {
         // 转小写
         userName = StringUtils.lowerCase(userName);
         if (StringUtils.isNotEmpty(userName)) {
             // 添加数据, 避免数据同时过期
             long time = idleTime + RandomUtil.randomInt(900, 1800);
-            redisUtils.set(LoginProperties.cacheKey + userName, user, time);
+            principals.set(LoginProperties.cacheKey + userName, new Entry(user, version), TimeUnit.SECONDS.toMillis(time));
         }
     }
 
     /**
      * 清理用户缓存信息
-     * 用户信息变更时
+     * 用户信息变更时同步清理，避免清理前的登录仍使用旧的密码与权限；同时更新共享版本，通知其他节点
      * @param userName 用户名
      */
-    @Async
     public void cleanUserCache(String userName) {
         // 转小写
         userName = StringUtils.lowerCase(userName);
         if (StringUtils.isNotEmpty(userName)) {
             // 清除数据
-            redisUtils.del(LoginProperties.cacheKey + userName);
+            principals.del(LoginProperties.cacheKey + userName);
+            // 版本只需与之前不同，存活时间不短于缓存本身
+            long version = Math.max(System.currentTimeMillis(), version(userName) + 1);
+            stateStore.set(VERSION_KEY + userName, version, TimeUnit.SECONDS.toMillis(idleTime + 1800));
+            stateStore.flush();
+        }
+    }
+
+    private static class Entry {
+
+        private final CompactPrincipal principal;
+
+        private final long version;
+
+        private Entry(CompactPrincipal principal, long version) {
+            this.principal = principal;
+            this.version = version;
         }
     }
-}
\ No newline at end of file
+}
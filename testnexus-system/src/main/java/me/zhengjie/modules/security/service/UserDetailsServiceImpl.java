@@ -19,10 +19,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import me.zhengjie.exception.BadRequestException;
 import me.zhengjie.modules.security.service.dto.AuthorityDto;
+import me.zhengjie.modules.security.service.dto.CompactPrincipal;
 import me.zhengjie.modules.security.service.dto.JwtUserDto;
 import me.zhengjie.modules.system.service.DataService;
 import me.zhengjie.modules.system.service.RoleService;
 import me.zhengjie.modules.system.service.UserService;
+import me.zhengjie.modules.system.service.dto.RoleSmallDto;
 import me.zhengjie.modules.system.service.dto.UserDto;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Service;
@@ -40,26 +42,87 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     private final RoleService roleService;
     private final DataService dataService;
     private final UserCacheManager userCacheManager;
+    private final RolePermissionView rolePermissionView;
 
+    /**
+     * 获取精简的登录用户信息，供每次请求鉴权使用，优先读取缓存
+     * @param username 用户名
+     * @return /
+     */
     @Override
-    public JwtUserDto loadUserByUsername(String username) {
-        JwtUserDto jwtUserDto = userCacheManager.getUserCache(username);
-        if(jwtUserDto == null){
-            UserDto user = userService.getLoginData(username);
-            if (user == null) {
-                throw new BadRequestException("用户不存在");
-            } else {
-                if (!user.getEnabled()) {
-                    throw new BadRequestException("账号未激活！");
-                }
-                // 获取用户的权限
-                List<AuthorityDto> authorities = roleService.buildPermissions(user);
-                // 初始化JwtUserDto
-                jwtUserDto = new JwtUserDto(user, dataService.getDeptIds(user), authorities);
-                // 添加缓存数据
-                userCacheManager.addUserCache(username, jwtUserDto);
-            }
+    public CompactPrincipal loadUserByUsername(String username) {
+        CompactPrincipal principal = userCacheManager.getUserCache(username);
+        if (principal == null) {
+            long version = userCacheManager.version(username);
+            principal = cache(username, loadFreshUser(username), version);
+        } else if (rolePermissionView.version(principal.getRoleIds()) != principal.getPermissionVersion()) {
+            // 角色权限有变更，按角色集合重新换算，不需要重新加载用户
+            RolePermissionView.Permissions permissions = rolePermissionView.resolve(principal.getRoleIds());
+            principal = principal.withAuthorities(permissions.getIds(), permissions.getVersion());
+            userCacheManager.addUserCache(username, principal);
         }
-        return jwtUserDto;
+        return principal;
+    }
+
+    /**
+     * 获取完整的登录用户信息，包含角色、岗位等，用于登录与获取用户信息接口。
+     * 精简信息已缓存时按用户ID读取用户缓存，数据权限与角色权限同样走各自的缓存；
+     * 缓存不存在或用户信息变更被清理后才重新查询数据库
+     * @param username 用户名
+     * @return /
+     */
+    public JwtUserDto loadFullUser(String username) {
+        CompactPrincipal principal = userCacheManager.getUserCache(username);
+        if (principal == null) {
+            long version = userCacheManager.version(username);
+            JwtUserDto jwtUser = loadFreshUser(username);
+            cache(username, jwtUser, version);
+            return jwtUser;
+        }
+        return build(userService.findById(principal.getId()));
+    }
+
+    /**
+     * 从数据库加载完整的登录用户信息
+     * @param username 用户名
+     * @return /
+     */
+    private JwtUserDto loadFreshUser(String username) {
+        UserDto user = userService.getLoginData(username);
+        if (user == null) {
+            throw new BadRequestException("用户不存在");
+        }
+        return build(user);
+    }
+
+    private JwtUserDto build(UserDto user) {
+        if (!user.getEnabled()) {
+            throw new BadRequestException("账号未激活！");
+        }
+        // 获取用户的权限
+        List<AuthorityDto> authorities = roleService.buildPermissions(user);
+        // 初始化JwtUserDto
+        return new JwtUserDto(user, dataService.getDeptIds(user), authorities);
+    }
+
+    /**
+     * 缓存精简后的用户信息
+     * @param username 用户名
+     * @param jwtUserDto 完整的用户信息
+     * @param version 加载用户信息之前读取的用户版本
+     * @return /
+     */
+    public CompactPrincipal cache(String username, JwtUserDto jwtUserDto, long version) {
+        UserDto user = jwtUserDto.getUser();
+        CompactPrincipal principal;
+        if (user.getIsAdmin()) {
+            principal = CompactPrincipal.of(jwtUserDto);
+        } else {
+            long[] roleIds = user.getRoles().stream().mapToLong(RoleSmallDto::getId).toArray();
+            RolePermissionView.Permissions permissions = rolePermissionView.resolve(roleIds);
+            principal = CompactPrincipal.of(jwtUserDto, roleIds, permissions.getIds(), permissions.getVersion());
+        }
+        userCacheManager.addUserCache(username, principal, version);
+        return principal;
     }
 }
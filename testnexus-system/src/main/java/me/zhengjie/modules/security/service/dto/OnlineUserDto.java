@@ -51,7 +51,7 @@ public class OnlineUserDto {
     @ApiModelProperty(value = "地址")
     private String address;
 
-    @ApiModelProperty(value = "token")
+    @ApiModelProperty(value = "加密后的在线用户key，用于强退")
     private String key;
 
     @ApiModelProperty(value = "登录时间")
@@ -20,6 +20,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -52,18 +53,117 @@ public interface DeptRepository extends JpaRepository<Dept, Long>, JpaSpecificat
     Set<Dept> findByRoleId(Long roleId);
 
     /**
-     * 判断是否存在子节点
-     * @param pid /
+     * 查询部门及其所有下级
+     * @param ids 部门ID
      * @return /
      */
-    int countByPid(Long pid);
+    @Query(value = "SELECT DISTINCT d.* FROM sys_dept d, sys_dept_closure c WHERE " +
+            "d.dept_id = c.descendant AND c.ancestor IN ?1", nativeQuery = true)
+    List<Dept> findDescendants(Collection<Long> ids);
 
     /**
-     * 根据ID更新sub_count
-     * @param count /
-     * @param id /
+     * 查询部门及其所有下级，下级中停用的部门及其下级不包含在内
+     * @param ids 部门ID
+     * @return /
+     */
+    @Query(value = "SELECT DISTINCT d.* FROM sys_dept d, sys_dept_closure c WHERE " +
+            "d.dept_id = c.descendant AND c.ancestor IN ?1 AND NOT EXISTS (" +
+            "SELECT 1 FROM sys_dept_closure p, sys_dept x WHERE p.descendant = c.descendant " +
+            "AND p.depth < c.depth AND x.dept_id = p.ancestor AND x.enabled = 0)", nativeQuery = true)
+    List<Dept> findEnabledDescendants(Collection<Long> ids);
+
+    /**
+     * 从指定部门开始逐级向上，查询每一级的下级部门，由近及远
+     * @param id 部门ID
+     * @return /
+     */
+    @Query(value = "SELECT d.* FROM sys_dept d, sys_dept_closure c WHERE " +
+            "d.pid = c.ancestor AND c.descendant = ?1 ORDER BY c.depth, d.dept_sort", nativeQuery = true)
+    List<Dept> findSuperior(Long id);
+
+    /**
+     * 判断是否为上下级关系
+     * @param ancestor 上级部门ID
+     * @param descendant 下级部门ID
+     * @return /
+     */
+    @Query(value = "SELECT count(1) FROM sys_dept_closure WHERE ancestor = ?1 AND descendant = ?2", nativeQuery = true)
+    int countClosure(Long ancestor, Long descendant);
+
+    /**
+     * 获取闭包表中的部门数量
+     * @return /
+     */
+    @Query(value = "SELECT count(1) FROM sys_dept_closure WHERE depth = 0", nativeQuery = true)
+    long countClosureNodes();
+
+    /**
+     * 新增部门时写入其与所有上级的关系，部门需已写入 sys_dept
+     * @param id 部门ID
+     * @param pid 上级部门ID
+     */
+    @Modifying
+    @Query(value = "INSERT INTO sys_dept_closure (ancestor, descendant, depth) " +
+            "SELECT c.ancestor, d.dept_id, c.depth + 1 FROM sys_dept_closure c, sys_dept d " +
+            "WHERE c.descendant = ?2 AND d.dept_id = ?1 " +
+            "UNION ALL SELECT dept_id, dept_id, 0 FROM sys_dept WHERE dept_id = ?1", nativeQuery = true)
+    void insertClosure(Long id, Long pid);
+
+    /**
+     * 移动部门前断开子树与原上级的关系，子树内部的关系保持不变。
+     * 子查询包在派生表中先物化，MySQL 才允许在删除时引用同一张表
+     * @param id 部门ID
+     */
+    @Modifying
+    @Query(value = "DELETE FROM sys_dept_closure WHERE " +
+            "descendant IN (SELECT t.descendant FROM (SELECT descendant FROM sys_dept_closure WHERE ancestor = ?1) t) " +
+            "AND ancestor NOT IN (SELECT t.descendant FROM (SELECT descendant FROM sys_dept_closure WHERE ancestor = ?1) t)",
+            nativeQuery = true)
+    void detachClosure(Long id);
+
+    /**
+     * 将子树挂到新的上级下
+     * @param id 部门ID
+     * @param pid 新的上级部门ID
+     */
+    @Modifying
+    @Query(value = "INSERT INTO sys_dept_closure (ancestor, descendant, depth) " +
+            "SELECT p.ancestor, s.descendant, p.depth + s.depth + 1 FROM sys_dept_closure p, sys_dept_closure s " +
+            "WHERE p.descendant = ?2 AND s.ancestor = ?1", nativeQuery = true)
+    void attachClosure(Long id, Long pid);
+
+    /**
+     * 删除部门的所有关系
+     * @param id 部门ID
+     */
+    @Modifying
+    @Query(value = "DELETE FROM sys_dept_closure WHERE ancestor = ?1 OR descendant = ?1", nativeQuery = true)
+    void deleteClosure(Long id);
+
+    /**
+     * 清空闭包表
+     */
+    @Modifying
+    @Query(value = "DELETE FROM sys_dept_closure", nativeQuery = true)
+    void clearClosure();
+
+    /**
+     * 重建时写入每个部门与自身的关系
+     * @return 写入行数
+     */
+    @Modifying
+    @Query(value = "INSERT INTO sys_dept_closure (ancestor, descendant, depth) " +
+            "SELECT dept_id, dept_id, 0 FROM sys_dept", nativeQuery = true)
+    int initClosure();
+
+    /**
+     * 重建时在已有关系的基础上向下扩展一级
+     * @param depth 已有关系的层级差
+     * @return 写入行数
      */
     @Modifying
-    @Query(value = " update sys_dept set sub_count = ?1 where dept_id = ?2 ",nativeQuery = true)
-    void updateSubCntById(Integer count, Long id);
-}
\ No newline at end of file
+    @Query(value = "INSERT INTO sys_dept_closure (ancestor, descendant, depth) " +
+            "SELECT c.ancestor, d.dept_id, c.depth + 1 FROM sys_dept_closure c, sys_dept d " +
+            "WHERE d.pid = c.descendant AND c.depth = ?1", nativeQuery = true)
+    int extendClosure(int depth);
+}
@@ -18,7 +18,6 @@ package me.zhengjie.modules.system.repository;
 import me.zhengjie.modules.system.domain.Menu;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -68,18 +67,10 @@ public interface MenuRepository extends JpaRepository<Menu, Long>, JpaSpecificat
     LinkedHashSet<Menu> findByRoleIdsAndTypeNot(Set<Long> roleIds, int type);
 
     /**
-     * 获取节点数量
-     * @param id /
+     * 根据角色ID查询菜单ID
+     * @param roleIds roleIDs
      * @return /
      */
-    int countByPid(Long id);
-
-    /**
-     * 更新节点数目
-     * @param count /
-     * @param menuId /
-     */
-    @Modifying
-    @Query(value = " update sys_menu set sub_count = ?1 where menu_id = ?2 ",nativeQuery = true)
-    void updateSubCntById(int count, Long menuId);
+    @Query("SELECT DISTINCT m.id FROM Role r JOIN r.menus m WHERE r.id IN ?1")
+    List<Long> findIdsByRoleIds(Set<Long> roleIds);
 }
@@ -21,6 +21,7 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -77,4 +78,12 @@ public interface RoleRepository extends JpaRepository<Role, Long>, JpaSpecificat
     @Query(value = "SELECT r.* FROM sys_role r, sys_roles_menus m WHERE " +
             "r.role_id = m.role_id AND m.menu_id in ?1",nativeQuery = true)
     List<Role> findInMenuId(List<Long> menuIds);
+
+    /**
+     * 查询角色的权限标识，每行为 [角色ID, 权限标识]
+     * @param roleIds 角色ID
+     * @return /
+     */
+    @Query("SELECT r.id, m.permission FROM Role r JOIN r.menus m WHERE r.id IN ?1 AND m.permission IS NOT NULL")
+    List<Object[]> findPermissions(Collection<Long> roleIds);
 }
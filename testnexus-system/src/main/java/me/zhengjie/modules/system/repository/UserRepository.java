@@ -61,6 +61,15 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
     @Query(value = "update sys_user set password = ?2 , pwd_reset_time = ?3 where username = ?1",nativeQuery = true)
     void updatePass(String username, String pass, Date lastPasswordResetTime);
 
+    /**
+     * 重新加密密码，不修改密码重置时间
+     * @param username 用户名
+     * @param pass 密码
+     */
+    @Modifying
+    @Query(value = "update sys_user set password = ?2 where username = ?1",nativeQuery = true)
+    void rehashPass(String username, String pass);
+
     /**
      * 修改邮箱
      * @param username 用户名
@@ -126,4 +126,13 @@ public class DeptController {
         deptService.delete(deptDtos);
         return new ResponseEntity<>(HttpStatus.OK);
     }
-}
\ No newline at end of file
+
+    @Log("重建部门层级关系")
+    @ApiOperation("重建部门层级关系")
+    @PostMapping(value = "/closure")
+    @PreAuthorize("@el.check('dept:edit')")
+    public ResponseEntity<Object> rebuildDeptClosure(){
+        deptService.rebuildClosure();
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+}
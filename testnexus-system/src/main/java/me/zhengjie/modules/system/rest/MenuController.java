@@ -69,9 +69,7 @@ public class MenuController {
         if(userId == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        List<MenuDto> menuDtoList = menuService.findByUser(userId);
-        List<MenuDto> menus = menuService.buildTree(menuDtoList);
-        return new ResponseEntity<>(menuService.buildMenus(menus),HttpStatus.OK);
+        return new ResponseEntity<>(menuService.buildRoutes(userId),HttpStatus.OK);
     }
 
     @ApiOperation("返回全部的菜单")
@@ -18,11 +18,19 @@ package me.zhengjie.modules.system.rest;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import lombok.RequiredArgsConstructor;
+import me.zhengjie.annotation.Log;
+import me.zhengjie.annotation.rest.AnonymousGetMapping;
 import me.zhengjie.modules.system.service.MonitorService;
+import me.zhengjie.utils.StringUtils;
+import me.zhengjie.utils.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 /**
  * @author Zheng Jie
@@ -35,6 +43,10 @@ import org.springframework.web.bind.annotation.*;
 public class MonitorController {
 
     private final MonitorService serverService;
+    private final MetricsRegistry metricsRegistry;
+
+    @Value("${metrics.scrape-token:}")
+    private String scrapeToken;
 
     @GetMapping
     @ApiOperation("查询服务监控")
@@ -42,4 +54,67 @@ public class MonitorController {
     public ResponseEntity<Object> queryMonitor(){
         return new ResponseEntity<>(serverService.getServers(),HttpStatus.OK);
     }
+
+    @GetMapping(value = "/routes")
+    @ApiOperation("查询接口耗时分布")
+    @PreAuthorize("@el.check('monitor:list')")
+    public ResponseEntity<Object> queryRoutes(@RequestParam(defaultValue = "5") int minutes,
+                                              @RequestParam(defaultValue = "p99") String sort,
+                                              @RequestParam(defaultValue = "50") int limit){
+        return new ResponseEntity<>(serverService.getRoutes(minutes, sort, limit),HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/sql")
+    @ApiOperation("查询 SQL 执行统计")
+    @PreAuthorize("@el.check('monitor:list')")
+    public ResponseEntity<Object> querySql(@RequestParam(defaultValue = "total") String sort,
+                                           @RequestParam(defaultValue = "50") int limit){
+        return new ResponseEntity<>(serverService.getSqlStats(sort, limit),HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/sql/repeated")
+    @ApiOperation("查询 N+1 查询")
+    @PreAuthorize("@el.check('monitor:list')")
+    public ResponseEntity<Object> queryRepeatedSql(){
+        return new ResponseEntity<>(serverService.getRepeatedSql(),HttpStatus.OK);
+    }
+
+    @Log("清空 SQL 执行统计")
+    @DeleteMapping(value = "/sql")
+    @ApiOperation("清空 SQL 执行统计")
+    @PreAuthorize("@el.check('monitor:list')")
+    public ResponseEntity<Object> resetSql(){
+        serverService.resetSqlStats();
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/connections")
+    @ApiOperation("查询数据库连接占用")
+    @PreAuthorize("@el.check('monitor:list')")
+    public ResponseEntity<Object> queryConnections(@RequestParam(defaultValue = "50") int limit){
+        return new ResponseEntity<>(serverService.getConnectionLeases(limit),HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/metrics")
+    @ApiOperation("查询运行指标")
+    @PreAuthorize("@el.check('monitor:list')")
+    public ResponseEntity<Object> queryMetrics(){
+        return new ResponseEntity<>(metricsRegistry.toMap(),HttpStatus.OK);
+    }
+
+    /**
+     * Prometheus 采集接口，使用 metrics.scrape-token 鉴权，未配置时不开放
+     */
+    @AnonymousGetMapping(value = "/prometheus")
+    @ApiOperation("Prometheus 指标采集")
+    public ResponseEntity<String> scrape(@RequestHeader(value = "Authorization", required = false) String authorization){
+        String token = authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : null;
+        if (StringUtils.isBlank(scrapeToken) || token == null || !MessageDigest.isEqual(
+                scrapeToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/plain;version=0.0.4;charset=utf-8"))
+                .body(metricsRegistry.scrape());
+    }
 }
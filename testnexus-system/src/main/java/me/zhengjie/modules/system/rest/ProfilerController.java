@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.system.rest;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import lombok.RequiredArgsConstructor;
+import me.zhengjie.annotation.Log;
+import me.zhengjie.utils.profiler.FlameGraph;
+import me.zhengjie.utils.profiler.SamplingProfiler;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 采样分析：手动采样与慢请求采样，导出折叠调用栈或火焰图。
+ * 开启与结束采样会占用服务器资源，需要 monitor:edit 权限，查看只需要 monitor:list
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@RestController
+@RequiredArgsConstructor
+@Api(tags = "系统-采样分析")
+@RequestMapping("/api/monitor/profiler")
+public class ProfilerController {
+
+    private final SamplingProfiler profiler;
+
+    @GetMapping
+    @ApiOperation("查询采样状态")
+    @PreAuthorize("@el.check('monitor:list')")
+    public ResponseEntity<Object> queryStatus(){
+        return new ResponseEntity<>(profiler.getStatus(),HttpStatus.OK);
+    }
+
+    @Log("开启采样分析")
+    @PostMapping
+    @ApiOperation("开启采样")
+    @PreAuthorize("@el.check('monitor:edit')")
+    public ResponseEntity<Object> start(@RequestParam(defaultValue = "30") int seconds,
+                                        @RequestParam(defaultValue = "0") long interval,
+                                        @RequestParam(defaultValue = "true") boolean runnableOnly){
+        profiler.start(seconds, interval, runnableOnly);
+        return new ResponseEntity<>(HttpStatus.CREATED);
+    }
+
+    @Log("结束采样分析")
+    @DeleteMapping
+    @ApiOperation("结束采样")
+    @PreAuthorize("@el.check('monitor:edit')")
+    public ResponseEntity<Object> stop(){
+        profiler.stop();
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/folded")
+    @ApiOperation("导出折叠调用栈")
+    @PreAuthorize("@el.check('monitor:list')")
+    public void exportFolded(HttpServletResponse response) throws IOException {
+        write(response, "text/plain", "profile.folded", profiler.getStacks().toText());
+    }
+
+    @GetMapping(value = "/flame")
+    @ApiOperation("导出火焰图")
+    @PreAuthorize("@el.check('monitor:list')")
+    public void exportFlameGraph(HttpServletResponse response) throws IOException {
+        write(response, "text/html", "profile.html", FlameGraph.render("CPU 采样", profiler.getStacks()));
+    }
+
+    @GetMapping(value = "/slow")
+    @ApiOperation("查询慢请求采样")
+    @PreAuthorize("@el.check('monitor:list')")
+    public ResponseEntity<Object> querySlow(){
+        return new ResponseEntity<>(profiler.getCaptures(),HttpStatus.OK);
+    }
+
+    @GetMapping(value = "/slow/{id}/flame")
+    @ApiOperation("导出慢请求火焰图")
+    @PreAuthorize("@el.check('monitor:list')")
+    public void exportSlowFlameGraph(@PathVariable Long id, HttpServletResponse response) throws IOException {
+        SamplingProfiler.Capture capture = profiler.getCapture(id);
+        write(response, "text/html", "slow-" + id + ".html", FlameGraph.render(capture.getTitle(), capture.getStacks()));
+    }
+
+    private static void write(HttpServletResponse response, String contentType, String filename, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        response.setContentType(contentType + ";charset=utf-8");
+        response.setHeader("Content-Disposition", "attachment;filename=" + filename);
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+        response.getOutputStream().flush();
+    }
+}
@@ -20,6 +20,7 @@ import me.zhengjie.modules.system.service.dto.DeptDto;
 import me.zhengjie.modules.system.service.dto.DeptQueryCriteria;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -116,6 +117,19 @@ public interface DeptService {
      */
     List<Long> getDeptChildren(List<Dept> deptList);
 
+    /**
+     * 获取部门及其所有下级部门的ID，下级中停用的部门及其下级不包含在内
+     * @param deptIds 部门ID
+     * @return /
+     */
+    Set<Long> getDeptAndChildrenIds(Collection<Long> deptIds);
+
+    /**
+     * 按 sys_dept 重建部门层级关系
+     * @return 关系数量
+     */
+    int rebuildClosure();
+
     /**
      * 验证是否被角色或用户关联
      * @param deptDtos /
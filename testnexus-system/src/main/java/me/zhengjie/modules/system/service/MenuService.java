@@ -123,4 +123,11 @@ public interface MenuService {
      * @return /
      */
     List<MenuDto> findByUser(Long currentUserId);
+
+    /**
+     * 根据当前用户构建前端路由
+     * @param currentUserId /
+     * @return /
+     */
+    List<MenuVo> buildRoutes(Long currentUserId);
 }
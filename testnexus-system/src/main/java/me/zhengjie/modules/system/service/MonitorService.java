@@ -15,6 +15,7 @@
  */
 package me.zhengjie.modules.system.service;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -28,4 +29,39 @@ public interface MonitorService {
     * @return Map<String,Object>
     */
     Map<String,Object> getServers();
+
+    /**
+     * 查询各接口最近一段时间的耗时分位数
+     * @param minutes 窗口大小 分钟
+     * @param sort 排序字段
+     * @param limit 返回数量
+     * @return /
+     */
+    List<Map<String,Object>> getRoutes(int minutes, String sort, int limit);
+
+    /**
+     * 按 SQL 指纹查询执行统计
+     * @param sort 排序字段
+     * @param limit 返回数量
+     * @return /
+     */
+    List<Map<String,Object>> getSqlStats(String sort, int limit);
+
+    /**
+     * 查询检测到的 N+1 查询
+     * @return /
+     */
+    List<Map<String,Object>> getRepeatedSql();
+
+    /**
+     * 清空 SQL 执行统计
+     */
+    void resetSqlStats();
+
+    /**
+     * 查询数据库连接占用情况
+     * @param limit 每一项返回的数量
+     * @return /
+     */
+    Map<String,Object> getConnectionLeases(int limit);
 }
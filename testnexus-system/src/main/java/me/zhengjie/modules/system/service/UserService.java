@@ -80,6 +80,13 @@ public interface UserService {
      */
     void updatePass(String username, String encryptPassword);
 
+    /**
+     * 按新的加密强度重新加密密码
+     * @param username 用户名
+     * @param encryptPassword 密码
+     */
+    void rehashPass(String username, String encryptPassword);
+
     /**
      * 修改头像
      * @param file 文件
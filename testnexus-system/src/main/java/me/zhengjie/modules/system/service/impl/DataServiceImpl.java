@@ -29,6 +29,7 @@ import me.zhengjie.utils.enums.DataScopeEnum;
 import org.springframework.stereotype.Service;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * @author Zheng Jie
@@ -86,13 +87,7 @@ public class DataServiceImpl implements DataService {
      */
     public Set<Long> getCustomize(Set<Long> deptIds, RoleSmallDto role){
         Set<Dept> depts = deptService.findByRoleId(role.getId());
-        for (Dept dept : depts) {
-            deptIds.add(dept.getId());
-            List<Dept> deptChildren = deptService.findByPid(dept.getId());
-            if (CollUtil.isNotEmpty(deptChildren)) {
-                deptIds.addAll(deptService.getDeptChildren(deptChildren));
-            }
-        }
+        deptIds.addAll(deptService.getDeptAndChildrenIds(depts.stream().map(Dept::getId).collect(Collectors.toSet())));
         return deptIds;
     }
 }
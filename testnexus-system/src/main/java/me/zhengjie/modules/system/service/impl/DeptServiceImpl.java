@@ -15,10 +15,10 @@
  */
 package me.zhengjie.modules.system.service.impl;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.ObjectUtil;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import me.zhengjie.exception.BadRequestException;
 import me.zhengjie.modules.system.domain.Dept;
 import me.zhengjie.modules.system.domain.User;
@@ -45,6 +45,7 @@ import java.util.stream.Collectors;
 * @author Zheng Jie
 * @date 2019-03-25
 */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class DeptServiceImpl implements DeptService {
@@ -54,6 +55,7 @@ public class DeptServiceImpl implements DeptService {
     private final UserRepository userRepository;
     private final RedisUtils redisUtils;
     private final RoleRepository roleRepository;
+    private final SubCountMaintainer subCountMaintainer;
 
     @Override
     public List<DeptDto> queryAll(DeptQueryCriteria criteria, Boolean isQuery) throws Exception {
@@ -112,10 +114,12 @@ public class DeptServiceImpl implements DeptService {
     @Transactional(rollbackFor = Exception.class)
     public void create(Dept resources) {
         deptRepository.save(resources);
+        // 维护层级关系
+        deptRepository.insertClosure(resources.getId(), resources.getPid());
         // 计算子节点数目
         resources.setSubCount(0);
         // 清理缓存
-        updateSubCnt(resources.getPid());
+        subCountMaintainer.mark(SubCountMaintainer.Tree.DEPT, resources.getPid());
         // 清理自定义角色权限的datascope缓存
         delCaches(resources.getPid());
     }
@@ -129,13 +133,21 @@ public class DeptServiceImpl implements DeptService {
         if(resources.getPid() != null && resources.getId().equals(resources.getPid())) {
             throw new BadRequestException("上级不能为自己");
         }
+        if(newPid != null && deptRepository.countClosure(resources.getId(), newPid) > 0) {
+            throw new BadRequestException("上级不能为自己的下级");
+        }
         Dept dept = deptRepository.findById(resources.getId()).orElseGet(Dept::new);
         ValidationUtil.isNull( dept.getId(),"Dept","id",resources.getId());
         resources.setId(dept.getId());
         deptRepository.save(resources);
+        // 上级变化时移动整棵子树
+        if(!Objects.equals(oldPid, newPid)) {
+            deptRepository.detachClosure(resources.getId());
+            deptRepository.attachClosure(resources.getId(), newPid);
+        }
         // 更新父节点中子节点数目
-        updateSubCnt(oldPid);
-        updateSubCnt(newPid);
+        subCountMaintainer.mark(SubCountMaintainer.Tree.DEPT, oldPid);
+        subCountMaintainer.mark(SubCountMaintainer.Tree.DEPT, newPid);
         // 清理缓存
         delCaches(resources.getId());
     }
@@ -147,7 +159,8 @@ public class DeptServiceImpl implements DeptService {
             // 清理缓存
             delCaches(deptDto.getId());
             deptRepository.deleteById(deptDto.getId());
-            updateSubCnt(deptDto.getPid());
+            deptRepository.deleteClosure(deptDto.getId());
+            subCountMaintainer.mark(SubCountMaintainer.Tree.DEPT, deptDto.getPid());
         }
     }
 
@@ -166,40 +179,55 @@ public class DeptServiceImpl implements DeptService {
 
     @Override
     public Set<DeptDto> getDeleteDepts(List<Dept> menuList, Set<DeptDto> deptDtos) {
-        for (Dept dept : menuList) {
-            deptDtos.add(deptMapper.toDto(dept));
-            List<Dept> depts = deptRepository.findByPid(dept.getId());
-            if(CollUtil.isNotEmpty(depts)){
-                getDeleteDepts(depts, deptDtos);
-            }
+        if(menuList.isEmpty()){
+            return deptDtos;
         }
+        Set<Long> ids = menuList.stream().map(Dept::getId).collect(Collectors.toSet());
+        deptDtos.addAll(deptMapper.toDto(deptRepository.findDescendants(ids)));
         return deptDtos;
     }
 
     @Override
     public List<Long> getDeptChildren(List<Dept> deptList) {
-        List<Long> list = new ArrayList<>();
-        deptList.forEach(dept -> {
-                    if (dept!=null && dept.getEnabled()) {
-                        List<Dept> depts = deptRepository.findByPid(dept.getId());
-                        if (CollUtil.isNotEmpty(depts)) {
-                            list.addAll(getDeptChildren(depts));
-                        }
-                        list.add(dept.getId());
-                    }
-                }
-        );
-        return list;
+        Set<Long> ids = deptList.stream()
+                .filter(dept -> dept != null && dept.getEnabled())
+                .map(Dept::getId).collect(Collectors.toSet());
+        return new ArrayList<>(getDeptAndChildrenIds(ids));
+    }
+
+    @Override
+    public Set<Long> getDeptAndChildrenIds(Collection<Long> deptIds) {
+        if(deptIds.isEmpty()){
+            return new HashSet<>();
+        }
+        Set<Long> ids = new HashSet<>(deptIds);
+        deptRepository.findEnabledDescendants(deptIds).forEach(dept -> ids.add(dept.getId()));
+        return ids;
     }
 
     @Override
     public List<DeptDto> getSuperior(DeptDto deptDto, List<Dept> depts) {
-        if(deptDto.getPid() == null){
-            depts.addAll(deptRepository.findByPidIsNull());
-            return deptMapper.toDto(depts);
+        if(deptDto.getPid() != null){
+            depts.addAll(deptRepository.findSuperior(deptDto.getPid()));
         }
-        depts.addAll(deptRepository.findByPid(deptDto.getPid()));
-        return getSuperior(findById(deptDto.getPid()), depts);
+        depts.addAll(deptRepository.findByPidIsNull());
+        return deptMapper.toDto(depts);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int rebuildClosure() {
+        deptRepository.clearClosure();
+        int rows = deptRepository.initClosure();
+        int total = rows;
+        int count = rows;
+        // 每轮向下扩展一级，pid 存在环形数据时会因主键重复而失败
+        for (int depth = 0; rows > 0; depth++) {
+            rows = deptRepository.extendClosure(depth);
+            count += rows;
+        }
+        log.info("部门层级关系重建完成，部门 {} 个，关系 {} 条", total, count);
+        return count;
     }
 
     @Override
@@ -249,13 +277,6 @@ public class DeptServiceImpl implements DeptService {
         }
     }
 
-    private void updateSubCnt(Long deptId){
-        if(deptId != null){
-            int count = deptRepository.countByPid(deptId);
-            deptRepository.updateSubCntById(count, deptId);
-        }
-    }
-
     private List<DeptDto> deduplication(List<DeptDto> list) {
         List<DeptDto> deptDtos = new ArrayList<>();
         for (DeptDto deptDto : list) {
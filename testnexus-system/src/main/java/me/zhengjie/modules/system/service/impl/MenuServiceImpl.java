@@ -15,19 +15,19 @@
  */
 package me.zhengjie.modules.system.service.impl;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.ObjectUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
+import me.zhengjie.modules.security.service.RolePermissionView;
 import me.zhengjie.modules.system.domain.Menu;
 import me.zhengjie.modules.system.domain.Role;
-import me.zhengjie.modules.system.domain.User;
 import me.zhengjie.modules.system.domain.vo.MenuMetaVo;
 import me.zhengjie.modules.system.domain.vo.MenuVo;
 import me.zhengjie.exception.BadRequestException;
 import me.zhengjie.exception.EntityExistException;
 import me.zhengjie.modules.system.repository.MenuRepository;
-import me.zhengjie.modules.system.repository.UserRepository;
 import me.zhengjie.modules.system.service.MenuService;
 import me.zhengjie.modules.system.service.RoleService;
 import me.zhengjie.modules.system.service.dto.MenuDto;
@@ -35,14 +35,18 @@ import me.zhengjie.modules.system.service.dto.MenuQueryCriteria;
 import me.zhengjie.modules.system.service.dto.RoleSmallDto;
 import me.zhengjie.modules.system.service.mapstruct.MenuMapper;
 import me.zhengjie.utils.*;
+import me.zhengjie.utils.metrics.MetricsSource;
+import me.zhengjie.utils.state.StateStore;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -50,20 +54,38 @@ import java.util.stream.Collectors;
  */
 @Service
 @RequiredArgsConstructor
-public class MenuServiceImpl implements MenuService {
+public class MenuServiceImpl implements MenuService, MetricsSource {
 
     private final MenuRepository menuRepository;
-    private final UserRepository userRepository;
     private final MenuMapper menuMapper;
     private final RoleService roleService;
     private final RedisUtils redisUtils;
+    private final RolePermissionView rolePermissionView;
+    private final SubCountMaintainer subCountMaintainer;
+    private final StateStore stateStore;
 
     private static final String HTTP_PRE = "http://";
     private static final String HTTPS_PRE = "https://";
     private static final String YES_STR = "是";
     private static final String NO_STR = "否";
     private static final String BAD_REQUEST = "外链必须以http://或者https://开头";
-    
+
+    /**
+     * 菜单索引版本，保存在共享状态存储中，菜单变更的事务提交后更新；
+     * 读取时与本节点索引的版本比较，落后时重建，其他节点的修改在近端缓存存活时间内可见
+     */
+    private static final String INDEX_VERSION_KEY = "menu-index-version";
+    private final Object indexLock = new Object();
+    private final AtomicLong indexRebuilds = new AtomicLong();
+    private volatile MenuTreeIndex index;
+
+    /**
+     * 索引版本与菜单ID -> 前端路由
+     */
+    private final Cache<List<Long>, List<MenuVo>> routes = Caffeine.newBuilder()
+            .maximumSize(64)
+            .build();
+
     @Override
     public List<MenuDto> queryAll(MenuQueryCriteria criteria, Boolean isQuery) throws Exception {
         Sort sort = Sort.by(Sort.Direction.ASC, "menuSort");
@@ -88,13 +110,8 @@ public class MenuServiceImpl implements MenuService {
 
     @Override
     public MenuDto findById(long id) {
-        String key = CacheKey.MENU_ID + id;
-        Menu menu = redisUtils.get(key, Menu.class);
-        if(menu == null){
-            menu = menuRepository.findById(id).orElseGet(Menu::new);
-            ValidationUtil.isNull(menu.getId(),"Menu","id",id);
-//            redisUtils.set(key, menu, 1, TimeUnit.DAYS);
-        }
+        Menu menu = index().get(id);
+        ValidationUtil.isNull(menu == null ? null : menu.getId(),"Menu","id",id);
         return menuMapper.toDto(menu);
     }
 
@@ -105,17 +122,29 @@ public class MenuServiceImpl implements MenuService {
      */
     @Override
     public List<MenuDto> findByUser(Long currentUserId) {
-        String key = CacheKey.MENU_USER + currentUserId;
-//        List<Menu> menus = redisUtils.getList(key, Menu.class);
-        List<Menu> menus = new ArrayList<>();
-        if (CollUtil.isEmpty(menus)){
-            List<RoleSmallDto> roles = roleService.findByUsersId(currentUserId);
-            Set<Long> roleIds = roles.stream().map(RoleSmallDto::getId).collect(Collectors.toSet());
-            LinkedHashSet<Menu> data = menuRepository.findByRoleIdsAndTypeNot(roleIds, 2);
-            menus = new ArrayList<>(data);
-//            redisUtils.set(key, menus, 1, TimeUnit.DAYS);
+        return menuMapper.toDto(findMenusByUser(index(), currentUserId));
+    }
+
+    @Override
+    public List<MenuVo> buildRoutes(Long currentUserId) {
+        MenuTreeIndex current = index();
+        List<Menu> menus = findMenusByUser(current, currentUserId);
+        List<Long> key = new ArrayList<>(menus.size() + 1);
+        key.add(current.getVersion());
+        menus.forEach(menu -> key.add(menu.getId()));
+        return routes.get(key, k -> buildMenus(buildTree(menuMapper.toDto(menus))));
+    }
+
+    /**
+     * 查询用户可见的菜单（不含按钮），按菜单树的深度优先顺序
+     */
+    private List<Menu> findMenusByUser(MenuTreeIndex current, Long currentUserId) {
+        List<RoleSmallDto> roles = roleService.findByUsersId(currentUserId);
+        Set<Long> roleIds = roles.stream().map(RoleSmallDto::getId).collect(Collectors.toSet());
+        if (roleIds.isEmpty()) {
+            return new ArrayList<>();
         }
-        return menus.stream().map(menuMapper::toDto).collect(Collectors.toList());
+        return current.filter(menuRepository.findIdsByRoleIds(roleIds), 2);
     }
 
     @Override
@@ -141,7 +170,8 @@ public class MenuServiceImpl implements MenuService {
         // 计算子节点数目
         resources.setSubCount(0);
         // 更新父节点菜单数目
-        updateSubCnt(resources.getPid());
+        subCountMaintainer.mark(SubCountMaintainer.Tree.MENU, resources.getPid());
+        refreshIndex();
     }
 
     @Override
@@ -192,20 +222,19 @@ public class MenuServiceImpl implements MenuService {
         menu.setType(resources.getType());
         menuRepository.save(menu);
         // 计算父级菜单节点数目
-        updateSubCnt(oldPid);
-        updateSubCnt(newPid);
+        subCountMaintainer.mark(SubCountMaintainer.Tree.MENU, oldPid);
+        subCountMaintainer.mark(SubCountMaintainer.Tree.MENU, newPid);
         // 清理缓存
         delCaches(resources.getId());
+        refreshIndex();
     }
 
     @Override
     public Set<Menu> getChildMenus(List<Menu> menuList, Set<Menu> menuSet) {
+        MenuTreeIndex current = index();
         for (Menu menu : menuList) {
             menuSet.add(menu);
-            List<Menu> menus = menuRepository.findByPidOrderByMenuSort(menu.getId());
-            if(CollUtil.isNotEmpty(menus)){
-                getChildMenus(menus, menuSet);
-            }
+            menuSet.addAll(current.getSubtree(menu.getId()));
         }
         return menuSet;
     }
@@ -218,53 +247,25 @@ public class MenuServiceImpl implements MenuService {
             delCaches(menu.getId());
             roleService.untiedMenu(menu.getId());
             menuRepository.deleteById(menu.getId());
-            updateSubCnt(menu.getPid());
+            subCountMaintainer.mark(SubCountMaintainer.Tree.MENU, menu.getPid());
         }
+        refreshIndex();
     }
 
     @Override
     public List<MenuDto> getMenus(Long pid) {
-        List<Menu> menus;
-        if(pid != null && !pid.equals(0L)){
-            menus = menuRepository.findByPidOrderByMenuSort(pid);
-        } else {
-            menus = menuRepository.findByPidIsNullOrderByMenuSort();
-        }
-        return menuMapper.toDto(menus);
+        return menuMapper.toDto(index().getChildren(pid));
     }
 
     @Override
     public List<MenuDto> getSuperior(MenuDto menuDto, List<Menu> menus) {
-        if(menuDto.getPid() == null){
-            menus.addAll(menuRepository.findByPidIsNullOrderByMenuSort());
-            return menuMapper.toDto(menus);
-        }
-        menus.addAll(menuRepository.findByPidOrderByMenuSort(menuDto.getPid()));
-        return getSuperior(findById(menuDto.getPid()), menus);
+        menus.addAll(index().getSuperior(menuDto.getPid()));
+        return menuMapper.toDto(menus);
     }
 
     @Override
     public List<MenuDto> buildTree(List<MenuDto> menuDtos) {
-        List<MenuDto> trees = new ArrayList<>();
-        Set<Long> ids = new HashSet<>();
-        for (MenuDto menuDTO : menuDtos) {
-            if (menuDTO.getPid() == null) {
-                trees.add(menuDTO);
-            }
-            for (MenuDto it : menuDtos) {
-                if (menuDTO.getId().equals(it.getPid())) {
-                    if (menuDTO.getChildren() == null) {
-                        menuDTO.setChildren(new ArrayList<>());
-                    }
-                    menuDTO.getChildren().add(it);
-                    ids.add(it.getId());
-                }
-            }
-        }
-        if(trees.isEmpty()){
-            trees = menuDtos.stream().filter(s -> !ids.contains(s.getId())).collect(Collectors.toList());
-        }
-        return trees;
+        return MenuTreeIndex.buildTree(menuDtos);
     }
 
     @Override
@@ -335,11 +336,68 @@ public class MenuServiceImpl implements MenuService {
         FileUtil.downloadExcel(list, response);
     }
 
-    private void updateSubCnt(Long menuId){
-        if(menuId != null){
-            int count = menuRepository.countByPid(menuId);
-            menuRepository.updateSubCntById(count, menuId);
+    /**
+     * 获取菜单索引，版本落后时重建
+     * @return /
+     */
+    private MenuTreeIndex index() {
+        MenuTreeIndex current = index;
+        if (current != null && current.getVersion() == indexVersion()) {
+            return current;
         }
+        synchronized (indexLock) {
+            current = index;
+            // 先确定版本再查询，查询期间发生的变更会让下次比较不一致，从而再次重建
+            long version = indexVersion();
+            if (current == null || current.getVersion() != version) {
+                current = MenuTreeIndex.of(menuRepository.findAll(), version);
+                index = current;
+                indexRebuilds.incrementAndGet();
+            }
+            return current;
+        }
+    }
+
+    /**
+     * 菜单变更的事务提交后使索引失效，回滚时保持不变
+     */
+    private void refreshIndex() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpIndexVersion();
+                }
+            });
+        } else {
+            bumpIndexVersion();
+        }
+    }
+
+    private long indexVersion() {
+        Long version = stateStore.get(INDEX_VERSION_KEY, Long.class);
+        return version == null ? 0 : version;
+    }
+
+    private void bumpIndexVersion() {
+        // 取时间戳作为版本，并且大于当前读到的版本；立即落库，其他节点不必等待合并写入
+        stateStore.set(INDEX_VERSION_KEY, Math.max(System.currentTimeMillis(), indexVersion() + 1), 0);
+        stateStore.flush();
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "menu_index";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        MenuTreeIndex current = index;
+        Map<String, Object> stats = new LinkedHashMap<>(4);
+        stats.put("menus", current == null ? 0 : current.size());
+        stats.put("version", indexVersion());
+        stats.put("rebuilds", indexRebuilds.get());
+        return stats;
     }
 
     /**
@@ -347,14 +405,14 @@ public class MenuServiceImpl implements MenuService {
      * @param id 菜单ID
      */
     public void delCaches(Long id){
-        List<User> users = userRepository.findByMenuId(id);
         redisUtils.del(CacheKey.MENU_ID + id);
-//        redisUtils.delByKeys(CacheKey.MENU_USER, users.stream().map(User::getId).collect(Collectors.toSet()));
-        // 清除 Role 缓存
+        // 清除 Role 缓存，并递增关联角色的权限版本
         List<Role> roles = roleService.findInMenuId(new ArrayList<Long>(){{
             add(id);
         }});
-//        redisUtils.delByKeys(CacheKey.ROLE_ID, roles.stream().map(Role::getId).collect(Collectors.toSet()));
+        Set<Long> roleIds = roles.stream().map(Role::getId).collect(Collectors.toSet());
+        redisUtils.delByKeys(CacheKey.ROLE_ID, roleIds);
+        rolePermissionView.invalidate(roleIds);
     }
 
     /**
@@ -0,0 +1,306 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.system.service.impl;
+
+import me.zhengjie.modules.system.domain.Menu;
+import me.zhengjie.modules.system.service.dto.MenuDto;
+import java.util.*;
+
+/**
+ * 菜单树的不可变内存索引：菜单按深度优先顺序排列，同级按 menuSort、id 排序，
+ * 每个节点记录父节点、子节点与子树结束位置，子树查询即为一段连续区间。
+ * 索引一经构建不再修改，菜单变更后整体重建并替换，读取时无需加锁。
+ * 索引中的菜单是脱离持久化上下文的副本，调用方不能修改
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+public final class MenuTreeIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private static final Comparator<Menu> ORDER = Comparator
+            .comparing(Menu::getMenuSort, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Menu::getId);
+
+    private final long version;
+
+    /** 深度优先顺序的菜单 */
+    private final Menu[] menus;
+
+    /** 菜单ID -> 在 menus 中的位置 */
+    private final Map<Long, Integer> positions;
+
+    /** 父节点位置，没有上级时为 -1 */
+    private final int[] parents;
+
+    /** 子节点位置，已按同级顺序排列 */
+    private final int[][] children;
+
+    /** 子树结束位置（不含），[i, ends[i]) 为 i 及其全部下级 */
+    private final int[] ends;
+
+    /** 顶级菜单位置 */
+    private final int[] roots;
+
+    private MenuTreeIndex(long version, int size) {
+        this.version = version;
+        this.menus = new Menu[size];
+        this.positions = new HashMap<>(size * 4 / 3 + 1);
+        this.parents = new int[size];
+        this.children = new int[size][];
+        this.ends = new int[size];
+        this.roots = null;
+    }
+
+    private MenuTreeIndex(MenuTreeIndex building, int[] roots) {
+        this.version = building.version;
+        this.menus = building.menus;
+        this.positions = Collections.unmodifiableMap(building.positions);
+        this.parents = building.parents;
+        this.children = building.children;
+        this.ends = building.ends;
+        this.roots = roots;
+    }
+
+    /**
+     * 构建索引
+     * @param source 全部菜单
+     * @param version 索引版本
+     * @return /
+     */
+    public static MenuTreeIndex of(Collection<Menu> source, long version) {
+        Map<Long, Menu> byId = new HashMap<>(source.size() * 4 / 3 + 1);
+        for (Menu menu : source) {
+            byId.put(menu.getId(), snapshot(menu));
+        }
+        Map<Long, List<Menu>> byPid = new HashMap<>(byId.size() * 4 / 3 + 1);
+        List<Menu> top = new ArrayList<>();
+        for (Menu menu : byId.values()) {
+            if (menu.getPid() == null) {
+                top.add(menu);
+            } else {
+                byPid.computeIfAbsent(menu.getPid(), k -> new ArrayList<>()).add(menu);
+            }
+        }
+        top.sort(ORDER);
+        byPid.values().forEach(list -> list.sort(ORDER));
+        MenuTreeIndex building = new MenuTreeIndex(version, byId.size());
+        int[] cursor = {0};
+        int[] roots = new int[top.size()];
+        for (int i = 0; i < top.size(); i++) {
+            roots[i] = visit(building, top.get(i), -1, byPid, cursor);
+        }
+        // 上级不存在或数据成环的菜单不在任何顶级菜单之下，单独排在最后，保证仍能按ID查到
+        if (cursor[0] < byId.size()) {
+            List<Menu> rest = new ArrayList<>();
+            for (Menu menu : byId.values()) {
+                if (!building.positions.containsKey(menu.getId())) {
+                    rest.add(menu);
+                }
+            }
+            rest.sort(ORDER);
+            for (Menu menu : rest) {
+                if (!building.positions.containsKey(menu.getId())) {
+                    visit(building, menu, -1, byPid, cursor);
+                }
+            }
+        }
+        return new MenuTreeIndex(building, roots);
+    }
+
+    private static int visit(MenuTreeIndex index, Menu menu, int parent, Map<Long, List<Menu>> byPid, int[] cursor) {
+        int position = cursor[0]++;
+        index.menus[position] = menu;
+        index.positions.put(menu.getId(), position);
+        index.parents[position] = parent;
+        List<Menu> subs = byPid.get(menu.getId());
+        if (subs == null) {
+            index.children[position] = NONE;
+        } else {
+            int[] positions = new int[subs.size()];
+            int count = 0;
+            for (Menu sub : subs) {
+                // 成环时跳过已经访问过的节点
+                if (!index.positions.containsKey(sub.getId())) {
+                    positions[count++] = visit(index, sub, position, byPid, cursor);
+                }
+            }
+            index.children[position] = count == positions.length ? positions : Arrays.copyOf(positions, count);
+        }
+        index.ends[position] = cursor[0];
+        return position;
+    }
+
+    /**
+     * 复制菜单，索引不持有持久化上下文中的实体
+     */
+    private static Menu snapshot(Menu menu) {
+        Menu copy = new Menu();
+        copy.setId(menu.getId());
+        copy.setTitle(menu.getTitle());
+        copy.setComponentName(menu.getComponentName());
+        copy.setMenuSort(menu.getMenuSort());
+        copy.setComponent(menu.getComponent());
+        copy.setPath(menu.getPath());
+        copy.setType(menu.getType());
+        copy.setPermission(menu.getPermission());
+        copy.setIcon(menu.getIcon());
+        copy.setCache(menu.getCache());
+        copy.setHidden(menu.getHidden());
+        copy.setPid(menu.getPid());
+        copy.setSubCount(menu.getSubCount());
+        copy.setIFrame(menu.getIFrame());
+        copy.setCreateBy(menu.getCreateBy());
+        copy.setUpdateBy(menu.getUpdateBy());
+        copy.setCreateTime(menu.getCreateTime());
+        copy.setUpdateTime(menu.getUpdateTime());
+        return copy;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return menus.length;
+    }
+
+    /**
+     * 按ID查询
+     * @param id 菜单ID
+     * @return 不存在时返回 null
+     */
+    public Menu get(Long id) {
+        Integer position = id == null ? null : positions.get(id);
+        return position == null ? null : menus[position];
+    }
+
+    /**
+     * 查询直接下级
+     * @param pid 上级ID，为 null 或 0 时查询顶级菜单
+     * @return /
+     */
+    public List<Menu> getChildren(Long pid) {
+        if (pid == null || pid == 0L) {
+            return collect(roots);
+        }
+        Integer position = positions.get(pid);
+        return position == null ? Collections.emptyList() : collect(children[position]);
+    }
+
+    /**
+     * 查询菜单自身及全部下级，按深度优先顺序
+     * @param id 菜单ID
+     * @return /
+     */
+    public List<Menu> getSubtree(Long id) {
+        Integer position = id == null ? null : positions.get(id);
+        if (position == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(menus).subList(position, ends[position]));
+    }
+
+    /**
+     * 从指定上级开始逐级向上，依次收集每一级的同级菜单，最后是顶级菜单
+     * @param pid 上级ID，为 null 时只返回顶级菜单
+     * @return /
+     */
+    public List<Menu> getSuperior(Long pid) {
+        List<Menu> result = new ArrayList<>();
+        Integer position = pid == null ? null : positions.get(pid);
+        while (position != null && position >= 0) {
+            for (int child : children[position]) {
+                result.add(menus[child]);
+            }
+            position = parents[position];
+        }
+        for (int root : roots) {
+            result.add(menus[root]);
+        }
+        return result;
+    }
+
+    /**
+     * 按深度优先顺序筛选菜单
+     * @param ids 菜单ID
+     * @param excludeType 排除的菜单类型，为 null 时不排除
+     * @return /
+     */
+    public List<Menu> filter(Collection<Long> ids, Integer excludeType) {
+        List<Integer> hits = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Integer position = positions.get(id);
+            if (position != null && (excludeType == null || !excludeType.equals(menus[position].getType()))) {
+                hits.add(position);
+            }
+        }
+        Collections.sort(hits);
+        List<Menu> result = new ArrayList<>(hits.size());
+        for (int position : hits) {
+            result.add(menus[position]);
+        }
+        return result;
+    }
+
+    private List<Menu> collect(int[] positions) {
+        List<Menu> result = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            result.add(menus[position]);
+        }
+        return result;
+    }
+
+    /**
+     * 将菜单按 pid 组装为树，子节点保持传入的顺序。
+     * 传入的菜单中没有顶级菜单时，返回不属于其他菜单下级的节点
+     * @param menuDtos /
+     * @return /
+     */
+    public static List<MenuDto> buildTree(List<MenuDto> menuDtos) {
+        Map<Long, List<MenuDto>> byPid = new HashMap<>(menuDtos.size() * 4 / 3 + 1);
+        for (MenuDto menuDto : menuDtos) {
+            if (menuDto.getPid() != null) {
+                byPid.computeIfAbsent(menuDto.getPid(), k -> new ArrayList<>()).add(menuDto);
+            }
+        }
+        List<MenuDto> trees = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        for (MenuDto menuDto : menuDtos) {
+            if (menuDto.getPid() == null) {
+                trees.add(menuDto);
+            }
+            List<MenuDto> subs = byPid.get(menuDto.getId());
+            if (subs != null) {
+                if (menuDto.getChildren() == null) {
+                    menuDto.setChildren(new ArrayList<>());
+                }
+                menuDto.getChildren().addAll(subs);
+                for (MenuDto sub : subs) {
+                    ids.add(sub.getId());
+                }
+            }
+        }
+        if (trees.isEmpty()) {
+            for (MenuDto menuDto : menuDtos) {
+                if (!ids.contains(menuDto.getId())) {
+                    trees.add(menuDto);
+                }
+            }
+        }
+        return trees;
+    }
+}
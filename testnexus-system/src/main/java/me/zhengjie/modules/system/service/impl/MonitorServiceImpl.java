@@ -17,11 +17,15 @@ package me.zhengjie.modules.system.service.impl;
 
 import cn.hutool.core.date.BetweenFormatter.Level;
 import cn.hutool.core.date.DateUtil;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import me.zhengjie.modules.system.service.MonitorService;
+import me.zhengjie.utils.ConnectionLeaseTracker;
 import me.zhengjie.utils.ElConstant;
 import me.zhengjie.utils.FileUtil;
+import me.zhengjie.utils.RouteMetrics;
 import me.zhengjie.utils.StringUtils;
+import me.zhengjie.utils.sql.SqlStatistics;
 import org.springframework.stereotype.Service;
 import oshi.SystemInfo;
 import oshi.hardware.*;
@@ -40,10 +44,14 @@ import java.util.*;
 */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class MonitorServiceImpl implements MonitorService {
 
     private final DecimalFormat df = new DecimalFormat("0.00");
 
+    private final RouteMetrics routeMetrics;
+    private final ConnectionLeaseTracker connectionLeaseTracker;
+
     @Override
     public Map<String,Object> getServers(){
         Map<String, Object> resultMap = new LinkedHashMap<>(8);
@@ -68,6 +76,31 @@ public class MonitorServiceImpl implements MonitorService {
         return resultMap;
     }
 
+    @Override
+    public List<Map<String,Object>> getRoutes(int minutes, String sort, int limit) {
+        return routeMetrics.snapshot(minutes, sort, limit);
+    }
+
+    @Override
+    public List<Map<String,Object>> getSqlStats(String sort, int limit) {
+        return SqlStatistics.top(sort, limit);
+    }
+
+    @Override
+    public List<Map<String,Object>> getRepeatedSql() {
+        return SqlStatistics.repeated();
+    }
+
+    @Override
+    public void resetSqlStats() {
+        SqlStatistics.reset();
+    }
+
+    @Override
+    public Map<String,Object> getConnectionLeases(int limit) {
+        return connectionLeaseTracker.report(limit);
+    }
+
     /**
      * 获取磁盘信息
      * @return /
@@ -19,9 +19,10 @@ import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.CollectionUtil;
 import lombok.RequiredArgsConstructor;
 import me.zhengjie.exception.BadRequestException;
+import me.zhengjie.modules.security.service.AuthorityInterner;
+import me.zhengjie.modules.security.service.RolePermissionView;
 import me.zhengjie.modules.security.service.UserCacheManager;
 import me.zhengjie.modules.security.service.dto.AuthorityDto;
-import me.zhengjie.modules.system.domain.Menu;
 import me.zhengjie.modules.system.domain.Role;
 import me.zhengjie.exception.EntityExistException;
 import me.zhengjie.modules.system.domain.User;
@@ -60,6 +61,7 @@ public class RoleServiceImpl implements RoleService {
     private final RedisUtils redisUtils;
     private final UserRepository userRepository;
     private final UserCacheManager userCacheManager;
+    private final RolePermissionView rolePermissionView;
 
     @Override
     public List<RoleDto> queryAll() {
@@ -122,13 +124,15 @@ public class RoleServiceImpl implements RoleService {
     }
 
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public void updateMenu(Role resources, RoleDto roleDTO) {
         Role role = roleMapper.toEntity(roleDTO);
-        List<User> users = userRepository.findByRoleId(role.getId());
         // 更新菜单
         role.setMenus(resources.getMenus());
-        delCaches(resources.getId(), users);
         roleRepository.save(role);
+        // 菜单只影响权限，递增角色版本即可，持有该角色的用户下次请求时重新换算
+        rolePermissionView.invalidate(Collections.singleton(role.getId()));
+        redisUtils.del(CacheKey.ROLE_ID + role.getId());
     }
 
     @Override
@@ -146,6 +150,7 @@ public class RoleServiceImpl implements RoleService {
             delCaches(id, null);
         }
         roleRepository.deleteAllByIdIn(ids);
+        rolePermissionView.invalidate(ids);
     }
 
     @Override
@@ -174,24 +179,15 @@ public class RoleServiceImpl implements RoleService {
 
     @Override
     public List<AuthorityDto> buildPermissions(UserDto user) {
-        String key = CacheKey.ROLE_AUTH + user.getId();
-        List<AuthorityDto> authorityDtos = redisUtils.getList(key, AuthorityDto.class);
-        if (CollUtil.isEmpty(authorityDtos)) {
-            Set<String> permissions = new HashSet<>();
-            // 如果是管理员直接返回
-            if (user.getIsAdmin()) {
-                permissions.add("admin");
-                return permissions.stream().map(AuthorityDto::new)
-                        .collect(Collectors.toList());
-            }
-            Set<Role> roles = roleRepository.findByUserId(user.getId());
-            permissions = roles.stream().flatMap(role -> role.getMenus().stream())
-                    .map(Menu::getPermission)
-                    .filter(StringUtils::isNotBlank).collect(Collectors.toSet());
-            authorityDtos = permissions.stream().map(AuthorityDto::new)
-                    .collect(Collectors.toList());
-//            redisUtils.set(key, authorityDtos, 1, TimeUnit.HOURS);
-            redisUtils.set(key, authorityDtos);
+        // 如果是管理员直接返回
+        if (user.getIsAdmin()) {
+            return Collections.singletonList(new AuthorityDto("admin"));
+        }
+        long[] roleIds = user.getRoles().stream().mapToLong(RoleSmallDto::getId).toArray();
+        int[] ids = rolePermissionView.resolve(roleIds).getIds();
+        List<AuthorityDto> authorityDtos = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            authorityDtos.add(AuthorityInterner.get(id));
         }
         return authorityDtos;
     }
@@ -233,7 +229,6 @@ public class RoleServiceImpl implements RoleService {
             Set<Long> userIds = users.stream().map(User::getId).collect(Collectors.toSet());
             redisUtils.delByKeys(CacheKey.DATA_USER, userIds);
             redisUtils.delByKeys(CacheKey.MENU_USER, userIds);
-            redisUtils.delByKeys(CacheKey.ROLE_AUTH, userIds);
             redisUtils.delByKeys(CacheKey.ROLE_USER, userIds);
         }
         redisUtils.del(CacheKey.ROLE_ID + id);
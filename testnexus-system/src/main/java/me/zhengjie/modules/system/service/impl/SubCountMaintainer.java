@@ -0,0 +1,223 @@
+/*
+ *  Copyright 2019-2025 Zheng Jie
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package me.zhengjie.modules.system.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.utils.metrics.MetricsSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 菜单与部门的子节点数目（sub_count）维护。
+ * 事务内只记录受影响的上级，提交前统一用一条分组统计查询出数目，再批量更新一次；
+ * 不在事务中调用时立即执行。repair 用于修正历史数据或异常导致的偏差
+ * @author Zheng Jie
+ * @date 2025-06-16
+ */
+@Slf4j
+@Component
+public class SubCountMaintainer implements MetricsSource {
+
+    /** 单条语句中 IN 的最大参数个数 */
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong repaired = new AtomicLong();
+
+    public SubCountMaintainer(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 维护 sub_count 的树形表
+     */
+    public enum Tree {
+
+        MENU("sys_menu", "menu_id"),
+        DEPT("sys_dept", "dept_id");
+
+        private final String table;
+
+        private final String idColumn;
+
+        Tree(String table, String idColumn) {
+            this.table = table;
+            this.idColumn = idColumn;
+        }
+    }
+
+    /**
+     * 标记上级的子节点数目需要重新计算
+     * @param tree 树形表
+     * @param pid 上级ID，为空时忽略
+     */
+    public void mark(Tree tree, Long pid) {
+        if (pid != null) {
+            mark(tree, Collections.singleton(pid));
+        }
+    }
+
+    /**
+     * 标记上级的子节点数目需要重新计算
+     * @param tree 树形表
+     * @param pids 上级ID
+     */
+    public void mark(Tree tree, Collection<Long> pids) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<Tree, Set<Long>> dirty = new EnumMap<>(Tree.class);
+            addAll(dirty, tree, pids);
+            flush(dirty);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<Tree, Set<Long>> dirty = (Map<Tree, Set<Long>>) TransactionSynchronizationManager.getResource(this);
+        if (dirty == null) {
+            Map<Tree, Set<Long>> bound = new EnumMap<>(Tree.class);
+            TransactionSynchronizationManager.bindResource(this, bound);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    flush(bound);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(SubCountMaintainer.this);
+                }
+            });
+            dirty = bound;
+        }
+        addAll(dirty, tree, pids);
+    }
+
+    private static void addAll(Map<Tree, Set<Long>> dirty, Tree tree, Collection<Long> pids) {
+        Set<Long> ids = dirty.computeIfAbsent(tree, k -> new TreeSet<>());
+        for (Long pid : pids) {
+            if (pid != null) {
+                ids.add(pid);
+            }
+        }
+    }
+
+    private void flush(Map<Tree, Set<Long>> dirty) {
+        if (dirty.values().stream().allMatch(Set::isEmpty)) {
+            return;
+        }
+        // 先把事务中尚未写出的新增、修改、删除刷到数据库，统计才准确
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            em.flush();
+        }
+        dirty.forEach((tree, pids) -> {
+            List<Long> ids = new ArrayList<>(pids);
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                apply(tree, ids.subList(from, Math.min(from + BATCH_SIZE, ids.size())));
+            }
+        });
+        dirty.clear();
+        flushes.incrementAndGet();
+    }
+
+    private void apply(Tree tree, List<Long> pids) {
+        String placeholders = String.join(",", Collections.nCopies(pids.size(), "?"));
+        Map<Long, Integer> counts = new HashMap<>(pids.size());
+        jdbcTemplate.query("SELECT pid, COUNT(*) FROM " + tree.table + " WHERE pid IN (" + placeholders + ") GROUP BY pid",
+                rs -> {
+                    counts.put(rs.getLong(1), rs.getInt(2));
+                }, pids.toArray());
+        List<Object[]> rows = new ArrayList<>(pids.size());
+        for (Long pid : pids) {
+            rows.add(new Object[]{counts.getOrDefault(pid, 0), pid});
+        }
+        jdbcTemplate.batchUpdate("UPDATE " + tree.table + " SET sub_count = ? WHERE " + tree.idColumn + " = ?", rows);
+        updated.addAndGet(rows.size());
+    }
+
+    /**
+     * 修正所有树形表中与实际子节点数目不一致的 sub_count
+     * @return 修正的行数
+     */
+    public int repair() {
+        int total = 0;
+        for (Tree tree : Tree.values()) {
+            total += repair(tree);
+        }
+        return total;
+    }
+
+    /**
+     * 修正与实际子节点数目不一致的 sub_count。
+     * 更新时带上读取到的旧值，期间被正常维护过的行不会被覆盖
+     * @param tree 树形表
+     * @return 修正的行数
+     */
+    public int repair(Tree tree) {
+        Map<Long, Integer> counts = new HashMap<>(64);
+        jdbcTemplate.query("SELECT pid, COUNT(*) FROM " + tree.table + " WHERE pid IS NOT NULL GROUP BY pid",
+                rs -> {
+                    counts.put(rs.getLong(1), rs.getInt(2));
+                });
+        List<Object[]> rows = new ArrayList<>();
+        jdbcTemplate.query("SELECT " + tree.idColumn + ", sub_count FROM " + tree.table, rs -> {
+            long id = rs.getLong(1);
+            int current = rs.getInt(2);
+            if (rs.wasNull()) {
+                current = -1;
+            }
+            int expected = counts.getOrDefault(id, 0);
+            if (current != expected) {
+                rows.add(new Object[]{expected, id, current});
+            }
+        });
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        int fixed = 0;
+        for (int result : jdbcTemplate.batchUpdate("UPDATE " + tree.table + " SET sub_count = ? WHERE "
+                + tree.idColumn + " = ? AND COALESCE(sub_count, -1) = ?", rows)) {
+            // 驱动未返回具体行数时按成功计
+            fixed += result < 0 ? 1 : result;
+        }
+        repaired.addAndGet(fixed);
+        log.warn("{} 的子节点数目存在偏差，已修正 {} 行", tree.table, fixed);
+        return fixed;
+    }
+
+    @Override
+    public String getMetricsName() {
+        return "sub_count";
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(4);
+        stats.put("flushes", flushes.get());
+        stats.put("updated", updated.get());
+        stats.put("repaired", repaired.get());
+        return stats;
+    }
+}
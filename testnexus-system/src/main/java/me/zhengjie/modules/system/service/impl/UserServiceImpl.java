@@ -119,7 +119,6 @@ public class UserServiceImpl implements UserService {
         if (!resources.getRoles().equals(user.getRoles())) {
             redisUtils.del(CacheKey.DATA_USER + resources.getId());
             redisUtils.del(CacheKey.MENU_USER + resources.getId());
-            redisUtils.del(CacheKey.ROLE_AUTH + resources.getId());
             redisUtils.del(CacheKey.ROLE_USER + resources.getId());
         }
         // 修改部门会影响 数据权限
@@ -195,7 +194,14 @@ public class UserServiceImpl implements UserService {
     @Transactional(rollbackFor = Exception.class)
     public void updatePass(String username, String pass) {
         userRepository.updatePass(username, pass, new Date());
-        flushCache(username);
+        flushPassCache(username);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void rehashPass(String username, String pass) {
+        userRepository.rehashPass(username, pass);
+        flushPassCache(username);
     }
 
     @Override
@@ -205,7 +211,7 @@ public class UserServiceImpl implements UserService {
         // 清除缓存
         users.forEach(user -> {
             // 清除缓存
-            flushCache(user.getUsername());
+            delCaches(user.getId(), user.getUsername());
             // 强制退出
             onlineUserService.kickOutForUsername(user.getUsername());
         });
@@ -285,4 +291,18 @@ public class UserServiceImpl implements UserService {
     private void flushCache(String username) {
         userCacheManager.cleanUserCache(username);
     }
+
+    /**
+     * 清理 密码变更后 用户缓存信息，按 ID 缓存的用户同样带有密码
+     *
+     * @param username /
+     */
+    private void flushPassCache(String username) {
+        User user = userRepository.findByUsername(username);
+        if (user != null) {
+            delCaches(user.getId(), username);
+        } else {
+            flushCache(username);
+        }
+    }
 }
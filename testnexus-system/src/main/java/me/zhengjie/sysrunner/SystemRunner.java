@@ -17,6 +17,9 @@ package me.zhengjie.sysrunner;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import me.zhengjie.modules.system.repository.DeptRepository;
+import me.zhengjie.modules.system.service.DeptService;
+import me.zhengjie.modules.system.service.impl.SubCountMaintainer;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.stereotype.Component;
@@ -31,7 +34,37 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class SystemRunner implements ApplicationRunner {
 
+    private final DeptRepository deptRepository;
+    private final DeptService deptService;
+    private final SubCountMaintainer subCountMaintainer;
+
     @Override
     public void run(ApplicationArguments args) {
+        checkDeptClosure();
+        checkSubCount();
+    }
+
+    /**
+     * 部门层级关系与部门数量不一致时重建，例如首次执行 sys_dept_closure.sql 之后
+     */
+    private void checkDeptClosure() {
+        try {
+            if (deptRepository.countClosureNodes() != deptRepository.count()) {
+                deptService.rebuildClosure();
+            }
+        } catch (Exception e) {
+            log.error("部门层级关系检查失败，请确认已执行 sql/sys_dept_closure.sql：{}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 修正菜单与部门的子节点数目，之后由定时任务 subCountTask 定期检查
+     */
+    private void checkSubCount() {
+        try {
+            subCountMaintainer.repair();
+        } catch (Exception e) {
+            log.error("子节点数目检查失败：{}", e.getMessage(), e);
+        }
     }
 }
@@ -0,0 +1,94 @@
+package me.zhengjie.modules.security.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 放行路径匹配耗时对比：逐条执行的 AntPathRequestMatcher 与预编译的匹配树，
+ * 规则数量模拟数百个接口，请求分别为命中靠后的规则与全部未命中（需要认证的普通请求）
+ * 运行：直接执行 main 方法
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathTrieRequestMatcherBenchmark {
+
+    private static final String[] MODULES = {"users", "roles", "menus", "depts", "jobs", "dicts", "logs", "quartz", "storage", "deploy"};
+
+    @Param({"200", "500"})
+    private int endpoints;
+
+    private RequestMatcher chain;
+
+    private PathTrieRequestMatcher trie;
+
+    private MockHttpServletRequest hit;
+
+    private MockHttpServletRequest miss;
+
+    @Setup
+    public void setup() {
+        List<RequestMatcher> matchers = new ArrayList<>();
+        trie = new PathTrieRequestMatcher();
+        String[] statics = {"/*.html", "/**/*.html", "/**/*.css", "/**/*.js", "/webSocket/**"};
+        for (String pattern : statics) {
+            matchers.add(new AntPathRequestMatcher(pattern, HttpMethod.GET.name()));
+        }
+        trie.add(HttpMethod.GET, statics);
+        HttpMethod[] methods = {HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE};
+        for (int i = 0; i < endpoints; i++) {
+            HttpMethod method = methods[i % methods.length];
+            String pattern = "/api/" + MODULES[i % MODULES.length] + i + (i % 3 == 0 ? "/{id}" : "/list");
+            matchers.add(new AntPathRequestMatcher(pattern, method.name()));
+            trie.add(method, pattern);
+        }
+        chain = new OrRequestMatcher(matchers);
+        int last = endpoints - 1;
+        hit = request(methods[last % methods.length].name(), "/api/" + MODULES[last % MODULES.length] + last
+                + (last % 3 == 0 ? "/1" : "/list"));
+        miss = request("GET", "/api/users/1/detail");
+    }
+
+    private static MockHttpServletRequest request(String method, String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setServletPath(path);
+        return request;
+    }
+
+    @Benchmark
+    public boolean chainHit() {
+        return chain.matches(hit);
+    }
+
+    @Benchmark
+    public boolean trieHit() {
+        return trie.matches(hit);
+    }
+
+    @Benchmark
+    public boolean chainMiss() {
+        return chain.matches(miss);
+    }
+
+    @Benchmark
+    public boolean trieMiss() {
+        return trie.matches(miss);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(PathTrieRequestMatcherBenchmark.class.getSimpleName()).build()).run();
+    }
+}
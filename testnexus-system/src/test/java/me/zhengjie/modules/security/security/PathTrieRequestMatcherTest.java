@@ -0,0 +1,51 @@
+package me.zhengjie.modules.security.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PathTrieRequestMatcherTest {
+
+    private static final List<String> PATTERNS = Arrays.asList(
+            "/*.html", "/**/*.html", "/**/*.css", "/webSocket/**", "/*/api-docs", "/druid/**",
+            "/auth/login", "/api/users/{id}/avatar", "/api/v{version:\\d+}/ping", "/trail/",
+            "/a/*", "/b/**/c", "/file/?.png", "/c/*-{name}.js"
+    );
+
+    private static final List<String> PATHS = Arrays.asList(
+            "/", "/index.html", "/a/b/index.html", "/x.css", "/webSocket", "/webSocket/1/2",
+            "/v2/api-docs", "/v2/v3/api-docs", "/druid", "/druid/", "/druid/index",
+            "/auth/login", "/auth/login/", "/auth/logout", "/api/users/1/avatar", "/api/users/avatar",
+            "/api/v12/ping", "/api/vx/ping", "/trail", "/trail/", "/a", "/a/", "/a/b", "/a/b/c",
+            "/b/c", "/b/1/2/c", "/b/1/2/d", "/file/1.png", "/file/12.png", "/c/app-main.js", "/c/main.js"
+    );
+
+    @Test
+    public void testSameAsAntPathMatcher() {
+        AntPathMatcher antPathMatcher = new AntPathMatcher();
+        for (String pattern : PATTERNS) {
+            PathTrieRequestMatcher matcher = new PathTrieRequestMatcher().add(HttpMethod.GET, pattern);
+            for (String path : PATHS) {
+                assertEquals(antPathMatcher.match(pattern, path), matcher.matches("GET", path), pattern + " -> " + path);
+            }
+        }
+    }
+
+    @Test
+    public void testMethod() {
+        PathTrieRequestMatcher matcher = new PathTrieRequestMatcher()
+                .add(HttpMethod.POST, "/auth/login")
+                .add(HttpMethod.OPTIONS, "/**")
+                .add(null, "/avatar/**");
+        assertEquals(true, matcher.matches("POST", "/auth/login"));
+        assertEquals(false, matcher.matches("GET", "/auth/login"));
+        assertEquals(true, matcher.matches("OPTIONS", "/api/users"));
+        assertEquals(true, matcher.matches("DELETE", "/avatar/1.png"));
+        assertEquals(false, matcher.matches("GET", "/api/users"));
+    }
+}
@@ -0,0 +1,114 @@
+package me.zhengjie.modules.security.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import me.zhengjie.modules.security.config.SecurityProperties;
+import me.zhengjie.modules.security.service.TokenRevocationService;
+import me.zhengjie.modules.system.rest.MonitorController;
+import me.zhengjie.utils.metrics.MetricsRegistry;
+import me.zhengjie.utils.state.LocalStateStore;
+import me.zhengjie.utils.state.StateStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.DefaultSecurityFilterChain;
+import org.springframework.security.web.FilterChainProxy;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 请求经过安全过滤链到达接口
+ */
+public class TokenFilterTest {
+
+    private static final String SECRET = "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8gISIjJCUmJygpKissLS4vMDEyMzQ1Njc4OTo7PD0+Pw==";
+
+    private final SecurityProperties properties = new SecurityProperties();
+
+    private final StateStore stateStore = new LocalStateStore(100);
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        properties.setHeader("Authorization");
+        properties.setTokenStartWith("Bearer");
+        properties.setBase64Secret(SECRET);
+        properties.setTokenValidityInSeconds(60000L);
+        properties.setOnlineKey("online_token:");
+        properties.setDetect(1000L);
+        properties.setRenew(1000L);
+        TokenProvider tokenProvider = new TokenProvider(properties, stateStore);
+        tokenProvider.afterPropertiesSet();
+        TokenFilter filter = new TokenFilter(tokenProvider, properties, new TokenRevocationService(properties, stateStore));
+
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        metricsRegistry.gauge("test", "test", null, () -> 1);
+        MonitorController monitorController = new MonitorController(null, metricsRegistry);
+        ReflectionTestUtils.setField(monitorController, "scrapeToken", "scrape-secret");
+        mockMvc = MockMvcBuilders.standaloneSetup(monitorController, new CurrentUserController())
+                .addFilters(new FilterChainProxy(new DefaultSecurityFilterChain(AnyRequestMatcher.INSTANCE, filter)))
+                .build();
+    }
+
+    @Test
+    public void testScrapeTokenPassesFilter() throws Exception {
+        // 采集令牌不是 JWT，过滤器按未登录放行，由接口校验
+        mockMvc.perform(get("/api/monitor/prometheus").header("Authorization", "Bearer scrape-secret"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("el_test 1")));
+        mockMvc.perform(get("/api/monitor/prometheus").header("Authorization", "Bearer wrong"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void testUserToken() throws Exception {
+        String token = token("admin", "u1");
+        mockMvc.perform(get("/current").header("Authorization", "Bearer " + token))
+                .andExpect(content().string(""));
+        // 在线状态存在时完成认证
+        stateStore.set("online_token:admin:u1", "online", 60_000);
+        mockMvc.perform(get("/current").header("Authorization", "Bearer " + token))
+                .andExpect(content().string("admin"));
+        // 签名不符的令牌按未登录处理
+        mockMvc.perform(get("/current").header("Authorization", "Bearer " + token + "x"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(""));
+    }
+
+    private static String token(String username, String uid) {
+        Map<String, Object> claims = new HashMap<>(4);
+        claims.put(TokenProvider.AUTHORITIES_UID_KEY, 1L);
+        claims.put(TokenProvider.AUTHORITIES_UUID_KEY, uid);
+        return Jwts.builder()
+                .setClaims(claims)
+                .setSubject(username)
+                .signWith(Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET)), SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    @RestController
+    public static class CurrentUserController {
+
+        @GetMapping("/current")
+        public String current() {
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            return authentication == null ? "" : authentication.getName();
+        }
+    }
+}
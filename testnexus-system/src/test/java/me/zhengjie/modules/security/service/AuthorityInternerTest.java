@@ -0,0 +1,42 @@
+package me.zhengjie.modules.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthorityInternerTest {
+
+    @Test
+    public void testConcurrentIntern() throws InterruptedException {
+        String prefix = "interner-test-" + UUID.randomUUID() + ":";
+        Map<String, Integer> ids = new ConcurrentHashMap<>();
+        AtomicInteger mismatches = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                // 各线程以相同的权限交替分配，数组扩容期间读取到的编号也能取到对应的权限
+                for (int j = 0; j < 500; j++) {
+                    String authority = prefix + j;
+                    int id = AuthorityInterner.intern(authority);
+                    Integer previous = ids.putIfAbsent(authority, id);
+                    if (!authority.equals(AuthorityInterner.get(id).getAuthority()) || (previous != null && previous != id)) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, mismatches.get());
+        assertEquals(500, ids.size());
+        assertEquals(500, new HashSet<>(ids.values()).size());
+        assertEquals(ids.get(prefix + 7).intValue(), AuthorityInterner.idOf(prefix + 7));
+        assertEquals(-1, AuthorityInterner.idOf(prefix + "missing"));
+    }
+}
@@ -0,0 +1,152 @@
+package me.zhengjie.modules.security.service;
+
+import com.wf.captcha.base.Captcha;
+import me.zhengjie.modules.security.config.CaptchaConfig;
+import me.zhengjie.modules.security.config.enums.LoginCodeEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CaptchaPoolTest {
+
+    /** 后台补充线程的渲染次数 */
+    private final AtomicInteger background = new AtomicInteger();
+
+    /** 请求线程上同步渲染的次数 */
+    private final AtomicInteger foreground = new AtomicInteger();
+
+    /** 后台补充在该闸门打开前阻塞，用于模拟池被取空 */
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    private CaptchaPool pool;
+
+    @BeforeAll
+    public static void headless() {
+        System.setProperty("java.awt.headless", "true");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gate.countDown();
+        if (pool != null) {
+            pool.destroy();
+        }
+    }
+
+    @Test
+    public void testRefill() throws InterruptedException {
+        gate.countDown();
+        pool = create(5, 2);
+        // 启动时预热当前类型
+        await(() -> depth(LoginCodeEnum.SPEC) == 5);
+        assertEquals(5, background.get());
+
+        // 取到低于水位后在后台补满
+        for (int i = 0; i < 4; i++) {
+            pool.take();
+        }
+        await(() -> depth(LoginCodeEnum.SPEC) == 5);
+        assertEquals(9, background.get());
+        assertEquals(0, foreground.get());
+        assertEquals(4L, pool.getStats().get("hits"));
+    }
+
+    @Test
+    public void testExhaustionFallsBackToRender() throws InterruptedException {
+        pool = create(3, 1);
+        // 补充线程被阻塞，池始终为空
+        await(() -> background.get() == 1);
+        CaptchaPool.PooledCaptcha captcha = pool.take();
+        assertNotNull(captcha.getText());
+        assertTrue(captcha.getImage().startsWith("data:image/"));
+        assertEquals(1, foreground.get());
+        assertEquals(1L, pool.getStats().get("misses"));
+        assertEquals(0L, pool.getStats().get("hits"));
+    }
+
+    @Test
+    public void testPooledEntriesAreTakenOnce() throws InterruptedException {
+        gate.countDown();
+        pool = create(4, 2);
+        await(() -> depth(LoginCodeEnum.SPEC) == 4);
+        // 多个线程并发取用，每个验证码只会被取出一次
+        Set<CaptchaPool.PooledCaptcha> taken = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        AtomicInteger duplicates = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10; j++) {
+                    if (!taken.add(pool.take())) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, duplicates.get());
+        assertEquals(40, taken.size());
+        Map<String, Object> stats = pool.getStats();
+        assertEquals(40L, (Long) stats.get("hits") + (Long) stats.get("misses"));
+    }
+
+    @Test
+    public void testDisabled() {
+        pool = create(0, 0);
+        assertNotNull(pool.take());
+        assertEquals(1, foreground.get());
+        assertFalse((Boolean) pool.getStats().get("enabled"));
+    }
+
+    private CaptchaPool create(int size, int lowWatermark) {
+        CaptchaConfig config = new CaptchaConfig() {
+            @Override
+            public Captcha getCaptcha(LoginCodeEnum codeType) {
+                if (Thread.currentThread().getName().equals("el-captcha-refill")) {
+                    background.incrementAndGet();
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    foreground.incrementAndGet();
+                }
+                return super.getCaptcha(codeType);
+            }
+        };
+        config.setCodeType(LoginCodeEnum.SPEC);
+        config.setWidth(60);
+        config.setHeight(20);
+        config.setPoolSize(size);
+        config.setPoolLowWatermark(lowWatermark);
+        // 只依赖启动时的预热与低水位触发
+        config.setPoolRefillInterval(TimeUnit.HOURS.toMillis(1));
+        CaptchaPool captchaPool = new CaptchaPool(config);
+        captchaPool.init();
+        return captchaPool;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int depth(LoginCodeEnum type) {
+        return ((Map<String, Integer>) pool.getStats().get("depth")).get(type.name());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待超时");
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+    }
+}
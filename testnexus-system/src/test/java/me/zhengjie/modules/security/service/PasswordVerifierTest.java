@@ -0,0 +1,155 @@
+package me.zhengjie.modules.security.service;
+
+import me.zhengjie.exception.BadRequestException;
+import me.zhengjie.modules.security.config.PasswordConfig;
+import me.zhengjie.modules.system.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordVerifierTest {
+
+    private static final String ENCODED = "$2a$10$encoded";
+
+    /** 校验在该闸门打开前阻塞 */
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    /** 被超时取消的校验线程收到中断 */
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    /** 用户名 -> 重新加密后的密文 */
+    private final Map<String, String> rehashed = new ConcurrentHashMap<>();
+
+    private final PasswordConfig config = new PasswordConfig();
+
+    private PasswordVerifier verifier;
+
+    @BeforeEach
+    public void setUp() {
+        config.setPoolSize(1);
+        config.setQueueCapacity(1);
+        config.setTimeout(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gate.countDown();
+        if (verifier != null) {
+            verifier.destroy();
+        }
+    }
+
+    @Test
+    public void testMatches() throws Exception {
+        gate.countDown();
+        verifier = create();
+        assertTrue(verifier.matches("admin", "123456", ENCODED).get(5, TimeUnit.SECONDS));
+        assertFalse(verifier.matches("admin", "654321", ENCODED).get(5, TimeUnit.SECONDS));
+        assertEquals(2L, verifier.getStats().get("verified"));
+        assertTrue(rehashed.isEmpty());
+    }
+
+    @Test
+    public void testRehashOnStrengthChange() throws Exception {
+        gate.countDown();
+        verifier = create();
+        assertTrue(verifier.matches("admin", "123456", "$2a$04$encoded").get(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (rehashed.isEmpty() && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals("{10}123456", rehashed.get("admin"));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        config.setTimeout(50);
+        verifier = create();
+        CompletableFuture<Boolean> future = verifier.matches("admin", "123456", ENCODED);
+        // 请求线程不被阻塞，超时后以 503 结束
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), status(e));
+        // 超时的计算被中断，不再占用线程
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(1L, verifier.getStats().get("timeouts"));
+    }
+
+    @Test
+    public void testRejectWhenQueueFull() throws Exception {
+        verifier = create();
+        CompletableFuture<Boolean> running = verifier.matches("a", "123456", ENCODED);
+        CompletableFuture<Boolean> queued = verifier.matches("b", "123456", ENCODED);
+        CompletableFuture<Boolean> rejected = verifier.matches("c", "123456", ENCODED);
+        // 线程与队列都已占满，立即以 429 结束
+        assertTrue(rejected.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), status(e));
+        assertEquals(1L, verifier.getStats().get("rejected"));
+
+        gate.countDown();
+        assertTrue(running.get(5, TimeUnit.SECONDS));
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testVerify() {
+        gate.countDown();
+        verifier = create();
+        assertTrue(verifier.verify("admin", "123456", ENCODED));
+        assertFalse(verifier.verify("admin", "654321", ENCODED));
+    }
+
+    @Test
+    public void testVerifyTimeout() {
+        config.setTimeout(50);
+        verifier = create();
+        // 请求线程的等待有上限，超时后以 503 结束
+        long start = System.currentTimeMillis();
+        BadRequestException e = assertThrows(BadRequestException.class, () -> verifier.verify("admin", "123456", ENCODED));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getStatus());
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
+    private PasswordVerifier create() {
+        PasswordEncoder encoder = new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                return "{" + config.getStrength() + "}" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                return "123456".contentEquals(rawPassword);
+            }
+        };
+        UserService userService = (UserService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{UserService.class}, (proxy, method, args) -> {
+                    if (!"rehashPass".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    rehashed.put((String) args[0], (String) args[1]);
+                    return null;
+                });
+        return new PasswordVerifier(encoder, config, userService);
+    }
+
+    private static int status(ExecutionException e) {
+        assertTrue(e.getCause() instanceof BadRequestException);
+        return ((BadRequestException) e.getCause()).getStatus();
+    }
+}
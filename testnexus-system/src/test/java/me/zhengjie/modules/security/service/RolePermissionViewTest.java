@@ -0,0 +1,129 @@
+package me.zhengjie.modules.security.service;
+
+import me.zhengjie.config.properties.StateStoreProperties;
+import me.zhengjie.modules.system.repository.RoleRepository;
+import me.zhengjie.utils.state.JdbcStateStore;
+import me.zhengjie.utils.state.LocalStateStore;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RolePermissionViewTest {
+
+    /** 角色 -> 权限标识，模拟 sys_roles_menus */
+    private final Map<Long, List<String>> grants = new HashMap<>();
+
+    private int queries;
+
+    private RoleRepository repository;
+
+    private RolePermissionView view;
+
+    @BeforeEach
+    public void setUp() {
+        grants.put(1L, Arrays.asList("user:list", "user:add"));
+        grants.put(2L, Arrays.asList("user:list", "dept:list", " "));
+        grants.put(3L, Collections.singletonList("job:list"));
+        repository = (RoleRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RoleRepository.class}, (proxy, method, args) -> {
+                    if (!"findPermissions".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    queries++;
+                    List<Object[]> rows = new ArrayList<>();
+                    for (Object roleId : (Collection<?>) args[0]) {
+                        for (String permission : grants.getOrDefault(roleId, Collections.emptyList())) {
+                            rows.add(new Object[]{roleId, permission});
+                        }
+                    }
+                    return rows;
+                });
+        view = new RolePermissionView(repository, new LocalStateStore(100));
+    }
+
+    @Test
+    public void testResolveMergesRoles() {
+        RolePermissionView.Permissions permissions = view.resolve(new long[]{2, 1});
+        assertEquals(new HashSet<>(Arrays.asList("user:list", "user:add", "dept:list")), names(permissions));
+        assertEquals(1, queries);
+        assertEquals(0, permissions.getVersion());
+        // 同一角色集合（顺序无关）直接命中缓存
+        assertSame(permissions.getIds(), view.resolve(new long[]{1, 2, 2}).getIds());
+        assertEquals(1, queries);
+    }
+
+    @Test
+    public void testInvalidateOnlyReloadsChangedRole() {
+        view.resolve(new long[]{1, 2});
+        view.resolve(new long[]{3});
+        long before = view.version(new long[]{3});
+
+        grants.put(1L, Collections.singletonList("user:edit"));
+        view.invalidate(Collections.singleton(1L));
+
+        assertTrue(view.version(new long[]{1, 2}) > 0);
+        assertEquals(before, view.version(new long[]{3}));
+        queries = 0;
+        RolePermissionView.Permissions permissions = view.resolve(new long[]{1, 2});
+        assertEquals(new HashSet<>(Arrays.asList("user:edit", "user:list", "dept:list")), names(permissions));
+        assertEquals(view.version(new long[]{1, 2}), permissions.getVersion());
+        // 只重新加载失效的角色，未变更的角色集合不受影响
+        assertEquals(1, queries);
+        view.resolve(new long[]{3});
+        assertEquals(1, queries);
+    }
+
+    @Test
+    public void testInvalidateAcrossNodes() throws InterruptedException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        StateStoreProperties properties = new StateStoreProperties();
+        properties.setType("jdbc");
+        properties.setNearCacheTtl(100);
+        JdbcStateStore storeA = new JdbcStateStore(dataSource, properties);
+        storeA.start();
+        JdbcStateStore storeB = new JdbcStateStore(dataSource, properties);
+        storeB.start();
+        try {
+            RolePermissionView nodeA = new RolePermissionView(repository, storeA);
+            RolePermissionView nodeB = new RolePermissionView(repository, storeB);
+            nodeA.resolve(new long[]{1, 2});
+            RolePermissionView.Permissions before = nodeB.resolve(new long[]{1, 2});
+
+            grants.put(1L, Collections.singletonList("user:edit"));
+            nodeA.invalidate(Collections.singleton(1L));
+            // 近端缓存过期后，其他节点读到同一个版本并重新加载该角色
+            Thread.sleep(150);
+            long version = nodeA.version(new long[]{1, 2});
+            assertNotEquals(before.getVersion(), version);
+            assertEquals(version, nodeB.version(new long[]{2, 1}));
+            queries = 0;
+            RolePermissionView.Permissions after = nodeB.resolve(new long[]{1, 2});
+            assertEquals(new HashSet<>(Arrays.asList("user:edit", "user:list", "dept:list")), names(after));
+            assertEquals(version, after.getVersion());
+            assertEquals(1, queries);
+        } finally {
+            storeA.stop();
+            storeB.stop();
+        }
+    }
+
+    @Test
+    public void testUnion() {
+        assertArrayEquals(new int[]{1, 2, 3, 5}, RolePermissionView.union(new int[]{1, 3}, new int[]{2, 3, 5}));
+        assertArrayEquals(new int[]{4}, RolePermissionView.union(new int[0], new int[]{4}));
+    }
+
+    private static Set<String> names(RolePermissionView.Permissions permissions) {
+        Set<String> names = new HashSet<>();
+        for (int id : permissions.getIds()) {
+            names.add(AuthorityInterner.get(id).getAuthority());
+        }
+        return names;
+    }
+}
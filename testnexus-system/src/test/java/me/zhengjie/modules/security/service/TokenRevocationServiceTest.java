@@ -0,0 +1,51 @@
+package me.zhengjie.modules.security.service;
+
+import me.zhengjie.modules.security.config.SecurityProperties;
+import me.zhengjie.utils.state.LocalStateStore;
+import me.zhengjie.utils.state.StateStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenRevocationServiceTest {
+
+    private final SecurityProperties properties = new SecurityProperties();
+
+    /** 两个节点共用的状态存储 */
+    private final StateStore stateStore = new LocalStateStore(1000);
+
+    @BeforeEach
+    public void setUp() {
+        properties.setTokenValidityInSeconds(60000L);
+    }
+
+    @Test
+    public void testRevokeIsSharedAcrossNodes() {
+        TokenRevocationService node1 = new TokenRevocationService(properties, stateStore);
+        TokenRevocationService node2 = new TokenRevocationService(properties, stateStore);
+        node1.revoke("a");
+        assertTrue(node1.isRevoked("a"));
+        assertFalse(node2.isRevoked("a"));
+
+        // 同步后其他节点同样拒绝该令牌
+        node2.sync();
+        assertTrue(node2.isRevoked("a"));
+        assertFalse(node2.isRevoked("b"));
+        assertEquals(1L, node2.getStats().get("synced"));
+        node2.sync();
+        assertEquals(1L, node2.getStats().get("synced"));
+    }
+
+    @Test
+    public void testExpiredRecordsAreNotSynced() throws InterruptedException {
+        properties.setTokenValidityInSeconds(20L);
+        TokenRevocationService node1 = new TokenRevocationService(properties, stateStore);
+        TokenRevocationService node2 = new TokenRevocationService(properties, stateStore);
+        node1.revoke("a");
+        Thread.sleep(50);
+        node2.sync();
+        assertFalse(node2.isRevoked("a"));
+        assertFalse(node1.isRevoked("a"));
+    }
+}
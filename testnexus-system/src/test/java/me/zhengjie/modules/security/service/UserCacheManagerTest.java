@@ -0,0 +1,110 @@
+package me.zhengjie.modules.security.service;
+
+import me.zhengjie.config.properties.StateStoreProperties;
+import me.zhengjie.modules.security.config.LoginProperties;
+import me.zhengjie.modules.security.service.dto.AuthorityDto;
+import me.zhengjie.modules.security.service.dto.CompactPrincipal;
+import me.zhengjie.modules.security.service.dto.JwtUserDto;
+import me.zhengjie.modules.system.service.dto.UserDto;
+import me.zhengjie.utils.state.JdbcStateStore;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 H2 的 MySQL 兼容模式模拟两个节点共用状态存储
+ */
+public class UserCacheManagerTest {
+
+    private JdbcStateStore storeA;
+
+    private JdbcStateStore storeB;
+
+    private UserCacheManager nodeA;
+
+    private UserCacheManager nodeB;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        StateStoreProperties properties = new StateStoreProperties();
+        properties.setType("jdbc");
+        properties.setNearCacheTtl(100);
+        storeA = new JdbcStateStore(dataSource, properties);
+        storeA.start();
+        storeB = new JdbcStateStore(dataSource, properties);
+        storeB.start();
+        nodeA = create(storeA);
+        nodeB = create(storeB);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storeA.stop();
+        storeB.stop();
+    }
+
+    @Test
+    public void testPrincipalStaysOnNode() throws InterruptedException {
+        nodeA.addUserCache("Admin", principal(), nodeA.version("admin"));
+        storeA.flush();
+        Thread.sleep(150);
+        // 近端缓存过期后仍然是原对象，密码与权限编号完整
+        CompactPrincipal cached = nodeA.getUserCache("admin");
+        assertEquals("encoded", cached.getPassword());
+        assertTrue(cached.hasAuthority("user:list"));
+        assertFalse(cached.hasAuthority("user:del"));
+        // 权限编号只在本节点有效，不经过共享状态存储
+        assertTrue(storeB.scan(LoginProperties.cacheKey).isEmpty());
+        assertNull(nodeB.getUserCache("admin"));
+
+        nodeB.addUserCache("admin", principal(), nodeB.version("admin"));
+        assertTrue(nodeB.getUserCache("admin").hasAuthority("user:list"));
+    }
+
+    @Test
+    public void testCleanInvalidatesOtherNodes() throws InterruptedException {
+        nodeA.addUserCache("admin", principal(), nodeA.version("admin"));
+        nodeB.addUserCache("admin", principal(), nodeB.version("admin"));
+        nodeA.cleanUserCache("admin");
+        assertNull(nodeA.getUserCache("admin"));
+        // 其他节点在近端缓存过期后读到新版本
+        Thread.sleep(150);
+        assertNull(nodeB.getUserCache("admin"));
+
+        // 加载期间被清理，写入的缓存随即失效
+        long version = nodeB.version("admin");
+        nodeA.cleanUserCache("admin");
+        Thread.sleep(150);
+        nodeB.addUserCache("admin", principal(), version);
+        assertNull(nodeB.getUserCache("admin"));
+        nodeB.addUserCache("admin", principal(), nodeB.version("admin"));
+        assertNotNull(nodeB.getUserCache("admin"));
+    }
+
+    private static UserCacheManager create(JdbcStateStore stateStore) {
+        UserCacheManager manager = new UserCacheManager();
+        ReflectionTestUtils.setField(manager, "stateStore", stateStore);
+        ReflectionTestUtils.setField(manager, "idleTime", 3600L);
+        return manager;
+    }
+
+    private static CompactPrincipal principal() {
+        UserDto user = new UserDto();
+        user.setId(1L);
+        user.setUsername("admin");
+        user.setPassword("encoded");
+        user.setEnabled(true);
+        return CompactPrincipal.of(new JwtUserDto(user, Arrays.asList(1L, 2L),
+                Collections.singletonList(new AuthorityDto("user:list"))));
+    }
+}
@@ -0,0 +1,118 @@
+package me.zhengjie.modules.security.service;
+
+import me.zhengjie.exception.BadRequestException;
+import me.zhengjie.modules.security.service.dto.AuthorityDto;
+import me.zhengjie.modules.security.service.dto.CompactPrincipal;
+import me.zhengjie.modules.security.service.dto.JwtUserDto;
+import me.zhengjie.modules.system.repository.RoleRepository;
+import me.zhengjie.modules.system.service.DataService;
+import me.zhengjie.modules.system.service.RoleService;
+import me.zhengjie.modules.system.service.UserService;
+import me.zhengjie.modules.system.service.dto.UserDto;
+import me.zhengjie.utils.state.LocalStateStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserDetailsServiceImplTest {
+
+    /** 模拟本节点的精简用户缓存 */
+    private final Map<String, CompactPrincipal> principals = new HashMap<>();
+
+    /** 方法名 -> 调用次数 */
+    private final Map<String, Integer> calls = new HashMap<>();
+
+    private UserDto user;
+
+    private UserDetailsServiceImpl service;
+
+    @BeforeEach
+    public void setUp() {
+        user = new UserDto();
+        user.setId(1L);
+        user.setUsername("admin");
+        user.setPassword("encoded");
+        user.setEnabled(true);
+        user.setIsAdmin(true);
+        UserCacheManager cacheManager = new UserCacheManager() {
+            @Override
+            public CompactPrincipal getUserCache(String userName) {
+                return principals.get(userName);
+            }
+
+            @Override
+            public long version(String userName) {
+                return 0;
+            }
+
+            @Override
+            public void addUserCache(String userName, CompactPrincipal principal, long version) {
+                principals.put(userName, principal);
+            }
+
+            @Override
+            public void cleanUserCache(String userName) {
+                principals.remove(userName);
+            }
+        };
+        service = new UserDetailsServiceImpl(proxy(UserService.class), proxy(RoleService.class),
+                proxy(DataService.class), cacheManager, new RolePermissionView(proxy(RoleRepository.class), new LocalStateStore(100)));
+    }
+
+    @Test
+    public void testFullUserReadsThroughCache() {
+        // 缓存不存在时查询数据库并写入缓存
+        JwtUserDto first = service.loadFullUser("admin");
+        assertEquals("admin", first.getUsername());
+        assertEquals(1, count("getLoginData"));
+        assertTrue(principals.containsKey("admin"));
+
+        // 登录时先校验密码再加载完整信息，都不再查询数据库
+        service.loadUserByUsername("admin");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Collections.singletonList(new AuthorityDto("admin")), service.loadFullUser("admin").getAuthorities());
+        }
+        assertEquals(1, count("getLoginData"));
+        assertEquals(3, count("findById"));
+
+        // 用户信息变更后缓存被清理，重新查询数据库
+        principals.remove("admin");
+        service.loadUserByUsername("admin");
+        assertEquals(2, count("getLoginData"));
+    }
+
+    @Test
+    public void testDisabledUser() {
+        service.loadUserByUsername("admin");
+        user.setEnabled(false);
+        assertThrows(BadRequestException.class, () -> service.loadFullUser("admin"));
+        assertThrows(BadRequestException.class, () -> service.loadFullUser("nobody"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            calls.merge(method.getName(), 1, Integer::sum);
+            switch (method.getName()) {
+                case "getLoginData":
+                    return user.getUsername().equals(args[0]) ? user : null;
+                case "findById":
+                    return user;
+                case "buildPermissions":
+                    return Collections.singletonList(new AuthorityDto("admin"));
+                case "getDeptIds":
+                    return Collections.emptyList();
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private int count(String method) {
+        return calls.getOrDefault(method, 0);
+    }
+}
@@ -0,0 +1,122 @@
+package me.zhengjie.modules.security.service.dto;
+
+import me.zhengjie.modules.security.service.AuthorityInterner;
+import me.zhengjie.modules.system.service.dto.DeptSmallDto;
+import me.zhengjie.modules.system.service.dto.JobSmallDto;
+import me.zhengjie.modules.system.service.dto.RoleSmallDto;
+import me.zhengjie.modules.system.service.dto.UserDto;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * 每个在线用户缓存对象占用的堆内存：改造前缓存 JwtUserDto，改造后缓存 CompactPrincipal。
+ * 按数据库加载的方式为每个用户构建独立的字符串与集合，保留 SESSIONS 个对象后比较 GC 后的已用堆，
+ * 结果除以数量即为每个用户的字节数。建议使用 -Xmx1g -XX:+UseSerialGC 运行，数值更稳定
+ * 运行：直接执行 main 方法
+ */
+public class CompactPrincipalFootprint {
+
+    private static final int SESSIONS = 20000;
+
+    /** 每个用户的权限数量，与默认管理菜单的按钮数量相近 */
+    private static final int AUTHORITIES = 60;
+
+    /** 每个用户的数据权限部门数量 */
+    private static final int DATA_SCOPES = 20;
+
+    public static void main(String[] args) {
+        // 预热驻留表，改造后的权限编号在所有用户之间共享
+        CompactPrincipal.of(jwtUser(0));
+        long legacy = measure(CompactPrincipalFootprint::jwtUser);
+        long compact = measure(i -> CompactPrincipal.of(jwtUser(i), new long[]{1, 2, 3},
+                AuthorityInterner.intern(permissions()), 0));
+        System.out.printf("JwtUserDto:       %d bytes/session%n", legacy);
+        System.out.printf("CompactPrincipal: %d bytes/session%n", compact);
+    }
+
+    private static long measure(IntFunction<Object> factory) {
+        Object[] retained = new Object[SESSIONS];
+        long before = usedAfterGc();
+        for (int i = 0; i < SESSIONS; i++) {
+            retained[i] = factory.apply(i);
+        }
+        long after = usedAfterGc();
+        // 保持引用直到测量结束
+        if (retained[SESSIONS - 1] == null) {
+            throw new IllegalStateException();
+        }
+        return (after - before) / SESSIONS;
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static JwtUserDto jwtUser(int i) {
+        UserDto user = new UserDto();
+        user.setId((long) i);
+        user.setUsername(new String("user" + i));
+        user.setNickName(new String("用户" + i));
+        user.setEmail(new String("user" + i + "@example.com"));
+        user.setPhone(new String("1380000" + String.format("%04d", i % 10000)));
+        user.setGender(new String("男"));
+        user.setAvatarName(new String("avatar-" + i + ".png"));
+        user.setAvatarPath(new String("/home/eladmin/avatar/avatar-" + i + ".png"));
+        user.setPassword(new String("$2a$10$Egp1/gvFlt7zhlXVfEFw4OfWQCGPw0ClmMcc6FjTnvXNRVf9zdMRa"));
+        user.setEnabled(true);
+        user.setDeptId(7L);
+        user.setCreateBy(new String("admin"));
+        user.setCreateTime(new Timestamp(System.currentTimeMillis()));
+        user.setPwdResetTime(new Date());
+        DeptSmallDto dept = new DeptSmallDto();
+        dept.setId(7L);
+        dept.setName(new String("研发部"));
+        user.setDept(dept);
+        Set<RoleSmallDto> roles = new HashSet<>();
+        for (long id = 1; id <= 3; id++) {
+            RoleSmallDto role = new RoleSmallDto();
+            role.setId(id);
+            role.setName(new String("角色" + id));
+            role.setLevel(3);
+            role.setDataScope(new String("自定义"));
+            roles.add(role);
+        }
+        user.setRoles(roles);
+        Set<JobSmallDto> jobs = new HashSet<>();
+        for (long id = 1; id <= 2; id++) {
+            JobSmallDto job = new JobSmallDto();
+            job.setId(id);
+            job.setName(new String("岗位" + id));
+            jobs.add(job);
+        }
+        user.setJobs(jobs);
+        List<Long> dataScopes = new ArrayList<>(DATA_SCOPES);
+        for (long id = 0; id < DATA_SCOPES; id++) {
+            dataScopes.add(1000 + id);
+        }
+        List<AuthorityDto> authorities = new ArrayList<>(AUTHORITIES);
+        for (String permission : permissions()) {
+            authorities.add(new AuthorityDto(permission));
+        }
+        return new JwtUserDto(user, dataScopes, authorities);
+    }
+
+    private static List<String> permissions() {
+        List<String> permissions = new ArrayList<>(AUTHORITIES);
+        for (int i = 0; i < AUTHORITIES; i++) {
+            permissions.add(new String("module" + i / 4 + ":" + (i % 4 == 0 ? "list" : i % 4 == 1 ? "add" : i % 4 == 2 ? "edit" : "del")));
+        }
+        return permissions;
+    }
+}
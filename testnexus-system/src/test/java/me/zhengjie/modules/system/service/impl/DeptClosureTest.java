@@ -0,0 +1,346 @@
+package me.zhengjie.modules.system.service.impl;
+
+import me.zhengjie.config.properties.StateStoreProperties;
+import me.zhengjie.exception.BadRequestException;
+import me.zhengjie.modules.system.domain.Dept;
+import me.zhengjie.modules.system.repository.DeptRepository;
+import me.zhengjie.modules.system.repository.RoleRepository;
+import me.zhengjie.modules.system.repository.UserRepository;
+import me.zhengjie.modules.system.service.dto.DeptDto;
+import me.zhengjie.modules.system.service.mapstruct.DeptMapper;
+import me.zhengjie.utils.RedisUtils;
+import me.zhengjie.utils.state.LocalStateStore;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 H2 的 MySQL 兼容模式执行 DeptRepository 中的原生 SQL，验证闭包表的维护与按旧的逐级递归得到的结果一致
+ */
+public class DeptClosureTest {
+
+    private static final Pattern PARAMETER = Pattern.compile("\\?(\\d+)");
+
+    private static final RowMapper<Dept> DEPT_MAPPER = (rs, i) -> {
+        Dept dept = new Dept();
+        dept.setId(rs.getLong("dept_id"));
+        dept.setPid(rs.getObject("pid", Long.class));
+        dept.setName(rs.getString("name"));
+        dept.setEnabled(rs.getBoolean("enabled"));
+        dept.setDeptSort(rs.getInt("dept_sort"));
+        dept.setSubCount(rs.getInt("sub_count"));
+        return dept;
+    };
+
+    private JdbcTemplate jdbcTemplate;
+
+    private DeptRepository deptRepository;
+
+    private DeptServiceImpl deptService;
+
+    /**
+     * 1
+     * ├─ 2
+     * │  ├─ 4
+     * │  │  └─ 7
+     * │  └─ 5 (停用)
+     * │     └─ 8
+     * └─ 3
+     *    └─ 6
+     */
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE sys_dept (dept_id bigint AUTO_INCREMENT PRIMARY KEY, pid bigint, " +
+                "sub_count int DEFAULT 0, name varchar(255), dept_sort int, enabled bit(1))");
+        jdbcTemplate.execute("CREATE TABLE sys_dept_closure (ancestor bigint NOT NULL, descendant bigint NOT NULL, " +
+                "depth int NOT NULL, PRIMARY KEY (ancestor, descendant))");
+        deptRepository = repository();
+        deptService = new DeptServiceImpl(deptRepository, mapper(), proxy(UserRepository.class),
+                new RedisUtils(new LocalStateStore(100), new StateStoreProperties()), proxy(RoleRepository.class),
+                new SubCountMaintainer(jdbcTemplate));
+        long[][] tree = {{0, 1}, {1, 1}, {1, 1}, {2, 1}, {2, 0}, {3, 1}, {4, 1}, {5, 1}};
+        for (long[] node : tree) {
+            Dept dept = new Dept();
+            dept.setPid(node[0] == 0 ? null : node[0]);
+            dept.setName("dept");
+            dept.setEnabled(node[1] == 1);
+            dept.setDeptSort(1);
+            deptService.create(dept);
+        }
+    }
+
+    @Test
+    public void testCreate() {
+        assertEquals(8L, deptRepository.countClosureNodes());
+        assertEquals(expectedClosure(), closure());
+        assertEquals("1-7-3", closure().stream().filter(row -> row.startsWith("1-7-")).findFirst().orElse(null));
+        assertEquals(2, dept(1L).getSubCount());
+        assertEquals(2, dept(2L).getSubCount());
+        assertEquals(0, dept(7L).getSubCount());
+    }
+
+    @Test
+    public void testMove() {
+        // 4 连同下级 7 移到 3 下
+        move(4L, 3L);
+        assertEquals(expectedClosure(), closure());
+        assertEquals(1, deptRepository.countClosure(3L, 7L));
+        assertEquals(0, deptRepository.countClosure(2L, 7L));
+        assertEquals(1, dept(2L).getSubCount());
+        assertEquals(2, dept(3L).getSubCount());
+
+        // 2 移为顶级部门，子树内部的关系保持不变
+        move(2L, null);
+        assertEquals(expectedClosure(), closure());
+        assertEquals(0, deptRepository.countClosure(1L, 8L));
+        assertEquals(1, deptRepository.countClosure(2L, 8L));
+        assertEquals(1, dept(1L).getSubCount());
+    }
+
+    @Test
+    public void testRejectMoveUnderDescendant() {
+        Set<String> before = closure();
+        assertThrows(BadRequestException.class, () -> move(2L, 7L));
+        assertThrows(BadRequestException.class, () -> move(2L, 2L));
+        assertEquals(before, closure());
+        assertEquals(Long.valueOf(1L), dept(2L).getPid());
+    }
+
+    @Test
+    public void testDelete() {
+        deptService.delete(new HashSet<>(Collections.singletonList(dto(7L))));
+        assertEquals(expectedClosure(), closure());
+        assertEquals(0, dept(4L).getSubCount());
+
+        // 删除 2 时连同全部下级
+        Set<DeptDto> deleted = deptService.getDeleteDepts(Collections.singletonList(dept(2L)), new HashSet<>());
+        assertEquals(new HashSet<>(Arrays.asList(2L, 4L, 5L, 8L)),
+                deleted.stream().map(DeptDto::getId).collect(Collectors.toSet()));
+        deptService.delete(deleted);
+        assertEquals(expectedClosure(), closure());
+        assertEquals(3L, deptRepository.countClosureNodes());
+        assertEquals(1, dept(1L).getSubCount());
+    }
+
+    @Test
+    public void testRebuild() {
+        Set<String> expected = expectedClosure();
+        jdbcTemplate.update("DELETE FROM sys_dept_closure WHERE descendant IN (7, 8)");
+        jdbcTemplate.update("INSERT INTO sys_dept_closure (ancestor, descendant, depth) VALUES (6, 7, 1)");
+        assertNotEquals(expected, closure());
+        assertEquals(expected.size(), deptService.rebuildClosure());
+        assertEquals(expected, closure());
+    }
+
+    @Test
+    public void testDataScopeMatchesRecursion() {
+        List<List<Long>> starts = Arrays.asList(Collections.singletonList(1L), Collections.singletonList(2L),
+                Collections.singletonList(5L), Arrays.asList(3L, 4L), Arrays.asList(1L, 5L), Arrays.asList(6L, 8L));
+        for (List<Long> start : starts) {
+            List<Dept> depts = start.stream().map(this::dept).collect(Collectors.toList());
+            // 停用的部门隐藏自身及其下级
+            assertEquals(new HashSet<>(recursion(depts)), new HashSet<>(deptService.getDeptChildren(depts)), start.toString());
+            // 数据权限中指定的部门总是包含，下级按停用规则过滤
+            Set<Long> expected = new HashSet<>(start);
+            for (Long id : start) {
+                expected.addAll(recursion(deptRepository.findByPid(id)));
+            }
+            assertEquals(expected, deptService.getDeptAndChildrenIds(start), start.toString());
+        }
+        // 停用的 5 及其下级 8 不在 1 的范围内
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L, 4L, 6L, 7L)), deptService.getDeptAndChildrenIds(Collections.singletonList(1L)));
+    }
+
+    /**
+     * 闭包表之前 getDeptChildren 的逐级递归实现
+     */
+    private List<Long> recursion(List<Dept> depts) {
+        List<Long> list = new ArrayList<>();
+        for (Dept dept : depts) {
+            if (dept != null && dept.getEnabled()) {
+                List<Dept> children = deptRepository.findByPid(dept.getId());
+                if (!children.isEmpty()) {
+                    list.addAll(recursion(children));
+                }
+                list.add(dept.getId());
+            }
+        }
+        return list;
+    }
+
+    private void move(Long id, Long pid) {
+        Dept dept = dept(id);
+        dept.setPid(pid);
+        deptService.update(dept);
+    }
+
+    private Dept dept(Long id) {
+        return deptRepository.findById(id).orElseThrow(IllegalArgumentException::new);
+    }
+
+    private DeptDto dto(Long id) {
+        Dept dept = dept(id);
+        DeptDto dto = new DeptDto();
+        dto.setId(dept.getId());
+        dto.setPid(dept.getPid());
+        dto.setName(dept.getName());
+        return dto;
+    }
+
+    /**
+     * 闭包表的内容，格式：上级-下级-层级差
+     */
+    private Set<String> closure() {
+        return new TreeSet<>(jdbcTemplate.query("SELECT ancestor, descendant, depth FROM sys_dept_closure",
+                (rs, i) -> rs.getLong(1) + "-" + rs.getLong(2) + "-" + rs.getInt(3)));
+    }
+
+    /**
+     * 按 sys_dept 的 pid 逐级向上得到的闭包表
+     */
+    private Set<String> expectedClosure() {
+        Map<Long, Long> parents = new HashMap<>();
+        jdbcTemplate.query("SELECT dept_id, pid FROM sys_dept", rs -> {
+            parents.put(rs.getLong(1), rs.getObject(2, Long.class));
+        });
+        Set<String> rows = new TreeSet<>();
+        for (Long id : parents.keySet()) {
+            int depth = 0;
+            for (Long ancestor = id; ancestor != null; ancestor = parents.get(ancestor)) {
+                rows.add(ancestor + "-" + id + "-" + depth++);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 带 @Query 的方法直接执行其中的原生 SQL，其余方法按 JPA 的语义用 JDBC 实现
+     */
+    private DeptRepository repository() {
+        return (DeptRepository) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DeptRepository.class},
+                (proxy, method, args) -> {
+                    if (method.isAnnotationPresent(Query.class)) {
+                        return query(method, args);
+                    }
+                    switch (method.getName()) {
+                        case "save":
+                            return save((Dept) args[0]);
+                        case "findById":
+                            return jdbcTemplate.query("SELECT * FROM sys_dept WHERE dept_id = ?", DEPT_MAPPER, args[0])
+                                    .stream().findFirst();
+                        case "findByPid":
+                            return jdbcTemplate.query("SELECT * FROM sys_dept WHERE pid = ? ORDER BY dept_sort, dept_id",
+                                    DEPT_MAPPER, args[0]);
+                        case "deleteById":
+                            jdbcTemplate.update("DELETE FROM sys_dept WHERE dept_id = ?", args[0]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private Object query(Method method, Object[] args) {
+        List<Object> params = new ArrayList<>();
+        Matcher matcher = PARAMETER.matcher(method.getAnnotation(Query.class).value());
+        StringBuffer sql = new StringBuffer();
+        while (matcher.find()) {
+            Object arg = args[Integer.parseInt(matcher.group(1)) - 1];
+            String placeholder = "?";
+            // 与 Hibernate 一样把集合参数展开为 (?, ?, ...)
+            if (arg instanceof Collection) {
+                params.addAll((Collection<?>) arg);
+                placeholder = "(" + String.join(", ", Collections.nCopies(((Collection<?>) arg).size(), "?")) + ")";
+            } else {
+                params.add(arg);
+            }
+            matcher.appendReplacement(sql, Matcher.quoteReplacement(placeholder));
+        }
+        matcher.appendTail(sql);
+        Class<?> type = method.getReturnType();
+        if (method.isAnnotationPresent(Modifying.class)) {
+            int rows = jdbcTemplate.update(sql.toString(), params.toArray());
+            return type == void.class ? null : rows;
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            List<Dept> depts = jdbcTemplate.query(sql.toString(), DEPT_MAPPER, params.toArray());
+            return Set.class.isAssignableFrom(type) ? new LinkedHashSet<>(depts) : depts;
+        }
+        Long count = jdbcTemplate.queryForObject(sql.toString(), Long.class, params.toArray());
+        return type == int.class ? count.intValue() : count;
+    }
+
+    private Dept save(Dept dept) {
+        if (dept.getId() != null) {
+            jdbcTemplate.update("UPDATE sys_dept SET pid = ?, name = ?, enabled = ?, dept_sort = ? WHERE dept_id = ?",
+                    dept.getPid(), dept.getName(), dept.getEnabled(), dept.getDeptSort(), dept.getId());
+            return dept;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO sys_dept (pid, name, enabled, dept_sort) VALUES (?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+            statement.setObject(1, dept.getPid());
+            statement.setString(2, dept.getName());
+            statement.setBoolean(3, dept.getEnabled());
+            statement.setInt(4, dept.getDeptSort());
+            return statement;
+        }, keyHolder);
+        dept.setId(keyHolder.getKey().longValue());
+        return dept;
+    }
+
+    private static DeptMapper mapper() {
+        return (DeptMapper) Proxy.newProxyInstance(DeptClosureTest.class.getClassLoader(), new Class<?>[]{DeptMapper.class},
+                (proxy, method, args) -> {
+                    if (!"toDto".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (args[0] instanceof List) {
+                        return ((List<?>) args[0]).stream().map(dept -> toDto((Dept) dept)).collect(Collectors.toList());
+                    }
+                    return toDto((Dept) args[0]);
+                });
+    }
+
+    private static DeptDto toDto(Dept dept) {
+        DeptDto dto = new DeptDto();
+        dto.setId(dept.getId());
+        dto.setPid(dept.getPid());
+        dto.setName(dept.getName());
+        dto.setEnabled(dept.getEnabled());
+        dto.setSubCount(dept.getSubCount());
+        return dto;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type) {
+        return (T) Proxy.newProxyInstance(DeptClosureTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if ("findByRoleDeptId".equals(method.getName())) {
+                        return Collections.emptyList();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
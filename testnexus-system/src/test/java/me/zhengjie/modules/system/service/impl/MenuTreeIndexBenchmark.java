@@ -0,0 +1,164 @@
+package me.zhengjie.modules.system.service.impl;
+
+import me.zhengjie.modules.system.domain.Menu;
+import me.zhengjie.modules.system.service.dto.MenuDto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 菜单树查询耗时对比，菜单数量 5000，每个目录 10 个下级。
+ * legacy 开头的方法保留了改造前的写法：buildTree 两层循环，
+ * 下级与上级查询每一级都查一次库（这里用全表扫描模拟 findByPidOrderByMenuSort，不含网络与数据库开销）
+ * 运行：直接执行 main 方法
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MenuTreeIndexBenchmark {
+
+    @Param({"5000"})
+    private int size;
+
+    private List<Menu> menus;
+
+    private MenuTreeIndex index;
+
+    private long deepest;
+
+    @Setup
+    public void setup() {
+        menus = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            Menu menu = new Menu();
+            menu.setId((long) i);
+            menu.setPid(i <= 10 ? null : (long) (i - 1) / 10);
+            menu.setMenuSort(i % 10);
+            menu.setType(i % 3);
+            menu.setTitle("menu" + i);
+            menus.add(menu);
+        }
+        index = MenuTreeIndex.of(menus, 0);
+        deepest = size;
+    }
+
+    @Benchmark
+    public MenuTreeIndex buildIndex() {
+        return MenuTreeIndex.of(menus, 0);
+    }
+
+    @Benchmark
+    public List<MenuDto> legacyBuildTree() {
+        List<MenuDto> menuDtos = toDto(menus);
+        List<MenuDto> trees = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        for (MenuDto menuDTO : menuDtos) {
+            if (menuDTO.getPid() == null) {
+                trees.add(menuDTO);
+            }
+            for (MenuDto it : menuDtos) {
+                if (menuDTO.getId().equals(it.getPid())) {
+                    if (menuDTO.getChildren() == null) {
+                        menuDTO.setChildren(new ArrayList<>());
+                    }
+                    menuDTO.getChildren().add(it);
+                    ids.add(it.getId());
+                }
+            }
+        }
+        if (trees.isEmpty()) {
+            trees = menuDtos.stream().filter(s -> !ids.contains(s.getId())).collect(Collectors.toList());
+        }
+        return trees;
+    }
+
+    @Benchmark
+    public List<MenuDto> buildTree() {
+        return MenuTreeIndex.buildTree(toDto(index.filter(ids(), null)));
+    }
+
+    @Benchmark
+    public Set<Menu> legacyChildMenus() {
+        return legacyChildMenus(findByPid(1L), new HashSet<>());
+    }
+
+    @Benchmark
+    public List<Menu> subtree() {
+        return index.getSubtree(1L);
+    }
+
+    @Benchmark
+    public List<Menu> legacySuperior() {
+        List<Menu> result = new ArrayList<>();
+        Long pid = findById(deepest).getPid();
+        while (pid != null) {
+            result.addAll(findByPid(pid));
+            pid = findById(pid).getPid();
+        }
+        result.addAll(findByPid(null));
+        return result;
+    }
+
+    @Benchmark
+    public List<Menu> superior() {
+        return index.getSuperior(index.get(deepest).getPid());
+    }
+
+    private Set<Menu> legacyChildMenus(List<Menu> menuList, Set<Menu> menuSet) {
+        for (Menu menu : menuList) {
+            menuSet.add(menu);
+            List<Menu> subs = findByPid(menu.getId());
+            if (!subs.isEmpty()) {
+                legacyChildMenus(subs, menuSet);
+            }
+        }
+        return menuSet;
+    }
+
+    private List<Menu> findByPid(Long pid) {
+        List<Menu> result = new ArrayList<>();
+        for (Menu menu : menus) {
+            if (Objects.equals(pid, menu.getPid())) {
+                result.add(menu);
+            }
+        }
+        result.sort(Comparator.comparing(Menu::getMenuSort));
+        return result;
+    }
+
+    private Menu findById(long id) {
+        for (Menu menu : menus) {
+            if (menu.getId() == id) {
+                return menu;
+            }
+        }
+        return null;
+    }
+
+    private List<Long> ids() {
+        return menus.stream().map(Menu::getId).collect(Collectors.toList());
+    }
+
+    private static List<MenuDto> toDto(List<Menu> menus) {
+        List<MenuDto> dtos = new ArrayList<>(menus.size());
+        for (Menu menu : menus) {
+            MenuDto dto = new MenuDto();
+            dto.setId(menu.getId());
+            dto.setPid(menu.getPid());
+            dto.setTitle(menu.getTitle());
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(MenuTreeIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
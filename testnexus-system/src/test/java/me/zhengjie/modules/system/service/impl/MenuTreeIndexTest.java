@@ -0,0 +1,153 @@
+package me.zhengjie.modules.system.service.impl;
+
+import me.zhengjie.modules.system.domain.Menu;
+import me.zhengjie.modules.system.service.dto.MenuDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MenuTreeIndexTest {
+
+    /**
+     * 1
+     * ├─ 3 (sort 1)
+     * │  └─ 5
+     * └─ 4 (sort 2)
+     * 2
+     * 7 -> 8 -> 7 成环，9 的上级不存在
+     */
+    private static List<Menu> sample() {
+        return Arrays.asList(
+                menu(4L, 1L, 2, 1), menu(2L, null, 2, 0), menu(5L, 3L, 1, 2),
+                menu(1L, null, 1, 0), menu(3L, 1L, 1, 1), menu(6L, 4L, 1, 2),
+                menu(7L, 8L, 1, 0), menu(8L, 7L, 1, 0), menu(9L, 100L, 1, 0)
+        );
+    }
+
+    @Test
+    public void testChildrenAndSubtree() {
+        MenuTreeIndex index = MenuTreeIndex.of(sample(), 3);
+        assertEquals(3, index.getVersion());
+        assertEquals(9, index.size());
+        assertEquals(Arrays.asList(1L, 2L), ids(index.getChildren(null)));
+        assertEquals(Arrays.asList(1L, 2L), ids(index.getChildren(0L)));
+        assertEquals(Arrays.asList(3L, 4L), ids(index.getChildren(1L)));
+        assertEquals(Collections.emptyList(), ids(index.getChildren(404L)));
+        assertEquals(Arrays.asList(1L, 3L, 5L, 4L, 6L), ids(index.getSubtree(1L)));
+        assertEquals(Collections.singletonList(5L), ids(index.getSubtree(5L)));
+        // 成环与上级缺失的菜单仍可按ID查到
+        assertNotNull(index.get(7L));
+        assertNotNull(index.get(9L));
+        assertEquals(Arrays.asList(7L, 8L), ids(index.getSubtree(7L)));
+    }
+
+    @Test
+    public void testSuperior() {
+        MenuTreeIndex index = MenuTreeIndex.of(sample(), 0);
+        // 5 的上级为 3：3 的下级、1 的下级、顶级
+        assertEquals(Arrays.asList(5L, 3L, 4L, 1L, 2L), ids(index.getSuperior(3L)));
+        assertEquals(Arrays.asList(1L, 2L), ids(index.getSuperior(null)));
+    }
+
+    @Test
+    public void testFilter() {
+        MenuTreeIndex index = MenuTreeIndex.of(sample(), 0);
+        assertEquals(Arrays.asList(1L, 4L, 2L), ids(index.filter(Arrays.asList(2L, 4L, 5L, 1L, 6L, 404L), 2)));
+        assertEquals(Arrays.asList(1L, 5L, 6L), ids(index.filter(Arrays.asList(6L, 5L, 1L), null)));
+    }
+
+    @Test
+    public void testSnapshot() {
+        Menu source = menu(1L, null, 1, 0);
+        MenuTreeIndex index = MenuTreeIndex.of(Collections.singletonList(source), 0);
+        source.setTitle("changed");
+        assertEquals("menu1", index.get(1L).getTitle());
+    }
+
+    @Test
+    public void testBuildTreeSameAsNestedLoop() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            int size = 50 + random.nextInt(200);
+            long seed = random.nextLong();
+            List<MenuDto> expected = randomDtos(size, seed);
+            List<MenuDto> actual = randomDtos(size, seed);
+            assertEquals(shape(nestedLoop(expected)), shape(MenuTreeIndex.buildTree(actual)));
+        }
+        // 没有顶级菜单时返回不属于其他菜单下级的节点
+        List<MenuDto> partial = Arrays.asList(dto(3L, 1L), dto(5L, 3L), dto(4L, 1L));
+        assertEquals("3[5]4", shape(MenuTreeIndex.buildTree(partial)));
+    }
+
+    /**
+     * 改造前 MenuServiceImpl.buildTree 的写法
+     */
+    private static List<MenuDto> nestedLoop(List<MenuDto> menuDtos) {
+        List<MenuDto> trees = new ArrayList<>();
+        Set<Long> ids = new HashSet<>();
+        for (MenuDto menuDTO : menuDtos) {
+            if (menuDTO.getPid() == null) {
+                trees.add(menuDTO);
+            }
+            for (MenuDto it : menuDtos) {
+                if (menuDTO.getId().equals(it.getPid())) {
+                    if (menuDTO.getChildren() == null) {
+                        menuDTO.setChildren(new ArrayList<>());
+                    }
+                    menuDTO.getChildren().add(it);
+                    ids.add(it.getId());
+                }
+            }
+        }
+        if (trees.isEmpty()) {
+            trees = menuDtos.stream().filter(s -> !ids.contains(s.getId())).collect(Collectors.toList());
+        }
+        return trees;
+    }
+
+    private static List<MenuDto> randomDtos(int size, long seed) {
+        Random random = new Random(seed);
+        List<MenuDto> dtos = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Long pid = i == 0 || random.nextInt(5) == 0 ? null : (long) random.nextInt(i) + 1;
+            dtos.add(dto(i + 1L, pid));
+        }
+        Collections.shuffle(dtos, random);
+        return dtos;
+    }
+
+    private static String shape(List<MenuDto> trees) {
+        StringBuilder builder = new StringBuilder();
+        for (MenuDto tree : trees) {
+            builder.append(tree.getId());
+            if (tree.getChildren() != null) {
+                builder.append('[').append(shape(tree.getChildren())).append(']');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static List<Long> ids(List<Menu> menus) {
+        return menus.stream().map(Menu::getId).collect(Collectors.toList());
+    }
+
+    private static Menu menu(Long id, Long pid, int sort, int type) {
+        Menu menu = new Menu();
+        menu.setId(id);
+        menu.setPid(pid);
+        menu.setMenuSort(sort);
+        menu.setType(type);
+        menu.setTitle("menu" + id);
+        return menu;
+    }
+
+    private static MenuDto dto(Long id, Long pid) {
+        MenuDto dto = new MenuDto();
+        dto.setId(id);
+        dto.setPid(pid);
+        return dto;
+    }
+}
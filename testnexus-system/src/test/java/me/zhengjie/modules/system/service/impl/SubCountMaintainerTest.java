@@ -0,0 +1,170 @@
+package me.zhengjie.modules.system.service.impl;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用 H2 的 MySQL 兼容模式与 TransactionTemplate 验证 sub_count 在事务提交前统一更新
+ */
+public class SubCountMaintainerTest {
+
+    private RecordingJdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private SubCountMaintainer maintainer;
+
+    /** 事务中刷写 EntityManager 的次数 */
+    private final AtomicInteger emFlushes = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new RecordingJdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE sys_dept (dept_id bigint PRIMARY KEY, pid bigint, sub_count int DEFAULT 0)");
+        jdbcTemplate.execute("CREATE TABLE sys_menu (menu_id bigint PRIMARY KEY, pid bigint, sub_count int DEFAULT 0)");
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        maintainer = new SubCountMaintainer(jdbcTemplate);
+        EntityManager em = (EntityManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{EntityManager.class},
+                (proxy, method, args) -> {
+                    if (!"flush".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    emFlushes.incrementAndGet();
+                    return null;
+                });
+        ReflectionTestUtils.setField(maintainer, "em", em);
+        jdbcTemplate.update("INSERT INTO sys_dept (dept_id, pid, sub_count) VALUES (1, NULL, 0)");
+    }
+
+    @Test
+    public void testFlushBeforeCommit() {
+        long flushes = (Long) maintainer.getStats().get("flushes");
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO sys_dept (dept_id, pid) VALUES (2, 1)");
+            maintainer.mark(SubCountMaintainer.Tree.DEPT, 1L);
+            jdbcTemplate.update("INSERT INTO sys_dept (dept_id, pid) VALUES (3, 1)");
+            maintainer.mark(SubCountMaintainer.Tree.DEPT, 1L);
+            maintainer.mark(SubCountMaintainer.Tree.DEPT, (Long) null);
+            // 事务中只记录，不更新
+            assertEquals(0, subCount("sys_dept", "dept_id", 1));
+        });
+        assertEquals(2, subCount("sys_dept", "dept_id", 1));
+        // 同一事务中多次标记只统计、更新一次
+        assertEquals(flushes + 1, maintainer.getStats().get("flushes"));
+        assertEquals(1, emFlushes.get());
+        assertEquals(1, jdbcTemplate.queries.size());
+    }
+
+    @Test
+    public void testRollbackLeavesCountsUntouched() {
+        long flushes = (Long) maintainer.getStats().get("flushes");
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO sys_dept (dept_id, pid) VALUES (2, 1)");
+            maintainer.mark(SubCountMaintainer.Tree.DEPT, 1L);
+            status.setRollbackOnly();
+        });
+        assertEquals(0, subCount("sys_dept", "dept_id", 1));
+        assertEquals(flushes, maintainer.getStats().get("flushes"));
+        assertEquals(0, emFlushes.get());
+        assertTrue(jdbcTemplate.queries.isEmpty());
+
+        // 回滚后不残留绑定的标记，不在事务中调用时立即更新
+        jdbcTemplate.update("INSERT INTO sys_dept (dept_id, pid) VALUES (2, 1)");
+        maintainer.mark(SubCountMaintainer.Tree.DEPT, 1L);
+        assertEquals(1, subCount("sys_dept", "dept_id", 1));
+        assertEquals(0, emFlushes.get());
+    }
+
+    @Test
+    public void testChunks() {
+        List<Long> pids = new ArrayList<>();
+        for (long id = 100; id < 1300; id++) {
+            jdbcTemplate.update("INSERT INTO sys_menu (menu_id, pid, sub_count) VALUES (?, NULL, 9)", id);
+            if (id % 2 == 0) {
+                jdbcTemplate.update("INSERT INTO sys_menu (menu_id, pid) VALUES (?, ?)", id + 10000, id);
+            }
+            pids.add(id);
+        }
+        transactionTemplate.executeWithoutResult(status -> maintainer.mark(SubCountMaintainer.Tree.MENU, pids));
+        // 1200 个上级分 3 条统计语句，每条最多 500 个参数
+        assertEquals(3, jdbcTemplate.queries.size());
+        assertTrue(jdbcTemplate.queries.stream().allMatch(parameters -> parameters <= 500));
+        assertEquals(1200, jdbcTemplate.queries.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(1, subCount("sys_menu", "menu_id", 100));
+        assertEquals(0, subCount("sys_menu", "menu_id", 101));
+        assertEquals(1, subCount("sys_menu", "menu_id", 1298));
+        assertEquals(0, subCount("sys_menu", "menu_id", 1299));
+    }
+
+    @Test
+    public void testRepairOnlyOverwritesValuesItRead() {
+        jdbcTemplate.update("INSERT INTO sys_dept (dept_id, pid, sub_count) VALUES (2, 1, 3)");
+        jdbcTemplate.update("INSERT INTO sys_dept (dept_id, pid, sub_count) VALUES (3, 1, NULL)");
+        jdbcTemplate.update("INSERT INTO sys_dept (dept_id, pid, sub_count) VALUES (4, 2, 0)");
+        jdbcTemplate.update("INSERT INTO sys_menu (menu_id, pid, sub_count) VALUES (1, NULL, 0)");
+        // 1 应为 2，2 应为 1，3 应为 0；读取之后、更新之前 1 被正常维护改写
+        jdbcTemplate.beforeBatch = () -> jdbcTemplate.update("UPDATE sys_dept SET sub_count = 7 WHERE dept_id = 1");
+        assertEquals(2, maintainer.repair());
+        assertEquals(7, subCount("sys_dept", "dept_id", 1));
+        assertEquals(1, subCount("sys_dept", "dept_id", 2));
+        assertEquals(0, subCount("sys_dept", "dept_id", 3));
+        assertEquals(0, subCount("sys_dept", "dept_id", 4));
+        assertEquals(2L, maintainer.getStats().get("repaired"));
+
+        jdbcTemplate.beforeBatch = null;
+        assertEquals(1, maintainer.repair());
+        assertEquals(2, subCount("sys_dept", "dept_id", 1));
+        assertEquals(0, maintainer.repair());
+    }
+
+    private int subCount(String table, String idColumn, long id) {
+        return jdbcTemplate.queryForObject("SELECT sub_count FROM " + table + " WHERE " + idColumn + " = ?", Integer.class, id).intValue();
+    }
+
+    /**
+     * 记录带参数的统计语句的参数个数，并可在批量更新前插入其他写入
+     */
+    private static class RecordingJdbcTemplate extends JdbcTemplate {
+
+        private final List<Integer> queries = new ArrayList<>();
+
+        private Runnable beforeBatch;
+
+        private RecordingJdbcTemplate(JdbcDataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public void query(String sql, RowCallbackHandler rch, Object... args) {
+            if (args != null && args.length > 0) {
+                queries.add(args.length);
+            }
+            super.query(sql, rch, args);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            if (beforeBatch != null) {
+                beforeBatch.run();
+            }
+            return super.batchUpdate(sql, batchArgs);
+        }
+    }
+}
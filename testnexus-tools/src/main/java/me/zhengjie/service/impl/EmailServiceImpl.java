@@ -79,7 +79,7 @@ public class EmailServiceImpl implements EmailService {
             // 对称解密
             account.setPass(EncryptUtils.desDecrypt(emailConfig.getPass()));
         } catch (Exception e) {
-            throw new BadRequestException(e.getMessage());
+            throw new BadRequestException(e.getMessage(), e);
         }
         account.setFrom(emailConfig.getUser()+"<"+emailConfig.getFromUser()+">");
         // ssl方式发送
@@ -101,7 +101,7 @@ public class EmailServiceImpl implements EmailService {
                     .setUseGlobalSession(false)
                     .send();
         }catch (Exception e){
-            throw new BadRequestException(e.getMessage());
+            throw new BadRequestException(e.getMessage(), e);
         }
     }
 }
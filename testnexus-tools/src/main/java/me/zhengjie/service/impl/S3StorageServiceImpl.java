@@ -193,10 +193,10 @@ public class S3StorageServiceImpl implements S3StorageService {
             base64Data = Base64.getEncoder().encodeToString(fileBytes);
         } catch (S3Exception e) {
             // 处理 AWS 特定的异常
-            throw new BadRequestException("从 S3 下载文件时出错: " + e.awsErrorDetails().errorMessage());
+            throw new BadRequestException("从 S3 下载文件时出错: " + e.awsErrorDetails().errorMessage(), e);
         } catch (IOException e) {
             // 处理通用的 IO 异常 (IOUtils.toByteArray 可能会抛出)
-            throw new BadRequestException("读取 S3 输入流时出错: " + e.getMessage());
+            throw new BadRequestException("读取 S3 输入流时出错: " + e.getMessage(), e);
         }
         // 构造返回数据
         Map<String, String> responseData = new HashMap<>();
@@ -257,7 +257,7 @@ public class S3StorageServiceImpl implements S3StorageService {
         } catch (BucketAlreadyOwnedByYouException e) {
             log.warn("存储桶 '{}' 已经被您拥有，无需重复创建。", bucketName);
         } catch (S3Exception e) {
-            throw new BadRequestException("创建存储桶时出错: " + e.awsErrorDetails().errorMessage());
+            throw new BadRequestException("创建存储桶时出错: " + e.awsErrorDetails().errorMessage(), e);
         }
         return true;
     }